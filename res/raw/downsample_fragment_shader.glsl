@@ -0,0 +1,35 @@
+#extension GL_OES_EGL_image_external : require
+precision mediump float;
+
+// Must match BlurTextureProgram.DOWNSAMPLE_FACTOR
+const int DOWNSAMPLE_FACTOR = 4;
+const int SAMPLES_PER_AXIS = DOWNSAMPLE_FACTOR / 2;
+
+uniform vec3                uSourceResolution;
+uniform samplerExternalOES  sTexture;
+varying vec2                vTextureCoord;
+
+/**
+* This shader sets the colour of each fragment of the downsampled texture to be the average of the
+* DOWNSAMPLE_FACTOR x DOWNSAMPLE_FACTOR block of screenshot texels it covers
+*
+* uSourceResolution is the size of the full resolution screenshot. Each sample is taken at the
+* corner shared by four texels of the block so that linear filtering averages them, which takes
+* (DOWNSAMPLE_FACTOR / 2)^2 samples per fragment.
+*/
+void main() {
+    vec4 color = vec4(0.0);
+
+    for (int y = 0; y < SAMPLES_PER_AXIS; y++)
+    {
+        for (int x = 0; x < SAMPLES_PER_AXIS; x++)
+        {
+            vec2 offset = vec2(
+                    (float(2 * x + 1) - float(SAMPLES_PER_AXIS)) / uSourceResolution.x,
+                    (float(2 * y + 1) - float(SAMPLES_PER_AXIS)) / uSourceResolution.y);
+            color += texture2D(sTexture, vTextureCoord + offset);
+        }
+    }
+
+    gl_FragColor = vec4(color.rgb / float(SAMPLES_PER_AXIS * SAMPLES_PER_AXIS), 1.0);
+}
@@ -1,36 +1,35 @@
-#extension GL_OES_EGL_image_external : require
 precision mediump float;
 
+// Must match BlurKernel.MAX_TAP_COUNT
+const int MAX_TAP_COUNT = 16;
+
 uniform vec3                uResolution;
-uniform samplerExternalOES  sTexture;
-uniform float               uRadius;
+uniform sampler2D           sTexture;
+uniform float               uTapOffsets[MAX_TAP_COUNT];
+uniform float               uTapWeights[MAX_TAP_COUNT];
+uniform int                 uTapCount;
 varying vec2                vTextureCoord;
 
-float computeWeight(float x) {
-    return -((x * x) / (uRadius * uRadius)) + 1.0;
-}
-
 /**
-* This shader sets the colour of each fragment to be the weighted average of the uRadius fragments
+* This shader sets the colour of each fragment to be the weighted average of the fragments
 * horizontally adjacent to it to produce a blur effect along the x-axis of the texture
 *
-* The weights come from the following curve: f(x) = 1 - (x^2)/(r^2)
-* where r is the radius of the blur
+* uResolution is the size of the downsampled texture being blurred. Each tap samples between two
+* adjacent texels so that linear filtering averages them with the weights computed by BlurKernel.
+* Tap 0 is the center texel, every other tap is sampled on both sides of it.
 */
 void main() {
-    vec4 sampledColor = vec4(0.0);
-    vec4 weightedColor = vec4(0.0);
-
-    float divisor = 0.0;
-    float weight = 0.0;
+    vec4 weightedColor = texture2D(sTexture, vTextureCoord) * uTapWeights[0];
 
-    for (float x = -uRadius; x <= uRadius; x++)
+    for (int i = 1; i < MAX_TAP_COUNT; i++)
     {
-        sampledColor = texture2D(sTexture, vTextureCoord + vec2(x / uResolution.x, 0.0));
-        weight = computeWeight(x);
-        weightedColor += sampledColor * weight;
-        divisor += weight;
+        if (i >= uTapCount) {
+            break;
+        }
+        vec2 offset = vec2(uTapOffsets[i] / uResolution.x, 0.0);
+        weightedColor += texture2D(sTexture, vTextureCoord + offset) * uTapWeights[i];
+        weightedColor += texture2D(sTexture, vTextureCoord - offset) * uTapWeights[i];
     }
 
-    gl_FragColor = vec4(weightedColor.r / divisor, weightedColor.g / divisor, weightedColor.b / divisor, 1.0);
+    gl_FragColor = vec4(weightedColor.rgb, 1.0);
 }
@@ -16,7 +16,7 @@
 package com.android.systemui.car.activity;
 
 import android.app.Activity;
-import android.app.ActivityManager;
+import android.app.ActivityTaskManager;
 import android.car.Car;
 import android.car.CarOccupantZoneManager;
 import android.car.app.CarActivityManager;
@@ -26,6 +26,7 @@ import android.car.drivingstate.CarUxRestrictionsManager;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
+import android.graphics.Bitmap;
 import android.graphics.Insets;
 import android.graphics.PixelFormat;
 import android.graphics.Rect;
@@ -43,19 +44,17 @@ import android.view.View;
 import android.view.ViewTreeObserver;
 import android.view.WindowInsets;
 import android.widget.Button;
+import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.android.systemui.R;
 import com.android.systemui.car.activity.blurredbackground.BlurredSurfaceRenderer;
 
-import java.util.List;
-
 /**
  * Default activity that will be launched when the current foreground activity is not allowed.
  * Additional information on blocked Activity should be passed as intent extras.
  */
 public class ActivityBlockingActivity extends Activity {
-    private static final int ACTIVITY_MONITORING_DELAY_MS = 1000;
     private static final String TAG = "BlockingActivity";
     private static final int EGL_CONTEXT_VERSION = 2;
     private static final int EGL_CONFIG_SIZE = 8;
@@ -71,6 +70,7 @@ public class ActivityBlockingActivity extends Activity {
     private CarPackageManager mCarPackageManager;
     private CarActivityManager mCarActivityManager;
     private CarOccupantZoneManager mCarOccupantZoneManager;
+    private DistractionOptimizationMonitor mDistractionOptimizationMonitor;
 
     private Button mExitButton;
     private Button mToggleDebug;
@@ -151,7 +151,7 @@ public class ActivityBlockingActivity extends Activity {
         String blockedActivity = getIntent().getStringExtra(
                 CarPackageManager.BLOCKING_INTENT_EXTRA_BLOCKED_ACTIVITY_NAME);
         if (!TextUtils.isEmpty(blockedActivity)) {
-            boolean finished = finishIfActivitiesAreDistractionOptimised();
+            boolean finished = getDistractionOptimizationMonitor().start();
             if (finished) {
                 return;
             }
@@ -185,15 +185,13 @@ public class ActivityBlockingActivity extends Activity {
         finish();
     }
 
-    private boolean finishIfActivitiesAreDistractionOptimised() {
-        if (areAllVisibleActivitiesDistractionOptimised()) {
-            Slog.i(TAG, "All visible activities are already DO, so finishing");
-            finish();
-            return true;
+    private DistractionOptimizationMonitor getDistractionOptimizationMonitor() {
+        if (mDistractionOptimizationMonitor == null) {
+            mDistractionOptimizationMonitor = new DistractionOptimizationMonitor(getDisplayId(),
+                    getComponentName(), mCarActivityManager, mCarPackageManager,
+                    ActivityTaskManager.getService(), mHandler, this::finish);
         }
-        mHandler.postDelayed(() -> finishIfActivitiesAreDistractionOptimised(),
-                ACTIVITY_MONITORING_DELAY_MS);
-        return false;
+        return mDistractionOptimizationMonitor;
     }
 
     private void setupGLSurface() {
@@ -206,7 +204,9 @@ public class ActivityBlockingActivity extends Activity {
 
         Rect windowRect = getAppWindowRect();
 
-        mSurfaceRenderer = new BlurredSurfaceRenderer(this, windowRect, getDisplayId());
+        mSurfaceRenderer = new BlurredSurfaceRenderer(this, windowRect, getDisplayId(),
+                blurredScreenshot -> runOnUiThread(
+                        () -> showCpuBlurredBackground(blurredScreenshot)));
 
         mGLSurfaceView = findViewById(R.id.blurred_surface_view);
         mGLSurfaceView.setEGLContextClientVersion(EGL_CONTEXT_VERSION);
@@ -224,6 +224,18 @@ public class ActivityBlockingActivity extends Activity {
         mIsGLSurfaceSetup = true;
     }
 
+    /**
+     * Shows the screenshot blurred on the CPU, used when the blur shaders could not be loaded.
+     */
+    private void showCpuBlurredBackground(Bitmap blurredScreenshot) {
+        if (isFinishing() || isDestroyed()) {
+            return;
+        }
+        ImageView fallbackView = findViewById(R.id.blurred_fallback_view);
+        fallbackView.setImageBitmap(blurredScreenshot);
+        fallbackView.setVisibility(View.VISIBLE);
+    }
+
     /**
      * Computes a Rect that represents the portion of the screen that contains the activity that is
      * being blocked.
@@ -266,44 +278,6 @@ public class ActivityBlockingActivity extends Activity {
                 : getString(R.string.exit_button_go_back);
     }
 
-    /**
-     * It is possible that the stack info has changed between when the intent to launch this
-     * activity was initiated and when this activity is started. Check whether all the visible
-     * activities are distraction optimized.
-     */
-    private boolean areAllVisibleActivitiesDistractionOptimised() {
-        List<ActivityManager.RunningTaskInfo> visibleTasks;
-        visibleTasks = mCarActivityManager.getVisibleTasks();
-        for (int i = visibleTasks.size() - 1; i >= 0; i--) {
-            ActivityManager.RunningTaskInfo taskInfo = visibleTasks.get(i);
-            if (taskInfo.displayId != getDisplayId()) {
-                // ignore stacks on other displays
-                continue;
-            }
-
-            if (getComponentName().equals(taskInfo.topActivity)) {
-                // skip the ActivityBlockingActivity itself
-                continue;
-            }
-
-            if (taskInfo.topActivity != null) {
-                boolean isDo = mCarPackageManager.isActivityDistractionOptimized(
-                        taskInfo.topActivity.getPackageName(),
-                        taskInfo.topActivity.getClassName());
-                if (Log.isLoggable(TAG, Log.DEBUG)) {
-                    Slog.d(TAG,
-                            String.format("Activity (%s) is DO: %s", taskInfo.topActivity, isDo));
-                }
-                if (!isDo) {
-                    return false;
-                }
-            }
-        }
-
-        // No visible non-DO activity found.
-        return true;
-    }
-
     private void displayDebugInfo() {
         String blockedActivity = getIntent().getStringExtra(
                 CarPackageManager.BLOCKING_INTENT_EXTRA_BLOCKED_ACTIVITY_NAME);
@@ -377,6 +351,9 @@ public class ActivityBlockingActivity extends Activity {
             mToggleDebug.getViewTreeObserver().removeOnGlobalLayoutListener(
                     mOnGlobalLayoutListener);
         }
+        if (mDistractionOptimizationMonitor != null) {
+            mDistractionOptimizationMonitor.stop();
+        }
         mHandler.removeCallbacksAndMessages(null);
         mCar.disconnect();
     }
@@ -389,6 +366,8 @@ public class ActivityBlockingActivity extends Activity {
         }
         if (!restrictions.isRequiresDistractionOptimization()) {
             finish();
+        } else if (mDistractionOptimizationMonitor != null) {
+            mDistractionOptimizationMonitor.requestCheck();
         }
     }
 
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.systemui.car.activity;
+
+import android.app.ActivityManager;
+import android.app.IActivityTaskManager;
+import android.app.TaskStackListener;
+import android.car.app.CarActivityManager;
+import android.car.content.pm.CarPackageManager;
+import android.content.ComponentName;
+import android.os.Handler;
+import android.os.RemoteException;
+import android.util.ArrayMap;
+import android.util.Log;
+import android.util.Slog;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.util.List;
+
+/**
+ * Notifies the {@link ActivityBlockingActivity} once every activity visible on its display is
+ * distraction optimized, so that it can stop blocking.
+ *
+ * The visible activities are only checked again when the task stack changes or when the
+ * {@link ActivityBlockingActivity} requests it (e.g. on a UX restrictions change). The distraction
+ * optimization verdict of each activity is cached for the lifetime of the monitor. If task stack
+ * changes cannot be listened to, the visible activities are polled with an exponential backoff
+ * instead.
+ *
+ * This class must only be accessed from the thread of the handler it is created with, except for
+ * {@link #requestCheck()}.
+ */
+final class DistractionOptimizationMonitor {
+    private static final String TAG = "BlockingActivity";
+    @VisibleForTesting
+    static final long INITIAL_POLLING_DELAY_MS = 1000;
+    @VisibleForTesting
+    static final long MAX_POLLING_DELAY_MS = 8000;
+
+    /** Called once every visible activity is distraction optimized. */
+    interface Callback {
+        void onAllVisibleActivitiesDistractionOptimized();
+    }
+
+    private final int mDisplayId;
+    private final ComponentName mBlockingActivity;
+    private final CarActivityManager mCarActivityManager;
+    private final CarPackageManager mCarPackageManager;
+    private final IActivityTaskManager mActivityTaskManager;
+    private final Handler mHandler;
+    private final Callback mCallback;
+    private final ArrayMap<ComponentName, Boolean> mDistractionOptimizedVerdicts =
+            new ArrayMap<>();
+    private final Runnable mCheckRunnable = this::check;
+    private final Runnable mPollRunnable = this::poll;
+
+    private final TaskStackListener mTaskStackListener = new TaskStackListener() {
+        @Override
+        public void onTaskStackChanged() {
+            requestCheck();
+        }
+
+        @Override
+        public void onTaskMovedToFront(ActivityManager.RunningTaskInfo taskInfo) {
+            requestCheck();
+        }
+
+        @Override
+        public void onTaskRemoved(int taskId) {
+            requestCheck();
+        }
+    };
+
+    private boolean mIsStarted;
+    private boolean mIsListeningToTaskStack;
+    private long mPollingDelayMs = INITIAL_POLLING_DELAY_MS;
+
+    DistractionOptimizationMonitor(int displayId, ComponentName blockingActivity,
+            CarActivityManager carActivityManager, CarPackageManager carPackageManager,
+            IActivityTaskManager activityTaskManager, Handler handler, Callback callback) {
+        mDisplayId = displayId;
+        mBlockingActivity = blockingActivity;
+        mCarActivityManager = carActivityManager;
+        mCarPackageManager = carPackageManager;
+        mActivityTaskManager = activityTaskManager;
+        mHandler = handler;
+        mCallback = callback;
+    }
+
+    /**
+     * Checks the visible activities, and starts monitoring them if some are not distraction
+     * optimized. Does nothing if the monitor was already started.
+     *
+     * @return whether every visible activity is already distraction optimized, in which case the
+     * callback was called.
+     */
+    boolean start() {
+        if (mIsStarted) {
+            return false;
+        }
+        mIsStarted = true;
+        if (check()) {
+            return true;
+        }
+        try {
+            mActivityTaskManager.registerTaskStackListener(mTaskStackListener);
+            mIsListeningToTaskStack = true;
+        } catch (RemoteException e) {
+            Slog.w(TAG, "Could not listen to task stack changes, polling visible activities", e);
+            mHandler.postDelayed(mPollRunnable, mPollingDelayMs);
+        }
+        return false;
+    }
+
+    /**
+     * Checks the visible activities again on the handler thread, e.g. because the UX restrictions
+     * changed. Can be called from any thread.
+     */
+    void requestCheck() {
+        // Coalesces the checks requested before the handler gets to run them.
+        mHandler.removeCallbacks(mCheckRunnable);
+        mHandler.post(mCheckRunnable);
+    }
+
+    /** Stops monitoring the visible activities. */
+    void stop() {
+        if (!mIsStarted) {
+            return;
+        }
+        mIsStarted = false;
+        mHandler.removeCallbacks(mCheckRunnable);
+        mHandler.removeCallbacks(mPollRunnable);
+        if (mIsListeningToTaskStack) {
+            mIsListeningToTaskStack = false;
+            try {
+                mActivityTaskManager.unregisterTaskStackListener(mTaskStackListener);
+            } catch (RemoteException e) {
+                Slog.w(TAG, "Could not stop listening to task stack changes", e);
+            }
+        }
+    }
+
+    private void poll() {
+        if (check()) {
+            return;
+        }
+        mPollingDelayMs = Math.min(mPollingDelayMs * 2, MAX_POLLING_DELAY_MS);
+        mHandler.postDelayed(mPollRunnable, mPollingDelayMs);
+    }
+
+    private boolean check() {
+        if (!mIsStarted || !areAllVisibleActivitiesDistractionOptimized()) {
+            return false;
+        }
+        Slog.i(TAG, "All visible activities are already DO, so finishing");
+        stop();
+        mCallback.onAllVisibleActivitiesDistractionOptimized();
+        return true;
+    }
+
+    /**
+     * It is possible that the stack info has changed between when the intent to launch the
+     * blocking activity was initiated and when it is started. Check whether all the visible
+     * activities are distraction optimized.
+     */
+    @VisibleForTesting
+    boolean areAllVisibleActivitiesDistractionOptimized() {
+        List<ActivityManager.RunningTaskInfo> visibleTasks = mCarActivityManager.getVisibleTasks();
+        for (int i = visibleTasks.size() - 1; i >= 0; i--) {
+            ActivityManager.RunningTaskInfo taskInfo = visibleTasks.get(i);
+            if (taskInfo.displayId != mDisplayId) {
+                // ignore stacks on other displays
+                continue;
+            }
+
+            if (mBlockingActivity.equals(taskInfo.topActivity)) {
+                // skip the ActivityBlockingActivity itself
+                continue;
+            }
+
+            if (taskInfo.topActivity != null && !isDistractionOptimized(taskInfo.topActivity)) {
+                return false;
+            }
+        }
+
+        // No visible non-DO activity found.
+        return true;
+    }
+
+    private boolean isDistractionOptimized(ComponentName activity) {
+        Boolean isDo = mDistractionOptimizedVerdicts.get(activity);
+        if (isDo == null) {
+            isDo = mCarPackageManager.isActivityDistractionOptimized(activity.getPackageName(),
+                    activity.getClassName());
+            mDistractionOptimizedVerdicts.put(activity, isDo);
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Slog.d(TAG, String.format("Activity (%s) is DO: %s", activity, isDo));
+            }
+        }
+        return isDo;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.systemui.car.activity.blurredbackground;
+
+/**
+ * The weights of the separable blur applied to the downsampled screenshot.
+ *
+ * The discrete weights follow the curve f(x) = 1 - (x^2)/(r^2), where r is the blur radius in
+ * downsampled texels, and are normalized so that they sum to 1. Adjacent pairs of discrete
+ * weights are folded into a single tap that samples between the two texels, so that a GPU with
+ * linear texture filtering produces the same result as the discrete kernel with about half as
+ * many texture reads. Tap 0 is the center texel, every other tap is sampled on both sides.
+ */
+public final class BlurKernel {
+
+    /** The maximum number of taps, which is the size of the tap arrays of the blur shaders. */
+    public static final int MAX_TAP_COUNT = 16;
+
+    private final int mRadius;
+    private final float[] mWeights;
+    private final float[] mTapOffsets;
+    private final float[] mTapWeights;
+
+    private BlurKernel(int radius, float[] weights, float[] tapOffsets, float[] tapWeights) {
+        mRadius = radius;
+        mWeights = weights;
+        mTapOffsets = tapOffsets;
+        mTapWeights = tapWeights;
+    }
+
+    /**
+     * Creates the kernel blurring an image by {@code blurRadius} pixels once it was downsampled by
+     * {@code downsampleFactor}.
+     *
+     * @param blurRadius The radius of the blur, in pixels of the full resolution image
+     * @param downsampleFactor The factor the image is downsampled by before being blurred
+     */
+    public static BlurKernel create(float blurRadius, int downsampleFactor) {
+        if (downsampleFactor < 1) {
+            throw new IllegalArgumentException("Invalid downsample factor: " + downsampleFactor);
+        }
+        int radius = Math.max(1, Math.round(blurRadius / downsampleFactor));
+        if (getTapCount(radius) > MAX_TAP_COUNT) {
+            throw new IllegalArgumentException("Blur radius " + blurRadius
+                    + " needs more than " + MAX_TAP_COUNT + " taps at downsample factor "
+                    + downsampleFactor);
+        }
+
+        // f(radius) is 0, so only the texels strictly within the radius contribute.
+        float[] weights = new float[radius];
+        float sum = 0f;
+        for (int x = 0; x < radius; x++) {
+            weights[x] = 1f - ((float) (x * x) / (radius * radius));
+            sum += x == 0 ? weights[x] : 2 * weights[x];
+        }
+        for (int x = 0; x < radius; x++) {
+            weights[x] /= sum;
+        }
+
+        int tapCount = getTapCount(radius);
+        float[] tapOffsets = new float[tapCount];
+        float[] tapWeights = new float[tapCount];
+        tapWeights[0] = weights[0];
+        for (int tap = 1; tap < tapCount; tap++) {
+            int first = 2 * tap - 1;
+            int second = first + 1;
+            float firstWeight = weights[first];
+            float secondWeight = second < radius ? weights[second] : 0f;
+            tapWeights[tap] = firstWeight + secondWeight;
+            tapOffsets[tap] = (first * firstWeight + second * secondWeight) / tapWeights[tap];
+        }
+        return new BlurKernel(radius, weights, tapOffsets, tapWeights);
+    }
+
+    /** Returns the radius of the kernel, in downsampled texels. */
+    public int getRadius() {
+        return mRadius;
+    }
+
+    /**
+     * Returns the normalized discrete weight of the texel {@code distance} texels away from the
+     * center, or 0 if it is outside of the kernel.
+     */
+    public float getWeight(int distance) {
+        distance = Math.abs(distance);
+        return distance < mRadius ? mWeights[distance] : 0f;
+    }
+
+    /** Returns the number of linearly filtered taps, including the center tap. */
+    public int getTapCount() {
+        return mTapOffsets.length;
+    }
+
+    /** Returns the distance of each tap from the center, in downsampled texels. */
+    public float[] getTapOffsets() {
+        return mTapOffsets.clone();
+    }
+
+    /** Returns the weight of each tap, applied once per side for taps other than the center. */
+    public float[] getTapWeights() {
+        return mTapWeights.clone();
+    }
+
+    private static int getTapCount(int radius) {
+        // The center texel, then one tap for each pair of texels on one side of the center.
+        return 1 + radius / 2;
+    }
+}
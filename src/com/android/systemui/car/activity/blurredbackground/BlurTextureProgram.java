@@ -16,7 +16,6 @@
 
 package com.android.systemui.car.activity.blurredbackground;
 
-import android.graphics.Rect;
 import android.opengl.GLES11Ext;
 import android.opengl.GLES30;
 
@@ -25,6 +24,15 @@ import java.nio.IntBuffer;
 
 /**
  * A class containing the OpenGL programs used to render a blurred texture
+ *
+ * The screenshot is first box-downsampled by {@link #DOWNSAMPLE_FACTOR} into a framebuffer. It is
+ * then blurred horizontally into a second framebuffer and vertically back into the first one, both
+ * passes using the linearly filtered taps of {@link #BLUR_KERNEL} on the downsampled texels. The
+ * result is finally upsampled onto the surface through linear texture filtering. This is the same
+ * pipeline as {@link CpuBlurRenderer}.
+ *
+ * The programs are compiled once and the framebuffers are only reallocated when the surface size
+ * changes, so an instance can be reused for every frame drawn within the same GL context.
  */
 public class BlurTextureProgram {
 
@@ -48,35 +56,61 @@ public class BlurTextureProgram {
             1.0f, 0.0f      // 3 top right
     };
 
+    // A single tap of weight 1 turns the vertical blur program into a plain texture copy, which is
+    // used to upsample the blurred texture onto the surface.
+    private static final float[] COPY_TAP_OFFSETS = {0.0f};
+    private static final float[] COPY_TAP_WEIGHTS = {1.0f};
+
     private static final int SIZEOF_FLOAT = 4;
     private static final int NUM_COORDS_PER_VERTEX = 2;
-    private static final float BLUR_RADIUS = 40.0f;
+    private static final int NUM_FRAMEBUFFERS = 2;
+    static final float BLUR_RADIUS = 40.0f;
+    // Must match DOWNSAMPLE_FACTOR in downsample_fragment_shader.glsl
+    static final int DOWNSAMPLE_FACTOR = 4;
+    static final BlurKernel BLUR_KERNEL = BlurKernel.create(BLUR_RADIUS, DOWNSAMPLE_FACTOR);
 
     private final String mVertexShader;
+    private final String mDownsampleShader;
     private final String mHorizontalBlurShader;
     private final String mVerticalBlurShader;
 
+    private final int mDownsampleProgram;
     private final int mHorizontalBlurProgram;
     private final int mVerticalBlurProgram;
 
-    private final int mWidth;
-    private final int mHeight;
+    private int mWidth;
+    private int mHeight;
+    private int mBlurWidth;
+    private int mBlurHeight;
 
     private final int mScreenshotTextureId;
     private final IntBuffer mScreenshotTextureBuffer;
+    private final FloatBuffer mSourceResolutionBuffer;
     private final float[] mTexMatrix;
-    private final FloatBuffer mResolutionBuffer;
+    private final float[] mIdentityMatrix = GLHelper.getIdentityMatrix();
+    private FloatBuffer mResolutionBuffer;
+    private final float[] mTapOffsets = BLUR_KERNEL.getTapOffsets();
+    private final float[] mTapWeights = BLUR_KERNEL.getTapWeights();
 
     private final FloatBuffer mVertexBuffer = GLHelper.createFloatBuffer(FRAME_COORDS);
     private final FloatBuffer mTexBuffer = GLHelper.createFloatBuffer(TEXTURE_COORDS);
     private final FloatBuffer mInvertedTexBuffer = GLHelper.createFloatBuffer(
             INVERTED_TEXTURE_COORDS);
 
+    // Locations of the uniforms and attributes for the downsample program
+    private final int mUDownsampleMVPMatrixLoc;
+    private final int mUDownsampleTexMatrixLoc;
+    private final int mUDownsampleSourceResolutionLoc;
+    private final int mADownsamplePositionLoc;
+    private final int mADownsampleTextureCoordLoc;
+
     // Locations of the uniforms and attributes for the horizontal program
     private final int mUHorizontalMVPMatrixLoc;
     private final int mUHorizontalTexMatrixLoc;
     private final int mUHorizontalResolutionLoc;
-    private final int mUHorizontalRadiusLoc;
+    private final int mUHorizontalTapOffsetsLoc;
+    private final int mUHorizontalTapWeightsLoc;
+    private final int mUHorizontalTapCountLoc;
     private final int mAHorizontalPositionLoc;
     private final int mAHorizontalTextureCoordLoc;
 
@@ -84,50 +118,69 @@ public class BlurTextureProgram {
     private final int mUVerticalMVPMatrixLoc;
     private final int mUVerticalTexMatrixLoc;
     private final int mUVerticalResolutionLoc;
-    private final int mUVerticalRadiusLoc;
+    private final int mUVerticalTapOffsetsLoc;
+    private final int mUVerticalTapWeightsLoc;
+    private final int mUVerticalTapCountLoc;
     private final int mAVerticalPositionLoc;
     private final int mAVerticalTextureCoordLoc;
 
-    private final IntBuffer mFrameBuffer = IntBuffer.allocate(1);
-    private final IntBuffer mFirstPassTextureBuffer = IntBuffer.allocate(1);
-
-    private int mFrameBufferId;
-    private int mFirstPassTextureId;
+    private final IntBuffer[] mFrameBuffers = new IntBuffer[NUM_FRAMEBUFFERS];
+    private final IntBuffer[] mFramebufferTextureBuffers = new IntBuffer[NUM_FRAMEBUFFERS];
+    private final int[] mFrameBufferIds = new int[NUM_FRAMEBUFFERS];
+    private final int[] mFramebufferTextureIds = new int[NUM_FRAMEBUFFERS];
 
     /**
      * Constructor for the BlurTextureProgram
      *
      * @param screenshotTextureBuffer IntBuffer
      * @param texMatrix Float array used to scale the screenshot texture
+     * @param screenshotWidth The width of the screenshot, in pixels
+     * @param screenshotHeight The height of the screenshot, in pixels
      * @param vertexShader String containing the horizontal blur shader
+     * @param downsampleShader String containing the fragment shader downsampling the screenshot
      * @param horizontalBlurShader String containing the fragment shader for horizontal
      *         blur
      * @param verticalBlurShader String containing the fragment shader for vertical blur
-     * @param windowRect Rect representing the location of the window being covered
      */
     BlurTextureProgram(
             IntBuffer screenshotTextureBuffer,
             float[] texMatrix,
+            int screenshotWidth,
+            int screenshotHeight,
             String vertexShader,
+            String downsampleShader,
             String horizontalBlurShader,
-            String verticalBlurShader,
-            Rect windowRect
+            String verticalBlurShader
     ) {
         mVertexShader = vertexShader;
+        mDownsampleShader = downsampleShader;
         mHorizontalBlurShader = horizontalBlurShader;
         mVerticalBlurShader = verticalBlurShader;
 
         mScreenshotTextureBuffer = screenshotTextureBuffer;
         mScreenshotTextureId = screenshotTextureBuffer.get(0);
         mTexMatrix = texMatrix;
+        mSourceResolutionBuffer = FloatBuffer.wrap(
+                new float[]{(float) screenshotWidth, (float) screenshotHeight, 1.0f});
 
+        for (int i = 0; i < NUM_FRAMEBUFFERS; i++) {
+            mFrameBuffers[i] = IntBuffer.allocate(1);
+            mFramebufferTextureBuffers[i] = IntBuffer.allocate(1);
+        }
+
+        mDownsampleProgram = GLHelper.createProgram(mVertexShader, mDownsampleShader);
         mHorizontalBlurProgram = GLHelper.createProgram(mVertexShader, mHorizontalBlurShader);
         mVerticalBlurProgram = GLHelper.createProgram(mVertexShader, mVerticalBlurShader);
 
-        mWidth = windowRect.width();
-        mHeight = windowRect.height();
+        // Initialize the uniform and attribute locations for the downsample program
+        mUDownsampleMVPMatrixLoc = GLES30.glGetUniformLocation(mDownsampleProgram, "uMVPMatrix");
+        mUDownsampleTexMatrixLoc = GLES30.glGetUniformLocation(mDownsampleProgram, "uTexMatrix");
+        mUDownsampleSourceResolutionLoc = GLES30.glGetUniformLocation(mDownsampleProgram,
+                "uSourceResolution");
 
-        mResolutionBuffer = FloatBuffer.wrap(new float[]{(float) mWidth, (float) mHeight, 1.0f});
+        mADownsamplePositionLoc = GLES30.glGetAttribLocation(mDownsampleProgram, "aPosition");
+        mADownsampleTextureCoordLoc = GLES30.glGetAttribLocation(mDownsampleProgram,
+                "aTextureCoord");
 
         // Initialize the uniform and attribute locations for the horizontal blur program
         mUHorizontalMVPMatrixLoc = GLES30.glGetUniformLocation(mHorizontalBlurProgram,
@@ -136,7 +189,12 @@ public class BlurTextureProgram {
                 "uTexMatrix");
         mUHorizontalResolutionLoc = GLES30.glGetUniformLocation(mHorizontalBlurProgram,
                 "uResolution");
-        mUHorizontalRadiusLoc = GLES30.glGetUniformLocation(mHorizontalBlurProgram, "uRadius");
+        mUHorizontalTapOffsetsLoc = GLES30.glGetUniformLocation(mHorizontalBlurProgram,
+                "uTapOffsets");
+        mUHorizontalTapWeightsLoc = GLES30.glGetUniformLocation(mHorizontalBlurProgram,
+                "uTapWeights");
+        mUHorizontalTapCountLoc = GLES30.glGetUniformLocation(mHorizontalBlurProgram,
+                "uTapCount");
 
         mAHorizontalPositionLoc = GLES30.glGetAttribLocation(mHorizontalBlurProgram, "aPosition");
         mAHorizontalTextureCoordLoc = GLES30.glGetAttribLocation(mHorizontalBlurProgram,
@@ -146,7 +204,11 @@ public class BlurTextureProgram {
         mUVerticalMVPMatrixLoc = GLES30.glGetUniformLocation(mVerticalBlurProgram, "uMVPMatrix");
         mUVerticalTexMatrixLoc = GLES30.glGetUniformLocation(mVerticalBlurProgram, "uTexMatrix");
         mUVerticalResolutionLoc = GLES30.glGetUniformLocation(mVerticalBlurProgram, "uResolution");
-        mUVerticalRadiusLoc = GLES30.glGetUniformLocation(mVerticalBlurProgram, "uRadius");
+        mUVerticalTapOffsetsLoc = GLES30.glGetUniformLocation(mVerticalBlurProgram,
+                "uTapOffsets");
+        mUVerticalTapWeightsLoc = GLES30.glGetUniformLocation(mVerticalBlurProgram,
+                "uTapWeights");
+        mUVerticalTapCountLoc = GLES30.glGetUniformLocation(mVerticalBlurProgram, "uTapCount");
 
         mAVerticalPositionLoc = GLES30.glGetAttribLocation(mVerticalBlurProgram, "aPosition");
         mAVerticalTextureCoordLoc = GLES30.glGetAttribLocation(mVerticalBlurProgram,
@@ -154,40 +216,76 @@ public class BlurTextureProgram {
     }
 
     /**
-     * Executes all of the rendering logic.  Sets up FrameBuffers and programs to complete two
-     * rendering passes on the captured screenshot to produce a blur.
+     * Executes all of the rendering logic.  Uses the FrameBuffers and programs to downsample,
+     * blur and upsample the captured screenshot.
      */
     public void render() {
-        setupProgram(mHorizontalBlurProgram, mScreenshotTextureId,
-                GLES11Ext.GL_TEXTURE_EXTERNAL_OES);
-        setHorizontalUniformsAndAttributes();
-
-        // Create the framebuffer that will hold the texture we render to
-        // for the first shader pass
-        mFrameBufferId = GLHelper.createAndBindFramebuffer(mFrameBuffer);
-
-        // Create the empty texture that will store the output of the first shader pass (this'll
-        // be held in the Framebuffer Object)
-        mFirstPassTextureId = GLHelper.createAndBindTextureObject(mFirstPassTextureBuffer,
-                GLES30.GL_TEXTURE_2D);
+        if (mFrameBufferIds[0] == 0) {
+            throw new IllegalStateException("setSize must be called before rendering");
+        }
+        // Box-downsample the screenshot into the first framebuffer
+        setupProgram(mDownsampleProgram, mScreenshotTextureId, GLES11Ext.GL_TEXTURE_EXTERNAL_OES);
+        setDownsampleUniformsAndAttributes();
+        renderToFramebuffer(mFrameBufferIds[0]);
 
-        setupTextureForFramebuffer(mFirstPassTextureId);
-        assertValidFramebufferStatus();
-        renderToFramebuffer(mFrameBufferId);
+        // Blur the downsampled texture horizontally into the second framebuffer
+        setupProgram(mHorizontalBlurProgram, mFramebufferTextureIds[0], GLES30.GL_TEXTURE_2D);
+        setHorizontalUniformsAndAttributes();
+        renderToFramebuffer(mFrameBufferIds[1]);
 
-        setupProgram(mVerticalBlurProgram, mFirstPassTextureId, GLES30.GL_TEXTURE_2D);
-        setVerticalUniformsAndAttributes();
+        // Blur it vertically back into the first framebuffer
+        setupProgram(mVerticalBlurProgram, mFramebufferTextureIds[1], GLES30.GL_TEXTURE_2D);
+        setVerticalUniformsAndAttributes(mTapOffsets, mTapWeights, mIdentityMatrix, mTexBuffer);
+        renderToFramebuffer(mFrameBufferIds[0]);
 
+        // Upsample the blurred texture onto the surface
+        setupProgram(mVerticalBlurProgram, mFramebufferTextureIds[0], GLES30.GL_TEXTURE_2D);
+        setVerticalUniformsAndAttributes(COPY_TAP_OFFSETS, COPY_TAP_WEIGHTS, mTexMatrix,
+                mInvertedTexBuffer);
         renderToSurface();
-        cleanupResources();
+    }
+
+    /**
+     * Sets the size of the surface being rendered to. The downsampled framebuffers used for the
+     * intermediate rendering passes are only reallocated if the size changed.
+     *
+     * @param width The width of the surface
+     * @param height The height of the surface
+     */
+    public void setSize(int width, int height) {
+        if (mFrameBufferIds[0] != 0 && width == mWidth && height == mHeight) {
+            return;
+        }
+        deleteFramebuffers();
+
+        mWidth = width;
+        mHeight = height;
+        mBlurWidth = CpuBlurRenderer.getDownsampledSize(width, DOWNSAMPLE_FACTOR);
+        mBlurHeight = CpuBlurRenderer.getDownsampledSize(height, DOWNSAMPLE_FACTOR);
+        mResolutionBuffer = FloatBuffer.wrap(
+                new float[]{(float) mBlurWidth, (float) mBlurHeight, 1.0f});
+
+        for (int i = 0; i < NUM_FRAMEBUFFERS; i++) {
+            // Create the framebuffer that will hold the texture we render to
+            // for an intermediate shader pass
+            mFrameBufferIds[i] = GLHelper.createAndBindFramebuffer(mFrameBuffers[i]);
+
+            // Create the empty texture that will store the output of the shader pass (this'll
+            // be held in the Framebuffer Object)
+            mFramebufferTextureIds[i] = GLHelper.createAndBindTextureObject(
+                    mFramebufferTextureBuffers[i], GLES30.GL_TEXTURE_2D);
+
+            setupTextureForFramebuffer(mFramebufferTextureIds[i]);
+            assertValidFramebufferStatus();
+        }
+        GLES30.glBindFramebuffer(GLES30.GL_FRAMEBUFFER, 0);
     }
 
     /**
      * Cleans up all OpenGL resources used by programs in this class
      */
     public void cleanupResources() {
-        deleteFramebufferTexture();
-        deleteFrameBuffer();
+        deleteFramebuffers();
         deletePrograms();
 
         GLES30.glFlush();
@@ -199,7 +297,7 @@ public class BlurTextureProgram {
      * @param textureId The ID of the texture to be attached
      */
     private void setupTextureForFramebuffer(int textureId) {
-        GLES30.glTexImage2D(GLES30.GL_TEXTURE_2D, 0, GLES30.GL_RGB, mWidth, mHeight, 0,
+        GLES30.glTexImage2D(GLES30.GL_TEXTURE_2D, 0, GLES30.GL_RGB, mBlurWidth, mBlurHeight, 0,
                 GLES30.GL_RGB, GLES30.GL_UNSIGNED_BYTE, null);
         GLHelper.checkGlErrors("glTexImage2D");
         GLES30.glFramebufferTexture2D(GLES30.GL_FRAMEBUFFER, GLES30.GL_COLOR_ATTACHMENT0,
@@ -208,67 +306,90 @@ public class BlurTextureProgram {
     }
 
     /**
-     * Deletes the texture stored in the framebuffer
+     * Deletes the framebuffers and the textures stored in them, if they were created.
      */
-    private void deleteFramebufferTexture() {
-        GLES30.glDeleteTextures(mFirstPassTextureBuffer.capacity(), mFirstPassTextureBuffer);
-        GLHelper.checkGlErrors("glDeleteTextures");
-    }
-
-    /**
-     * Deletes the frame buffers.
-     */
-    private void deleteFrameBuffer() {
-        GLES30.glDeleteBuffers(1, mFrameBuffer);
-        GLHelper.checkGlErrors("glDeleteBuffers");
+    private void deleteFramebuffers() {
+        for (int i = 0; i < NUM_FRAMEBUFFERS; i++) {
+            if (mFrameBufferIds[i] == 0) {
+                continue;
+            }
+            GLES30.glDeleteTextures(1, mFramebufferTextureBuffers[i]);
+            GLHelper.checkGlErrors("glDeleteTextures");
+            GLES30.glDeleteFramebuffers(1, mFrameBuffers[i]);
+            GLHelper.checkGlErrors("glDeleteFramebuffers");
+            mFrameBufferIds[i] = 0;
+            mFramebufferTextureIds[i] = 0;
+        }
     }
 
     /**
      * Deletes the GL programs.
      */
     private void deletePrograms() {
+        GLES30.glDeleteProgram(mDownsampleProgram);
+        GLHelper.checkGlErrors("glDeleteProgram");
         GLES30.glDeleteProgram(mHorizontalBlurProgram);
         GLHelper.checkGlErrors("glDeleteProgram");
         GLES30.glDeleteProgram(mVerticalBlurProgram);
         GLHelper.checkGlErrors("glDeleteProgram");
     }
 
+    /**
+     * Set all of the Uniform and Attribute variable values for the downsample program
+     */
+    private void setDownsampleUniformsAndAttributes() {
+        GLES30.glUniformMatrix4fv(mUDownsampleMVPMatrixLoc, 1, false, mIdentityMatrix, 0);
+        GLES30.glUniformMatrix4fv(mUDownsampleTexMatrixLoc, 1, false, mTexMatrix, 0);
+        GLES30.glUniform3fv(mUDownsampleSourceResolutionLoc, 1, mSourceResolutionBuffer);
+
+        setAttributes(mADownsamplePositionLoc, mADownsampleTextureCoordLoc, mTexBuffer);
+    }
+
     /**
      * Set all of the Uniform and Attribute variable values for the horizontal blur program
      */
     private void setHorizontalUniformsAndAttributes() {
-        GLES30.glUniformMatrix4fv(mUHorizontalMVPMatrixLoc, 1, false, GLHelper.getIdentityMatrix(),
-                0);
-        GLES30.glUniformMatrix4fv(mUHorizontalTexMatrixLoc, 1, false, mTexMatrix, 0);
+        GLES30.glUniformMatrix4fv(mUHorizontalMVPMatrixLoc, 1, false, mIdentityMatrix, 0);
+        GLES30.glUniformMatrix4fv(mUHorizontalTexMatrixLoc, 1, false, mIdentityMatrix, 0);
         GLES30.glUniform3fv(mUHorizontalResolutionLoc, 1, mResolutionBuffer);
-        GLES30.glUniform1f(mUHorizontalRadiusLoc, BLUR_RADIUS);
+        GLES30.glUniform1fv(mUHorizontalTapOffsetsLoc, mTapOffsets.length, mTapOffsets, 0);
+        GLES30.glUniform1fv(mUHorizontalTapWeightsLoc, mTapWeights.length, mTapWeights, 0);
+        GLES30.glUniform1i(mUHorizontalTapCountLoc, mTapOffsets.length);
 
-        GLES30.glEnableVertexAttribArray(mAHorizontalPositionLoc);
-        GLES30.glVertexAttribPointer(mAHorizontalPositionLoc, NUM_COORDS_PER_VERTEX,
-                GLES30.GL_FLOAT, false, NUM_COORDS_PER_VERTEX * SIZEOF_FLOAT, mVertexBuffer);
-
-        GLES30.glEnableVertexAttribArray(mAHorizontalTextureCoordLoc);
-        GLES30.glVertexAttribPointer(mAHorizontalTextureCoordLoc, 2,
-                GLES30.GL_FLOAT, false, 2 * SIZEOF_FLOAT, mTexBuffer);
+        setAttributes(mAHorizontalPositionLoc, mAHorizontalTextureCoordLoc, mTexBuffer);
     }
 
     /**
      * Set all of the Uniform and Attribute variable values for the vertical blur program
+     *
+     * @param tapOffsets The offsets of the taps, in downsampled texels
+     * @param tapWeights The weights of the taps
+     * @param texMatrix The matrix applied to the texture coordinates
+     * @param texBuffer The texture coordinates of the frame
      */
-    private void setVerticalUniformsAndAttributes() {
-        GLES30.glUniformMatrix4fv(mUVerticalMVPMatrixLoc, 1, false, GLHelper.getIdentityMatrix(),
-                0);
-        GLES30.glUniformMatrix4fv(mUVerticalTexMatrixLoc, 1, false, mTexMatrix, 0);
+    private void setVerticalUniformsAndAttributes(float[] tapOffsets, float[] tapWeights,
+            float[] texMatrix, FloatBuffer texBuffer) {
+        GLES30.glUniformMatrix4fv(mUVerticalMVPMatrixLoc, 1, false, mIdentityMatrix, 0);
+        GLES30.glUniformMatrix4fv(mUVerticalTexMatrixLoc, 1, false, texMatrix, 0);
         GLES30.glUniform3fv(mUVerticalResolutionLoc, 1, mResolutionBuffer);
-        GLES30.glUniform1f(mUVerticalRadiusLoc, BLUR_RADIUS);
+        GLES30.glUniform1fv(mUVerticalTapOffsetsLoc, tapOffsets.length, tapOffsets, 0);
+        GLES30.glUniform1fv(mUVerticalTapWeightsLoc, tapWeights.length, tapWeights, 0);
+        GLES30.glUniform1i(mUVerticalTapCountLoc, tapOffsets.length);
 
-        GLES30.glEnableVertexAttribArray(mAVerticalPositionLoc);
-        GLES30.glVertexAttribPointer(mAVerticalPositionLoc, NUM_COORDS_PER_VERTEX,
+        setAttributes(mAVerticalPositionLoc, mAVerticalTextureCoordLoc, texBuffer);
+    }
+
+    /**
+     * Set the position and texture coordinate attributes of the active program
+     */
+    private void setAttributes(int positionLoc, int textureCoordLoc, FloatBuffer texBuffer) {
+        GLES30.glEnableVertexAttribArray(positionLoc);
+        GLES30.glVertexAttribPointer(positionLoc, NUM_COORDS_PER_VERTEX,
                 GLES30.GL_FLOAT, false, NUM_COORDS_PER_VERTEX * SIZEOF_FLOAT, mVertexBuffer);
 
-        GLES30.glEnableVertexAttribArray(mAVerticalTextureCoordLoc);
-        GLES30.glVertexAttribPointer(mAVerticalTextureCoordLoc, 2,
-                GLES30.GL_FLOAT, false, 2 * SIZEOF_FLOAT, mInvertedTexBuffer);
+        GLES30.glEnableVertexAttribArray(textureCoordLoc);
+        GLES30.glVertexAttribPointer(textureCoordLoc, 2,
+                GLES30.GL_FLOAT, false, 2 * SIZEOF_FLOAT, texBuffer);
     }
 
     /**
@@ -301,7 +422,7 @@ public class BlurTextureProgram {
         GLES30.glBindFramebuffer(GLES30.GL_FRAMEBUFFER, framebufferId);
         GLHelper.checkGlErrors("glBindFramebuffer");
 
-        GLES30.glViewport(0, 0, mWidth, mHeight);
+        GLES30.glViewport(0, 0, mBlurWidth, mBlurHeight);
         GLHelper.checkGlErrors("glViewport");
 
         GLES30.glDrawArrays(GLES30.GL_TRIANGLE_STRIP, 0,
@@ -318,6 +439,9 @@ public class BlurTextureProgram {
         GLES30.glBindFramebuffer(GLES30.GL_FRAMEBUFFER, 0);
         GLHelper.checkGlErrors("glDrawArrays");
 
+        GLES30.glViewport(0, 0, mWidth, mHeight);
+        GLHelper.checkGlErrors("glViewport");
+
         GLES30.glClear(GLES30.GL_COLOR_BUFFER_BIT);
         GLHelper.checkGlErrors("glDrawArrays");
 
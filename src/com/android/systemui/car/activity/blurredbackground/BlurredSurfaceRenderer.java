@@ -16,7 +16,12 @@
 
 package com.android.systemui.car.activity.blurredbackground;
 
+import static com.android.systemui.car.activity.blurredbackground.BlurTextureProgram.BLUR_KERNEL;
+import static com.android.systemui.car.activity.blurredbackground.BlurTextureProgram.DOWNSAMPLE_FACTOR;
+
+import android.annotation.Nullable;
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Rect;
 import android.graphics.SurfaceTexture;
 import android.opengl.GLES11Ext;
@@ -47,7 +52,21 @@ public class BlurredSurfaceRenderer implements GLSurfaceView.Renderer {
     private static final String TAG = BlurredSurfaceRenderer.class.getSimpleName();
     private static final int NUM_INDICES_TO_RENDER = 4;
 
+    /**
+     * Receives the blurred screenshot rendered on the CPU when the blur shaders could not be
+     * loaded.
+     */
+    public interface CpuBlurListener {
+        /**
+         * Called on the rendering thread with the blurred screenshot, downsampled by
+         * {@link BlurTextureProgram#DOWNSAMPLE_FACTOR}. The caller is expected to scale it to
+         * the application window.
+         */
+        void onBlurRenderedOnCpu(Bitmap blurredScreenshot);
+    }
+
     private final String mVertexShader;
+    private final String mDownsampleShader;
     private final String mHorizontalBlurShader;
     private final String mVerticalBlurShader;
     private final Rect mWindowRect;
@@ -62,6 +81,8 @@ public class BlurredSurfaceRenderer implements GLSurfaceView.Renderer {
 
     private final boolean mShadersLoadedSuccessfully;
     private final int mDisplayId;
+    @Nullable
+    private final CpuBlurListener mCpuBlurListener;
     private boolean mIsScreenShotCaptured = false;
 
     /**
@@ -69,17 +90,22 @@ public class BlurredSurfaceRenderer implements GLSurfaceView.Renderer {
      * blurred texture
      *
      * @param windowRect Rect that represents the application window
+     * @param cpuBlurListener Receives the blurred screenshot if it has to be rendered on the CPU
      */
-    public BlurredSurfaceRenderer(Context context, Rect windowRect, int displayId) {
+    public BlurredSurfaceRenderer(Context context, Rect windowRect, int displayId,
+            @Nullable CpuBlurListener cpuBlurListener) {
         mDisplayId = displayId;
+        mCpuBlurListener = cpuBlurListener;
 
         mVertexShader = GLHelper.getShaderFromRaw(context, R.raw.vertex_shader);
+        mDownsampleShader = GLHelper.getShaderFromRaw(context, R.raw.downsample_fragment_shader);
         mHorizontalBlurShader = GLHelper.getShaderFromRaw(context,
                 R.raw.horizontal_blur_fragment_shader);
         mVerticalBlurShader = GLHelper.getShaderFromRaw(context,
                 R.raw.vertical_blur_fragment_shader);
 
         mShadersLoadedSuccessfully = mVertexShader != null
+                && mDownsampleShader != null
                 && mHorizontalBlurShader != null
                 && mVerticalBlurShader != null;
 
@@ -88,29 +114,45 @@ public class BlurredSurfaceRenderer implements GLSurfaceView.Renderer {
 
     @Override
     public void onSurfaceCreated(GL10 gl, EGLConfig config) {
+        if (!mShadersLoadedSuccessfully) {
+            renderBlurOnCpu();
+        }
+
         mScreenshotTextureId = GLHelper.createAndBindTextureObject(mScreenshotTextureBuffer,
                 GLES11Ext.GL_TEXTURE_EXTERNAL_OES);
 
         mSurfaceTexture = new SurfaceTexture(mScreenshotTextureId);
         mSurface = new Surface(mSurfaceTexture);
-        mIsScreenShotCaptured = captureScreenshot();
+        mIsScreenShotCaptured = mShadersLoadedSuccessfully && captureScreenshot();
+
+        // A new GL context was created, so any previously compiled program is gone with the old
+        // context. Compile the programs once here and reuse them for every frame.
+        mProgram = null;
+        if (mShadersLoadedSuccessfully) {
+            mProgram = new BlurTextureProgram(
+                    mScreenshotTextureBuffer,
+                    mTexMatrix,
+                    mWindowRect.width(),
+                    mWindowRect.height(),
+                    mVertexShader,
+                    mDownsampleShader,
+                    mHorizontalBlurShader,
+                    mVerticalBlurShader
+            );
+            mProgram.setSize(mWindowRect.width(), mWindowRect.height());
+        }
     }
 
     @Override
     public void onSurfaceChanged(GL10 gl, int width, int height) {
+        if (mProgram != null) {
+            mProgram.setSize(width, height);
+        }
     }
 
     @Override
     public void onDrawFrame(GL10 gl) {
         if (shouldDrawFrame()) {
-            mProgram = new BlurTextureProgram(
-                    mScreenshotTextureBuffer,
-                    mTexMatrix,
-                    mVertexShader,
-                    mHorizontalBlurShader,
-                    mVerticalBlurShader,
-                    mWindowRect
-            );
             mProgram.render();
         } else {
             logWillNotRenderBlurredMsg();
@@ -134,6 +176,7 @@ public class BlurredSurfaceRenderer implements GLSurfaceView.Renderer {
     public void onPause() {
         if (mProgram != null) {
             mProgram.cleanupResources();
+            mProgram = null;
         }
         deleteScreenshotTexture();
     }
@@ -142,20 +185,7 @@ public class BlurredSurfaceRenderer implements GLSurfaceView.Renderer {
         boolean isScreenshotCaptured = false;
 
         try {
-            final CaptureArgs captureArgs = new CaptureArgs.Builder<>()
-                    .setSourceCrop(mWindowRect)
-                    .build();
-            SynchronousScreenCaptureListener syncScreenCapture =
-                    ScreenCapture.createSyncCaptureListener();
-            try {
-                WindowManagerGlobal.getWindowManagerService().captureDisplay(mDisplayId,
-                        captureArgs, syncScreenCapture);
-            } catch (RemoteException e) {
-                Slog.e(TAG, "Failed to request screencapture for display");
-                e.rethrowAsRuntimeException();
-            }
-            final ScreenshotHardwareBuffer screenshotHardwareBuffer =
-                    syncScreenCapture.getBuffer();
+            final ScreenshotHardwareBuffer screenshotHardwareBuffer = captureDisplay();
 
             mSurface.attachAndQueueBufferWithColorSpace(
                     screenshotHardwareBuffer.getHardwareBuffer(),
@@ -171,6 +201,57 @@ public class BlurredSurfaceRenderer implements GLSurfaceView.Renderer {
         return isScreenshotCaptured;
     }
 
+    private ScreenshotHardwareBuffer captureDisplay() {
+        final CaptureArgs captureArgs = new CaptureArgs.Builder<>()
+                .setSourceCrop(mWindowRect)
+                .build();
+        SynchronousScreenCaptureListener syncScreenCapture =
+                ScreenCapture.createSyncCaptureListener();
+        try {
+            WindowManagerGlobal.getWindowManagerService().captureDisplay(mDisplayId,
+                    captureArgs, syncScreenCapture);
+        } catch (RemoteException e) {
+            Slog.e(TAG, "Failed to request screencapture for display");
+            e.rethrowAsRuntimeException();
+        }
+        return syncScreenCapture.getBuffer();
+    }
+
+    /**
+     * Blurs the screenshot with {@link CpuBlurRenderer} when it cannot be blurred by the shaders
+     */
+    private void renderBlurOnCpu() {
+        if (mCpuBlurListener == null) {
+            return;
+        }
+        final ScreenshotHardwareBuffer screenshotHardwareBuffer = captureDisplay();
+        if (screenshotHardwareBuffer == null) {
+            Slog.e(TAG, "Screenshot was not captured. Will not render blurred surface on CPU");
+            return;
+        }
+        Bitmap hardwareBitmap = screenshotHardwareBuffer.asBitmap();
+        Bitmap screenshot = hardwareBitmap.copy(Bitmap.Config.ARGB_8888, /* isMutable= */ false);
+        hardwareBitmap.recycle();
+        if (screenshot == null) {
+            Slog.e(TAG, "Failed to read the screenshot. Will not render blurred surface on CPU");
+            return;
+        }
+
+        int width = screenshot.getWidth();
+        int height = screenshot.getHeight();
+        int[] pixels = new int[width * height];
+        screenshot.getPixels(pixels, /* offset= */ 0, /* stride= */ width, /* x= */ 0,
+                /* y= */ 0, width, height);
+        screenshot.recycle();
+
+        int[] blurredPixels = CpuBlurRenderer.blurDownsampled(pixels, width, height,
+                DOWNSAMPLE_FACTOR, BLUR_KERNEL);
+        mCpuBlurListener.onBlurRenderedOnCpu(Bitmap.createBitmap(blurredPixels,
+                CpuBlurRenderer.getDownsampledSize(width, DOWNSAMPLE_FACTOR),
+                CpuBlurRenderer.getDownsampledSize(height, DOWNSAMPLE_FACTOR),
+                Bitmap.Config.ARGB_8888));
+    }
+
     private void deleteScreenshotTexture() {
         GLES30.glDeleteTextures(mScreenshotTextureBuffer.capacity(), mScreenshotTextureBuffer);
         GLHelper.checkGlErrors("glDeleteTextures");
@@ -189,7 +270,8 @@ public class BlurredSurfaceRenderer implements GLSurfaceView.Renderer {
 
     private boolean shouldDrawFrame() {
         return mIsScreenShotCaptured
-                && mShadersLoadedSuccessfully;
+                && mShadersLoadedSuccessfully
+                && mProgram != null;
     }
 }
 
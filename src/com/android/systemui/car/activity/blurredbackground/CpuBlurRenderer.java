@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.systemui.car.activity.blurredbackground;
+
+/**
+ * A CPU implementation of the blur rendered by {@link BlurTextureProgram}, operating on ARGB
+ * pixels.
+ *
+ * The image is downsampled by averaging blocks of pixels, blurred horizontally then vertically
+ * with the linearly filtered taps of a {@link BlurKernel}, and optionally upsampled back to its
+ * original size with bilinear filtering. Edges are clamped, and the output is opaque like the
+ * output of the blur shaders.
+ *
+ * This is used when the blur shaders cannot be loaded, and as a reference for the GPU
+ * implementation.
+ */
+public final class CpuBlurRenderer {
+
+    private static final int NUM_CHANNELS = 3;
+
+    private CpuBlurRenderer() {
+    }
+
+    /**
+     * Returns the size of a dimension of {@code size} pixels once downsampled by
+     * {@code downsampleFactor}.
+     */
+    public static int getDownsampledSize(int size, int downsampleFactor) {
+        return Math.max(1, size / downsampleFactor);
+    }
+
+    /**
+     * Blurs {@code pixels} and returns the blurred image at its original size.
+     *
+     * @param pixels The ARGB pixels of the image, row by row
+     * @param width The width of the image
+     * @param height The height of the image
+     * @param downsampleFactor The factor the image is downsampled by before being blurred
+     * @param kernel The kernel of the blur, created for {@code downsampleFactor}
+     */
+    public static int[] blur(int[] pixels, int width, int height, int downsampleFactor,
+            BlurKernel kernel) {
+        int blurredWidth = getDownsampledSize(width, downsampleFactor);
+        int blurredHeight = getDownsampledSize(height, downsampleFactor);
+        float[][] channels = downsample(pixels, width, height, blurredWidth, blurredHeight);
+        blurChannels(channels, blurredWidth, blurredHeight, kernel);
+        return toPixels(upsample(channels, blurredWidth, blurredHeight, width, height));
+    }
+
+    /**
+     * Blurs {@code pixels} and returns the blurred image at its downsampled size, as given by
+     * {@link #getDownsampledSize}, leaving the upsampling to the caller.
+     *
+     * @param pixels The ARGB pixels of the image, row by row
+     * @param width The width of the image
+     * @param height The height of the image
+     * @param downsampleFactor The factor the image is downsampled by before being blurred
+     * @param kernel The kernel of the blur, created for {@code downsampleFactor}
+     */
+    public static int[] blurDownsampled(int[] pixels, int width, int height,
+            int downsampleFactor, BlurKernel kernel) {
+        int blurredWidth = getDownsampledSize(width, downsampleFactor);
+        int blurredHeight = getDownsampledSize(height, downsampleFactor);
+        float[][] channels = downsample(pixels, width, height, blurredWidth, blurredHeight);
+        blurChannels(channels, blurredWidth, blurredHeight, kernel);
+        return toPixels(channels);
+    }
+
+    private static void blurChannels(float[][] channels, int width, int height,
+            BlurKernel kernel) {
+        float[] tapOffsets = kernel.getTapOffsets();
+        float[] tapWeights = kernel.getTapWeights();
+        float[] output = new float[width * height];
+        for (int c = 0; c < NUM_CHANNELS; c++) {
+            blurPass(channels[c], output, width, height, /* horizontal= */ true, tapOffsets,
+                    tapWeights);
+            blurPass(output, channels[c], width, height, /* horizontal= */ false, tapOffsets,
+                    tapWeights);
+        }
+    }
+
+    private static void blurPass(float[] input, float[] output, int width, int height,
+            boolean horizontal, float[] tapOffsets, float[] tapWeights) {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                float value = input[y * width + x] * tapWeights[0];
+                for (int tap = 1; tap < tapOffsets.length; tap++) {
+                    float offset = tapOffsets[tap];
+                    float samples = horizontal
+                            ? sampleRow(input, width, y, x + offset)
+                                    + sampleRow(input, width, y, x - offset)
+                            : sampleColumn(input, width, height, x, y + offset)
+                                    + sampleColumn(input, width, height, x, y - offset);
+                    value += samples * tapWeights[tap];
+                }
+                output[y * width + x] = value;
+            }
+        }
+    }
+
+    private static float sampleRow(float[] input, int width, int y, float x) {
+        int x0 = (int) Math.floor(x);
+        float t = x - x0;
+        int rowStart = y * width;
+        return lerp(input[rowStart + clamp(x0, width)], input[rowStart + clamp(x0 + 1, width)],
+                t);
+    }
+
+    private static float sampleColumn(float[] input, int width, int height, int x, float y) {
+        int y0 = (int) Math.floor(y);
+        float t = y - y0;
+        return lerp(input[clamp(y0, height) * width + x], input[clamp(y0 + 1, height) * width + x],
+                t);
+    }
+
+    private static float[][] downsample(int[] pixels, int width, int height, int outputWidth,
+            int outputHeight) {
+        float[][] channels = new float[NUM_CHANNELS][outputWidth * outputHeight];
+        for (int outputY = 0; outputY < outputHeight; outputY++) {
+            int startY = outputY * height / outputHeight;
+            int endY = (outputY + 1) * height / outputHeight;
+            for (int outputX = 0; outputX < outputWidth; outputX++) {
+                int startX = outputX * width / outputWidth;
+                int endX = (outputX + 1) * width / outputWidth;
+                float red = 0f;
+                float green = 0f;
+                float blue = 0f;
+                for (int y = startY; y < endY; y++) {
+                    for (int x = startX; x < endX; x++) {
+                        int pixel = pixels[y * width + x];
+                        red += (pixel >> 16) & 0xFF;
+                        green += (pixel >> 8) & 0xFF;
+                        blue += pixel & 0xFF;
+                    }
+                }
+                float count = (endX - startX) * (endY - startY);
+                int index = outputY * outputWidth + outputX;
+                channels[0][index] = red / count;
+                channels[1][index] = green / count;
+                channels[2][index] = blue / count;
+            }
+        }
+        return channels;
+    }
+
+    private static float[][] upsample(float[][] channels, int width, int height,
+            int outputWidth, int outputHeight) {
+        float[][] output = new float[NUM_CHANNELS][outputWidth * outputHeight];
+        float scaleX = (float) width / outputWidth;
+        float scaleY = (float) height / outputHeight;
+        for (int outputY = 0; outputY < outputHeight; outputY++) {
+            // Sample at the center of the output pixel, like a linearly filtered texture.
+            float y = (outputY + 0.5f) * scaleY - 0.5f;
+            int y0 = (int) Math.floor(y);
+            float ty = y - y0;
+            int row0 = clamp(y0, height) * width;
+            int row1 = clamp(y0 + 1, height) * width;
+            for (int outputX = 0; outputX < outputWidth; outputX++) {
+                float x = (outputX + 0.5f) * scaleX - 0.5f;
+                int x0 = (int) Math.floor(x);
+                float tx = x - x0;
+                int column0 = clamp(x0, width);
+                int column1 = clamp(x0 + 1, width);
+                for (int c = 0; c < NUM_CHANNELS; c++) {
+                    float[] input = channels[c];
+                    output[c][outputY * outputWidth + outputX] = lerp(
+                            lerp(input[row0 + column0], input[row0 + column1], tx),
+                            lerp(input[row1 + column0], input[row1 + column1], tx),
+                            ty);
+                }
+            }
+        }
+        return output;
+    }
+
+    private static int[] toPixels(float[][] channels) {
+        int[] pixels = new int[channels[0].length];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xFF000000
+                    | (toColorComponent(channels[0][i]) << 16)
+                    | (toColorComponent(channels[1][i]) << 8)
+                    | toColorComponent(channels[2][i]);
+        }
+        return pixels;
+    }
+
+    private static int toColorComponent(float value) {
+        return Math.min(255, Math.max(0, Math.round(value)));
+    }
+
+    private static float lerp(float start, float end, float fraction) {
+        return start + (end - start) * fraction;
+    }
+
+    private static int clamp(int index, int size) {
+        return Math.min(size - 1, Math.max(0, index));
+    }
+}
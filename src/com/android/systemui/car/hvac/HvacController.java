@@ -16,7 +16,6 @@
 
 package com.android.systemui.car.hvac;
 
-import static android.car.VehicleAreaType.VEHICLE_AREA_TYPE_GLOBAL;
 import static android.car.VehicleAreaType.VEHICLE_AREA_TYPE_SEAT;
 import static android.car.VehiclePropertyIds.HVAC_ACTUAL_FAN_SPEED_RPM;
 import static android.car.VehiclePropertyIds.HVAC_AC_ON;
@@ -41,6 +40,7 @@ import static android.car.VehiclePropertyIds.HVAC_TEMPERATURE_DISPLAY_UNITS;
 import static android.car.VehiclePropertyIds.HVAC_TEMPERATURE_SET;
 
 import android.annotation.IntDef;
+import android.annotation.NonNull;
 import android.annotation.Nullable;
 import android.car.Car;
 import android.car.VehiclePropertyIds;
@@ -51,18 +51,24 @@ import android.car.hardware.property.CarPropertyManager;
 import android.content.res.Resources;
 import android.os.Build;
 import android.util.Log;
-import android.util.SparseBooleanArray;
+import android.util.SparseArray;
 import android.view.View;
 import android.view.ViewGroup;
 
 import androidx.annotation.GuardedBy;
 import androidx.annotation.VisibleForTesting;
 
+import com.android.systemui.Dumpable;
+import com.android.systemui.R;
 import com.android.systemui.car.CarServiceProvider;
+import com.android.systemui.dagger.qualifiers.Background;
 import com.android.systemui.dagger.qualifiers.Main;
 import com.android.systemui.dagger.qualifiers.UiBackground;
+import com.android.systemui.dump.DumpManager;
 import com.android.systemui.statusbar.policy.ConfigurationController;
+import com.android.systemui.util.concurrency.DelayableExecutor;
 
+import java.io.PrintWriter;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Target;
 import java.util.ArrayList;
@@ -81,7 +87,7 @@ import javax.inject.Inject;
  * for HVAC properties.
  */
 public class HvacController implements HvacPropertySetter,
-        ConfigurationController.ConfigurationListener {
+        ConfigurationController.ConfigurationListener, Dumpable {
     private static final String TAG = HvacController.class.getSimpleName();
     private static final boolean DEBUG = Build.IS_ENG || Build.IS_USERDEBUG;
     private static final int[] HVAC_PROPERTIES =
@@ -93,6 +99,10 @@ public class HvacController implements HvacPropertySetter,
                     HVAC_AUTO_RECIRC_ON, HVAC_SEAT_VENTILATION, HVAC_ELECTRIC_DEFROSTER_ON};
     private static final int[] HVAC_PROPERTIES_TO_GET_ON_INIT = {HVAC_POWER_ON, HVAC_AUTO_ON};
     private static final int GLOBAL_AREA_ID = 0;
+    /** Index of the Celsius increment, multiplied by 10, in the HVAC_TEMPERATURE_SET config. */
+    private static final int TEMPERATURE_INCREMENT_CELSIUS_INDEX = 2;
+    /** Tolerance of float values confirmed by the vehicle HAL if their config has no increment. */
+    private static final float DEFAULT_FLOAT_TOLERANCE = 0.001f;
 
     @IntDef(value = {HVAC_FAN_SPEED, HVAC_FAN_DIRECTION, HVAC_TEMPERATURE_CURRENT,
             HVAC_TEMPERATURE_SET, HVAC_DEFROSTER, HVAC_AC_ON, HVAC_MAX_AC_ON, HVAC_MAX_DEFROST_ON,
@@ -109,21 +119,50 @@ public class HvacController implements HvacPropertySetter,
     }
 
     private Executor mExecutor;
+    private final DelayableExecutor mBackgroundExecutor;
+    private final HvacPropertyWriteCoalescer mWriteCoalescer;
+    private final long mOptimisticValueTimeoutMs;
+    /**
+     * Values shown to the user ahead of confirmation by the vehicle HAL.
+     * This must be accessed via {@link #mExecutor} to ensure thread safety.
+     */
+    private final HvacOptimisticValueTracker mOptimisticValues = new HvacOptimisticValueTracker();
     private CarPropertyManager mCarPropertyManager;
     private boolean mIsConnectedToCar;
-    private List<Integer> mHvacPowerDependentProperties;
+    /**
+     * Which properties depend on HVAC_POWER_ON and the power state of each area.
+     * This must be accessed via {@link #mExecutor} to ensure thread safety.
+     */
+    private HvacPowerAvailabilityIndex mPowerAvailability = HvacPowerAvailabilityIndex.create(
+            new int[0], new ArrayList<>(), propertyId -> new int[0]);
 
     private final Object mLock = new Object();
-    @GuardedBy("mLock")
-    private final SparseBooleanArray mAreaIdToIsHvacPowerOn = new SparseBooleanArray();
 
     /**
      * Contains views to init until car service is connected.
      * This must be accessed via {@link #mExecutor} to ensure thread safety.
      */
     private final ArrayList<View> mViewsToInit = new ArrayList<>();
+    /**
+     * Mutated on the thread registering the views, and read to rebuild {@link #mDispatchIndex} on
+     * the thread dispatching the events.
+     */
+    @GuardedBy("mLock")
     private final Map<@HvacProperty Integer, Map<@AreaId Integer, List<HvacView>>>
             mHvacPropertyViewMap = new HashMap<>();
+    /**
+     * Configs of the properties that views are registered for or that events were received for,
+     * so that dispatching an event does not need to query {@link CarPropertyManager}.
+     */
+    @GuardedBy("mLock")
+    private final SparseArray<CarPropertyConfig<?>> mPropertyConfigs = new SparseArray<>();
+    /**
+     * Dispatch table derived from {@link #mHvacPropertyViewMap}. Rebuilt lazily on the next event
+     * after views are registered or unregistered.
+     */
+    private volatile HvacPropertyDispatchIndex mDispatchIndex = HvacPropertyDispatchIndex.EMPTY;
+    /** Only cleared once {@link #mDispatchIndex} was rebuilt from the current view map. */
+    private volatile boolean mDispatchIndexDirty;
 
     private final CarPropertyManager.CarPropertyEventCallback mPropertyEventCallback =
             new CarPropertyManager.CarPropertyEventCallback() {
@@ -137,6 +176,7 @@ public class HvacController implements HvacPropertySetter,
                 @Override
                 public void onErrorEvent(int propId, int zone) {
                     Log.w(TAG, "Could not handle " + propId + " change event in zone " + zone);
+                    mExecutor.execute(() -> rollBackOptimisticValues(propId, zone));
                 }
             };
 
@@ -151,8 +191,12 @@ public class HvacController implements HvacPropertySetter,
                                 (CarPropertyManager) car.getCarManager(Car.PROPERTY_SERVICE);
                         CarPropertyConfig hvacPowerOnConfig =
                                 mCarPropertyManager.getCarPropertyConfig(HVAC_POWER_ON);
-                        mHvacPowerDependentProperties = hvacPowerOnConfig != null
-                                ? hvacPowerOnConfig.getConfigArray() : new ArrayList<>();
+                        if (hvacPowerOnConfig != null) {
+                            mPowerAvailability = HvacPowerAvailabilityIndex.create(
+                                    hvacPowerOnConfig.getAreaIds(),
+                                    hvacPowerOnConfig.getConfigArray(),
+                                    this::getSupportedAreaIds);
+                        }
                         registerHvacPropertyEventListeners();
                         mViewsToInit.forEach(this::registerHvacViews);
                         mViewsToInit.clear();
@@ -166,13 +210,31 @@ public class HvacController implements HvacPropertySetter,
     @Inject
     public HvacController(CarServiceProvider carServiceProvider,
             @UiBackground Executor executor,
+            @Background DelayableExecutor backgroundExecutor,
             @Main Resources resources,
-            ConfigurationController configurationController) {
+            ConfigurationController configurationController,
+            DumpManager dumpManager) {
         mExecutor = executor;
+        mBackgroundExecutor = backgroundExecutor;
+        mOptimisticValueTimeoutMs = resources.getInteger(
+                R.integer.hvac_optimistic_value_timeout_ms);
+        mWriteCoalescer = new HvacPropertyWriteCoalescer(executor, backgroundExecutor,
+                resources.getInteger(R.integer.hvac_property_write_coalescing_interval_ms),
+                this::writeHvacProperty);
         if (!mIsConnectedToCar) {
             carServiceProvider.addListener(mCarServiceLifecycleListener);
         }
         configurationController.addCallback(this);
+        // Not a singleton, so each instance is dumped under its own name.
+        dumpManager.registerDumpable(
+                TAG + "@" + Integer.toHexString(System.identityHashCode(this)), this);
+    }
+
+    /**
+     * Returns a key identifying the pair of {@code propertyId} and {@code areaId}.
+     */
+    static long getPropertyAreaKey(@HvacProperty int propertyId, int areaId) {
+        return ((long) propertyId << Integer.SIZE) | (areaId & 0xFFFFFFFFL);
     }
 
     private int[] getSupportedAreaIds(int propertyId) {
@@ -202,77 +264,169 @@ public class HvacController implements HvacPropertySetter,
     @Override
     public void setHvacProperty(@HvacProperty Integer propertyId, int targetAreaId,
             int val) {
-        mExecutor.execute(() -> {
-            if (isHvacPowerDependentPropAndNotAvailable(propertyId.intValue(), targetAreaId)) {
-                Log.w(TAG, "setHvacProperty - HVAC_POWER_ON is false so skipping setting HVAC"
-                        + " propertyId: " + VehiclePropertyIds.toString(propertyId) + ", areaId: "
-                        + Integer.toHexString(targetAreaId) + ", val: " + val);
-                return;
-            }
-            try {
-                ArrayList<Integer> supportedAreaIds = getAreaIdsFromTargetAreaId(
-                        propertyId.intValue(), targetAreaId);
-                for (int areaId : supportedAreaIds) {
-                    mCarPropertyManager.setIntProperty(propertyId, areaId, val);
-                }
-            } catch (RuntimeException e) {
-                Log.w(TAG, "setHvacProperty - Error while setting HVAC propertyId: "
-                        + VehiclePropertyIds.toString(propertyId) + ", areaId: "
-                        + Integer.toHexString(targetAreaId) + ", val: " + val, e);
-            }
-        });
+        setHvacPropertyValue(propertyId, targetAreaId, val);
     }
 
     @Override
     public void setHvacProperty(@HvacProperty Integer propertyId, int targetAreaId,
             float val) {
-        mExecutor.execute(() -> {
-            if (isHvacPowerDependentPropAndNotAvailable(propertyId.intValue(), targetAreaId)) {
-                Log.w(TAG, "setHvacProperty - HVAC_POWER_ON is false so skipping setting HVAC"
-                        + " propertyId: " + VehiclePropertyIds.toString(propertyId) + ", areaId: "
-                        + Integer.toHexString(targetAreaId) + ", val: " + val);
-                return;
-            }
-            try {
-                ArrayList<Integer> supportedAreaIds = getAreaIdsFromTargetAreaId(
-                        propertyId.intValue(), targetAreaId);
-                for (int areaId : supportedAreaIds) {
-                    mCarPropertyManager.setFloatProperty(propertyId, areaId, val);
-                }
-            } catch (RuntimeException e) {
-                Log.w(TAG, "setHvacProperty - Error while setting HVAC propertyId: "
-                        + VehiclePropertyIds.toString(propertyId) + ", areaId: "
-                        + Integer.toHexString(targetAreaId) + ", val: " + val, e);
-            }
-        });
+        setHvacPropertyValue(propertyId, targetAreaId, val);
     }
 
     @Override
     public void setHvacProperty(@HvacProperty Integer propertyId, int targetAreaId,
             boolean val) {
-        mExecutor.execute(() -> {
-            if (isHvacPowerDependentPropAndNotAvailable(propertyId.intValue(), targetAreaId)) {
-                Log.w(TAG, "setHvacProperty - HVAC_POWER_ON is false so skipping setting HVAC"
-                        + " propertyId: " + VehiclePropertyIds.toString(propertyId) + ", areaId: "
-                        + Integer.toHexString(targetAreaId) + ", val: " + val);
-                return;
+        setHvacPropertyValue(propertyId, targetAreaId, val);
+    }
+
+    @Override
+    public void flushHvacPropertyWrites(@HvacProperty Integer propertyId, int targetAreaId) {
+        mWriteCoalescer.flush(propertyId, targetAreaId);
+    }
+
+    private void setHvacPropertyValue(@HvacProperty int propertyId, int targetAreaId,
+            Object value) {
+        if (mOptimisticValueTimeoutMs > 0) {
+            mExecutor.execute(() -> showOptimisticValue(propertyId, targetAreaId, value));
+        }
+        mWriteCoalescer.enqueue(propertyId, targetAreaId, value);
+    }
+
+    /**
+     * Propagates {@code value} to the subscribing views before the vehicle HAL confirms it. The
+     * value is rolled back to the last value reported by the vehicle HAL if it is not confirmed
+     * within {@link #mOptimisticValueTimeoutMs} or if writing it fails.
+     */
+    private void showOptimisticValue(@HvacProperty int propertyId, int targetAreaId,
+            Object value) {
+        if (isHvacPowerDependentPropAndNotAvailable(propertyId, targetAreaId)) {
+            return;
+        }
+        CarPropertyConfig<?> config = getCachedPropertyConfig(propertyId);
+        if (config == null) {
+            return;
+        }
+        float floatTolerance = getFloatTolerance(propertyId, config);
+        HvacPropertyDispatchIndex dispatchIndex = getDispatchIndex();
+        for (int areaId : getAreaIdsFromTargetAreaId(propertyId, targetAreaId)) {
+            CarPropertyValue<?> authoritativeValue =
+                    mOptimisticValues.getAuthoritativeValue(propertyId, areaId);
+            if (!mOptimisticValues.hasPendingValue(propertyId, areaId)
+                    && authoritativeValue != null
+                    && HvacOptimisticValueTracker.valuesMatch(value,
+                            authoritativeValue.getValue(), floatTolerance)) {
+                // The vehicle HAL will not report a change, and the views already show the value.
+                continue;
             }
-            try {
-                ArrayList<Integer> supportedAreaIds = getAreaIdsFromTargetAreaId(
-                        propertyId.intValue(), targetAreaId);
-                for (int areaId : supportedAreaIds) {
-                    mCarPropertyManager.setBooleanProperty(propertyId, areaId, val);
+            int token = mOptimisticValues.onLocalValue(propertyId, areaId, value,
+                    floatTolerance);
+            dispatchIndex.dispatchPropertyChange(config.getAreaType(),
+                    new CarPropertyValue<>(propertyId, areaId, value));
+            mBackgroundExecutor.executeDelayed(() -> mExecutor.execute(() -> {
+                if (mOptimisticValues.expire(propertyId, areaId, token)) {
+                    Log.w(TAG, "showOptimisticValue - propertyId: "
+                            + VehiclePropertyIds.toString(propertyId) + ", areaId: "
+                            + Integer.toHexString(areaId) + " was not confirmed in time.");
+                    rollBackOptimisticValue(propertyId, areaId);
                 }
-            } catch (RuntimeException e) {
-                Log.w(TAG, "setHvacProperty - Error while setting HVAC propertyId: "
-                        + VehiclePropertyIds.toString(propertyId) + ", areaId: "
-                        + Integer.toHexString(targetAreaId) + ", val: " + val, e);
+            }), mOptimisticValueTimeoutMs);
+        }
+    }
+
+    /**
+     * Returns the maximum difference between a float value written to {@code propertyId} and the
+     * value reported back by the vehicle HAL for them to be considered equal. The vehicle HAL
+     * rounds temperatures to the closest supported increment, so any temperature within half an
+     * increment of the written one confirms it.
+     */
+    private static float getFloatTolerance(@HvacProperty int propertyId,
+            CarPropertyConfig<?> config) {
+        if (propertyId != HVAC_TEMPERATURE_SET) {
+            return DEFAULT_FLOAT_TOLERANCE;
+        }
+        List<Integer> configArray = config.getConfigArray();
+        if (configArray == null || configArray.size() <= TEMPERATURE_INCREMENT_CELSIUS_INDEX) {
+            return DEFAULT_FLOAT_TOLERANCE;
+        }
+        // Config array temperature values have been multiplied by 10.
+        float incrementCelsius = configArray.get(TEMPERATURE_INCREMENT_CELSIUS_INDEX) / 10f;
+        return Math.max(DEFAULT_FLOAT_TOLERANCE, incrementCelsius / 2);
+    }
+
+    /**
+     * Rolls back the values shown ahead of confirmation for {@code propertyId} in any area
+     * covered by {@code targetAreaId}.
+     */
+    private void rollBackOptimisticValues(@HvacProperty int propertyId, int targetAreaId) {
+        // Iterate backwards since dropping a pending value removes it from the tracker.
+        for (int i = mOptimisticValues.getPendingValueCount() - 1; i >= 0; i--) {
+            int pendingAreaId = mOptimisticValues.getPendingAreaIdAt(i);
+            if (mOptimisticValues.getPendingPropertyIdAt(i) != propertyId
+                    || (targetAreaId != GLOBAL_AREA_ID
+                    && (targetAreaId & pendingAreaId) == 0)) {
+                continue;
             }
-        });
+            if (mOptimisticValues.drop(propertyId, pendingAreaId)) {
+                rollBackOptimisticValue(propertyId, pendingAreaId);
+            }
+        }
+    }
+
+    private void rollBackOptimisticValue(@HvacProperty int propertyId, int areaId) {
+        CarPropertyValue<?> authoritativeValue =
+                mOptimisticValues.getAuthoritativeValue(propertyId, areaId);
+        if (authoritativeValue == null) {
+            authoritativeValue = getPropertyValueOrNull(propertyId, areaId);
+        }
+        CarPropertyConfig<?> config = getCachedPropertyConfig(propertyId);
+        if (authoritativeValue == null || config == null) {
+            return;
+        }
+        getDispatchIndex().dispatchPropertyChange(config.getAreaType(), authoritativeValue);
+    }
+
+    /**
+     * Writes a coalesced {@code value} to {@code propertyId} for every area covered by
+     * {@code targetAreaId}. Must be called on {@link #mExecutor}.
+     *
+     * @return the number of writes issued to {@link CarPropertyManager}.
+     */
+    private int writeHvacProperty(@HvacProperty int propertyId, int targetAreaId, Object value) {
+        if (isHvacPowerDependentPropAndNotAvailable(propertyId, targetAreaId)) {
+            Log.w(TAG, "setHvacProperty - HVAC_POWER_ON is false so skipping setting HVAC"
+                    + " propertyId: " + VehiclePropertyIds.toString(propertyId) + ", areaId: "
+                    + Integer.toHexString(targetAreaId) + ", val: " + value);
+            rollBackOptimisticValues(propertyId, targetAreaId);
+            return 0;
+        }
+        int writesIssued = 0;
+        try {
+            ArrayList<Integer> supportedAreaIds = getAreaIdsFromTargetAreaId(propertyId,
+                    targetAreaId);
+            for (int areaId : supportedAreaIds) {
+                if (value instanceof Integer) {
+                    mCarPropertyManager.setIntProperty(propertyId, areaId, (Integer) value);
+                } else if (value instanceof Float) {
+                    mCarPropertyManager.setFloatProperty(propertyId, areaId, (Float) value);
+                } else {
+                    mCarPropertyManager.setBooleanProperty(propertyId, areaId, (Boolean) value);
+                }
+                writesIssued++;
+            }
+        } catch (RuntimeException e) {
+            Log.w(TAG, "setHvacProperty - Error while setting HVAC propertyId: "
+                    + VehiclePropertyIds.toString(propertyId) + ", areaId: "
+                    + Integer.toHexString(targetAreaId) + ", val: " + value, e);
+            rollBackOptimisticValues(propertyId, targetAreaId);
+        }
+        return writesIssued;
     }
 
     /**
      * Registers all {@link HvacView}s in the {@code rootView} and its descendents.
+     *
+     * The views are initialized with the current property values on {@link #mExecutor}, reading
+     * each (property ID, area ID) pair at most once for the whole view hierarchy.
      */
     @UiBackground
     public void registerHvacViews(View rootView) {
@@ -281,6 +435,14 @@ public class HvacController implements HvacPropertySetter,
             return;
         }
 
+        ArrayList<HvacView> registeredViews = new ArrayList<>();
+        registerHvacViewsInHierarchy(rootView, registeredViews);
+        if (!registeredViews.isEmpty()) {
+            mExecutor.execute(() -> initHvacViews(registeredViews));
+        }
+    }
+
+    private void registerHvacViewsInHierarchy(View rootView, List<HvacView> registeredViews) {
         if (rootView instanceof HvacView) {
             try {
                 HvacView hvacView = (HvacView) rootView;
@@ -296,6 +458,7 @@ public class HvacController implements HvacPropertySetter,
                             + " because property is not implemented.");
                 }
 
+                cachePropertyConfig(propId, carPropertyConfig);
                 hvacView.setHvacPropertySetter(this);
                 hvacView.setConfigInfo(carPropertyConfig);
 
@@ -304,58 +467,87 @@ public class HvacController implements HvacPropertySetter,
                 for (Integer areaId : supportedAreaIds) {
                     addHvacViewToMap(propId.intValue(), areaId.intValue(), hvacView);
                 }
+                registeredViews.add(hvacView);
+            } catch (IllegalArgumentException ex) {
+                Log.e(TAG, "Can't register HVAC view", ex);
+            }
+        }
 
-                if (mCarPropertyManager != null) {
-                    CarPropertyValue<Integer> hvacTemperatureDisplayUnitsValue =
-                            (CarPropertyValue<Integer>) getPropertyValueOrNull(
-                                    HVAC_TEMPERATURE_DISPLAY_UNITS, GLOBAL_AREA_ID);
-                    for (Integer areaId : supportedAreaIds) {
-                        CarPropertyValue initValueOrNull = getPropertyValueOrNull(propId, areaId);
+        if (rootView instanceof ViewGroup) {
+            ViewGroup viewGroup = (ViewGroup) rootView;
+            for (int i = 0; i < viewGroup.getChildCount(); i++) {
+                registerHvacViewsInHierarchy(viewGroup.getChildAt(i), registeredViews);
+            }
+        }
+    }
 
-                        // Initialize the view with the initial value.
-                        if (initValueOrNull != null) {
-                            hvacView.onPropertyChanged(initValueOrNull);
-                        }
-                        if (hvacTemperatureDisplayUnitsValue != null) {
-                            boolean usesFahrenheit = hvacTemperatureDisplayUnitsValue.getValue()
-                                    == VehicleUnit.FAHRENHEIT;
-                            hvacView.onHvacTemperatureUnitChanged(usesFahrenheit);
-                        }
+    /**
+     * Initializes newly registered {@code hvacViews} with the current property values. Must be
+     * called on {@link #mExecutor}.
+     */
+    private void initHvacViews(List<HvacView> hvacViews) {
+        HvacPropertySnapshot snapshot = new HvacPropertySnapshot((propertyId, areaId) -> {
+            CarPropertyValue<?> value = getPropertyValueOrNull(propertyId, areaId);
+            if (value != null) {
+                mOptimisticValues.onAuthoritativeValue(value);
+            }
+            return value;
+        });
+        CarPropertyValue<?> hvacTemperatureDisplayUnitsValue =
+                snapshot.get(HVAC_TEMPERATURE_DISPLAY_UNITS, GLOBAL_AREA_ID);
+
+        for (int i = 0; i < hvacViews.size(); i++) {
+            HvacView hvacView = hvacViews.get(i);
+            @HvacProperty int propId = hvacView.getHvacPropertyToView();
+            CarPropertyConfig<?> carPropertyConfig = getCachedPropertyConfig(propId);
+            if (carPropertyConfig == null) {
+                continue;
+            }
 
-                        if (carPropertyConfig.getAreaType() != VEHICLE_AREA_TYPE_SEAT) {
-                            continue;
-                        }
+            if (hvacTemperatureDisplayUnitsValue != null) {
+                boolean usesFahrenheit = (Integer) hvacTemperatureDisplayUnitsValue.getValue()
+                        == VehicleUnit.FAHRENHEIT;
+                hvacView.onHvacTemperatureUnitChanged(usesFahrenheit);
+            }
 
-                        for (int propToGetOnInitId : HVAC_PROPERTIES_TO_GET_ON_INIT) {
-                            int[] propToGetOnInitSupportedAreaIds = getSupportedAreaIds(
-                                    propToGetOnInitId);
-
-                            int areaIdToFind = areaId.intValue();
-
-                            for (int supportedAreaId : propToGetOnInitSupportedAreaIds) {
-                                if ((supportedAreaId & areaIdToFind) == areaIdToFind) {
-                                    CarPropertyValue propToGetOnInitValueOrNull =
-                                            getPropertyValueOrNull(propToGetOnInitId,
-                                                    supportedAreaId);
-                                    if (propToGetOnInitValueOrNull != null) {
-                                        hvacView.onPropertyChanged(propToGetOnInitValueOrNull);
-                                    }
-                                    break;
-                                }
+            ArrayList<Integer> supportedAreaIds = getAreaIdsFromTargetAreaId(propId,
+                    hvacView.getAreaId());
+            for (int areaId : supportedAreaIds) {
+                // Initialize the view with the initial value, unless a value set by the user is
+                // already shown.
+                CarPropertyValue<?> initValueOrNull = snapshot.get(propId, areaId);
+                if (initValueOrNull != null
+                        && !mOptimisticValues.hasPendingValue(propId, areaId)) {
+                    hvacView.onPropertyChanged(initValueOrNull);
+                }
+
+                if (carPropertyConfig.getAreaType() != VEHICLE_AREA_TYPE_SEAT) {
+                    continue;
+                }
+
+                for (int propToGetOnInitId : HVAC_PROPERTIES_TO_GET_ON_INIT) {
+                    CarPropertyConfig<?> propToGetOnInitConfig =
+                            getCachedPropertyConfig(propToGetOnInitId);
+                    if (propToGetOnInitConfig == null) {
+                        continue;
+                    }
+
+                    for (int supportedAreaId : propToGetOnInitConfig.getAreaIds()) {
+                        if ((supportedAreaId & areaId) == areaId) {
+                            CarPropertyValue<?> propToGetOnInitValueOrNull =
+                                    snapshot.get(propToGetOnInitId, supportedAreaId);
+                            if (propToGetOnInitValueOrNull != null) {
+                                hvacView.onPropertyChanged(propToGetOnInitValueOrNull);
                             }
+                            break;
                         }
                     }
                 }
-            } catch (IllegalArgumentException ex) {
-                Log.e(TAG, "Can't register HVAC view", ex);
             }
         }
-
-        if (rootView instanceof ViewGroup) {
-            ViewGroup viewGroup = (ViewGroup) rootView;
-            for (int i = 0; i < viewGroup.getChildCount(); i++) {
-                registerHvacViews(viewGroup.getChildAt(i));
-            }
+        if (DEBUG) {
+            Log.d(TAG, "initHvacViews - initialized " + hvacViews.size() + " views with "
+                    + snapshot.getReadCount() + " property reads");
         }
     }
 
@@ -392,36 +584,26 @@ public class HvacController implements HvacPropertySetter,
         if (value.getPropertyId() == HVAC_POWER_ON) {
             handleHvacPowerOn(value);
         }
+        HvacPropertyDispatchIndex dispatchIndex = getDispatchIndex();
         if (value.getPropertyId() == HVAC_TEMPERATURE_DISPLAY_UNITS) {
-            mHvacPropertyViewMap.forEach((propId, areaIds) -> {
-                areaIds.forEach((areaId, views) -> {
-                    views.forEach(v -> v.onHvacTemperatureUnitChanged(
-                            (Integer) value.getValue() == VehicleUnit.FAHRENHEIT));
-                });
-            });
+            dispatchIndex.dispatchTemperatureUnitChange(
+                    (Integer) value.getValue() == VehicleUnit.FAHRENHEIT);
             return;
         }
 
-        int valueAreaType = mCarPropertyManager.getCarPropertyConfig(value.getPropertyId())
-                .getAreaType();
-        if (valueAreaType == VEHICLE_AREA_TYPE_GLOBAL) {
-            mHvacPropertyViewMap.forEach((propId, areaIds) -> {
-                areaIds.forEach((areaId, views) -> {
-                    views.forEach(v -> v.onPropertyChanged(value));
-                });
-            });
-        } else {
-            mHvacPropertyViewMap.forEach((propId, areaIds) -> {
-                if (valueAreaType
-                        == mCarPropertyManager.getCarPropertyConfig(propId).getAreaType()) {
-                    areaIds.forEach((areaId, views) -> {
-                        if ((value.getAreaId() & areaId) == areaId) {
-                            views.forEach(v -> v.onPropertyChanged(value));
-                        }
-                    });
-                }
-            });
+        CarPropertyConfig<?> valueConfig = getCachedPropertyConfig(value.getPropertyId());
+        if (valueConfig == null) {
+            Log.w(TAG, "handleHvacPropertyChange - propertyId: "
+                    + VehiclePropertyIds.toString(value.getPropertyId())
+                    + " is not implemented. Skipping dispatching change event.");
+            return;
+        }
+        if (!mOptimisticValues.onAuthoritativeValue(value)) {
+            // Either the value shown ahead of confirmation was confirmed, or a newer one is still
+            // awaiting confirmation.
+            return;
         }
+        dispatchIndex.dispatchPropertyChange(valueConfig.getAreaType(), value);
     }
 
     @VisibleForTesting
@@ -429,39 +611,48 @@ public class HvacController implements HvacPropertySetter,
         return mHvacPropertyViewMap;
     }
 
+    @VisibleForTesting
+    HvacPropertyWriteCoalescer getWriteCoalescer() {
+        return mWriteCoalescer;
+    }
+
+    @Override
+    public void dump(@NonNull PrintWriter pw, @NonNull String[] args) {
+        pw.println("  mIsConnectedToCar: " + mIsConnectedToCar);
+        pw.println("  Property writes:");
+        mWriteCoalescer.dump(pw);
+    }
+
     @Override
     public void onLocaleListChanged() {
         // Call {@link HvacView#onLocaleListChanged} on all {@link HvacView} instances.
-        for (Map<@AreaId Integer, List<HvacView>> subMap : mHvacPropertyViewMap.values()) {
-            for (List<HvacView> views : subMap.values()) {
-                for (HvacView view : views) {
-                    view.onLocaleListChanged();
-                }
-            }
-        }
+        getDispatchIndex().dispatchLocaleListChange();
     }
 
     private void handleHvacPowerOn(CarPropertyValue hvacPowerOnValue) {
         Boolean isPowerOn = (Boolean) hvacPowerOnValue.getValue();
-        synchronized (mLock) {
-            mAreaIdToIsHvacPowerOn.put(hvacPowerOnValue.getAreaId(), isPowerOn);
-        }
+        mPowerAvailability = mPowerAvailability.setPowerOn(hvacPowerOnValue.getAreaId(),
+                isPowerOn);
         if (!isPowerOn) {
             return;
         }
 
-        for (int propertyId: mHvacPowerDependentProperties) {
-            mExecutor.execute(() -> {
+        // Refresh all power dependent properties in a single task, after the HVAC_POWER_ON change
+        // itself has been propagated.
+        mExecutor.execute(() -> {
+            HvacPowerAvailabilityIndex powerAvailability = mPowerAvailability;
+            for (int i = 0; i < powerAvailability.getPowerDependentPropertyCount(); i++) {
+                int propertyId = powerAvailability.getPowerDependentPropertyIdAt(i);
                 ArrayList<Integer> areaIds = getAreaIdsFromTargetAreaId(propertyId,
                         hvacPowerOnValue.getAreaId());
-                for (int areaId: areaIds) {
+                for (int areaId : areaIds) {
                     CarPropertyValue valueOrNull = getPropertyValueOrNull(propertyId, areaId);
                     if (valueOrNull != null) {
                         handleHvacPropertyChange(propertyId, valueOrNull);
                     }
                 }
-            });
-        }
+            }
+        });
     }
 
     @Nullable
@@ -480,19 +671,12 @@ public class HvacController implements HvacPropertySetter,
     }
 
     private boolean isHvacPowerDependentPropAndNotAvailable(int propertyId, int areaId) {
-        if (!mHvacPowerDependentProperties.contains(propertyId)) {
+        int powerState = mPowerAvailability.getPowerState(propertyId, areaId);
+        if (powerState == HvacPowerAvailabilityIndex.POWER_STATE_NOT_DEPENDENT) {
             return false;
         }
-        ArrayList<Integer> powerDependentAreaIds = getAreaIdsFromTargetAreaId(propertyId, areaId);
-        synchronized (mLock) {
-            for (int powerDependentAreaId: powerDependentAreaIds) {
-                for (int i  = 0; i < mAreaIdToIsHvacPowerOn.size(); ++i) {
-                    if ((mAreaIdToIsHvacPowerOn.keyAt(i) & powerDependentAreaId)
-                            == powerDependentAreaId) {
-                        return !mAreaIdToIsHvacPowerOn.valueAt(i);
-                    }
-                }
-            }
+        if (powerState != HvacPowerAvailabilityIndex.POWER_STATE_UNKNOWN) {
+            return powerState == HvacPowerAvailabilityIndex.POWER_STATE_OFF;
         }
         Log.w(TAG, "isHvacPowerDependentPropAndNotAvailable - For propertyId: + "
                 + VehiclePropertyIds.toString(propertyId) + ", areaId: "
@@ -514,24 +698,71 @@ public class HvacController implements HvacPropertySetter,
         }
     }
 
+    private HvacPropertyDispatchIndex getDispatchIndex() {
+        if (!mDispatchIndexDirty) {
+            return mDispatchIndex;
+        }
+        synchronized (mLock) {
+            // Another thread may have rebuilt it while this one waited for the lock.
+            if (mDispatchIndexDirty) {
+                mDispatchIndex = HvacPropertyDispatchIndex.build(mHvacPropertyViewMap,
+                        mPropertyConfigs);
+                mDispatchIndexDirty = false;
+            }
+            return mDispatchIndex;
+        }
+    }
+
+    @Nullable
+    private CarPropertyConfig<?> getCachedPropertyConfig(@HvacProperty int propertyId) {
+        CarPropertyConfig<?> config;
+        synchronized (mLock) {
+            config = mPropertyConfigs.get(propertyId);
+        }
+        if (config == null) {
+            config = mCarPropertyManager.getCarPropertyConfig(propertyId);
+            cachePropertyConfig(propertyId, config);
+        }
+        return config;
+    }
+
+    private void cachePropertyConfig(@HvacProperty int propertyId,
+            @Nullable CarPropertyConfig<?> config) {
+        if (config == null) {
+            return;
+        }
+        synchronized (mLock) {
+            mPropertyConfigs.put(propertyId, config);
+        }
+    }
+
     private void addHvacViewToMap(@HvacProperty int propId, @AreaId int areaId,
             HvacView v) {
-        mHvacPropertyViewMap.computeIfAbsent(propId, k -> new HashMap<>())
-                .computeIfAbsent(areaId, k -> new ArrayList<>())
-                .add(v);
+        synchronized (mLock) {
+            mHvacPropertyViewMap.computeIfAbsent(propId, k -> new HashMap<>())
+                    .computeIfAbsent(areaId, k -> new ArrayList<>())
+                    .add(v);
+            mDispatchIndexDirty = true;
+        }
     }
 
     private void removeHvacViewFromMap(@HvacProperty int propId, @AreaId int areaId, HvacView v) {
-        Map<Integer, List<HvacView>> viewsRegisteredForProp = mHvacPropertyViewMap.get(propId);
-        if (viewsRegisteredForProp != null) {
+        synchronized (mLock) {
+            Map<Integer, List<HvacView>> viewsRegisteredForProp =
+                    mHvacPropertyViewMap.get(propId);
+            if (viewsRegisteredForProp == null) {
+                return;
+            }
             List<HvacView> registeredViews = viewsRegisteredForProp.get(areaId);
-            if (registeredViews != null) {
-                registeredViews.remove(v);
-                if (registeredViews.isEmpty()) {
-                    viewsRegisteredForProp.remove(areaId);
-                    if (viewsRegisteredForProp.isEmpty()) {
-                        mHvacPropertyViewMap.remove(propId);
-                    }
+            if (registeredViews == null) {
+                return;
+            }
+            registeredViews.remove(v);
+            mDispatchIndexDirty = true;
+            if (registeredViews.isEmpty()) {
+                viewsRegisteredForProp.remove(areaId);
+                if (viewsRegisteredForProp.isEmpty()) {
+                    mHvacPropertyViewMap.remove(propId);
                 }
             }
         }
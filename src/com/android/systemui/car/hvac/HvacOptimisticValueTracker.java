@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.systemui.car.hvac;
+
+import static com.android.systemui.car.hvac.HvacController.getPropertyAreaKey;
+
+import android.annotation.Nullable;
+import android.car.hardware.CarPropertyValue;
+import android.util.LongSparseArray;
+
+import java.util.Objects;
+
+/**
+ * Keeps track of HVAC values that were shown to the user before the vehicle HAL confirmed them,
+ * and of the last values reported by the vehicle HAL so that unconfirmed values can be rolled
+ * back.
+ *
+ * Values are keyed by property ID and (non-target) area ID. Float values are confirmed by any
+ * reported value within the tolerance they were recorded with, since the vehicle HAL may round
+ * them, e.g. to its temperature increment or after a Fahrenheit to Celsius conversion. This class
+ * is not thread safe and must only be accessed from the {@link HvacController} executor.
+ */
+final class HvacOptimisticValueTracker {
+    /** Last values reported by the vehicle HAL. */
+    private final LongSparseArray<CarPropertyValue<?>> mAuthoritativeValues =
+            new LongSparseArray<>();
+    /** Values shown to the user that the vehicle HAL has not confirmed yet. */
+    private final LongSparseArray<PendingValue> mPendingValues = new LongSparseArray<>();
+    private int mNextToken;
+
+    /**
+     * Records {@code value} as shown to the user for {@code propertyId} and {@code areaId}.
+     *
+     * @param floatTolerance the maximum difference between a {@link Float} {@code value} and the
+     *                       reported value that confirms it.
+     * @return a token identifying this pending value, to be passed to {@link #expire}.
+     */
+    int onLocalValue(@HvacController.HvacProperty int propertyId, int areaId, Object value,
+            float floatTolerance) {
+        int token = mNextToken++;
+        mPendingValues.put(getPropertyAreaKey(propertyId, areaId),
+                new PendingValue(value, floatTolerance, token));
+        return token;
+    }
+
+    /**
+     * Records a value reported by the vehicle HAL.
+     *
+     * @return {@code true} if {@code value} should be propagated to the views, or {@code false}
+     * if it is either the exact confirmation of the value already shown, or a stale value reported
+     * while a newer local value is still awaiting confirmation. A confirmation that was rounded by
+     * the vehicle HAL is propagated so that the views show the value actually set.
+     */
+    boolean onAuthoritativeValue(CarPropertyValue<?> value) {
+        long key = getPropertyAreaKey(value.getPropertyId(), value.getAreaId());
+        mAuthoritativeValues.put(key, value);
+        PendingValue pendingValue = mPendingValues.get(key);
+        if (pendingValue == null) {
+            return true;
+        }
+        if (!valuesMatch(pendingValue.mValue, value.getValue(), pendingValue.mFloatTolerance)) {
+            return false;
+        }
+        mPendingValues.remove(key);
+        return !Objects.equals(pendingValue.mValue, value.getValue());
+    }
+
+    /**
+     * Returns whether {@code value} matches {@code expectedValue}, allowing {@link Float} values
+     * to differ by up to {@code floatTolerance}.
+     */
+    static boolean valuesMatch(Object expectedValue, Object value, float floatTolerance) {
+        if (expectedValue instanceof Float && value instanceof Float) {
+            return Math.abs((Float) expectedValue - (Float) value) <= floatTolerance;
+        }
+        return Objects.equals(expectedValue, value);
+    }
+
+    /**
+     * Drops the pending value for {@code propertyId} and {@code areaId} if it is still the one
+     * identified by {@code token}.
+     *
+     * @return whether a pending value was dropped and needs to be rolled back.
+     */
+    boolean expire(@HvacController.HvacProperty int propertyId, int areaId, int token) {
+        long key = getPropertyAreaKey(propertyId, areaId);
+        PendingValue pendingValue = mPendingValues.get(key);
+        if (pendingValue == null || pendingValue.mToken != token) {
+            return false;
+        }
+        mPendingValues.remove(key);
+        return true;
+    }
+
+    /**
+     * Drops the pending value for {@code propertyId} and {@code areaId}, if any.
+     *
+     * @return whether a pending value was dropped and needs to be rolled back.
+     */
+    boolean drop(@HvacController.HvacProperty int propertyId, int areaId) {
+        long key = getPropertyAreaKey(propertyId, areaId);
+        if (mPendingValues.indexOfKey(key) < 0) {
+            return false;
+        }
+        mPendingValues.remove(key);
+        return true;
+    }
+
+    /**
+     * Returns whether a value is pending for {@code propertyId} and {@code areaId}.
+     */
+    boolean hasPendingValue(@HvacController.HvacProperty int propertyId, int areaId) {
+        return mPendingValues.indexOfKey(getPropertyAreaKey(propertyId, areaId)) >= 0;
+    }
+
+    /**
+     * Returns the number of pending values.
+     */
+    int getPendingValueCount() {
+        return mPendingValues.size();
+    }
+
+    /**
+     * Returns the property ID of the pending value at {@code index}.
+     */
+    int getPendingPropertyIdAt(int index) {
+        return (int) (mPendingValues.keyAt(index) >> Integer.SIZE);
+    }
+
+    /**
+     * Returns the area ID of the pending value at {@code index}.
+     */
+    int getPendingAreaIdAt(int index) {
+        return (int) mPendingValues.keyAt(index);
+    }
+
+    /**
+     * Returns the last value reported by the vehicle HAL for {@code propertyId} and
+     * {@code areaId}, or {@code null} if none was reported yet.
+     */
+    @Nullable
+    CarPropertyValue<?> getAuthoritativeValue(@HvacController.HvacProperty int propertyId,
+            int areaId) {
+        return mAuthoritativeValues.get(getPropertyAreaKey(propertyId, areaId));
+    }
+
+    private static final class PendingValue {
+        private final Object mValue;
+        private final float mFloatTolerance;
+        private final int mToken;
+
+        PendingValue(Object value, float floatTolerance, int token) {
+            mValue = value;
+            mFloatTolerance = floatTolerance;
+            mToken = token;
+        }
+    }
+}
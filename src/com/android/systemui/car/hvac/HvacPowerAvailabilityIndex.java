@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.systemui.car.hvac;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Answers whether an HVAC property is unavailable because HVAC_POWER_ON is off for its area,
+ * without allocating or locking.
+ *
+ * The set of power dependent properties (the HVAC_POWER_ON config array), their supported area
+ * IDs and the HVAC_POWER_ON areas covering each of them are computed once. Only the power state of
+ * each HVAC_POWER_ON area changes afterwards. This class is not thread safe and must only be
+ * accessed from the {@link HvacController} executor.
+ */
+final class HvacPowerAvailabilityIndex {
+    /** The property does not depend on HVAC_POWER_ON. */
+    static final int POWER_STATE_NOT_DEPENDENT = 0;
+    /** No HVAC_POWER_ON value was reported yet for any area covering the property's areas. */
+    static final int POWER_STATE_UNKNOWN = 1;
+    static final int POWER_STATE_ON = 2;
+    static final int POWER_STATE_OFF = 3;
+
+    private static final int GLOBAL_AREA_ID = 0;
+
+    /** Sorted IDs of the properties that depend on HVAC_POWER_ON. */
+    private final int[] mPowerDependentPropertyIds;
+    /** Supported area IDs of each property in {@link #mPowerDependentPropertyIds}. */
+    private final int[][] mSupportedAreaIds;
+    /**
+     * For each supported area of each power dependent property, the indices in
+     * {@link #mPowerAreaIds} of the HVAC_POWER_ON areas that cover it, in ascending area order.
+     */
+    private final int[][][] mPowerAreaIndices;
+    /** Sorted HVAC_POWER_ON area IDs. */
+    private final int[] mPowerAreaIds;
+    /** Power state of each area in {@link #mPowerAreaIds}. */
+    private final int[] mPowerStates;
+
+    private HvacPowerAvailabilityIndex(int[] powerDependentPropertyIds, int[][] supportedAreaIds,
+            int[] powerAreaIds, int[] powerStates) {
+        mPowerDependentPropertyIds = powerDependentPropertyIds;
+        mSupportedAreaIds = supportedAreaIds;
+        mPowerAreaIds = powerAreaIds;
+        mPowerStates = powerStates;
+        mPowerAreaIndices = new int[supportedAreaIds.length][][];
+        for (int i = 0; i < supportedAreaIds.length; i++) {
+            mPowerAreaIndices[i] = new int[supportedAreaIds[i].length][];
+            for (int j = 0; j < supportedAreaIds[i].length; j++) {
+                mPowerAreaIndices[i][j] = findCoveringPowerAreas(supportedAreaIds[i][j]);
+            }
+        }
+    }
+
+    /**
+     * Creates an index where no power state is known yet.
+     *
+     * @param powerAreaIds the area IDs supported by HVAC_POWER_ON.
+     * @param powerDependentPropertyIds the IDs of the properties that depend on HVAC_POWER_ON.
+     * @param supportedAreaIdsProvider returns the area IDs supported by a property.
+     */
+    static HvacPowerAvailabilityIndex create(int[] powerAreaIds,
+            List<Integer> powerDependentPropertyIds, IntFunction<int[]> supportedAreaIdsProvider) {
+        int[] propertyIds = new int[powerDependentPropertyIds.size()];
+        for (int i = 0; i < propertyIds.length; i++) {
+            propertyIds[i] = powerDependentPropertyIds.get(i);
+        }
+        Arrays.sort(propertyIds);
+        int[][] supportedAreaIds = new int[propertyIds.length][];
+        for (int i = 0; i < propertyIds.length; i++) {
+            supportedAreaIds[i] = supportedAreaIdsProvider.apply(propertyIds[i]);
+        }
+        int[] sortedPowerAreaIds = powerAreaIds.clone();
+        Arrays.sort(sortedPowerAreaIds);
+        int[] powerStates = new int[sortedPowerAreaIds.length];
+        Arrays.fill(powerStates, POWER_STATE_UNKNOWN);
+        return new HvacPowerAvailabilityIndex(propertyIds, supportedAreaIds, sortedPowerAreaIds,
+                powerStates);
+    }
+
+    /**
+     * Records the HVAC_POWER_ON value of {@code powerAreaId}.
+     *
+     * @return this index, or a new index including {@code powerAreaId} if it is not one of the
+     * area IDs this index was created with.
+     */
+    HvacPowerAvailabilityIndex setPowerOn(int powerAreaId, boolean isPowerOn) {
+        int index = Arrays.binarySearch(mPowerAreaIds, powerAreaId);
+        if (index >= 0) {
+            mPowerStates[index] = isPowerOn ? POWER_STATE_ON : POWER_STATE_OFF;
+            return this;
+        }
+        int insertionIndex = -index - 1;
+        int[] powerAreaIds = new int[mPowerAreaIds.length + 1];
+        int[] powerStates = new int[mPowerStates.length + 1];
+        System.arraycopy(mPowerAreaIds, 0, powerAreaIds, 0, insertionIndex);
+        System.arraycopy(mPowerStates, 0, powerStates, 0, insertionIndex);
+        powerAreaIds[insertionIndex] = powerAreaId;
+        powerStates[insertionIndex] = isPowerOn ? POWER_STATE_ON : POWER_STATE_OFF;
+        System.arraycopy(mPowerAreaIds, insertionIndex, powerAreaIds, insertionIndex + 1,
+                mPowerAreaIds.length - insertionIndex);
+        System.arraycopy(mPowerStates, insertionIndex, powerStates, insertionIndex + 1,
+                mPowerStates.length - insertionIndex);
+        return new HvacPowerAvailabilityIndex(mPowerDependentPropertyIds, mSupportedAreaIds,
+                powerAreaIds, powerStates);
+    }
+
+    /** Returns the number of properties that depend on HVAC_POWER_ON. */
+    int getPowerDependentPropertyCount() {
+        return mPowerDependentPropertyIds.length;
+    }
+
+    /** Returns the ID of the power dependent property at {@code index}. */
+    int getPowerDependentPropertyIdAt(int index) {
+        return mPowerDependentPropertyIds[index];
+    }
+
+    /**
+     * Returns the power state that applies to {@code propertyId} in {@code targetAreaId}: the
+     * state of the first known HVAC_POWER_ON area that covers one of the property's areas matching
+     * {@code targetAreaId}.
+     */
+    int getPowerState(@HvacController.HvacProperty int propertyId, int targetAreaId) {
+        int propertyIndex = Arrays.binarySearch(mPowerDependentPropertyIds, propertyId);
+        if (propertyIndex < 0) {
+            return POWER_STATE_NOT_DEPENDENT;
+        }
+        int[] supportedAreaIds = mSupportedAreaIds[propertyIndex];
+        int[][] powerAreaIndices = mPowerAreaIndices[propertyIndex];
+        for (int i = 0; i < supportedAreaIds.length; i++) {
+            if (targetAreaId != GLOBAL_AREA_ID && (targetAreaId & supportedAreaIds[i]) == 0) {
+                continue;
+            }
+            for (int powerAreaIndex : powerAreaIndices[i]) {
+                if (mPowerStates[powerAreaIndex] != POWER_STATE_UNKNOWN) {
+                    return mPowerStates[powerAreaIndex];
+                }
+            }
+        }
+        return POWER_STATE_UNKNOWN;
+    }
+
+    private int[] findCoveringPowerAreas(int areaId) {
+        int count = 0;
+        for (int powerAreaId : mPowerAreaIds) {
+            if ((powerAreaId & areaId) == areaId) {
+                count++;
+            }
+        }
+        int[] indices = new int[count];
+        count = 0;
+        for (int i = 0; i < mPowerAreaIds.length; i++) {
+            if ((mPowerAreaIds[i] & areaId) == areaId) {
+                indices[count++] = i;
+            }
+        }
+        return indices;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.systemui.car.hvac;
+
+import static android.car.VehicleAreaType.VEHICLE_AREA_TYPE_GLOBAL;
+
+import android.car.hardware.CarPropertyConfig;
+import android.car.hardware.CarPropertyValue;
+import android.util.ArraySet;
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable dispatch table that routes HVAC property change events to the {@link HvacView}s
+ * registered with {@link HvacController}.
+ *
+ * The table is built once from the registration map (property ID -> area ID -> views) and groups
+ * the registered area IDs by the area type of the property they were registered for, so that an
+ * incoming {@link CarPropertyValue} only visits the area IDs of its own area type. Dispatching
+ * does not allocate.
+ */
+final class HvacPropertyDispatchIndex {
+    static final HvacPropertyDispatchIndex EMPTY = new HvacPropertyDispatchIndex(
+            new HvacView[0], new SparseArray<>());
+
+    /** Every registered view, without duplicates. */
+    private final HvacView[] mAllViews;
+    /** Area type -> area ID bitmasks and the views registered for each of them. */
+    private final SparseArray<AreaBucket> mAreaBuckets;
+
+    private HvacPropertyDispatchIndex(HvacView[] allViews, SparseArray<AreaBucket> areaBuckets) {
+        mAllViews = allViews;
+        mAreaBuckets = areaBuckets;
+    }
+
+    /**
+     * Builds a dispatch table from the {@code hvacPropertyViewMap} registration map, using
+     * {@code configs} to resolve the area type of each registered property.
+     */
+    static HvacPropertyDispatchIndex build(
+            Map<@HvacController.HvacProperty Integer,
+                    Map<@HvacController.AreaId Integer, List<HvacView>>> hvacPropertyViewMap,
+            SparseArray<CarPropertyConfig<?>> configs) {
+        if (hvacPropertyViewMap.isEmpty()) {
+            return EMPTY;
+        }
+        ArraySet<HvacView> allViews = new ArraySet<>();
+        SparseArray<SparseArray<List<HvacView>>> viewsByAreaType = new SparseArray<>();
+        hvacPropertyViewMap.forEach((propId, areaIds) -> {
+            CarPropertyConfig<?> config = configs.get(propId);
+            int areaType = config != null ? config.getAreaType() : VEHICLE_AREA_TYPE_GLOBAL;
+            SparseArray<List<HvacView>> viewsByAreaId = viewsByAreaType.get(areaType);
+            if (viewsByAreaId == null) {
+                viewsByAreaId = new SparseArray<>();
+                viewsByAreaType.put(areaType, viewsByAreaId);
+            }
+            for (Map.Entry<Integer, List<HvacView>> entry : areaIds.entrySet()) {
+                List<HvacView> views = viewsByAreaId.get(entry.getKey());
+                if (views == null) {
+                    views = new ArrayList<>();
+                    viewsByAreaId.put(entry.getKey(), views);
+                }
+                views.addAll(entry.getValue());
+                allViews.addAll(entry.getValue());
+            }
+        });
+
+        SparseArray<AreaBucket> areaBuckets = new SparseArray<>(viewsByAreaType.size());
+        for (int i = 0; i < viewsByAreaType.size(); i++) {
+            SparseArray<List<HvacView>> viewsByAreaId = viewsByAreaType.valueAt(i);
+            int[] areaIdsArray = new int[viewsByAreaId.size()];
+            HvacView[][] viewsArray = new HvacView[viewsByAreaId.size()][];
+            for (int j = 0; j < viewsByAreaId.size(); j++) {
+                areaIdsArray[j] = viewsByAreaId.keyAt(j);
+                viewsArray[j] = viewsByAreaId.valueAt(j).toArray(new HvacView[0]);
+            }
+            areaBuckets.put(viewsByAreaType.keyAt(i), new AreaBucket(areaIdsArray, viewsArray));
+        }
+        return new HvacPropertyDispatchIndex(allViews.toArray(new HvacView[0]), areaBuckets);
+    }
+
+    /**
+     * Propagates {@code value}, whose property has the given {@code areaType}, to the subscribing
+     * views.
+     *
+     * Values of global properties are propagated to every registered view. Values of any other
+     * area type are propagated to the views registered for an area ID of the same area type that
+     * is covered by the value's area ID.
+     */
+    void dispatchPropertyChange(int areaType, CarPropertyValue value) {
+        if (areaType == VEHICLE_AREA_TYPE_GLOBAL) {
+            for (HvacView view : mAllViews) {
+                view.onPropertyChanged(value);
+            }
+            return;
+        }
+        AreaBucket bucket = mAreaBuckets.get(areaType);
+        if (bucket == null) {
+            return;
+        }
+        int valueAreaId = value.getAreaId();
+        for (int i = 0; i < bucket.mAreaIds.length; i++) {
+            int areaId = bucket.mAreaIds[i];
+            if ((valueAreaId & areaId) != areaId) {
+                continue;
+            }
+            for (HvacView view : bucket.mViews[i]) {
+                view.onPropertyChanged(value);
+            }
+        }
+    }
+
+    /** Notifies every registered view that the temperature display unit has changed. */
+    void dispatchTemperatureUnitChange(boolean usesFahrenheit) {
+        for (HvacView view : mAllViews) {
+            view.onHvacTemperatureUnitChanged(usesFahrenheit);
+        }
+    }
+
+    /** Notifies every registered view that the locale list has changed. */
+    void dispatchLocaleListChange() {
+        for (HvacView view : mAllViews) {
+            view.onLocaleListChanged();
+        }
+    }
+
+    private static final class AreaBucket {
+        private final int[] mAreaIds;
+        private final HvacView[][] mViews;
+
+        AreaBucket(int[] areaIds, HvacView[][] views) {
+            mAreaIds = areaIds;
+            mViews = views;
+        }
+    }
+}
@@ -38,4 +38,12 @@ public interface HvacPropertySetter {
      * HvacController.AreaId}.
      */
     void setHvacProperty(@HvacController.HvacProperty Integer propertyId, int areaId, boolean val);
+
+    /**
+     * Issues the pending write of an {@link HvacController.HvacProperty} for a given {@link
+     * HvacController.AreaId} right away, e.g. when the user releases a button that is held to
+     * repeatedly change the property.
+     */
+    default void flushHvacPropertyWrites(@HvacController.HvacProperty Integer propertyId,
+            int areaId) {}
 }
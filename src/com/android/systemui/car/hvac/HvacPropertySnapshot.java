@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.systemui.car.hvac;
+
+import static com.android.systemui.car.hvac.HvacController.getPropertyAreaKey;
+
+import android.annotation.Nullable;
+import android.car.hardware.CarPropertyValue;
+import android.util.LongSparseArray;
+
+/**
+ * A read-through cache of HVAC property values used while initializing a batch of
+ * {@link HvacView}s, so that each (property ID, area ID) pair is read from the vehicle HAL at most
+ * once per batch, even if several views subscribe to it.
+ *
+ * A snapshot is meant to be short lived and is not thread safe.
+ */
+final class HvacPropertySnapshot {
+
+    /** Reads a property value from the vehicle HAL. */
+    interface PropertyReader {
+        /** Returns the current value, or {@code null} if it is not available. */
+        @Nullable
+        CarPropertyValue<?> read(@HvacController.HvacProperty int propertyId, int areaId);
+    }
+
+    private final PropertyReader mReader;
+    /** Values read so far, including {@code null} for values that were not available. */
+    private final LongSparseArray<CarPropertyValue<?>> mValues = new LongSparseArray<>();
+    private int mReadCount;
+
+    HvacPropertySnapshot(PropertyReader reader) {
+        mReader = reader;
+    }
+
+    /**
+     * Returns the value of {@code propertyId} in {@code areaId}, reading it only if it was not
+     * read before by this snapshot.
+     */
+    @Nullable
+    CarPropertyValue<?> get(@HvacController.HvacProperty int propertyId, int areaId) {
+        long key = getPropertyAreaKey(propertyId, areaId);
+        int index = mValues.indexOfKey(key);
+        if (index >= 0) {
+            return mValues.valueAt(index);
+        }
+        CarPropertyValue<?> value = mReader.read(propertyId, areaId);
+        mReadCount++;
+        mValues.put(key, value);
+        return value;
+    }
+
+    /** Returns the number of values read from the vehicle HAL by this snapshot. */
+    int getReadCount() {
+        return mReadCount;
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.systemui.car.hvac;
+
+import static com.android.systemui.car.hvac.HvacController.getPropertyAreaKey;
+
+import android.util.ArraySet;
+
+import androidx.annotation.GuardedBy;
+
+import com.android.systemui.util.concurrency.DelayableExecutor;
+
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Collapses bursts of HVAC property writes into the minimal set of writes.
+ *
+ * Writes are keyed by property ID and target area ID. The first write for a key is handed to the
+ * {@link Writer} on the flush executor right away, and opens a flush interval for the key. Writes
+ * for the key within that interval are held back, a newer one replacing the value of the pending
+ * one (last value wins), and the pending write is issued when the interval ends, which opens the
+ * next interval. A pending write is also issued immediately when {@link #flush} is called for its
+ * key (e.g. when the user releases a button).
+ *
+ * Writes are handed to the flush executor, which must be single-threaded, while holding the lock
+ * that guards the pending writes, so that they are issued in the order they are taken out of the
+ * queue and a stale value never reaches the vehicle HAL after a newer one.
+ */
+final class HvacPropertyWriteCoalescer {
+
+    /** Issues a coalesced write. Always called on the flush executor. */
+    interface Writer {
+        /**
+         * Writes {@code value}, which is an {@link Integer}, {@link Float} or {@link Boolean}, to
+         * {@code propertyId} for all areas covered by {@code targetAreaId}.
+         *
+         * @return the number of writes issued to the vehicle HAL.
+         */
+        int write(@HvacController.HvacProperty int propertyId, int targetAreaId, Object value);
+    }
+
+    private final Executor mFlushExecutor;
+    private final DelayableExecutor mTimerExecutor;
+    private final long mFlushIntervalMs;
+    private final Writer mWriter;
+
+    private final Object mLock = new Object();
+    @GuardedBy("mLock")
+    private final LinkedHashMap<Long, PendingWrite> mPendingWrites = new LinkedHashMap<>();
+    /** Keys written less than {@link #mFlushIntervalMs} ago. */
+    @GuardedBy("mLock")
+    private final Set<Long> mOpenIntervals = new ArraySet<>();
+    @GuardedBy("mLock")
+    private long mWritesRequested;
+    @GuardedBy("mLock")
+    private long mWritesCoalesced;
+    @GuardedBy("mLock")
+    private long mWritesIssued;
+
+    HvacPropertyWriteCoalescer(Executor flushExecutor, DelayableExecutor timerExecutor,
+            long flushIntervalMs, Writer writer) {
+        mFlushExecutor = flushExecutor;
+        mTimerExecutor = timerExecutor;
+        mFlushIntervalMs = flushIntervalMs;
+        mWriter = writer;
+    }
+
+    /**
+     * Writes {@code value} to {@code propertyId} for {@code targetAreaId} right away if the
+     * property and target area were not written within the flush interval. Otherwise queues it,
+     * replacing any pending write for the same property and target area.
+     */
+    void enqueue(@HvacController.HvacProperty int propertyId, int targetAreaId, Object value) {
+        long key = getPropertyAreaKey(propertyId, targetAreaId);
+        synchronized (mLock) {
+            mWritesRequested++;
+            if (mFlushIntervalMs > 0 && mOpenIntervals.contains(key)) {
+                PendingWrite pendingWrite = mPendingWrites.remove(key);
+                if (pendingWrite != null) {
+                    mWritesCoalesced++;
+                    pendingWrite.mValue = value;
+                } else {
+                    pendingWrite = new PendingWrite(propertyId, targetAreaId, value);
+                }
+                // Re-insert so that pending writes are flushed in the order of their latest value.
+                mPendingWrites.put(key, pendingWrite);
+                return;
+            }
+            PendingWrite write = new PendingWrite(propertyId, targetAreaId, value);
+            openIntervalLocked(key);
+            mFlushExecutor.execute(() -> issue(write));
+        }
+    }
+
+    /**
+     * Issues the pending write of {@code propertyId} for {@code targetAreaId}, if any, without
+     * waiting for the end of its flush interval. The pending writes of other keys are left to
+     * their own intervals.
+     */
+    void flush(@HvacController.HvacProperty int propertyId, int targetAreaId) {
+        synchronized (mLock) {
+            PendingWrite pendingWrite =
+                    mPendingWrites.remove(getPropertyAreaKey(propertyId, targetAreaId));
+            if (pendingWrite != null) {
+                mFlushExecutor.execute(() -> issue(pendingWrite));
+            }
+        }
+    }
+
+    @GuardedBy("mLock")
+    private void openIntervalLocked(long key) {
+        if (mFlushIntervalMs <= 0) {
+            return;
+        }
+        mOpenIntervals.add(key);
+        mTimerExecutor.executeDelayed(() -> onIntervalEnd(key), mFlushIntervalMs);
+    }
+
+    private void onIntervalEnd(long key) {
+        synchronized (mLock) {
+            PendingWrite pendingWrite = mPendingWrites.remove(key);
+            if (pendingWrite == null) {
+                // Nothing was written within the interval, the next write is issued right away.
+                mOpenIntervals.remove(key);
+                return;
+            }
+            mTimerExecutor.executeDelayed(() -> onIntervalEnd(key), mFlushIntervalMs);
+            mFlushExecutor.execute(() -> issue(pendingWrite));
+        }
+    }
+
+    private void issue(PendingWrite write) {
+        int writesIssued = mWriter.write(write.mPropertyId, write.mTargetAreaId, write.mValue);
+        synchronized (mLock) {
+            mWritesIssued += writesIssued;
+        }
+    }
+
+    /** Returns the number of writes requested through {@link #enqueue}. */
+    long getWritesRequested() {
+        synchronized (mLock) {
+            return mWritesRequested;
+        }
+    }
+
+    /** Returns the number of writes issued to the vehicle HAL. */
+    long getWritesIssued() {
+        synchronized (mLock) {
+            return mWritesIssued;
+        }
+    }
+
+    /** Prints the write counters. */
+    void dump(PrintWriter pw) {
+        synchronized (mLock) {
+            pw.println("  flush interval: " + mFlushIntervalMs + "ms");
+            pw.println("  writes requested: " + mWritesRequested);
+            pw.println("  writes coalesced: " + mWritesCoalesced);
+            pw.println("  writes issued: " + mWritesIssued);
+            pw.println("  pending writes: " + mPendingWrites.size());
+        }
+    }
+
+    private static final class PendingWrite {
+        private final int mPropertyId;
+        private final int mTargetAreaId;
+        private Object mValue;
+
+        PendingWrite(int propertyId, int targetAreaId, Object value) {
+            mPropertyId = propertyId;
+            mTargetAreaId = targetAreaId;
+            mValue = value;
+        }
+    }
+}
@@ -249,6 +249,10 @@ public class TemperatureControlView extends LinearLayout implements HvacView {
                 case MotionEvent.ACTION_UP:
                 case MotionEvent.ACTION_CANCEL:
                     mContext.getMainThreadHandler().removeCallbacks(repeatClickRunnable);
+                    if (mHvacPropertySetter != null) {
+                        mHvacPropertySetter.flushHvacPropertyWrites(HVAC_TEMPERATURE_SET,
+                                mAreaId);
+                    }
             }
 
             // Return true so on click listener is not called superfluously.
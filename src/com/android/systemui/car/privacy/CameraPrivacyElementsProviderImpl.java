@@ -21,10 +21,14 @@ import android.content.pm.PackageManager;
 import android.permission.PermissionManager;
 
 import com.android.systemui.dagger.SysUISingleton;
+import com.android.systemui.dagger.qualifiers.Background;
 import com.android.systemui.privacy.PrivacyItemController;
 import com.android.systemui.privacy.PrivacyType;
 import com.android.systemui.privacy.logging.PrivacyLogger;
 import com.android.systemui.settings.UserTracker;
+import com.android.systemui.util.time.SystemClock;
+
+import java.util.concurrent.Executor;
 
 import javax.inject.Inject;
 
@@ -42,9 +46,11 @@ public class CameraPrivacyElementsProviderImpl extends PrivacyElementsProviderIm
             PackageManager packageManager,
             PrivacyItemController privacyItemController,
             UserTracker userTracker,
-            PrivacyLogger privacyLogger) {
+            PrivacyLogger privacyLogger,
+            @Background Executor backgroundExecutor,
+            SystemClock systemClock) {
         super(context, permissionManager, packageManager, privacyItemController, userTracker,
-                privacyLogger);
+                privacyLogger, backgroundExecutor, systemClock);
     }
 
     @Override
@@ -32,10 +32,7 @@ import androidx.constraintlayout.motion.widget.MotionLayout;
 
 import com.android.systemui.R;
 import com.android.systemui.car.statusicon.AnimatedStatusIcon;
-
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import com.android.systemui.util.concurrency.DelayableExecutor;
 
 /**
  * Car optimized Privacy Chip View that is shown when a {@link
@@ -71,7 +68,10 @@ public abstract class PrivacyChip extends MotionLayout implements AnimatedStatus
     private boolean mPanelOpen;
     private boolean mIsInflated;
     private boolean mIsSensorEnabled;
-    private ScheduledExecutorService mExecutor;
+    @Nullable
+    private DelayableExecutor mExecutor;
+    @Nullable
+    private Runnable mCancelPendingTransition;
 
     public PrivacyChip(@NonNull Context context) {
         this(context, /* attrs= */ null);
@@ -89,7 +89,6 @@ public abstract class PrivacyChip extends MotionLayout implements AnimatedStatus
         mDelayToNoSensorUsage =
                 getResources().getInteger(R.integer.privacy_chip_no_sensor_usage_delay);
 
-        mExecutor = Executors.newSingleThreadScheduledExecutor();
         mIsInflated = false;
 
         // The sensor is enabled by default (invisible state).
@@ -142,6 +141,14 @@ public abstract class PrivacyChip extends MotionLayout implements AnimatedStatus
                 });
     }
 
+    /**
+     * Sets the main thread executor used to run the delayed steps of the animations. If none is
+     * set, they are posted to the handler of the chip.
+     */
+    public void setDelayableExecutor(DelayableExecutor executor) {
+        mExecutor = executor;
+    }
+
     @Override
     public void setOnClickListener(View.OnClickListener onClickListener) {
         // required for CTS tests.
@@ -242,8 +249,7 @@ public abstract class PrivacyChip extends MotionLayout implements AnimatedStatus
             }
         }
 
-        mExecutor.shutdownNow();
-        mExecutor = Executors.newSingleThreadScheduledExecutor();
+        cancelPendingTransition();
 
         // TODO(182938429): Use Transition Listeners once ConstraintLayout 2.0.0 is being used.
 
@@ -338,8 +344,7 @@ public abstract class PrivacyChip extends MotionLayout implements AnimatedStatus
                 return;
         }
 
-        mExecutor.shutdownNow();
-        mExecutor = Executors.newSingleThreadScheduledExecutor();
+        cancelPendingTransition();
 
         // TODO(182938429): Use Transition Listeners once ConstraintLayout 2.0.0 is being used.
         setContentDescription(false);
@@ -355,36 +360,53 @@ public abstract class PrivacyChip extends MotionLayout implements AnimatedStatus
         }
         transitionToEnd();
         if (mIsSensorEnabled) {
-            mExecutor.schedule(PrivacyChip.this::animateToOrangeCircle, mDelayPillToCircle,
-                    TimeUnit.MILLISECONDS);
+            scheduleTransition(this::animateToOrangeCircle, mDelayPillToCircle);
         }
     }
 
     // TODO(182938429): Use Transition Listeners once ConstraintLayout 2.0.0 is being used.
     private void animateToOrangeCircle() {
-        // Since this is launched using a {@link ScheduledExecutorService}, its UI based elements
-        // need to execute on main executor.
-        getContext().getMainExecutor().execute(() -> {
-            if (mPanelOpen) {
-                setTransition(R.id.activeSelectedFromActiveInit);
-                mCurrentTransitionState = AnimationStates.ACTIVE_SELECTED;
-            } else {
-                setTransition(R.id.activeFromActiveInit);
-                mCurrentTransitionState = AnimationStates.ACTIVE;
-            }
-            transitionToEnd();
-        });
+        if (mPanelOpen) {
+            setTransition(R.id.activeSelectedFromActiveInit);
+            mCurrentTransitionState = AnimationStates.ACTIVE_SELECTED;
+        } else {
+            setTransition(R.id.activeFromActiveInit);
+            mCurrentTransitionState = AnimationStates.ACTIVE;
+        }
+        transitionToEnd();
     }
 
     private void showIndicatorBorder(boolean show) {
-        // Since this is launched using a {@link ScheduledExecutorService}, its UI based elements
-        // need to execute on main executor.
-        getContext().getMainExecutor().execute(() -> {
-            View activeBackground = findViewById(R.id.active_background);
-            activeBackground.setBackground(getContext().getDrawable(show
-                    ? R.drawable.privacy_chip_active_background_pill_with_border
-                    : R.drawable.privacy_chip_active_background_pill));
-        });
+        View activeBackground = findViewById(R.id.active_background);
+        activeBackground.setBackground(getContext().getDrawable(show
+                ? R.drawable.privacy_chip_active_background_pill_with_border
+                : R.drawable.privacy_chip_active_background_pill));
+    }
+
+    /**
+     * Runs {@code transition} on the main thread after {@code delayMs}, replacing the transition
+     * that is pending, if any.
+     */
+    private void scheduleTransition(Runnable transition, long delayMs) {
+        cancelPendingTransition();
+        Runnable delayedTransition = () -> {
+            mCancelPendingTransition = null;
+            transition.run();
+        };
+        if (mExecutor != null) {
+            mCancelPendingTransition = mExecutor.executeDelayed(delayedTransition, delayMs);
+            return;
+        }
+        // Posted runnables are kept until the chip is attached, so this works before then too.
+        postDelayed(delayedTransition, delayMs);
+        mCancelPendingTransition = () -> removeCallbacks(delayedTransition);
+    }
+
+    private void cancelPendingTransition() {
+        if (mCancelPendingTransition != null) {
+            mCancelPendingTransition.run();
+            mCancelPendingTransition = null;
+        }
     }
 
     /**
@@ -438,44 +460,36 @@ public abstract class PrivacyChip extends MotionLayout implements AnimatedStatus
             }
         }
 
-        mExecutor.shutdownNow();
-        mExecutor = Executors.newSingleThreadScheduledExecutor();
+        cancelPendingTransition();
 
         // TODO(182938429): Use Transition Listeners once ConstraintLayout 2.0.0 is being used.
         mCurrentTransitionState = mPanelOpen
                 ? AnimationStates.INACTIVE_SELECTED
                 : AnimationStates.INACTIVE;
         transitionToEnd();
-        mExecutor.schedule(PrivacyChip.this::reset, mDelayToNoSensorUsage,
-                TimeUnit.MILLISECONDS);
+        scheduleTransition(this::reset, mDelayToNoSensorUsage);
     }
 
-
-
     // TODO(182938429): Use Transition Listeners once ConstraintLayout 2.0.0 is being used.
     private void reset() {
-        // Since this is launched using a {@link ScheduledExecutorService}, its UI based elements
-        // need to execute on main executor.
-        getContext().getMainExecutor().execute(() -> {
-            if (mIsSensorEnabled && !mPanelOpen) {
-                setTransition(R.id.invisibleFromInactive);
+        if (mIsSensorEnabled && !mPanelOpen) {
+            setTransition(R.id.invisibleFromInactive);
+            mCurrentTransitionState = AnimationStates.INVISIBLE;
+        } else if (!mIsSensorEnabled) {
+            if (mPanelOpen) {
+                setTransition(R.id.inactiveSelectedFromSensorOffSelected);
+                mCurrentTransitionState = AnimationStates.INACTIVE_SELECTED;
+            } else {
+                setTransition(R.id.invisibleFromSensorOff);
                 mCurrentTransitionState = AnimationStates.INVISIBLE;
-            } else if (!mIsSensorEnabled) {
-                if (mPanelOpen) {
-                    setTransition(R.id.inactiveSelectedFromSensorOffSelected);
-                    mCurrentTransitionState = AnimationStates.INACTIVE_SELECTED;
-                } else {
-                    setTransition(R.id.invisibleFromSensorOff);
-                    mCurrentTransitionState = AnimationStates.INVISIBLE;
-                }
             }
+        }
 
-            transitionToEnd();
+        transitionToEnd();
 
-            if (!mPanelOpen) {
-                setVisibility(View.GONE);
-            }
-        });
+        if (!mPanelOpen) {
+            setVisibility(View.GONE);
+        }
     }
 
     @AnyThread
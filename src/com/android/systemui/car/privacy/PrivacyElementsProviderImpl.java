@@ -19,46 +19,71 @@ package com.android.systemui.car.privacy;
 import static android.os.UserHandle.USER_SYSTEM;
 
 import android.Manifest;
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.UserInfo;
+import android.net.Uri;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.permission.PermissionGroupUsage;
 import android.permission.PermissionManager;
+import android.util.ArrayMap;
 import android.util.Log;
+import android.util.SparseArray;
 
+import androidx.annotation.GuardedBy;
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
 
 import com.android.systemui.privacy.PrivacyDialog;
+import com.android.systemui.privacy.PrivacyItem;
 import com.android.systemui.privacy.PrivacyItemController;
 import com.android.systemui.privacy.PrivacyType;
 import com.android.systemui.privacy.logging.PrivacyLogger;
 import com.android.systemui.settings.UserTracker;
+import com.android.systemui.util.time.SystemClock;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executor;
 
 /**
  * Implementation of {@link
  * com.android.systemui.car.privacy.SensorQcPanel.SensorPrivacyElementsProvider}
+ *
+ * The privacy elements are rebuilt on the background executor whenever the
+ * {@link PrivacyItemController} reports a change, so that they are usually ready by the time the
+ * panel asks for them, and whenever the current user or its profiles change, since the elements
+ * only include the usages of those. The labels of the applications are cached per package and
+ * user until the package changes.
  */
 public abstract class PrivacyElementsProviderImpl implements
         SensorQcPanel.SensorPrivacyElementsProvider {
     private static final String TAG = "PrivacyElementsProviderImpl";
     private static final String EMPTY_APP_NAME = "";
+    /**
+     * Recently used (inactive) elements expire without any {@link PrivacyItemController} change,
+     * so elements including some are only reused for this long.
+     */
+    @VisibleForTesting
+    static final long MAX_INACTIVE_ELEMENTS_AGE_MS = 5000;
 
     private static final Map<String, PrivacyType> PERM_GROUP_TO_PRIVACY_TYPE_MAP =
             Map.of(Manifest.permission_group.CAMERA, PrivacyType.TYPE_CAMERA,
                     Manifest.permission_group.MICROPHONE, PrivacyType.TYPE_MICROPHONE,
                     Manifest.permission_group.LOCATION, PrivacyType.TYPE_LOCATION);
 
+    private static final Comparator<PrivacyDialog.PrivacyElement> PRIVACY_ELEMENT_COMPARATOR =
+            new PrivacyElementComparator();
 
     private final PermissionManager mPermissionManager;
     private final UserTracker mUserTracker;
@@ -66,6 +91,66 @@ public abstract class PrivacyElementsProviderImpl implements
     private final PackageManager mPackageManager;
     private final PrivacyItemController mPrivacyItemController;
     private final UserManager mUserManager;
+    private final Executor mBackgroundExecutor;
+    private final SystemClock mSystemClock;
+
+    private final Object mLock = new Object();
+    /** User ID -> package name -> application label. */
+    @GuardedBy("mLock")
+    private final SparseArray<ArrayMap<String, String>> mLabelCache = new SparseArray<>();
+    @GuardedBy("mLock")
+    @Nullable
+    private List<PrivacyDialog.PrivacyElement> mElements;
+    @GuardedBy("mLock")
+    private long mElementsTimestampMs;
+    /** Incremented whenever the cached elements become stale. */
+    @GuardedBy("mLock")
+    private int mGeneration;
+    @GuardedBy("mLock")
+    private boolean mRefreshScheduled;
+
+    // PrivacyItemController only keeps weak references to its callbacks.
+    private final PrivacyItemController.Callback mPrivacyItemCallback =
+            new PrivacyItemController.Callback() {
+                @Override
+                public void onPrivacyItemsChanged(@NonNull List<PrivacyItem> privacyItems) {
+                    invalidateElements();
+                }
+
+                @Override
+                public void onFlagAllChanged(boolean enabled) {
+                    invalidateElements();
+                }
+
+                @Override
+                public void onFlagMicCameraChanged(boolean enabled) {
+                    invalidateElements();
+                }
+            };
+
+    private final UserTracker.Callback mUserTrackerCallback = new UserTracker.Callback() {
+        @Override
+        public void onUserChanged(int newUser, Context userContext) {
+            invalidateElements();
+        }
+
+        @Override
+        public void onProfilesChanged(@NonNull List<UserInfo> profiles) {
+            invalidateElements();
+        }
+    };
+
+    private final BroadcastReceiver mPackageChangedReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Uri data = intent.getData();
+            if (data == null) {
+                return;
+            }
+            onPackageChanged(data.getSchemeSpecificPart(), intent.getIntExtra(
+                    Intent.EXTRA_UID, /* defaultValue= */ -1));
+        }
+    };
 
     public PrivacyElementsProviderImpl(
             Context context,
@@ -73,48 +158,135 @@ public abstract class PrivacyElementsProviderImpl implements
             PackageManager packageManager,
             PrivacyItemController privacyItemController,
             UserTracker userTracker,
-            PrivacyLogger privacyLogger) {
+            PrivacyLogger privacyLogger,
+            Executor backgroundExecutor,
+            SystemClock systemClock) {
         mPermissionManager = permissionManager;
         mPackageManager = packageManager;
         mPrivacyItemController = privacyItemController;
         mUserTracker = userTracker;
         mPrivacyLogger = privacyLogger;
+        mBackgroundExecutor = backgroundExecutor;
+        mSystemClock = systemClock;
 
         mUserManager = context.getSystemService(UserManager.class);
+
+        IntentFilter packageFilter = new IntentFilter();
+        packageFilter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        packageFilter.addDataScheme("package");
+        context.registerReceiverForAllUsers(mPackageChangedReceiver, packageFilter,
+                /* broadcastPermission= */ null, /* scheduler= */ null);
+        mPrivacyItemController.addCallback(mPrivacyItemCallback);
+        mUserTracker.addCallback(mUserTrackerCallback, mBackgroundExecutor);
     }
 
     @Override
     public List<PrivacyDialog.PrivacyElement> getPrivacyElements() {
-        List<PrivacyDialog.PrivacyElement> elements = filterAndSort(createPrivacyElements());
+        List<PrivacyDialog.PrivacyElement> elements;
+        synchronized (mLock) {
+            elements = isElementsValidLocked() ? mElements : null;
+        }
+        if (elements == null) {
+            elements = refreshElements();
+        }
         mPrivacyLogger.logShowDialogContents(elements);
         return elements;
     }
 
     protected abstract PrivacyType getProviderPrivacyType();
 
+    /** Marks the cached elements as stale, and rebuilds them on the background executor. */
+    private void invalidateElements() {
+        synchronized (mLock) {
+            mGeneration++;
+            if (mRefreshScheduled) {
+                return;
+            }
+            mRefreshScheduled = true;
+        }
+        mBackgroundExecutor.execute(() -> {
+            synchronized (mLock) {
+                mRefreshScheduled = false;
+            }
+            refreshElements();
+        });
+    }
+
+    private void onPackageChanged(String packageName, int uid) {
+        synchronized (mLock) {
+            if (uid < 0) {
+                for (int i = 0; i < mLabelCache.size(); i++) {
+                    mLabelCache.valueAt(i).remove(packageName);
+                }
+            } else {
+                ArrayMap<String, String> labels = mLabelCache.get(UserHandle.getUserId(uid));
+                if (labels != null) {
+                    labels.remove(packageName);
+                }
+            }
+        }
+        invalidateElements();
+    }
+
+    @GuardedBy("mLock")
+    private boolean isElementsValidLocked() {
+        if (mElements == null) {
+            return false;
+        }
+        for (int i = 0; i < mElements.size(); i++) {
+            if (!mElements.get(i).getActive()) {
+                return mSystemClock.elapsedRealtime() - mElementsTimestampMs
+                        < MAX_INACTIVE_ELEMENTS_AGE_MS;
+            }
+        }
+        return true;
+    }
+
+    /** Rebuilds the elements and caches them unless they became stale in the meantime. */
+    @WorkerThread
+    private List<PrivacyDialog.PrivacyElement> refreshElements() {
+        int generation;
+        synchronized (mLock) {
+            generation = mGeneration;
+        }
+        List<PrivacyDialog.PrivacyElement> elements = createPrivacyElements();
+        elements.sort(PRIVACY_ELEMENT_COMPARATOR);
+        elements = Collections.unmodifiableList(elements);
+        synchronized (mLock) {
+            if (generation == mGeneration) {
+                mElements = elements;
+                mElementsTimestampMs = mSystemClock.elapsedRealtime();
+            }
+        }
+        return elements;
+    }
+
     private List<PrivacyDialog.PrivacyElement> createPrivacyElements() {
-        List<UserInfo> userInfos = mUserTracker.getUserProfiles();
+        SparseArray<UserInfo> userInfos = getUserInfos();
         List<PermissionGroupUsage> permGroupUsages = getPermGroupUsages();
         mPrivacyLogger.logUnfilteredPermGroupUsage(permGroupUsages);
         List<PrivacyDialog.PrivacyElement> items = new ArrayList<>();
+        PrivacyType providerType = getProviderPrivacyType();
 
-        permGroupUsages.forEach(usage -> {
+        for (int i = 0; i < permGroupUsages.size(); i++) {
+            PermissionGroupUsage usage = permGroupUsages.get(i);
             PrivacyType type =
                     verifyType(PERM_GROUP_TO_PRIVACY_TYPE_MAP.get(usage.getPermissionGroupName()));
-            if (type == null) return;
+            if (type == null || type != providerType) continue;
 
             int userId = UserHandle.getUserId(usage.getUid());
-            Optional<UserInfo> optionalUserInfo = userInfos.stream()
-                    .filter(ui -> ui.id == userId)
-                    .findFirst();
-            if (!optionalUserInfo.isPresent() && userId != USER_SYSTEM) return;
-
-            UserInfo userInfo =
-                    optionalUserInfo.orElseGet(() -> mUserManager.getUserInfo(USER_SYSTEM));
+            UserInfo userInfo = userInfos.get(userId);
+            if (userInfo == null) {
+                if (userId != USER_SYSTEM) continue;
+                userInfo = mUserManager.getUserInfo(USER_SYSTEM);
+            }
 
             String appName = usage.isPhoneCall()
                     ? EMPTY_APP_NAME
-                    : getLabelForPackage(usage.getPackageName(), usage.getUid());
+                    : getLabelForPackage(usage.getPackageName(), userId);
 
             items.add(
                     new PrivacyDialog.PrivacyElement(
@@ -132,20 +304,28 @@ public abstract class PrivacyElementsProviderImpl implements
                             usage.getPermissionGroupName(),
                             /* navigationIntent= */ null)
             );
-        });
+        }
 
         return items;
     }
 
-    private Optional<ApplicationInfo> getApplicationInfo(String packageName, int userId) {
-        ApplicationInfo applicationInfo;
+    private SparseArray<UserInfo> getUserInfos() {
+        List<UserInfo> profiles = mUserTracker.getUserProfiles();
+        SparseArray<UserInfo> userInfos = new SparseArray<>(profiles.size());
+        for (int i = 0; i < profiles.size(); i++) {
+            UserInfo userInfo = profiles.get(i);
+            userInfos.put(userInfo.id, userInfo);
+        }
+        return userInfos;
+    }
+
+    @Nullable
+    private ApplicationInfo getApplicationInfo(String packageName, int userId) {
         try {
-            applicationInfo = mPackageManager
-                    .getApplicationInfoAsUser(packageName, /* flags= */ 0, userId);
-            return Optional.of(applicationInfo);
+            return mPackageManager.getApplicationInfoAsUser(packageName, /* flags= */ 0, userId);
         } catch (PackageManager.NameNotFoundException e) {
             Log.w(TAG, "Application info not found for: " + packageName);
-            return Optional.empty();
+            return null;
         }
     }
 
@@ -156,11 +336,28 @@ public abstract class PrivacyElementsProviderImpl implements
 
     @WorkerThread
     private String getLabelForPackage(String packageName, int userId) {
-        Optional<ApplicationInfo> applicationInfo = getApplicationInfo(packageName, userId);
+        synchronized (mLock) {
+            ArrayMap<String, String> labels = mLabelCache.get(userId);
+            String label = labels != null ? labels.get(packageName) : null;
+            if (label != null) {
+                return label;
+            }
+        }
 
-        if (!applicationInfo.isPresent()) return packageName;
+        ApplicationInfo applicationInfo = getApplicationInfo(packageName, userId);
+        String label = applicationInfo != null
+                ? applicationInfo.loadLabel(mPackageManager).toString()
+                : packageName;
 
-        return (String) applicationInfo.get().loadLabel(mPackageManager);
+        synchronized (mLock) {
+            ArrayMap<String, String> labels = mLabelCache.get(userId);
+            if (labels == null) {
+                labels = new ArrayMap<>();
+                mLabelCache.put(userId, labels);
+            }
+            labels.put(packageName, label);
+        }
+        return label;
     }
 
     /**
@@ -179,14 +376,6 @@ public abstract class PrivacyElementsProviderImpl implements
         }
     }
 
-    private List<PrivacyDialog.PrivacyElement> filterAndSort(
-            List<PrivacyDialog.PrivacyElement> list) {
-        return list.stream()
-                .filter(it -> it.getType() == getProviderPrivacyType())
-                .sorted(new PrivacyElementComparator())
-                .collect(Collectors.toList());
-    }
-
     private static class PrivacyElementComparator
             implements Comparator<PrivacyDialog.PrivacyElement> {
         @Override
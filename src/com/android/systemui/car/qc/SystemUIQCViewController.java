@@ -21,6 +21,7 @@ import android.net.Uri;
 import android.util.Log;
 
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 
 import com.android.car.qc.controller.BaseQCController;
 import com.android.car.qc.controller.LocalQCController;
@@ -47,11 +48,23 @@ public final class SystemUIQCViewController {
     private SystemUIQCView mView;
     private BaseQCController mController;
     private boolean mUserChangedCallbackRegistered;
+    private boolean mListening;
+    /** Whether the remote controller has to be bound to the current user when it listens. */
+    private boolean mRebindPending;
 
     private final UserTracker.Callback mUserChangedCallback = new UserTracker.Callback() {
         @Override
         public void onUserChanged(int newUser, Context userContext) {
-            rebindController();
+            // The binding to the previous user is stale, so it is dropped right away.
+            resetViewAndController();
+            if (mListening) {
+                bindRemoteQCView();
+                mController.listen(/* shouldListen= */ true);
+            } else {
+                // Only bind to the new user once the view is shown, rather than for every view
+                // at once while switching users.
+                mRebindPending = true;
+            }
         }
     };
 
@@ -69,16 +82,7 @@ public final class SystemUIQCViewController {
     public void attachView(SystemUIQCView view) {
         mView = view;
         if (mView.getRemoteUriString() != null) {
-            Uri uri = Uri.parse(mView.getRemoteUriString());
-            if (uri.getUserInfo() == null) {
-                // To bind to the content provider as the current user rather than user 0 (which
-                // SystemUI is running on), add the current user id followed by the '@' symbol
-                // before the Uri's authority.
-                uri = uri.buildUpon().authority(
-                        String.format("%s@%s", mUserTracker.getUserId(),
-                                uri.getAuthority())).build();
-            }
-            bindRemoteQCView(uri);
+            bindRemoteQCView();
             if (!mUserChangedCallbackRegistered) {
                 mUserTracker.addCallback(mUserChangedCallback, mContext.getMainExecutor());
                 mUserChangedCallbackRegistered = true;
@@ -92,6 +96,11 @@ public final class SystemUIQCViewController {
      * Toggles whether or not this view should listen to live updates.
      */
     public void listen(boolean shouldListen) {
+        mListening = shouldListen;
+        if (shouldListen && mRebindPending) {
+            // The stale controller was already dropped when the user changed.
+            bindRemoteQCView();
+        }
         if (mController != null) {
             mController.listen(shouldListen);
         }
@@ -101,6 +110,8 @@ public final class SystemUIQCViewController {
      * Destroys the current QCView and associated controller.
      */
     public void destroy() {
+        mListening = false;
+        mRebindPending = false;
         resetViewAndController();
         if (mUserChangedCallbackRegistered) {
             mUserTracker.removeCallback(mUserChangedCallback);
@@ -108,14 +119,6 @@ public final class SystemUIQCViewController {
         }
     }
 
-    private void rebindController() {
-        if (mView == null) {
-            return;
-        }
-        resetViewAndController();
-        attachView(mView);
-    }
-
     private void resetViewAndController() {
         if (mController != null) {
             mController.destroy();
@@ -126,12 +129,30 @@ public final class SystemUIQCViewController {
         }
     }
 
-    private void bindRemoteQCView(Uri uri) {
-        mController = new RemoteQCController(mContext, uri);
+    private void bindRemoteQCView() {
+        mRebindPending = false;
+        if (mView == null) {
+            return;
+        }
+        Uri uri = Uri.parse(mView.getRemoteUriString());
+        if (uri.getUserInfo() == null) {
+            // To bind to the content provider as the current user rather than user 0 (which
+            // SystemUI is running on), add the current user id followed by the '@' symbol
+            // before the Uri's authority.
+            uri = uri.buildUpon().authority(
+                    String.format("%s@%s", mUserTracker.getUserId(),
+                            uri.getAuthority())).build();
+        }
+        mController = createRemoteQCController(uri);
         mController.addObserver(mView);
         mController.bind();
     }
 
+    @VisibleForTesting
+    BaseQCController createRemoteQCController(Uri uri) {
+        return new RemoteQCController(mContext, uri);
+    }
+
     private void bindLocalQCView(String localClass) {
         BaseLocalQCProvider localQCProvider = createLocalQCProviderInstance(localClass, mContext);
         mController = new LocalQCController(mContext, localQCProvider);
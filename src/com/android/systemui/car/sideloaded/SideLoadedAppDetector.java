@@ -17,16 +17,28 @@
 package com.android.systemui.car.sideloaded;
 
 import android.annotation.NonNull;
+import android.annotation.Nullable;
 import android.app.ActivityTaskManager.RootTaskInfo;
+import android.content.BroadcastReceiver;
 import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.InstallSourceInfo;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.content.res.Resources;
+import android.net.Uri;
 import android.os.UserHandle;
+import android.util.ArrayMap;
+import android.util.ArraySet;
 import android.util.Log;
+import android.util.SparseArray;
 
+import androidx.annotation.VisibleForTesting;
+
+import com.android.internal.annotations.GuardedBy;
 import com.android.systemui.R;
 import com.android.systemui.car.CarDeviceProvisionedController;
 import com.android.systemui.dagger.SysUISingleton;
@@ -34,48 +46,123 @@ import com.android.systemui.dagger.qualifiers.Main;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.inject.Inject;
 
 /**
  * A class that detects unsafe apps.
  * An app is considered safe if is a system app or installed through allowed sources.
+ *
+ * The verdict of each package is cached per user along with the version it was computed for, and
+ * dropped when the package is added, replaced or removed. Checking the top task of a display is
+ * then a lookup, and the installed packages of a user are only scanned once. A verdict computed
+ * while its package changed, e.g. on a binder thread while the package was being replaced, is not
+ * cached, since it may be the verdict of the previous version.
  */
 @SysUISingleton
 public class SideLoadedAppDetector {
     private static final String TAG = SideLoadedAppDetector.class.getSimpleName();
+    private static final int PACKAGE_FLAGS = PackageManager.MATCH_DIRECT_BOOT_AWARE
+            | PackageManager.MATCH_DIRECT_BOOT_UNAWARE;
 
     private final PackageManager mPackageManager;
     private final CarDeviceProvisionedController mCarDeviceProvisionedController;
     private final List<String> mAllowedAppInstallSources;
 
+    private final Object mLock = new Object();
+    @GuardedBy("mLock")
+    private final SparseArray<UserVerdicts> mVerdictsByUser = new SparseArray<>();
+
+    @VisibleForTesting
+    final BroadcastReceiver mPackageChangedReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Uri data = intent.getData();
+            if (data == null) {
+                return;
+            }
+            onPackageChanged(getSendingUserId(), data.getSchemeSpecificPart());
+        }
+    };
+
     @Inject
-    public SideLoadedAppDetector(@Main Resources resources, PackageManager packageManager,
+    public SideLoadedAppDetector(Context context, @Main Resources resources,
+            PackageManager packageManager,
             CarDeviceProvisionedController deviceProvisionedController) {
         mAllowedAppInstallSources = Arrays.asList(
                 resources.getStringArray(R.array.config_allowedAppInstallSources));
         mPackageManager = packageManager;
         mCarDeviceProvisionedController = deviceProvisionedController;
+
+        IntentFilter packageFilter = new IntentFilter();
+        packageFilter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        packageFilter.addDataScheme("package");
+        context.registerReceiverForAllUsers(mPackageChangedReceiver, packageFilter,
+                /* broadcastPermission= */ null, /* scheduler= */ null);
     }
 
     boolean hasUnsafeInstalledApps() {
         int userId = mCarDeviceProvisionedController.getCurrentUser();
 
-        List<PackageInfo> packages = mPackageManager.getInstalledPackagesAsUser(
-                PackageManager.MATCH_DIRECT_BOOT_AWARE
-                        | PackageManager.MATCH_DIRECT_BOOT_UNAWARE,
+        Set<String> changedPackages;
+        synchronized (mLock) {
+            UserVerdicts userVerdicts = mVerdictsByUser.get(userId);
+            changedPackages = userVerdicts != null && userVerdicts.mScanned
+                    ? userVerdicts.drainChangedPackages() : null;
+        }
+        if (changedPackages == null) {
+            return scanInstalledApps(userId);
+        }
+
+        // Only the packages changed since the last scan need to be checked again.
+        for (String packageName : changedPackages) {
+            getVerdict(userId, packageName);
+        }
+        synchronized (mLock) {
+            return mVerdictsByUser.get(userId).hasUnsafeApps();
+        }
+    }
+
+    private boolean scanInstalledApps(int userId) {
+        long generation;
+        synchronized (mLock) {
+            generation = getOrCreateUserVerdicts(userId).mGeneration;
+        }
+        List<PackageInfo> packages = mPackageManager.getInstalledPackagesAsUser(PACKAGE_FLAGS,
                 userId);
+        Map<String, Verdict> verdicts = new ArrayMap<>(packages.size());
+        boolean hasUnsafeApps = false;
         for (PackageInfo info : packages) {
-            if (info.applicationInfo == null) {
-                Log.w(TAG, info.packageName + " does not have application info.");
-                return true;
+            Verdict verdict = getCachedVerdict(userId, info.packageName,
+                    info.getLongVersionCode());
+            if (verdict == null) {
+                if (info.applicationInfo == null) {
+                    Log.w(TAG, info.packageName + " does not have application info.");
+                }
+                boolean safe = info.applicationInfo != null && isSafe(info.applicationInfo);
+                verdict = new Verdict(info.getLongVersionCode(), safe);
             }
+            verdicts.put(info.packageName, verdict);
+            hasUnsafeApps |= !verdict.mSafe;
+        }
 
-            if (!isSafe(info.applicationInfo)) {
-                return true;
+        synchronized (mLock) {
+            UserVerdicts userVerdicts = getOrCreateUserVerdicts(userId);
+            for (Map.Entry<String, Verdict> entry : verdicts.entrySet()) {
+                if (userVerdicts.isChangedSince(entry.getKey(), generation)) {
+                    // Checked again by the next call.
+                    userVerdicts.mChangedPackages.add(entry.getKey());
+                } else {
+                    userVerdicts.mVerdicts.putIfAbsent(entry.getKey(), entry.getValue());
+                }
             }
+            userVerdicts.mScanned = true;
         }
-        return false;
+        return hasUnsafeApps;
     }
 
     boolean isSafe(@NonNull RootTaskInfo taskInfo) {
@@ -92,24 +179,59 @@ public class SideLoadedAppDetector {
             return false;
         }
 
+        Verdict verdict = getVerdict(mCarDeviceProvisionedController.getCurrentUser(),
+                packageName);
+        return verdict != null && verdict.mSafe;
+    }
+
+    /**
+     * Returns the verdict of the given package, computing and caching it if needed, or
+     * {@code null} if the package is not installed for the user.
+     */
+    @Nullable
+    private Verdict getVerdict(int userId, @NonNull String packageName) {
+        long generation;
+        synchronized (mLock) {
+            UserVerdicts userVerdicts = getOrCreateUserVerdicts(userId);
+            Verdict verdict = userVerdicts.mVerdicts.get(packageName);
+            if (verdict != null) {
+                return verdict;
+            }
+            generation = userVerdicts.mGeneration;
+        }
+
         ApplicationInfo applicationInfo;
         try {
-            int userId = mCarDeviceProvisionedController.getCurrentUser();
             applicationInfo = mPackageManager.getApplicationInfoAsUser(packageName,
-                    PackageManager.MATCH_DIRECT_BOOT_AWARE
-                            | PackageManager.MATCH_DIRECT_BOOT_UNAWARE,
-                    UserHandle.of(userId));
+                    PACKAGE_FLAGS, UserHandle.of(userId));
 
             if (applicationInfo == null) {
                 Log.e(TAG, packageName + " did not have an application info!");
-                return false;
+                return null;
             }
         } catch (PackageManager.NameNotFoundException e) {
             Log.e(TAG, "Could not get application info for package:" + packageName, e);
-            return false;
+            return null;
         }
 
-        return isSafe(applicationInfo);
+        Verdict verdict = new Verdict(applicationInfo.longVersionCode, isSafe(applicationInfo));
+        synchronized (mLock) {
+            UserVerdicts userVerdicts = getOrCreateUserVerdicts(userId);
+            if (!userVerdicts.isChangedSince(packageName, generation)) {
+                userVerdicts.mVerdicts.put(packageName, verdict);
+            }
+        }
+        return verdict;
+    }
+
+    /** Returns the cached verdict of the given version of the package, if any. */
+    @Nullable
+    private Verdict getCachedVerdict(int userId, String packageName, long versionCode) {
+        synchronized (mLock) {
+            UserVerdicts userVerdicts = mVerdictsByUser.get(userId);
+            Verdict verdict = userVerdicts != null ? userVerdicts.mVerdicts.get(packageName) : null;
+            return verdict != null && verdict.mVersionCode == versionCode ? verdict : null;
+        }
     }
 
     private boolean isSafe(@NonNull ApplicationInfo applicationInfo) {
@@ -136,4 +258,83 @@ public class SideLoadedAppDetector {
             return false;
         }
     }
+
+    @VisibleForTesting
+    void onPackageChanged(int userId, String packageName) {
+        synchronized (mLock) {
+            if (userId == UserHandle.USER_ALL) {
+                for (int i = 0; i < mVerdictsByUser.size(); i++) {
+                    mVerdictsByUser.valueAt(i).invalidate(packageName);
+                }
+                return;
+            }
+            UserVerdicts userVerdicts = mVerdictsByUser.get(userId);
+            if (userVerdicts != null) {
+                userVerdicts.invalidate(packageName);
+            }
+        }
+    }
+
+    @GuardedBy("mLock")
+    private UserVerdicts getOrCreateUserVerdicts(int userId) {
+        UserVerdicts userVerdicts = mVerdictsByUser.get(userId);
+        if (userVerdicts == null) {
+            userVerdicts = new UserVerdicts();
+            mVerdictsByUser.put(userId, userVerdicts);
+        }
+        return userVerdicts;
+    }
+
+    /** Whether a version of a package is safe. */
+    private static final class Verdict {
+        private final long mVersionCode;
+        private final boolean mSafe;
+
+        Verdict(long versionCode, boolean safe) {
+            mVersionCode = versionCode;
+            mSafe = safe;
+        }
+    }
+
+    /** The verdicts of the packages of a user. */
+    private static final class UserVerdicts {
+        private final Map<String, Verdict> mVerdicts = new ArrayMap<>();
+        /** Packages changed since the installed packages were last checked. */
+        private Set<String> mChangedPackages = new ArraySet<>();
+        /** Whether all the installed packages were checked once. */
+        private boolean mScanned;
+        /** Number of package changes of the user. */
+        private long mGeneration;
+        /** Package name -> value of {@link #mGeneration} after its last change. */
+        private final Map<String, Long> mChangeGenerations = new ArrayMap<>();
+
+        void invalidate(String packageName) {
+            mVerdicts.remove(packageName);
+            mChangeGenerations.put(packageName, ++mGeneration);
+            if (mScanned) {
+                mChangedPackages.add(packageName);
+            }
+        }
+
+        /** Whether the package changed after {@link #mGeneration} had the given value. */
+        boolean isChangedSince(String packageName, long generation) {
+            Long changeGeneration = mChangeGenerations.get(packageName);
+            return changeGeneration != null && changeGeneration > generation;
+        }
+
+        Set<String> drainChangedPackages() {
+            Set<String> changedPackages = mChangedPackages;
+            mChangedPackages = new ArraySet<>();
+            return changedPackages;
+        }
+
+        boolean hasUnsafeApps() {
+            for (Verdict verdict : mVerdicts.values()) {
+                if (!verdict.mSafe) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
 }
@@ -67,6 +67,9 @@ public class UserNameViewController {
     private final BroadcastReceiver mUserUpdateReceiver = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
+            // Drop the cached icon first, in case this is received before the cache is notified.
+            mUserIconProvider.invalidateUserIcon(mContext,
+                    intent.getIntExtra(Intent.EXTRA_USER_HANDLE, UserHandle.USER_NULL));
             updateUser(mUserTracker.getUserId());
         }
     };
@@ -17,8 +17,12 @@
 package com.android.systemui.car.statusicon;
 
 import android.annotation.DimenRes;
+import android.annotation.DrawableRes;
 import android.annotation.LayoutRes;
+import android.content.res.Configuration;
+import android.content.res.Resources;
 import android.graphics.drawable.Drawable;
+import android.util.SparseArray;
 import android.view.View;
 import android.widget.ImageView;
 
@@ -30,6 +34,7 @@ import com.android.systemui.R;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * Abstract class to extend to control views that display a certain status icon.
@@ -42,6 +47,18 @@ public abstract class StatusIconController {
             new MutableLiveData<>(mStatusIconData);
     private final Map<ImageView, Observer<StatusIconData>> mObserverMap = new HashMap<>();
 
+    // The status last provided to the observing views, to skip the updates that change nothing.
+    private boolean mHasPostedStatus;
+    private Drawable mPostedIconDrawable;
+    private int mPostedIconLevel;
+    private String mPostedContentDescription;
+    private boolean mPostedIsIconVisible;
+
+    // Drawables loaded through getCachedDrawable(), for the theme and configuration below.
+    private final SparseArray<Drawable> mDrawableCache = new SparseArray<>();
+    private final Configuration mDrawableCacheConfiguration = new Configuration();
+    private Resources.Theme mDrawableCacheTheme;
+
     /**
      * Interface definition for a callback to be invoked when a status icon is updated.
      */
@@ -55,11 +72,21 @@ public abstract class StatusIconController {
     }
 
     private OnStatusUpdatedListener mOnStatusUpdatedListener;
+    // When set, the icon views are updated on the next frame instead of right away.
+    private StatusIconUpdateScheduler mUpdateScheduler;
 
     public void setOnStatusUpdatedListener(OnStatusUpdatedListener l) {
         mOnStatusUpdatedListener = l;
     }
 
+    /**
+     * Sets the scheduler through which the status updates are applied to the icon views, or
+     * {@code null} to apply them right away.
+     */
+    void setUpdateScheduler(StatusIconUpdateScheduler updateScheduler) {
+        mUpdateScheduler = updateScheduler;
+    }
+
     /**
      * Registers an {@link ImageView} to contain the icon that this controller controls.
      */
@@ -111,6 +138,30 @@ public abstract class StatusIconController {
         mStatusIconData.setIsIconVisible(isVisible);
     }
 
+    /**
+     * Returns the drawable of the given resource in the given theme, loading it only the first time
+     * it is requested. The drawables are loaded again once the theme or the configuration of the
+     * resources changes.
+     */
+    protected final Drawable getCachedDrawable(Resources resources, @DrawableRes int resId,
+            Resources.Theme theme) {
+        Configuration configuration = resources.getConfiguration();
+        if (theme != mDrawableCacheTheme || (configuration != null
+                && mDrawableCacheConfiguration.diff(configuration) != 0)) {
+            mDrawableCache.clear();
+            mDrawableCacheTheme = theme;
+            if (configuration != null) {
+                mDrawableCacheConfiguration.setTo(configuration);
+            }
+        }
+        Drawable drawable = mDrawableCache.get(resId);
+        if (drawable == null) {
+            drawable = resources.getDrawable(resId, theme);
+            mDrawableCache.put(resId, drawable);
+        }
+        return drawable;
+    }
+
     /**
      * Lifecycle method executed when this controller is destroyed to clean up any references.
      */
@@ -119,15 +170,43 @@ public abstract class StatusIconController {
 
     /**
      * Provides observing views with the {@link StatusIconData} and causes them to update
-     * themselves accordingly through {@link #updateIconView}.
+     * themselves accordingly through {@link #updateIconView}. Does nothing if the status did not
+     * change since it was last provided.
      */
     protected void onStatusUpdated() {
-        mStatusIconLiveData.setValue(mStatusIconData);
+        Drawable iconDrawable = mStatusIconData.getIconDrawable();
+        // The level is compared too, as some drawables (e.g. SignalDrawable) encode their state
+        // in it.
+        int iconLevel = iconDrawable != null ? iconDrawable.getLevel() : 0;
+        if (mHasPostedStatus
+                && iconDrawable == mPostedIconDrawable
+                && iconLevel == mPostedIconLevel
+                && mStatusIconData.getIsIconVisible() == mPostedIsIconVisible
+                && Objects.equals(mStatusIconData.getContentDescription(),
+                        mPostedContentDescription)) {
+            return;
+        }
+        mHasPostedStatus = true;
+        mPostedIconDrawable = iconDrawable;
+        mPostedIconLevel = iconLevel;
+        mPostedIsIconVisible = mStatusIconData.getIsIconVisible();
+        mPostedContentDescription = mStatusIconData.getContentDescription();
+
+        if (mUpdateScheduler != null) {
+            mUpdateScheduler.scheduleUpdate(this);
+        } else {
+            applyStatusToIconViews();
+        }
         if (mOnStatusUpdatedListener != null) {
             mOnStatusUpdatedListener.onStatusUpdated(this);
         }
     }
 
+    /** Provides observing views with the {@link StatusIconData}. */
+    void applyStatusToIconViews() {
+        mStatusIconLiveData.setValue(mStatusIconData);
+    }
+
     /**
      * Updates the icon view based on the current {@link StatusIconData}.
      */
@@ -64,6 +64,7 @@ public abstract class StatusIconGroupContainerController {
     private final ConfigurationController mConfigurationController;
     private final Provider<SystemUIQCViewController> mQCViewControllerProvider;
     private final Map<Class<?>, Provider<StatusIconController>> mIconControllerCreators;
+    private final StatusIconUpdateScheduler mStatusIconUpdateScheduler;
     private String mIconTag;
     private String[] mStatusIconControllerNames;
     private final Set<StatusIconController> mStatusIconControllers;
@@ -80,10 +81,11 @@ public abstract class StatusIconGroupContainerController {
             BroadcastDispatcher broadcastDispatcher,
             ConfigurationController configurationController,
             Provider<SystemUIQCViewController> qcViewControllerProvider,
-            Map<Class<?>, Provider<StatusIconController>> iconControllerCreators) {
+            Map<Class<?>, Provider<StatusIconController>> iconControllerCreators,
+            StatusIconUpdateScheduler statusIconUpdateScheduler) {
         this(context, userTracker, carServiceProvider, resources, broadcastDispatcher,
                 configurationController, qcViewControllerProvider, iconControllerCreators,
-                /* qcPanelReadOnlyIconsController= */ null);
+                statusIconUpdateScheduler, /* qcPanelReadOnlyIconsController= */ null);
     }
 
     public StatusIconGroupContainerController(
@@ -95,6 +97,7 @@ public abstract class StatusIconGroupContainerController {
             ConfigurationController configurationController,
             Provider<SystemUIQCViewController> qcViewControllerProvider,
             Map<Class<?>, Provider<StatusIconController>> iconControllerCreators,
+            StatusIconUpdateScheduler statusIconUpdateScheduler,
             QCPanelReadOnlyIconsController qcPanelReadOnlyIconsController) {
         mContext = context;
         mUserTracker = userTracker;
@@ -104,6 +107,7 @@ public abstract class StatusIconGroupContainerController {
         mConfigurationController = configurationController;
         mQCViewControllerProvider = qcViewControllerProvider;
         mIconControllerCreators = iconControllerCreators;
+        mStatusIconUpdateScheduler = statusIconUpdateScheduler;
         mQCPanelReadOnlyIconsController = qcPanelReadOnlyIconsController;
 
         initResources();
@@ -159,6 +163,8 @@ public abstract class StatusIconGroupContainerController {
             entryPointView.setId(statusIconController.getId());
 
             ImageView statusIconView = entryPointView.findViewWithTag(mIconTag);
+            // Coalesces the updates of all the status icons to one per frame.
+            statusIconController.setUpdateScheduler(mStatusIconUpdateScheduler);
             statusIconController.registerIconView(statusIconView);
             statusIconView.setColorFilter(iconNotHighlightedColor);
 
@@ -215,6 +221,7 @@ public abstract class StatusIconGroupContainerController {
             panelController.destroyPanel();
         }
         for (StatusIconController controller : mStatusIconControllers) {
+            mStatusIconUpdateScheduler.cancelUpdate(controller);
             controller.onDestroy();
         }
         mStatusIconControllers.clear();
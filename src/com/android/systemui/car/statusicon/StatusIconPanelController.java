@@ -42,6 +42,7 @@ import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
+import androidx.asynclayoutinflater.view.AsyncLayoutInflater;
 
 import com.android.car.qc.QCItem;
 import com.android.car.qc.view.QCView;
@@ -85,6 +86,7 @@ public class StatusIconPanelController {
     private final int mYOffsetPixel;
     private final boolean mIsDisabledWhileDriving;
     private final ArrayList<SystemUIQCViewController> mQCViewControllers = new ArrayList<>();
+    private final AsyncLayoutInflater mAsyncLayoutInflater;
 
     private PopupWindow mPanel;
     private @LayoutRes int mPanelLayoutRes;
@@ -98,12 +100,19 @@ public class StatusIconPanelController {
     private float mDimValue = -1.0f;
     private View.OnClickListener mOnClickListener;
     private boolean mIsPanelDestroyed;
+    /** Whether {@link #mPanel} does not match the current layout or configuration anymore. */
+    private boolean mIsPanelStale;
+    /** Incremented for each inflation of the panel content, to drop outdated inflations. */
+    private int mPanelContentGeneration;
 
     private final ConfigurationController.ConfigurationListener mConfigurationListener =
             new ConfigurationController.ConfigurationListener() {
                 @Override
                 public void onLayoutDirectionChanged(boolean isLayoutRtl) {
-                    recreatePanel();
+                    if (isPanelShowing()) {
+                        mPanel.dismiss();
+                    }
+                    inflatePanelAsync();
                 }
             };
 
@@ -215,6 +224,7 @@ public class StatusIconPanelController {
         mQCViewControllerProvider = qcViewControllerProvider;
         mQCPanelReadOnlyIconsController = qcPanelReadOnlyIconsController;
         mIdentifier = Integer.toString(System.identityHashCode(this));
+        mAsyncLayoutInflater = new AsyncLayoutInflater(mContext);
 
         mIconTag = mContext.getResources().getString(R.string.qc_icon_tag);
         mIconHighlightedColor = mContext.getColor(R.color.status_icon_highlighted_color);
@@ -329,8 +339,8 @@ public class StatusIconPanelController {
         }
         mPanelLayoutRes = layoutRes;
         mPanelWidthRes = widthRes;
-        // Pre-create panel to improve perceived UI performance
-        createPanel();
+        // Pre-create panel in the background to improve perceived UI performance
+        inflatePanelAsync();
 
         mOnClickListener = v -> {
             if (mIsDisabledWhileDriving && mCarUxRestrictionsUtil.getCurrentRestrictions()
@@ -341,7 +351,7 @@ public class StatusIconPanelController {
                 return;
             }
 
-            if (mPanel == null && !createPanel()) {
+            if ((mPanel == null || mIsPanelStale) && !createPanel()) {
                 return;
             }
 
@@ -463,10 +473,42 @@ public class StatusIconPanelController {
             return false;
         }
 
+        // Supersedes any background inflation still in progress.
+        mPanelContentGeneration++;
+        setUpPanel((ViewGroup) LayoutInflater.from(mContext).inflate(mPanelLayoutRes,
+                /* root= */ null));
+        return true;
+    }
+
+    /**
+     * Inflates the content of the panel in the background, and replaces {@link mPanel} with it
+     * once done. Until then, {@link mPanel} is kept but marked as stale, and opening the panel
+     * inflates its content synchronously instead.
+     */
+    private void inflatePanelAsync() {
+        if (mPanelWidthRes == 0 || mPanelLayoutRes == 0) {
+            return;
+        }
+
+        mIsPanelStale = true;
+        int generation = ++mPanelContentGeneration;
+        mAsyncLayoutInflater.inflate(mPanelLayoutRes, /* parent= */ null,
+                (view, resid, parent) -> {
+                    if (mIsPanelDestroyed || generation != mPanelContentGeneration) {
+                        return;
+                    }
+                    setUpPanel((ViewGroup) view);
+                });
+    }
+
+    private void setUpPanel(ViewGroup panelContent) {
+        // Release the panel being replaced, if any.
+        reset();
+        mIsPanelStale = false;
+
         int panelWidth = mContext.getResources().getDimensionPixelSize(mPanelWidthRes);
 
-        mPanelContent = (ViewGroup) LayoutInflater.from(mContext).inflate(mPanelLayoutRes,
-                /* root= */ null);
+        mPanelContent = panelContent;
         mPanelContent.setLayoutDirection(View.LAYOUT_DIRECTION_LOCALE);
         findQcHeaderViews(mPanelContent);
         findQcViews(mPanelContent);
@@ -485,8 +527,6 @@ public class StatusIconPanelController {
             registerFocusListener(false);
             mQCViewControllers.forEach(controller -> controller.listen(false));
         });
-
-        return true;
     }
 
     private void dimBehind(PopupWindow popupWindow) {
@@ -534,11 +574,6 @@ public class StatusIconPanelController {
         mQCViewControllers.clear();
     }
 
-    private void recreatePanel() {
-        reset();
-        createPanel();
-    }
-
     private void findQcHeaderViews(ViewGroup rootView) {
         for (int i = 0; i < rootView.getChildCount(); i++) {
             View v = rootView.getChildAt(i);
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.systemui.car.statusicon;
+
+import android.annotation.MainThread;
+import android.annotation.NonNull;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.view.Choreographer;
+
+import com.android.systemui.Dumpable;
+import com.android.systemui.dagger.SysUISingleton;
+import com.android.systemui.dump.DumpManager;
+import com.android.systemui.util.time.SystemClock;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Inject;
+
+/**
+ * Applies the status updates of the {@link StatusIconController}(s) of all the status icon groups
+ * to their icon views once per frame, so that a burst of status callbacks only updates each icon
+ * view once.
+ *
+ * The controllers are marked dirty when their status changes, and their icon views are updated on
+ * the next {@link Choreographer} frame. The number of updates of each icon is kept for dump.
+ */
+@SysUISingleton
+public class StatusIconUpdateScheduler implements Choreographer.FrameCallback, Dumpable {
+    private static final String TAG = StatusIconUpdateScheduler.class.getSimpleName();
+
+    private final SystemClock mSystemClock;
+    private final Set<StatusIconController> mDirtyControllers = new ArraySet<>();
+    /** Icon controller class name -> update counters, for dump. */
+    private final Map<String, UpdateCounter> mUpdateCounters = new ArrayMap<>();
+
+    private Choreographer mChoreographer;
+    private boolean mFrameCallbackPosted;
+
+    @Inject
+    public StatusIconUpdateScheduler(DumpManager dumpManager, SystemClock systemClock) {
+        mSystemClock = systemClock;
+        dumpManager.registerDumpable(TAG, this);
+    }
+
+    /** Updates the icon views of the given controller with its status on the next frame. */
+    @MainThread
+    void scheduleUpdate(StatusIconController controller) {
+        getUpdateCounter(controller).mRequestedUpdates++;
+        if (!mDirtyControllers.add(controller) || mFrameCallbackPosted) {
+            return;
+        }
+        if (mChoreographer == null) {
+            mChoreographer = Choreographer.getInstance();
+        }
+        mFrameCallbackPosted = true;
+        mChoreographer.postFrameCallback(this);
+    }
+
+    /** Drops the pending update of the given controller, e.g. when it is destroyed. */
+    @MainThread
+    void cancelUpdate(StatusIconController controller) {
+        mDirtyControllers.remove(controller);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mFrameCallbackPosted = false;
+        if (mDirtyControllers.isEmpty()) {
+            return;
+        }
+        StatusIconController[] controllers =
+                mDirtyControllers.toArray(new StatusIconController[0]);
+        mDirtyControllers.clear();
+        for (StatusIconController controller : controllers) {
+            getUpdateCounter(controller).mAppliedUpdates++;
+            controller.applyStatusToIconViews();
+        }
+    }
+
+    private UpdateCounter getUpdateCounter(StatusIconController controller) {
+        String name = controller.getClass().getSimpleName();
+        UpdateCounter counter = mUpdateCounters.get(name);
+        if (counter == null) {
+            counter = new UpdateCounter(mSystemClock.uptimeMillis());
+            mUpdateCounters.put(name, counter);
+        }
+        return counter;
+    }
+
+    @Override
+    public void dump(@NonNull PrintWriter pw, @NonNull String[] args) {
+        pw.println(TAG + ":");
+        pw.println("  pending updates: " + mDirtyControllers.size());
+        long now = mSystemClock.uptimeMillis();
+        for (Map.Entry<String, UpdateCounter> entry : mUpdateCounters.entrySet()) {
+            UpdateCounter counter = entry.getValue();
+            float elapsedSeconds = Math.max(1, now - counter.mStartTime) / 1000f;
+            pw.printf("  %s: requested=%d (%.2f/s), applied=%d (%.2f/s)\n", entry.getKey(),
+                    counter.mRequestedUpdates, counter.mRequestedUpdates / elapsedSeconds,
+                    counter.mAppliedUpdates, counter.mAppliedUpdates / elapsedSeconds);
+        }
+    }
+
+    private static final class UpdateCounter {
+        private final long mStartTime;
+        private long mRequestedUpdates;
+        private long mAppliedUpdates;
+
+        UpdateCounter(long startTime) {
+            mStartTime = startTime;
+        }
+    }
+}
@@ -118,13 +118,13 @@ public class MediaVolumeStatusIconController extends StatusIconController {
         if (mCarAudioManager != null) {
             int currentMediaVolumeLevel = mCarAudioManager.getGroupVolume(mZoneId, mGroupId);
             if (currentMediaVolumeLevel == mMinMediaVolume) {
-                mMediaVolumeStatusIconDrawable = mResources.getDrawable(
+                mMediaVolumeStatusIconDrawable = getCachedDrawable(mResources,
                         R.drawable.car_ic_media_volume_off, mContext.getTheme());
             } else if (currentMediaVolumeLevel <= (mMaxMediaVolume / 2)) {
-                mMediaVolumeStatusIconDrawable = mResources.getDrawable(
+                mMediaVolumeStatusIconDrawable = getCachedDrawable(mResources,
                         R.drawable.car_ic_media_volume_down, mContext.getTheme());
             } else {
-                mMediaVolumeStatusIconDrawable = mResources.getDrawable(
+                mMediaVolumeStatusIconDrawable = getCachedDrawable(mResources,
                         R.drawable.car_ic_media_volume_up, mContext.getTheme());
             }
             updateStatus();
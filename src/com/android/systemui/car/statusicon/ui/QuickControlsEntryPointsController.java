@@ -27,6 +27,7 @@ import com.android.systemui.car.CarServiceProvider;
 import com.android.systemui.car.qc.SystemUIQCViewController;
 import com.android.systemui.car.statusicon.StatusIconController;
 import com.android.systemui.car.statusicon.StatusIconGroupContainerController;
+import com.android.systemui.car.statusicon.StatusIconUpdateScheduler;
 import com.android.systemui.dagger.qualifiers.Main;
 import com.android.systemui.settings.UserTracker;
 import com.android.systemui.statusbar.policy.ConfigurationController;
@@ -50,10 +51,11 @@ public class QuickControlsEntryPointsController extends StatusIconGroupContainer
             ConfigurationController configurationController,
             Provider<SystemUIQCViewController> qcViewControllerProvider,
             Map<Class<?>, Provider<StatusIconController>> iconControllerCreators,
+            StatusIconUpdateScheduler statusIconUpdateScheduler,
             QCPanelReadOnlyIconsController qcPanelReadOnlyIconsController) {
         super(context, userTracker, carServiceProvider, resources, broadcastDispatcher,
                 configurationController, qcViewControllerProvider, iconControllerCreators,
-                qcPanelReadOnlyIconsController);
+                statusIconUpdateScheduler, qcPanelReadOnlyIconsController);
     }
 
     @Override
@@ -106,7 +106,7 @@ public class SignalStatusIconController extends StatusIconController implements
     @Override
     public void setWifiIndicators(WifiIndicators indicators) {
         mIsWifiEnabledAndConnected = indicators.enabled && indicators.statusIcon.visible;
-        mWifiSignalIconDrawable = mResources.getDrawable(indicators.statusIcon.icon,
+        mWifiSignalIconDrawable = getCachedDrawable(mResources, indicators.statusIcon.icon,
                 mContext.getTheme());
         updateStatus();
     }
@@ -25,6 +25,7 @@ import com.android.systemui.car.CarServiceProvider;
 import com.android.systemui.car.qc.SystemUIQCViewController;
 import com.android.systemui.car.statusicon.StatusIconController;
 import com.android.systemui.car.statusicon.StatusIconGroupContainerController;
+import com.android.systemui.car.statusicon.StatusIconUpdateScheduler;
 import com.android.systemui.dagger.qualifiers.Main;
 import com.android.systemui.settings.UserTracker;
 import com.android.systemui.statusbar.policy.ConfigurationController;
@@ -47,9 +48,11 @@ public class UserPickerReadOnlyIconsController extends StatusIconGroupContainerC
             BroadcastDispatcher broadcastDispatcher,
             ConfigurationController configurationController,
             Provider<SystemUIQCViewController> qcViewControllerProvider,
-            Map<Class<?>, Provider<StatusIconController>> iconControllerCreators) {
+            Map<Class<?>, Provider<StatusIconController>> iconControllerCreators,
+            StatusIconUpdateScheduler statusIconUpdateScheduler) {
         super(context, userTracker, carServiceProvider, resources, broadcastDispatcher,
-                configurationController, qcViewControllerProvider, iconControllerCreators);
+                configurationController, qcViewControllerProvider, iconControllerCreators,
+                statusIconUpdateScheduler);
     }
 
     @Override
@@ -21,15 +21,15 @@ import static android.app.WindowConfiguration.WINDOWING_MODE_FULLSCREEN;
 import static android.app.WindowConfiguration.WINDOWING_MODE_MULTI_WINDOW;
 import static android.window.DisplayAreaOrganizer.FEATURE_DEFAULT_TASK_CONTAINER;
 
+import android.annotation.Nullable;
+import android.app.ActivityManager.RunningTaskInfo;
 import android.app.ActivityTaskManager;
 import android.app.ActivityTaskManager.RootTaskInfo;
 import android.content.ComponentName;
 import android.content.Context;
-import android.content.Intent;
-import android.content.pm.PackageManager;
-import android.content.pm.ResolveInfo;
 import android.os.RemoteException;
 import android.util.Log;
+import android.util.SparseArray;
 import android.view.View;
 import android.view.ViewGroup;
 
@@ -39,6 +39,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 /**
  * CarSystemBarButtons can optionally have selection state that toggles certain visual indications
@@ -58,11 +59,19 @@ public class ButtonSelectionStateController {
     protected ButtonMap mButtonsByCategory = new ButtonMap();
     protected ButtonMap mButtonsByPackage = new ButtonMap();
     protected ButtonMap mButtonsByComponentName = new ButtonMap();
+    /** Buttons currently selected by this controller, across all displays. */
     protected HashSet<CarSystemBarButton> mSelectedButtons;
 
-    public ButtonSelectionStateController(Context context) {
+    private final PackageCategoryCache mPackageCategoryCache;
+    /** Top activity the selection of each display was last updated for. */
+    private final SparseArray<ComponentName> mTopActivities = new SparseArray<>();
+
+    public ButtonSelectionStateController(Context context, Executor mainExecutor,
+            Executor backgroundExecutor) {
         mContext = context;
         mSelectedButtons = new HashSet<>();
+        mPackageCategoryCache = new PackageCategoryCache(context, mainExecutor,
+                backgroundExecutor, this::onPackageCategoriesChanged);
     }
 
     /**
@@ -91,6 +100,8 @@ public class ButtonSelectionStateController {
         mButtonsByComponentName.clear();
         mSelectedButtons.clear();
         mRegisteredViews.clear();
+        mTopActivities.clear();
+        mPackageCategoryCache.setCategories(mButtonsByCategory.keySet());
     }
 
     /**
@@ -101,6 +112,7 @@ public class ButtonSelectionStateController {
      * They will then be compared with the supplied StackInfo list.
      * The StackInfo is expected to be supplied in order of recency and StackInfo will only be used
      * for consideration if it has the same displayId as the CarSystemBarButton.
+     * Only the buttons whose selection state changes are updated.
      *
      * @param taskInfoList of the currently running application
      * @param validDisplay index of the valid display
@@ -123,30 +135,68 @@ public class ButtonSelectionStateController {
             // No stack was found that was on the same display as the buttons thus return
             return;
         }
-        int displayId = validTaskInfo.displayId;
+        updateTopActivity(validTaskInfo.displayId, getTopActivity(validTaskInfo));
+    }
+
+    /**
+     * Selects the buttons associated with a task that was just moved to front, using the task
+     * info carried by the event instead of querying the task stack. Tasks that are not fullscreen
+     * tasks of the default task container are left to the next {@link #taskChanged(List)}, as
+     * their top activity may not be the one visible on the display.
+     *
+     * @param taskInfo of the task moved to front
+     */
+    protected void taskMovedToFront(RunningTaskInfo taskInfo) {
+        if (taskInfo.topActivity == null
+                || taskInfo.displayAreaFeatureId != FEATURE_DEFAULT_TASK_CONTAINER
+                || taskInfo.getWindowingMode() == WINDOWING_MODE_MULTI_WINDOW) {
+            return;
+        }
+        updateTopActivity(taskInfo.displayId, taskInfo.topActivity);
+    }
 
-        // Clear all registered views
-        clearAllSelectedButtons(displayId);
+    /** Updates the selection of the displays with the categories of the packages. */
+    private void onPackageCategoriesChanged() {
+        for (int i = 0; i < mTopActivities.size(); i++) {
+            updateTopActivity(mTopActivities.keyAt(i), mTopActivities.valueAt(i));
+        }
+    }
 
-        HashSet<CarSystemBarButton> selectedButtons = findSelectedButtons(validTaskInfo);
+    /**
+     * Selects the buttons of the display that are associated with the given top activity, and
+     * unselects its other buttons.
+     */
+    private void updateTopActivity(int displayId, @Nullable ComponentName topActivity) {
+        mTopActivities.put(displayId, topActivity);
+        updateSelectedButtons(displayId,
+                topActivity != null ? findSelectedButtons(topActivity) : null);
+    }
 
-        if (selectedButtons != null) {
-            selectedButtons.forEach(carSystemBarButton -> {
-                if (carSystemBarButton.getDisplayId() == displayId) {
-                    carSystemBarButton.setSelected(true);
-                    mSelectedButtons.add(carSystemBarButton);
-                }
-            });
+    /**
+     * Selects the given buttons of the display and unselects its other buttons, only touching the
+     * buttons whose selection state is not the expected one.
+     */
+    private void updateSelectedButtons(int displayId,
+            @Nullable Set<CarSystemBarButton> buttonsToSelect) {
+        for (CarSystemBarButton carSystemBarButton : mRegisteredViews) {
+            if (carSystemBarButton.getDisplayId() != displayId) {
+                continue;
+            }
+            boolean selected = buttonsToSelect != null
+                    && buttonsToSelect.contains(carSystemBarButton);
+            if (carSystemBarButton.getSelected() != selected) {
+                carSystemBarButton.setSelected(selected);
+            }
+            if (selected) {
+                mSelectedButtons.add(carSystemBarButton);
+            } else {
+                mSelectedButtons.remove(carSystemBarButton);
+            }
         }
     }
 
     protected void clearAllSelectedButtons(int displayId) {
-        mRegisteredViews.forEach(carSystemBarButton -> {
-            if (carSystemBarButton.getDisplayId() == displayId) {
-                carSystemBarButton.setSelected(false);
-            }
-        });
-        mSelectedButtons.clear();
+        updateSelectedButtons(displayId, /* buttonsToSelect= */ null);
     }
 
     /**
@@ -169,6 +219,9 @@ public class ButtonSelectionStateController {
         for (int i = 0; i < categories.length; i++) {
             mButtonsByCategory.add(categories[i], carSystemBarButton);
         }
+        if (categories.length > 0) {
+            mPackageCategoryCache.setCategories(mButtonsByCategory.keySet());
+        }
 
         String[] packages = carSystemBarButton.getPackages();
         for (int i = 0; i < packages.length; i++) {
@@ -182,10 +235,7 @@ public class ButtonSelectionStateController {
         mRegisteredViews.add(carSystemBarButton);
     }
 
-    private HashSet<CarSystemBarButton> findSelectedButtons(RootTaskInfo validTaskInfo) {
-        ComponentName topActivity = getTopActivity(validTaskInfo);
-        if (topActivity == null) return null;
-
+    private HashSet<CarSystemBarButton> findSelectedButtons(ComponentName topActivity) {
         String packageName = topActivity.getPackageName();
 
         HashSet<CarSystemBarButton> selectedButtons =
@@ -194,7 +244,7 @@ public class ButtonSelectionStateController {
             selectedButtons = mButtonsByPackage.get(packageName);
         }
         if (selectedButtons == null) {
-            String category = getPackageCategory(packageName);
+            String category = mPackageCategoryCache.getCategory(packageName);
             if (category != null) {
                 selectedButtons = mButtonsByCategory.get(category);
             }
@@ -233,25 +283,6 @@ public class ButtonSelectionStateController {
                 mButtonsByComponentName.get(componentName.flattenToString());
     }
 
-    private String getPackageCategory(String packageName) {
-        PackageManager pm = mContext.getPackageManager();
-        Set<String> supportedCategories = mButtonsByCategory.keySet();
-        for (String category : supportedCategories) {
-            Intent intent = new Intent();
-            intent.setPackage(packageName);
-            intent.setAction(Intent.ACTION_MAIN);
-            intent.addCategory(category);
-            List<ResolveInfo> list = pm.queryIntentActivities(intent, 0);
-            if (list.size() > 0) {
-                // Cache this package name into ButtonsByPackage map, so we won't have to query
-                // all categories next time this package name shows up.
-                mButtonsByPackage.put(packageName, mButtonsByCategory.get(category));
-                return category;
-            }
-        }
-        return null;
-    }
-
     // simple multi-map
     private static class ButtonMap extends HashMap<String, HashSet<CarSystemBarButton>> {
 
@@ -16,45 +16,90 @@
 
 package com.android.systemui.car.systembar;
 
-import android.app.ActivityTaskManager;
+import android.app.ActivityManager.RunningTaskInfo;
+import android.app.ActivityTaskManager.RootTaskInfo;
+import android.app.IActivityTaskManager;
 import android.util.Log;
 
+import androidx.annotation.VisibleForTesting;
+
 import com.android.systemui.dagger.SysUISingleton;
 import com.android.systemui.shared.system.TaskStackChangeListener;
+import com.android.systemui.util.concurrency.DelayableExecutor;
+
+import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * An implementation of TaskStackChangeListener, that listens for changes in the system
  * task stack and notifies the navigation bar.
+ *
+ * Task stack changes tend to come in storms while apps are launched, so the changes received
+ * within a frame are collapsed into a single query of the task stack, which is made on the
+ * background executor.
  */
 @SysUISingleton
 class ButtonSelectionStateListener implements TaskStackChangeListener {
     private static final String TAG = ButtonSelectionStateListener.class.getSimpleName();
 
+    /** Task stack changes received within this delay of the first one are handled together. */
+    @VisibleForTesting
+    static final long COALESCE_DELAY_MS = 16;
+
     /* Visible so that subclasses can make calls to this controller. */
     protected final ButtonSelectionStateController mButtonSelectionStateController;
 
-    ButtonSelectionStateListener(ButtonSelectionStateController carSystemButtonController) {
+    private final IActivityTaskManager mActivityTaskManager;
+    private final DelayableExecutor mMainExecutor;
+    private final Executor mBackgroundExecutor;
+    /** Whether a query of the task stack is scheduled. Only accessed on the main thread. */
+    private boolean mUpdateScheduled;
+
+    ButtonSelectionStateListener(ButtonSelectionStateController carSystemButtonController,
+            IActivityTaskManager activityTaskManager, DelayableExecutor mainExecutor,
+            Executor backgroundExecutor) {
         mButtonSelectionStateController = carSystemButtonController;
+        mActivityTaskManager = activityTaskManager;
+        mMainExecutor = mainExecutor;
+        mBackgroundExecutor = backgroundExecutor;
     }
 
     @Override
     public void onTaskStackChanged() {
-        try {
-            mButtonSelectionStateController.taskChanged(
-                    ActivityTaskManager.getService().getAllRootTaskInfos());
-        } catch (Exception e) {
-            Log.e(TAG, "Getting RootTaskInfo from activity task manager failed", e);
-        }
+        scheduleUpdate();
     }
 
     @Override
     public void onTaskDisplayChanged(int taskId, int newDisplayId) {
+        scheduleUpdate();
+    }
+
+    @Override
+    public void onTaskMovedToFront(RunningTaskInfo taskInfo) {
+        // The selection of the task moved to front is known without querying the task stack. The
+        // task stack change that follows is still handled, but should not change anything.
+        mButtonSelectionStateController.taskMovedToFront(taskInfo);
+    }
+
+    private void scheduleUpdate() {
+        if (mUpdateScheduled) {
+            return;
+        }
+        mUpdateScheduled = true;
+        mMainExecutor.executeDelayed(() -> {
+            mUpdateScheduled = false;
+            mBackgroundExecutor.execute(this::queryRootTasks);
+        }, COALESCE_DELAY_MS);
+    }
+
+    private void queryRootTasks() {
+        List<RootTaskInfo> rootTaskInfos;
         try {
-            mButtonSelectionStateController.taskChanged(
-                    ActivityTaskManager.getService().getAllRootTaskInfos());
+            rootTaskInfos = mActivityTaskManager.getAllRootTaskInfos();
         } catch (Exception e) {
             Log.e(TAG, "Getting RootTaskInfo from activity task manager failed", e);
+            return;
         }
-
+        mMainExecutor.execute(() -> mButtonSelectionStateController.taskChanged(rootTaskInfos));
     }
 }
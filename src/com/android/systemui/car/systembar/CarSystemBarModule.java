@@ -16,12 +16,17 @@
 
 package com.android.systemui.car.systembar;
 
+import android.app.ActivityTaskManager;
 import android.content.Context;
 
 import com.android.systemui.car.dagger.CarSysUIDynamicOverride;
 import com.android.systemui.dagger.SysUISingleton;
+import com.android.systemui.dagger.qualifiers.Background;
+import com.android.systemui.dagger.qualifiers.Main;
+import com.android.systemui.util.concurrency.DelayableExecutor;
 
 import java.util.Optional;
+import java.util.concurrent.Executor;
 
 import dagger.BindsOptionalOf;
 import dagger.Module;
@@ -45,11 +50,14 @@ public abstract class CarSystemBarModule {
     @Provides
     static ButtonSelectionStateListener provideButtonSelectionStateListener(@CarSysUIDynamicOverride
             Optional<ButtonSelectionStateListener> overrideButtonSelectionStateListener,
-            ButtonSelectionStateController controller) {
+            ButtonSelectionStateController controller,
+            @Main DelayableExecutor mainExecutor,
+            @Background Executor backgroundExecutor) {
         if (overrideButtonSelectionStateListener.isPresent()) {
             return overrideButtonSelectionStateListener.get();
         }
-        return new ButtonSelectionStateListener(controller);
+        return new ButtonSelectionStateListener(controller, ActivityTaskManager.getService(),
+                mainExecutor, backgroundExecutor);
     }
 
     @BindsOptionalOf
@@ -59,10 +67,12 @@ public abstract class CarSystemBarModule {
     @SysUISingleton
     @Provides
     static ButtonSelectionStateController provideButtonSelectionStateController(Context context,
-            @CarSysUIDynamicOverride Optional<ButtonSelectionStateController> controller) {
+            @CarSysUIDynamicOverride Optional<ButtonSelectionStateController> controller,
+            @Main DelayableExecutor mainExecutor,
+            @Background Executor backgroundExecutor) {
         if (controller.isPresent()) {
             return controller.get();
         }
-        return new ButtonSelectionStateController(context);
+        return new ButtonSelectionStateController(context, mainExecutor, backgroundExecutor);
     }
 }
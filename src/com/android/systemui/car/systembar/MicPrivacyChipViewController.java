@@ -25,8 +25,10 @@ import androidx.annotation.IdRes;
 
 import com.android.systemui.R;
 import com.android.systemui.dagger.SysUISingleton;
+import com.android.systemui.dagger.qualifiers.Main;
 import com.android.systemui.privacy.PrivacyItemController;
 import com.android.systemui.privacy.PrivacyType;
+import com.android.systemui.util.concurrency.DelayableExecutor;
 
 import javax.inject.Inject;
 
@@ -37,8 +39,9 @@ public class MicPrivacyChipViewController extends PrivacyChipViewController {
     @Inject
     public MicPrivacyChipViewController(Context context,
             PrivacyItemController privacyItemController,
-            SensorPrivacyManager sensorPrivacyManager) {
-        super(context, privacyItemController, sensorPrivacyManager);
+            SensorPrivacyManager sensorPrivacyManager,
+            @Main DelayableExecutor mainExecutor) {
+        super(context, privacyItemController, sensorPrivacyManager, mainExecutor);
     }
 
     @Override
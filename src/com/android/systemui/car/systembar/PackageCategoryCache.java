@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.systemui.car.systembar;
+
+import android.annotation.MainThread;
+import android.annotation.Nullable;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+
+import com.android.internal.annotations.GuardedBy;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Resolves which of the categories of the system bar buttons each package has a main activity
+ * for, so that the buttons can be highlighted without querying the {@link PackageManager} when
+ * the task stack changes.
+ *
+ * The resolution is built on the background executor from one query per category, and rebuilt
+ * whenever the categories or the installed packages change. Packages missing from it have none of
+ * the categories.
+ */
+final class PackageCategoryCache {
+    /** Notified on the main executor whenever the resolution is rebuilt. */
+    interface Listener {
+        /** Called when the categories of the packages may have changed. */
+        @MainThread
+        void onPackageCategoriesChanged();
+    }
+
+    private final PackageManager mPackageManager;
+    private final Executor mMainExecutor;
+    private final Executor mBackgroundExecutor;
+    private final Listener mListener;
+
+    private final Object mLock = new Object();
+    @GuardedBy("mLock")
+    private Set<String> mCategories = Collections.emptySet();
+    /** Package name -> category. Immutable, replaced as a whole when rebuilt. */
+    @GuardedBy("mLock")
+    private Map<String, String> mCategoriesByPackage = Collections.emptyMap();
+    /** Incremented whenever the resolution becomes stale, so that stale rebuilds are dropped. */
+    @GuardedBy("mLock")
+    private int mGeneration;
+    @GuardedBy("mLock")
+    private boolean mRebuildScheduled;
+
+    private final BroadcastReceiver mPackageChangedReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            invalidate();
+        }
+    };
+
+    PackageCategoryCache(Context context, Executor mainExecutor, Executor backgroundExecutor,
+            Listener listener) {
+        mPackageManager = context.getPackageManager();
+        mMainExecutor = mainExecutor;
+        mBackgroundExecutor = backgroundExecutor;
+        mListener = listener;
+
+        IntentFilter packageFilter = new IntentFilter();
+        packageFilter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        packageFilter.addDataScheme("package");
+        context.registerReceiverForAllUsers(mPackageChangedReceiver, packageFilter,
+                /* broadcastPermission= */ null, /* scheduler= */ null);
+    }
+
+    /** Sets the categories to resolve, and rebuilds the resolution if they changed. */
+    void setCategories(Set<String> categories) {
+        synchronized (mLock) {
+            if (mCategories.equals(categories)) {
+                return;
+            }
+            mCategories = Collections.unmodifiableSet(new ArraySet<>(categories));
+        }
+        invalidate();
+    }
+
+    /**
+     * Returns the category the given package has a main activity for, or {@code null} if it has
+     * none or if the resolution is not built yet.
+     */
+    @Nullable
+    String getCategory(String packageName) {
+        synchronized (mLock) {
+            return mCategoriesByPackage.get(packageName);
+        }
+    }
+
+    /** Marks the resolution as stale, and rebuilds it on the background executor. */
+    void invalidate() {
+        synchronized (mLock) {
+            mGeneration++;
+            if (mRebuildScheduled) {
+                return;
+            }
+            mRebuildScheduled = true;
+        }
+        mBackgroundExecutor.execute(this::rebuild);
+    }
+
+    private void rebuild() {
+        Set<String> categories;
+        int generation;
+        synchronized (mLock) {
+            mRebuildScheduled = false;
+            categories = mCategories;
+            generation = mGeneration;
+        }
+
+        Map<String, String> categoriesByPackage = new ArrayMap<>();
+        for (String category : categories) {
+            Intent intent = new Intent(Intent.ACTION_MAIN);
+            intent.addCategory(category);
+            List<ResolveInfo> resolveInfos = mPackageManager.queryIntentActivities(intent, 0);
+            for (int i = 0; i < resolveInfos.size(); i++) {
+                ResolveInfo resolveInfo = resolveInfos.get(i);
+                if (resolveInfo.activityInfo != null) {
+                    categoriesByPackage.putIfAbsent(resolveInfo.activityInfo.packageName,
+                            category);
+                }
+            }
+        }
+
+        synchronized (mLock) {
+            if (generation != mGeneration) {
+                // Invalidated again while rebuilding, another rebuild is scheduled.
+                return;
+            }
+            mCategoriesByPackage = Collections.unmodifiableMap(categoriesByPackage);
+        }
+        mMainExecutor.execute(mListener::onPackageCategoriesChanged);
+    }
+}
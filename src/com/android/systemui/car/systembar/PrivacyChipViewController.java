@@ -33,6 +33,7 @@ import com.android.systemui.privacy.OngoingPrivacyChip;
 import com.android.systemui.privacy.PrivacyItem;
 import com.android.systemui.privacy.PrivacyItemController;
 import com.android.systemui.privacy.PrivacyType;
+import com.android.systemui.util.concurrency.DelayableExecutor;
 
 import java.util.List;
 import java.util.Optional;
@@ -42,6 +43,7 @@ public abstract class PrivacyChipViewController implements SensorQcPanel.SensorI
 
     private final PrivacyItemController mPrivacyItemController;
     private final SensorPrivacyManager mSensorPrivacyManager;
+    private final DelayableExecutor mMainExecutor;
 
     private Context mContext;
     private PrivacyChip mPrivacyChip;
@@ -116,10 +118,11 @@ public abstract class PrivacyChipViewController implements SensorQcPanel.SensorI
             };
 
     public PrivacyChipViewController(Context context, PrivacyItemController privacyItemController,
-            SensorPrivacyManager sensorPrivacyManager) {
+            SensorPrivacyManager sensorPrivacyManager, DelayableExecutor mainExecutor) {
         mContext = context;
         mPrivacyItemController = privacyItemController;
         mSensorPrivacyManager = sensorPrivacyManager;
+        mMainExecutor = mainExecutor;
 
         mQsTileNotifyUpdateRunnable = () -> {
         };
@@ -175,6 +178,10 @@ public abstract class PrivacyChipViewController implements SensorQcPanel.SensorI
         mPrivacyChip = view.findViewById(getChipResourceId());
         if (mPrivacyChip == null) return;
 
+        // Every privacy chip schedules its delayed animation steps on the same main thread
+        // executor.
+        mPrivacyChip.setDelayableExecutor(mMainExecutor);
+
         mAllIndicatorsEnabled = mPrivacyItemController.getAllIndicatorsAvailable();
         mMicCameraIndicatorsEnabled = mPrivacyItemController.getMicCameraAvailable();
         mPrivacyItemController.addCallback(mPicCallback);
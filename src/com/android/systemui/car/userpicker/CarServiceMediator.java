@@ -16,7 +16,6 @@
 
 package com.android.systemui.car.userpicker;
 
-import static android.car.CarOccupantZoneManager.DISPLAY_TYPE_MAIN;
 import static android.car.CarOccupantZoneManager.INVALID_USER_ID;
 import static android.car.CarOccupantZoneManager.OCCUPANT_TYPE_DRIVER;
 import static android.car.CarOccupantZoneManager.OCCUPANT_TYPE_FRONT_PASSENGER;
@@ -33,6 +32,8 @@ import static android.car.VehicleAreaSeat.SEAT_ROW_3_LEFT;
 import static android.car.VehicleAreaSeat.SEAT_ROW_3_RIGHT;
 import static android.view.Display.INVALID_DISPLAY;
 
+import static com.android.systemui.car.users.UserLifecycleEventBus.EVENT_TYPE_USER_INFO_CHANGED;
+
 import android.annotation.Nullable;
 import android.annotation.UserIdInt;
 import android.car.Car;
@@ -40,22 +41,15 @@ import android.car.CarOccupantZoneManager;
 import android.car.CarOccupantZoneManager.OccupantZoneInfo;
 import android.car.hardware.power.CarPowerManager;
 import android.car.user.CarUserManager;
-import android.car.user.CarUserManager.UserLifecycleListener;
-import android.car.user.UserLifecycleEventFilter;
 import android.content.Context;
-import android.util.Pair;
 import android.util.Slog;
-import android.view.Display;
 
+import androidx.annotation.GuardedBy;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.systemui.R;
 import com.android.systemui.car.CarServiceProvider;
-
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.Executor;
+import com.android.systemui.car.users.UserLifecycleEventBus;
 
 import javax.inject.Inject;
 
@@ -77,8 +71,30 @@ final class CarServiceMediator {
 
     private final Context mContext;
     private final CarServiceProvider mCarServiceProvider;
-    private final Map<UserLifecycleListener, Pair<Executor, UserLifecycleEventFilter>>
-            mUserLifecycleListeners = new HashMap<>();
+    private final UserLifecycleEventBus mUserLifecycleEventBus;
+
+    private final Object mLock = new Object();
+    /**
+     * Occupant zone lookups go through this snapshot, so that refreshing the user picker does not
+     * cost several binder calls per user and occupant zone. Built on demand and dropped whenever
+     * the occupant zones or the users may have changed.
+     */
+    @GuardedBy("mLock")
+    @Nullable
+    private OccupantZoneSnapshot mOccupantZoneSnapshot;
+    /** Incremented whenever the snapshot is dropped, so that stale snapshots are not kept. */
+    @GuardedBy("mLock")
+    private int mOccupantZoneSnapshotGeneration;
+
+    private final CarOccupantZoneManager.OccupantZoneConfigChangeListener
+            mOccupantZoneConfigChangeListener = changeFlags -> invalidateOccupantZoneSnapshot();
+
+    private final UserLifecycleEventBus.Observer mSnapshotUserLifecycleObserver =
+            (userId, eventType) -> {
+                if (eventType != EVENT_TYPE_USER_INFO_CHANGED) {
+                    invalidateOccupantZoneSnapshot();
+                }
+            };
 
     private final CarServiceProvider.CarServiceOnConnectedListener mServiceOnConnectedListener =
             new CarServiceProvider.CarServiceOnConnectedListener() {
@@ -89,10 +105,14 @@ final class CarServiceMediator {
             };
 
     @Inject
-    CarServiceMediator(Context context, CarServiceProvider carServiceProvider) {
+    CarServiceMediator(Context context, CarServiceProvider carServiceProvider,
+            UserLifecycleEventBus userLifecycleEventBus) {
         mContext = context.getApplicationContext();
         mCarServiceProvider = carServiceProvider;
+        mUserLifecycleEventBus = userLifecycleEventBus;
         mCarServiceProvider.addListener(mServiceOnConnectedListener);
+        // Observers are notified before the user pickers are refreshed for the same event.
+        mUserLifecycleEventBus.addObserver(mSnapshotUserLifecycleObserver);
 
         updateTexts();
     }
@@ -102,12 +122,10 @@ final class CarServiceMediator {
         mCarOccupantZoneManager = car.getCarManager(CarOccupantZoneManager.class);
         mCarUserManager = car.getCarManager(CarUserManager.class);
         mCarPowerManager = car.getCarManager(CarPowerManager.class);
-        //re-register listeners in case of CarService crash and recreation
-        if (mCarUserManager != null) {
-            for (UserLifecycleListener listener : mUserLifecycleListeners.keySet()) {
-                mCarUserManager.addListener(mUserLifecycleListeners.get(listener).first,
-                        mUserLifecycleListeners.get(listener).second, listener);
-            }
+        invalidateOccupantZoneSnapshot();
+        if (mCarOccupantZoneManager != null) {
+            mCarOccupantZoneManager.registerOccupantZoneConfigChangeListener(
+                    mOccupantZoneConfigChangeListener);
         }
     }
 
@@ -120,21 +138,12 @@ final class CarServiceMediator {
         mSeatRightSide = mContext.getString(R.string.seat_right_side);
     }
 
-    void registerUserChangeEventsListener(Executor receiver, UserLifecycleEventFilter filter,
-            UserLifecycleListener listener) {
-        mUserLifecycleListeners.put(listener, new Pair<>(receiver, filter));
-        if (mCarUserManager != null) {
-            mCarServiceProvider.addListener(car -> {
-                mCarUserManager.addListener(receiver, filter, listener);
-            });
-        }
-    }
-
     void onDestroy() {
-        for (UserLifecycleListener listener : mUserLifecycleListeners.keySet()) {
-            mCarUserManager.removeListener(listener);
+        mUserLifecycleEventBus.removeObserver(mSnapshotUserLifecycleObserver);
+        if (mCarOccupantZoneManager != null) {
+            mCarOccupantZoneManager.unregisterOccupantZoneConfigChangeListener(
+                    mOccupantZoneConfigChangeListener);
         }
-        mUserLifecycleListeners.clear();
         mCarServiceProvider.removeListener(mServiceOnConnectedListener);
     }
 
@@ -151,18 +160,7 @@ final class CarServiceMediator {
             return null;
         }
 
-        List<OccupantZoneInfo> occupantZoneInfos = mCarOccupantZoneManager.getAllOccupantZones();
-        for (int index = 0; index < occupantZoneInfos.size(); index++) {
-            CarOccupantZoneManager.OccupantZoneInfo occupantZoneInfo = occupantZoneInfos.get(index);
-            List<Display> displays = mCarOccupantZoneManager.getAllDisplaysForOccupant(
-                    occupantZoneInfo);
-            for (int displayIndex = 0; displayIndex < displays.size(); displayIndex++) {
-                if (displays.get(displayIndex).getDisplayId() == displayId) {
-                    return occupantZoneInfo;
-                }
-            }
-        }
-        return null;
+        return getOccupantZoneSnapshot().getOccupantZoneForDisplayId(displayId);
     }
 
     int getDisplayIdForUser(@UserIdInt int userId) {
@@ -171,17 +169,7 @@ final class CarServiceMediator {
             return INVALID_DISPLAY;
         }
 
-        List<OccupantZoneInfo> occupantZoneInfos = mCarOccupantZoneManager.getAllOccupantZones();
-        for (int i = 0; i < occupantZoneInfos.size(); i++) {
-            OccupantZoneInfo zoneInfo = occupantZoneInfos.get(i);
-            int zoneUserId = mCarOccupantZoneManager.getUserForOccupant(zoneInfo);
-            if (zoneUserId == userId) {
-                Display d = mCarOccupantZoneManager.getDisplayForOccupant(zoneInfo,
-                        DISPLAY_TYPE_MAIN);
-                return d != null ? d.getDisplayId() : INVALID_DISPLAY;
-            }
-        }
-        return INVALID_DISPLAY;
+        return getOccupantZoneSnapshot().getDisplayIdForUser(userId);
     }
 
     int getUserForDisplay(int displayId) {
@@ -193,6 +181,31 @@ final class CarServiceMediator {
         return mCarOccupantZoneManager.getUserForDisplayId(displayId);
     }
 
+    private OccupantZoneSnapshot getOccupantZoneSnapshot() {
+        int generation;
+        synchronized (mLock) {
+            if (mOccupantZoneSnapshot != null) {
+                return mOccupantZoneSnapshot;
+            }
+            generation = mOccupantZoneSnapshotGeneration;
+        }
+        // Built outside of the lock, as it involves binder calls.
+        OccupantZoneSnapshot snapshot = OccupantZoneSnapshot.create(mCarOccupantZoneManager);
+        synchronized (mLock) {
+            if (generation == mOccupantZoneSnapshotGeneration) {
+                mOccupantZoneSnapshot = snapshot;
+            }
+        }
+        return snapshot;
+    }
+
+    private void invalidateOccupantZoneSnapshot() {
+        synchronized (mLock) {
+            mOccupantZoneSnapshot = null;
+            mOccupantZoneSnapshotGeneration++;
+        }
+    }
+
     int unassignOccupantZoneForDisplay(int displayId) {
         OccupantZoneInfo zoneInfo = getOccupantZoneForDisplayId(displayId);
         if (zoneInfo == null) {
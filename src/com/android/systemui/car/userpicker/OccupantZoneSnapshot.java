@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.systemui.car.userpicker;
+
+import static android.car.CarOccupantZoneManager.DISPLAY_TYPE_MAIN;
+import static android.car.CarOccupantZoneManager.INVALID_USER_ID;
+import static android.view.Display.INVALID_DISPLAY;
+
+import android.annotation.Nullable;
+import android.annotation.UserIdInt;
+import android.car.CarOccupantZoneManager;
+import android.car.CarOccupantZoneManager.OccupantZoneInfo;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+import android.view.Display;
+
+import java.util.List;
+
+/**
+ * Immutable view of which occupant zone each display belongs to, and of the main display of the
+ * zone each user is assigned to.
+ *
+ * Building it costs a few binder calls per occupant zone, so it is meant to be built once and
+ * reused until the occupant zone configuration or the users change.
+ */
+final class OccupantZoneSnapshot {
+    private final SparseArray<OccupantZoneInfo> mZonesByDisplayId;
+    private final SparseIntArray mMainDisplayIdsByUserId;
+
+    private OccupantZoneSnapshot(SparseArray<OccupantZoneInfo> zonesByDisplayId,
+            SparseIntArray mainDisplayIdsByUserId) {
+        mZonesByDisplayId = zonesByDisplayId;
+        mMainDisplayIdsByUserId = mainDisplayIdsByUserId;
+    }
+
+    /** Builds a snapshot of the current occupant zones. */
+    static OccupantZoneSnapshot create(CarOccupantZoneManager carOccupantZoneManager) {
+        SparseArray<OccupantZoneInfo> zonesByDisplayId = new SparseArray<>();
+        SparseIntArray mainDisplayIdsByUserId = new SparseIntArray();
+
+        List<OccupantZoneInfo> occupantZoneInfos = carOccupantZoneManager.getAllOccupantZones();
+        for (int i = 0; i < occupantZoneInfos.size(); i++) {
+            OccupantZoneInfo zoneInfo = occupantZoneInfos.get(i);
+            List<Display> displays = carOccupantZoneManager.getAllDisplaysForOccupant(zoneInfo);
+            for (int displayIndex = 0; displayIndex < displays.size(); displayIndex++) {
+                int displayId = displays.get(displayIndex).getDisplayId();
+                // Keep the first zone found for a display, as the lookup used to.
+                if (zonesByDisplayId.indexOfKey(displayId) < 0) {
+                    zonesByDisplayId.put(displayId, zoneInfo);
+                }
+            }
+
+            int zoneUserId = carOccupantZoneManager.getUserForOccupant(zoneInfo);
+            if (zoneUserId == INVALID_USER_ID
+                    || mainDisplayIdsByUserId.indexOfKey(zoneUserId) >= 0) {
+                continue;
+            }
+            Display mainDisplay = carOccupantZoneManager.getDisplayForOccupant(zoneInfo,
+                    DISPLAY_TYPE_MAIN);
+            mainDisplayIdsByUserId.put(zoneUserId,
+                    mainDisplay != null ? mainDisplay.getDisplayId() : INVALID_DISPLAY);
+        }
+        return new OccupantZoneSnapshot(zonesByDisplayId, mainDisplayIdsByUserId);
+    }
+
+    /** Returns the occupant zone the given display belongs to, if any. */
+    @Nullable
+    OccupantZoneInfo getOccupantZoneForDisplayId(int displayId) {
+        return mZonesByDisplayId.get(displayId);
+    }
+
+    /**
+     * Returns the main display of the occupant zone the given user is assigned to, or
+     * {@code INVALID_DISPLAY} if the user is not assigned to any.
+     */
+    int getDisplayIdForUser(@UserIdInt int userId) {
+        return mMainDisplayIdsByUserId.get(userId, INVALID_DISPLAY);
+    }
+}
@@ -24,21 +24,19 @@ import static android.car.user.CarUserManager.USER_LIFECYCLE_EVENT_TYPE_STOPPED;
 import static android.car.user.CarUserManager.USER_LIFECYCLE_EVENT_TYPE_STOPPING;
 import static android.car.user.CarUserManager.USER_LIFECYCLE_EVENT_TYPE_SWITCHING;
 import static android.car.user.CarUserManager.USER_LIFECYCLE_EVENT_TYPE_UNLOCKED;
-import static android.car.user.CarUserManager.lifecycleEventTypeToString;
-import static android.os.UserHandle.USER_ALL;
 import static android.os.UserHandle.USER_SYSTEM;
 import static android.os.UserManager.SWITCHABILITY_STATUS_OK;
 import static android.os.UserManager.isHeadlessSystemUserMode;
 
+import static com.android.systemui.car.users.UserLifecycleEventBus.EVENT_TYPE_USER_INFO_CHANGED;
+
 import android.annotation.MainThread;
 import android.annotation.Nullable;
 import android.annotation.UserIdInt;
 import android.app.ActivityManager;
 import android.car.SyncResultCallback;
 import android.car.user.CarUserManager;
-import android.car.user.CarUserManager.UserLifecycleListener;
 import android.car.user.UserCreationResult;
-import android.car.user.UserLifecycleEventFilter;
 import android.car.user.UserStartRequest;
 import android.car.user.UserStartResponse;
 import android.car.user.UserStopRequest;
@@ -46,10 +44,7 @@ import android.car.user.UserStopResponse;
 import android.car.user.UserSwitchRequest;
 import android.car.user.UserSwitchResult;
 import android.car.util.concurrent.AsyncFuture;
-import android.content.BroadcastReceiver;
 import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.pm.UserInfo;
 import android.os.Handler;
 import android.os.Looper;
@@ -62,11 +57,12 @@ import android.util.SparseArray;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.systemui.R;
+import com.android.systemui.car.users.UserLifecycleEventBus;
+import com.android.systemui.car.users.UserLifecycleEventBus.UserEvents;
+import com.android.systemui.car.userswitcher.UserIconProvider;
 
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
@@ -86,29 +82,37 @@ public final class UserEventManager {
 
     private static final long USER_TIMEOUT_MS = 10_000;
 
-    private final UserLifecycleEventFilter mFilter = new UserLifecycleEventFilter.Builder()
-            .addEventType(USER_LIFECYCLE_EVENT_TYPE_SWITCHING)
-            .addEventType(USER_LIFECYCLE_EVENT_TYPE_INVISIBLE)
-            .addEventType(USER_LIFECYCLE_EVENT_TYPE_CREATED)
-            .addEventType(USER_LIFECYCLE_EVENT_TYPE_REMOVED)
-            .addEventType(USER_LIFECYCLE_EVENT_TYPE_UNLOCKED)
-            .addEventType(USER_LIFECYCLE_EVENT_TYPE_STARTING)
-            .addEventType(USER_LIFECYCLE_EVENT_TYPE_STOPPING)
-            .addEventType(USER_LIFECYCLE_EVENT_TYPE_STOPPED).build();
+    /** Events that change the users shown by the user pickers. */
+    private static final int[] UPDATE_USERS_EVENT_TYPES = {
+            USER_LIFECYCLE_EVENT_TYPE_SWITCHING,
+            USER_LIFECYCLE_EVENT_TYPE_INVISIBLE,
+            USER_LIFECYCLE_EVENT_TYPE_CREATED,
+            USER_LIFECYCLE_EVENT_TYPE_REMOVED,
+            USER_LIFECYCLE_EVENT_TYPE_UNLOCKED,
+            USER_LIFECYCLE_EVENT_TYPE_STARTING,
+            USER_LIFECYCLE_EVENT_TYPE_STOPPING,
+            USER_LIFECYCLE_EVENT_TYPE_STOPPED,
+            EVENT_TYPE_USER_INFO_CHANGED};
 
     private final Context mContext;
     private final UserManager mUserManager;
     private final CarServiceMediator mCarServiceMediator;
     private final UserPickerSharedState mUserPickerSharedState;
+    private final UserLifecycleEventBus mUserLifecycleEventBus;
 
     /**
      * {@link UserPickerController} is per-display object. It adds listener to UserEventManager to
-     * update user information, and UserEventManager will call listeners whenever user event occurs.
+     * update user information, and the listener of the display is subscribed to the
+     * {@link UserLifecycleEventBus} to be called whenever user event occurs.
      * mUpdateListeners is used only on main thread.
      */
     private final SparseArray<OnUpdateUsersListener> mUpdateListeners;
+    /** The bus subscriber of each display, used only on main thread. */
+    private final SparseArray<UserLifecycleEventBus.Subscriber> mUpdateSubscribers =
+            new SparseArray<>();
 
     private final Handler mMainHandler;
+    private final UserIconProvider mUserIconProvider = new UserIconProvider();
 
     /**
      * This is used to wait until previous user is in invisible state.
@@ -120,35 +124,24 @@ public final class UserEventManager {
     private final UserInvisibleWaiter mUserInvisibleWaiter = new UserInvisibleWaiter();
 
     /**
-     * We don't use the main thread for UX responsiveness when handling user events.
+     * Receives every user event on the background executor of the bus, which keeps the user
+     * event handling off the main thread for UX responsiveness.
      */
-    private final ExecutorService mUserLifecycleReceiver;
-
     @VisibleForTesting
-    final UserLifecycleListener mUserLifecycleListener = event -> {
-        onUserEvent(event);
-    };
-
-    private final BroadcastReceiver mUserUpdateReceiver = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            runUpdateUsersOnMainThread();
-        }
-    };
+    final UserLifecycleEventBus.Observer mUserLifecycleObserver = this::onUserEvent;
 
     @Inject
     UserEventManager(Context context, CarServiceMediator carServiceMediator,
-            UserPickerSharedState userPickerSharedState) {
+            UserPickerSharedState userPickerSharedState,
+            UserLifecycleEventBus userLifecycleEventBus) {
         mUpdateListeners = new SparseArray<>();
         mContext = context.getApplicationContext();
-        mUserLifecycleReceiver = Executors.newSingleThreadExecutor();
         mMainHandler = new Handler(Looper.getMainLooper());
         mUserManager = mContext.getSystemService(UserManager.class);
         mUserPickerSharedState = userPickerSharedState;
         mCarServiceMediator = carServiceMediator;
-        mCarServiceMediator.registerUserChangeEventsListener(mUserLifecycleReceiver, mFilter,
-                mUserLifecycleListener);
-        registerUserInfoChangedReceiver();
+        mUserLifecycleEventBus = userLifecycleEventBus;
+        mUserLifecycleEventBus.addObserver(mUserLifecycleObserver);
     }
 
     /**
@@ -156,15 +149,10 @@ public final class UserEventManager {
      */
     void onDestroy() {
         mCarServiceMediator.onDestroy();
-        mContext.unregisterReceiver(mUserUpdateReceiver);
+        mUserLifecycleEventBus.removeObserver(mUserLifecycleObserver);
     }
 
-    private void onUserEvent(CarUserManager.UserLifecycleEvent event) {
-        int eventType = event.getEventType();
-        int userId = event.getUserId();
-        if (DEBUG) {
-            Slog.d(TAG, "event=" + lifecycleEventTypeToString(eventType) + " userId=" + userId);
-        }
+    private void onUserEvent(@UserIdInt int userId, int eventType) {
         if (eventType == USER_LIFECYCLE_EVENT_TYPE_STOPPING) {
             mUserPickerSharedState.addStoppingUserId(userId);
         } else if (eventType == USER_LIFECYCLE_EVENT_TYPE_STOPPED) {
@@ -173,25 +161,41 @@ public final class UserEventManager {
             }
         } else if (eventType == USER_LIFECYCLE_EVENT_TYPE_INVISIBLE) {
             mUserInvisibleWaiter.onUserInvisible(userId);
+        } else if (eventType == EVENT_TYPE_USER_INFO_CHANGED) {
+            // Drop the cached icon before the user pickers are updated, in case this is received
+            // before the cache is notified.
+            mUserIconProvider.invalidateUserIcon(mContext, userId);
         }
-        runUpdateUsersOnMainThread(userId, eventType);
-    }
-
-    private void registerUserInfoChangedReceiver() {
-        IntentFilter filter = new IntentFilter();
-        filter.addAction(Intent.ACTION_USER_INFO_CHANGED);
-        mContext.registerReceiverAsUser(mUserUpdateReceiver, UserHandle.ALL, filter, null, null);
     }
 
     void registerOnUpdateUsersListener(OnUpdateUsersListener listener, int displayId) {
         if (listener == null) {
             return;
         }
+        unregisterOnUpdateUsersListener(displayId);
         mUpdateListeners.put(displayId, listener);
+        UserLifecycleEventBus.Subscriber subscriber =
+                events -> listener.onUpdateUsers(events.getUserId(), getEventToReport(events));
+        mUpdateSubscribers.put(displayId, subscriber);
+        mUserLifecycleEventBus.subscribe(subscriber, UPDATE_USERS_EVENT_TYPES);
     }
 
     void unregisterOnUpdateUsersListener(int displayId) {
         mUpdateListeners.remove(displayId);
+        UserLifecycleEventBus.Subscriber subscriber = mUpdateSubscribers.get(displayId);
+        if (subscriber != null) {
+            mUpdateSubscribers.remove(displayId);
+            mUserLifecycleEventBus.unsubscribe(subscriber);
+        }
+    }
+
+    /**
+     * Returns the event reported for a burst of events of a user. User pickers finish once the
+     * user they started is unlocked, so unlocking is not hidden by the events that followed it.
+     */
+    private static int getEventToReport(UserEvents events) {
+        return events.hasEventType(USER_LIFECYCLE_EVENT_TYPE_UNLOCKED)
+                ? USER_LIFECYCLE_EVENT_TYPE_UNLOCKED : events.getLatestEventType();
     }
 
     @MainThread
@@ -204,10 +208,6 @@ public final class UserEventManager {
         }
     }
 
-    void runUpdateUsersOnMainThread() {
-        runUpdateUsersOnMainThread(USER_ALL, 0);
-    }
-
     void runUpdateUsersOnMainThread(@UserIdInt int userId, int userEvent) {
         if (Looper.myLooper() != Looper.getMainLooper()) {
             mMainHandler.post(() -> updateUsers(userId, userEvent));
@@ -48,11 +48,14 @@ import com.android.systemui.R;
 import com.android.systemui.car.CarServiceProvider;
 import com.android.systemui.car.statusicon.ui.UserPickerReadOnlyIconsController;
 import com.android.systemui.car.userpicker.UserPickerController.Callbacks;
+import com.android.systemui.car.users.UserLifecycleEventBus;
+import com.android.systemui.dagger.qualifiers.Background;
 import com.android.systemui.dump.DumpManager;
 import com.android.systemui.settings.DisplayTracker;
 
 import java.io.PrintWriter;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import javax.inject.Inject;
 
@@ -76,6 +79,9 @@ public class UserPickerActivity extends Activity implements Dumpable {
     DisplayTracker mDisplayTracker;
     @Inject
     DumpManager mDumpManager;
+    @Inject
+    @Background
+    Executor mBackgroundExecutor;
 
     @VisibleForTesting
     UserPickerController mController;
@@ -106,7 +112,8 @@ public class UserPickerActivity extends Activity implements Dumpable {
             Context context, //application context
             DisplayTracker displayTracker,
             CarServiceProvider carServiceProvider,
-            UserPickerSharedState userPickerSharedState
+            UserPickerSharedState userPickerSharedState,
+            UserLifecycleEventBus userLifecycleEventBus
     ) {
         this();
         mUserPickerActivityComponent = DaggerUserPickerActivityComponent.builder()
@@ -114,6 +121,7 @@ public class UserPickerActivity extends Activity implements Dumpable {
                 .carServiceProvider(carServiceProvider)
                 .displayTracker(displayTracker)
                 .userPickerSharedState(userPickerSharedState)
+                .userLifecycleEventBus(userLifecycleEventBus)
                 .build();
         //Component.inject(this) is not working because constructor and activity itself is
         //scoped to SystemUiScope but the deps below are scoped to UserPickerScope
@@ -130,8 +138,7 @@ public class UserPickerActivity extends Activity implements Dumpable {
     private final Callbacks mCallbacks = new Callbacks() {
         @Override
         public void onUpdateUsers(List<UserRecord> users) {
-            mAdapter.updateUsers(users);
-            mAdapter.notifyDataSetChanged();
+            mAdapter.submitUsers(users);
         }
 
         @Override
@@ -246,7 +253,7 @@ public class UserPickerActivity extends Activity implements Dumpable {
 
     @VisibleForTesting
     UserPickerAdapter createUserPickerAdapter() {
-        return new UserPickerAdapter(this);
+        return new UserPickerAdapter(this, mBackgroundExecutor);
     }
 
     @VisibleForTesting
@@ -19,6 +19,7 @@ package com.android.systemui.car.userpicker;
 import android.content.Context;
 
 import com.android.systemui.car.CarServiceProvider;
+import com.android.systemui.car.users.UserLifecycleEventBus;
 import com.android.systemui.settings.DisplayTracker;
 
 import dagger.BindsInstance;
@@ -48,6 +49,9 @@ public interface UserPickerActivityComponent {
         @BindsInstance
         Builder userPickerSharedState(UserPickerSharedState userPickerSharedState);
 
+        @BindsInstance
+        Builder userLifecycleEventBus(UserLifecycleEventBus userLifecycleEventBus);
+
         UserPickerActivityComponent build();
     }
 
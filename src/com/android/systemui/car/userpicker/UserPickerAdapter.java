@@ -25,7 +25,9 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.ColorInt;
+import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.recyclerview.widget.RecyclerView.Adapter;
 
@@ -33,6 +35,7 @@ import com.android.systemui.R;
 
 import java.io.PrintWriter;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 final class UserPickerAdapter extends Adapter<UserPickerAdapter.UserPickerAdapterViewHolder> {
     private final Context mContext;
@@ -45,13 +48,17 @@ final class UserPickerAdapter extends Adapter<UserPickerAdapter.UserPickerAdapte
     private final int mVerticalSpacing;
     private final int mHorizontalSpacing;
     private final int mNumCols;
+    private final Executor mMainExecutor;
+    private final Executor mBackgroundExecutor;
 
     private List<UserRecord> mUsers;
+    /** Incremented whenever the users are replaced, so that outdated differences are dropped. */
+    private int mUsersGeneration;
     private String mLoggedInText;
     private String mPrefixOtherSeatLoggedInInfo;
     private String mStoppingUserText;
 
-    UserPickerAdapter(Context context) {
+    UserPickerAdapter(Context context, Executor backgroundExecutor) {
         mContext = context;
         mDisplayId = mContext.getDisplayId();
         mDisabledAlpha = mContext.getResources().getFloat(R.fraction.user_picker_disabled_alpha);
@@ -63,14 +70,50 @@ final class UserPickerAdapter extends Adapter<UserPickerAdapter.UserPickerAdapte
         mHorizontalSpacing = mContext.getResources().getDimensionPixelSize(
                 R.dimen.user_picker_horizontal_space_between_users);
         mNumCols = mContext.getResources().getInteger(R.integer.user_fullscreen_switcher_num_col);
+        mMainExecutor = mContext.getMainExecutor();
+        mBackgroundExecutor = backgroundExecutor;
 
+        setHasStableIds(true);
         updateTexts();
     }
 
+    /**
+     * Replaces the user records. The caller is responsible for notifying the changes.
+     */
+    @MainThread
     void updateUsers(List<UserRecord> users) {
+        mUsersGeneration++;
         mUsers = users;
     }
 
+    /**
+     * Replaces the user records, and only notifies the records that changed. The difference with
+     * the current records is computed in the background, so the records are replaced later.
+     */
+    @MainThread
+    void submitUsers(List<UserRecord> users) {
+        List<UserRecord> oldUsers = mUsers;
+        if (oldUsers == null || oldUsers.isEmpty() || users.isEmpty()) {
+            updateUsers(users);
+            notifyDataSetChanged();
+            return;
+        }
+        int generation = ++mUsersGeneration;
+        mBackgroundExecutor.execute(() -> {
+            DiffUtil.DiffResult diffResult = DiffUtil.calculateDiff(
+                    new UserRecordDiffCallback(oldUsers, users, mNumCols),
+                    /* detectMoves= */ false);
+            mMainExecutor.execute(() -> {
+                if (generation != mUsersGeneration) {
+                    // Newer records were submitted in the meantime.
+                    return;
+                }
+                mUsers = users;
+                diffResult.dispatchUpdatesTo(this);
+            });
+        });
+    }
+
     private void setUserLoggedInInfo(UserPickerAdapterViewHolder holder, UserRecord userRecord) {
         if (!userRecord.mIsStopping && !userRecord.mIsLoggedIn) {
             holder.mUserBorderImageView.setVisibility(View.INVISIBLE);
@@ -132,6 +175,11 @@ final class UserPickerAdapter extends Adapter<UserPickerAdapter.UserPickerAdapte
         return mUsers != null ? mUsers.size() : 0;
     }
 
+    @Override
+    public long getItemId(int position) {
+        return mUsers.get(position).getStableId();
+    }
+
     void onConfigurationChanged() {
         updateTexts();
     }
@@ -167,6 +215,43 @@ final class UserPickerAdapter extends Adapter<UserPickerAdapter.UserPickerAdapte
         }
     }
 
+    private static final class UserRecordDiffCallback extends DiffUtil.Callback {
+        private final List<UserRecord> mOldUsers;
+        private final List<UserRecord> mNewUsers;
+        private final int mNumCols;
+
+        UserRecordDiffCallback(List<UserRecord> oldUsers, List<UserRecord> newUsers,
+                int numCols) {
+            mOldUsers = oldUsers;
+            mNewUsers = newUsers;
+            mNumCols = numCols;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldUsers.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewUsers.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldUsers.get(oldItemPosition).getStableId()
+                    == mNewUsers.get(newItemPosition).getStableId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            // The spacing of an item depends on its column, so it is rebound when that changes.
+            return oldItemPosition % mNumCols == newItemPosition % mNumCols
+                    && mOldUsers.get(oldItemPosition).hasSameContents(
+                            mNewUsers.get(newItemPosition));
+        }
+    }
+
     static final class UserPickerAdapterViewHolder extends RecyclerView.ViewHolder {
         public final ImageView mUserAvatarImageView;
         public final TextView mUserNameTextView;
@@ -18,13 +18,8 @@ package com.android.systemui.car.userpicker;
 
 import static android.car.CarOccupantZoneManager.INVALID_USER_ID;
 import static android.car.user.CarUserManager.USER_LIFECYCLE_EVENT_TYPE_STOPPED;
-import static android.car.user.CarUserManager.lifecycleEventTypeToString;
 
 import android.annotation.UserIdInt;
-import android.car.Car;
-import android.car.user.CarUserManager;
-import android.car.user.CarUserManager.UserLifecycleListener;
-import android.car.user.UserLifecycleEventFilter;
 import android.util.ArraySet;
 import android.util.Log;
 import android.util.Slog;
@@ -35,15 +30,12 @@ import androidx.annotation.VisibleForTesting;
 
 import com.android.internal.annotations.GuardedBy;
 import com.android.systemui.Dumpable;
-import com.android.systemui.car.CarServiceProvider;
-import com.android.systemui.car.CarServiceProvider.CarServiceOnConnectedListener;
+import com.android.systemui.car.users.UserLifecycleEventBus;
 import com.android.systemui.dagger.SysUISingleton;
 import com.android.systemui.dump.DumpManager;
 
 import java.io.PrintWriter;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import javax.inject.Inject;
 
@@ -84,49 +76,27 @@ public class UserPickerSharedState implements Dumpable {
      * the user from stopping user list. This listener removes completely stopped users from the
      * list to handle that situation.
      */
-    private final UserLifecycleListener mUserStoppedEventListener = event -> {
-        int eventType = event.getEventType();
-        int userId = event.getUserId();
-        if (DEBUG) {
-            Slog.d(TAG, "event=" + lifecycleEventTypeToString(eventType) + " userId=" + userId);
-        }
-        if (isStoppingUser(userId)) {
-            removeStoppingUserId(userId);
-        }
-    };
-
-    private final UserLifecycleEventFilter mFilter = new UserLifecycleEventFilter.Builder()
-            .addEventType(USER_LIFECYCLE_EVENT_TYPE_STOPPED).build();
-
-    private final CarServiceOnConnectedListener mServiceOnConnectedListener = car -> {
-        onConnected(car);
-    };
-
-    private final ExecutorService mUserStoppedEventReceiver;
+    private final UserLifecycleEventBus.Observer mUserStoppedEventObserver =
+            (userId, eventType) -> {
+                if (eventType == USER_LIFECYCLE_EVENT_TYPE_STOPPED && isStoppingUser(userId)) {
+                    removeStoppingUserId(userId);
+                }
+            };
 
     /**
      * Constructor for UserPickerSharedState
      */
     @Inject
-    public UserPickerSharedState(CarServiceProvider carServiceProvider, DumpManager dumpManager) {
+    public UserPickerSharedState(UserLifecycleEventBus userLifecycleEventBus,
+            DumpManager dumpManager) {
         mUsersLoginStarted = new SparseIntArray();
-        mUserStoppedEventReceiver = Executors.newSingleThreadExecutor();
-        carServiceProvider.addListener(mServiceOnConnectedListener);
+        userLifecycleEventBus.addObserver(mUserStoppedEventObserver);
         dumpManager.registerNormalDumpable(TAG, this);
     }
 
     @VisibleForTesting
     public UserPickerSharedState() {
         mUsersLoginStarted = new SparseIntArray();
-        mUserStoppedEventReceiver = null;
-    }
-
-    private void onConnected(Car car) {
-        CarUserManager carUserManager = car.getCarManager(CarUserManager.class);
-        if (carUserManager != null) {
-            carUserManager.addListener(mUserStoppedEventReceiver, mFilter,
-                    mUserStoppedEventListener);
-        }
     }
 
     /**
@@ -19,11 +19,15 @@ package com.android.systemui.car.userpicker;
 import static android.view.Display.INVALID_DISPLAY;
 
 import android.content.pm.UserInfo;
+import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.util.Log;
 import android.view.View;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.Objects;
 
 /**
  * Object wrapper class for {@link UserInfo}.  Use it to distinguish if a profile is a
@@ -32,6 +36,9 @@ import androidx.annotation.NonNull;
 final class UserRecord {
     private static final String TAG = UserRecord.class.getSimpleName();
     private static final boolean DEBUG = Log.isLoggable(TAG, Log.DEBUG);
+    // Stable IDs of the records that are not bound to a user. User records use the user id.
+    private static final long START_GUEST_SESSION_STABLE_ID = -2;
+    private static final long ADD_USER_STABLE_ID = -3;
 
     public final UserInfo mInfo;
     public final String mName;
@@ -80,6 +87,41 @@ final class UserRecord {
         return userRecord;
     }
 
+    /**
+     * Returns an ID that identifies this record across refreshes of the user records, or
+     * {@link RecyclerView#NO_ID} if there is none.
+     */
+    long getStableId() {
+        if (mIsAddUser) {
+            return ADD_USER_STABLE_ID;
+        }
+        if (mIsStartGuestSession) {
+            return START_GUEST_SESSION_STABLE_ID;
+        }
+        return mInfo != null ? mInfo.id : RecyclerView.NO_ID;
+    }
+
+    /** Returns whether the given record would be displayed the same way as this one. */
+    boolean hasSameContents(UserRecord other) {
+        return Objects.equals(mName, other.mName)
+                && mIsStartGuestSession == other.mIsStartGuestSession
+                && mIsAddUser == other.mIsAddUser
+                && mIsForeground == other.mIsForeground
+                && mIsLoggedIn == other.mIsLoggedIn
+                && mLoggedInDisplay == other.mLoggedInDisplay
+                && Objects.equals(mSeatLocationName, other.mSeatLocationName)
+                && mIsStopping == other.mIsStopping
+                && isSameIcon(mIcon, other.mIcon);
+    }
+
+    private static boolean isSameIcon(Drawable icon, Drawable otherIcon) {
+        // User icons are new drawables on every refresh, but share the cached bitmap.
+        if (icon instanceof BitmapDrawable && otherIcon instanceof BitmapDrawable) {
+            return ((BitmapDrawable) icon).getBitmap() == ((BitmapDrawable) otherIcon).getBitmap();
+        }
+        return icon == otherIcon;
+    }
+
     abstract static class OnClickListenerCreatorBase {
         protected UserRecord mUserRecord;
 
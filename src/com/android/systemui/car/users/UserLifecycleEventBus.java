@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.systemui.car.users;
+
+import static android.car.user.CarUserManager.lifecycleEventTypeToString;
+
+import android.annotation.MainThread;
+import android.annotation.UserIdInt;
+import android.annotation.WorkerThread;
+import android.car.Car;
+import android.car.user.CarUserManager;
+import android.car.user.CarUserManager.UserLifecycleListener;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.UserHandle;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.util.Log;
+import android.util.SparseArray;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.internal.annotations.GuardedBy;
+import com.android.systemui.car.CarServiceProvider;
+import com.android.systemui.dagger.SysUISingleton;
+import com.android.systemui.dagger.qualifiers.Background;
+import com.android.systemui.dagger.qualifiers.Main;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import javax.inject.Inject;
+
+/**
+ * Shared source of user lifecycle events for the user pickers and the user switcher.
+ *
+ * <p>It registers one {@link UserLifecycleListener} and one receiver for
+ * {@link Intent#ACTION_USER_INFO_CHANGED} on behalf of all its clients, and receives both on the
+ * SystemUI background executor. Events are then:
+ * <ul>
+ * <li>passed one by one to {@link Observer observers} on the background executor, for the state
+ * that has to track every event.
+ * <li>coalesced per user and delivered to each {@link Subscriber subscriber} on the main thread,
+ * so that a burst of events (e.g. starting, visible, unlocking, unlocked) only refreshes a user
+ * picker once. Several subscribers, e.g. on the same display, are independent of each other.
+ * </ul>
+ */
+@SysUISingleton
+public class UserLifecycleEventBus {
+    private static final String TAG = UserLifecycleEventBus.class.getSimpleName();
+    private static final boolean DEBUG = Log.isLoggable(TAG, Log.DEBUG);
+
+    /**
+     * Event type used for {@link Intent#ACTION_USER_INFO_CHANGED}. The lifecycle event types of
+     * {@link CarUserManager} all start at 1.
+     */
+    public static final int EVENT_TYPE_USER_INFO_CHANGED = 0;
+
+    private final Executor mMainExecutor;
+    private final Executor mBackgroundExecutor;
+
+    private final Object mLock = new Object();
+    @GuardedBy("mLock")
+    private final Set<Observer> mObservers = new ArraySet<>();
+    @GuardedBy("mLock")
+    private final Map<Subscriber, Subscription> mSubscriptions = new ArrayMap<>();
+
+    private final UserLifecycleListener mUserLifecycleListener =
+            event -> onEvent(event.getUserId(), event.getEventType());
+
+    private final BroadcastReceiver mUserInfoChangedReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            int userId = intent.getIntExtra(Intent.EXTRA_USER_HANDLE, UserHandle.USER_NULL);
+            mBackgroundExecutor.execute(() -> onEvent(userId, EVENT_TYPE_USER_INFO_CHANGED));
+        }
+    };
+
+    @Inject
+    public UserLifecycleEventBus(Context context, CarServiceProvider carServiceProvider,
+            @Main Executor mainExecutor, @Background Executor backgroundExecutor) {
+        mMainExecutor = mainExecutor;
+        mBackgroundExecutor = backgroundExecutor;
+        // Re-registered on every connection, in case of CarService crash and recreation.
+        carServiceProvider.addListener(this::onCarConnected);
+        context.registerReceiverForAllUsers(mUserInfoChangedReceiver,
+                new IntentFilter(Intent.ACTION_USER_INFO_CHANGED),
+                /* broadcastPermission= */ null, /* scheduler= */ null);
+    }
+
+    private void onCarConnected(Car car) {
+        CarUserManager carUserManager = car.getCarManager(CarUserManager.class);
+        if (carUserManager != null) {
+            carUserManager.addListener(mBackgroundExecutor, mUserLifecycleListener);
+        }
+    }
+
+    /** Adds an observer that is notified of every event, on the background executor. */
+    public void addObserver(Observer observer) {
+        synchronized (mLock) {
+            mObservers.add(observer);
+        }
+    }
+
+    /** Removes an observer added by {@link #addObserver(Observer)}. */
+    public void removeObserver(Observer observer) {
+        synchronized (mLock) {
+            mObservers.remove(observer);
+        }
+    }
+
+    /**
+     * Subscribes the given subscriber to the events of the given types, replacing its previous
+     * subscription if any.
+     *
+     * @param eventTypes lifecycle event types of {@link CarUserManager}, or
+     *                   {@link #EVENT_TYPE_USER_INFO_CHANGED}.
+     */
+    public void subscribe(Subscriber subscriber, int... eventTypes) {
+        synchronized (mLock) {
+            mSubscriptions.put(subscriber, new Subscription(subscriber, eventTypes));
+        }
+    }
+
+    /** Removes the subscription of the given subscriber, dropping its undelivered events. */
+    public void unsubscribe(Subscriber subscriber) {
+        synchronized (mLock) {
+            mSubscriptions.remove(subscriber);
+        }
+    }
+
+    @VisibleForTesting
+    @WorkerThread
+    void onEvent(@UserIdInt int userId, int eventType) {
+        if (DEBUG) {
+            Log.d(TAG, "event=" + eventTypeToString(eventType) + " userId=" + userId);
+        }
+        Observer[] observers;
+        synchronized (mLock) {
+            observers = mObservers.toArray(new Observer[0]);
+        }
+        // Observers go first, so that subscribers see the state they keep up to date.
+        for (Observer observer : observers) {
+            observer.onUserLifecycleEvent(userId, eventType);
+        }
+        synchronized (mLock) {
+            for (Subscription subscription : mSubscriptions.values()) {
+                if (subscription.enqueue(userId, eventType)) {
+                    mMainExecutor.execute(() -> deliver(subscription));
+                }
+            }
+        }
+    }
+
+    @MainThread
+    private void deliver(Subscription subscription) {
+        SparseArray<UserEvents> pendingEvents;
+        synchronized (mLock) {
+            pendingEvents = subscription.drain();
+            if (mSubscriptions.get(subscription.mSubscriber) != subscription) {
+                // Unsubscribed since the events were queued.
+                return;
+            }
+        }
+        for (int i = 0; i < pendingEvents.size(); i++) {
+            subscription.mSubscriber.onUserEvents(pendingEvents.valueAt(i));
+        }
+    }
+
+    /**
+     * Returns the name of the given event type, which is either a lifecycle event type of
+     * {@link CarUserManager} or {@link #EVENT_TYPE_USER_INFO_CHANGED}.
+     */
+    public static String eventTypeToString(int eventType) {
+        return eventType == EVENT_TYPE_USER_INFO_CHANGED
+                ? "USER_INFO_CHANGED" : lifecycleEventTypeToString(eventType);
+    }
+
+    /** The events of a user received since its subscribers were last notified. */
+    public static final class UserEvents {
+        private final @UserIdInt int mUserId;
+        private int mLatestEventType;
+        /** Bit {@code 1 << eventType} is set for every type of event received. */
+        private int mEventTypes;
+
+        public UserEvents(@UserIdInt int userId, int eventType) {
+            mUserId = userId;
+            add(eventType);
+        }
+
+        private void add(int eventType) {
+            mLatestEventType = eventType;
+            mEventTypes |= 1 << eventType;
+        }
+
+        public @UserIdInt int getUserId() {
+            return mUserId;
+        }
+
+        /** Returns the type of the last event received. */
+        public int getLatestEventType() {
+            return mLatestEventType;
+        }
+
+        /** Returns whether an event of the given type was received. */
+        public boolean hasEventType(int eventType) {
+            return (mEventTypes & (1 << eventType)) != 0;
+        }
+
+        @Override
+        public String toString() {
+            return "UserEvents{userId=" + mUserId + ", latest="
+                    + eventTypeToString(mLatestEventType) + "}";
+        }
+    }
+
+    /** Receives every event on the background executor. */
+    public interface Observer {
+        /** Called for each event of the given user. */
+        @WorkerThread
+        void onUserLifecycleEvent(@UserIdInt int userId, int eventType);
+    }
+
+    /** Receives the events of the subscribed types, coalesced per user, on the main thread. */
+    public interface Subscriber {
+        /** Called with the events of a user received since the last call. */
+        @MainThread
+        void onUserEvents(UserEvents events);
+    }
+
+    private final class Subscription {
+        private final Subscriber mSubscriber;
+        private final int mEventTypes;
+        /** Events waiting for the delivery posted to the main thread. */
+        @GuardedBy("mLock")
+        private SparseArray<UserEvents> mPendingEvents = new SparseArray<>();
+
+        Subscription(Subscriber subscriber, int... eventTypes) {
+            mSubscriber = subscriber;
+            int types = 0;
+            for (int eventType : eventTypes) {
+                types |= 1 << eventType;
+            }
+            mEventTypes = types;
+        }
+
+        /**
+         * Queues the event if it is of a subscribed type, and returns whether a delivery has to
+         * be posted for it.
+         */
+        boolean enqueue(@UserIdInt int userId, int eventType) {
+            if ((mEventTypes & (1 << eventType)) == 0) {
+                return false;
+            }
+            boolean wasEmpty = mPendingEvents.size() == 0;
+            UserEvents events = mPendingEvents.get(userId);
+            if (events == null) {
+                mPendingEvents.put(userId, new UserEvents(userId, eventType));
+            } else {
+                events.add(eventType);
+            }
+            return wasEmpty;
+        }
+
+        SparseArray<UserEvents> drain() {
+            SparseArray<UserEvents> pendingEvents = mPendingEvents;
+            mPendingEvents = new SparseArray<>();
+            return pendingEvents;
+        }
+    }
+}
@@ -29,12 +29,16 @@ import androidx.recyclerview.widget.GridLayoutManager;
 
 import com.android.systemui.R;
 import com.android.systemui.car.CarServiceProvider;
+import com.android.systemui.car.users.UserLifecycleEventBus;
 import com.android.systemui.car.window.OverlayViewController;
 import com.android.systemui.car.window.OverlayViewGlobalStateController;
 import com.android.systemui.dagger.SysUISingleton;
+import com.android.systemui.dagger.qualifiers.Background;
 import com.android.systemui.dagger.qualifiers.Main;
 import com.android.systemui.settings.UserTracker;
 
+import java.util.concurrent.Executor;
+
 import javax.inject.Inject;
 
 /**
@@ -46,6 +50,8 @@ public class FullScreenUserSwitcherViewController extends OverlayViewController
     private final UserTracker mUserTracker;
     private final Resources mResources;
     private final CarServiceProvider mCarServiceProvider;
+    private final UserLifecycleEventBus mUserLifecycleEventBus;
+    private final Executor mBackgroundExecutor;
     private final int mShortAnimationDuration;
     private CarUserManager mCarUserManager;
     private UserGridRecyclerView mUserGridView;
@@ -57,12 +63,16 @@ public class FullScreenUserSwitcherViewController extends OverlayViewController
             UserTracker userTracker,
             @Main Resources resources,
             CarServiceProvider carServiceProvider,
+            UserLifecycleEventBus userLifecycleEventBus,
+            @Background Executor backgroundExecutor,
             OverlayViewGlobalStateController overlayViewGlobalStateController) {
         super(R.id.fullscreen_user_switcher_stub, overlayViewGlobalStateController);
         mContext = context;
         mUserTracker = userTracker;
         mResources = resources;
         mCarServiceProvider = carServiceProvider;
+        mUserLifecycleEventBus = userLifecycleEventBus;
+        mBackgroundExecutor = backgroundExecutor;
         mCarServiceProvider.addListener(car -> {
             mCarUserManager = (CarUserManager) car.getCarManager(Car.CAR_USER_SERVICE);
             registerCarUserManagerIfPossible();
@@ -90,7 +100,9 @@ public class FullScreenUserSwitcherViewController extends OverlayViewController
         GridLayoutManager layoutManager = new GridLayoutManager(mContext,
                 mResources.getInteger(R.integer.user_fullscreen_switcher_num_col));
         mUserGridView.setLayoutManager(layoutManager);
+        mUserGridView.setBackgroundExecutor(mBackgroundExecutor);
         mUserGridView.setUserTracker(mUserTracker);
+        mUserGridView.setUserLifecycleEventBus(mUserLifecycleEventBus);
         mUserGridView.buildAdapter();
         mUserGridView.setUserSelectionListener(mUserSelectionListener);
         registerCarUserManagerIfPossible();
@@ -18,11 +18,15 @@ package com.android.systemui.car.userswitcher;
 
 import static android.content.DialogInterface.BUTTON_NEGATIVE;
 import static android.content.DialogInterface.BUTTON_POSITIVE;
+import static android.car.user.CarUserManager.USER_LIFECYCLE_EVENT_TYPE_CREATED;
+import static android.car.user.CarUserManager.USER_LIFECYCLE_EVENT_TYPE_REMOVED;
+import static android.car.user.CarUserManager.USER_LIFECYCLE_EVENT_TYPE_SWITCHING;
 import static android.os.UserManager.DISALLOW_ADD_USER;
 import static android.os.UserManager.SWITCHABILITY_STATUS_OK;
 import static android.view.WindowInsets.Type.statusBars;
 
 import static com.android.systemui.car.users.CarSystemUIUserUtil.getCurrentUserHandle;
+import static com.android.systemui.car.users.UserLifecycleEventBus.EVENT_TYPE_USER_INFO_CHANGED;
 
 import android.annotation.IntDef;
 import android.annotation.Nullable;
@@ -34,11 +38,8 @@ import android.car.user.CarUserManager;
 import android.car.user.UserCreationResult;
 import android.car.user.UserSwitchResult;
 import android.car.util.concurrent.AsyncFuture;
-import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.DialogInterface;
-import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.pm.UserInfo;
 import android.content.res.Resources;
 import android.graphics.Rect;
@@ -47,6 +48,7 @@ import android.os.AsyncTask;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.sysprop.CarProperties;
+import android.util.ArraySet;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -58,6 +60,7 @@ import android.widget.TextView;
 
 import androidx.core.graphics.drawable.RoundedBitmapDrawable;
 import androidx.core.graphics.drawable.RoundedBitmapDrawableFactory;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
@@ -66,12 +69,17 @@ import com.android.car.internal.user.UserHelper;
 import com.android.internal.util.UserIcons;
 import com.android.settingslib.utils.StringUtil;
 import com.android.systemui.R;
+import com.android.systemui.car.users.UserLifecycleEventBus;
+import com.android.systemui.car.users.UserLifecycleEventBus.UserEvents;
 import com.android.systemui.settings.UserTracker;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -85,8 +93,11 @@ public class UserGridRecyclerView extends RecyclerView {
     private static final String TAG = UserGridRecyclerView.class.getSimpleName();
     private static final int TIMEOUT_MS = CarProperties.user_hal_timeout().orElse(5_000) + 500;
 
+    /** Runs the blocking user switch calls. */
     private final ExecutorService mWorker;
 
+    /** Builds the user records and their differences, so that they never wait for mWorker. */
+    private Executor mBackgroundExecutor;
     @Nullable
     private UserTracker mUserTracker;
     private UserSelectionListener mUserSelectionListener;
@@ -95,13 +106,18 @@ public class UserGridRecyclerView extends RecyclerView {
     private UserManager mUserManager;
     private Context mContext;
     private UserIconProvider mUserIconProvider;
+    /**
+     * Users whose info changed since the records were last updated, so that their tiles are
+     * rebound even though their records look the same. Only accessed on the main thread.
+     */
+    private final Set<Integer> mUsersWithChangedInfo = new ArraySet<>();
+    /** Incremented whenever the records are updated, so that outdated differences are dropped. */
+    private int mUsersGeneration;
 
-    private final BroadcastReceiver mUserUpdateReceiver = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            onUsersUpdate();
-        }
-    };
+    @Nullable
+    private UserLifecycleEventBus mUserLifecycleEventBus;
+
+    private final UserLifecycleEventBus.Subscriber mUserEventsSubscriber = this::onUserEvents;
 
     public UserGridRecyclerView(Context context, AttributeSet attrs) {
         super(context, attrs);
@@ -114,15 +130,6 @@ public class UserGridRecyclerView extends RecyclerView {
                 R.dimen.car_user_switcher_vertical_spacing_between_users)));
     }
 
-    /**
-     * Register listener for any update to the users
-     */
-    @Override
-    public void onFinishInflate() {
-        super.onFinishInflate();
-        registerForUserEvents();
-    }
-
     /**
      * Unregisters listener checking for any change to the users
      */
@@ -202,10 +209,25 @@ public class UserGridRecyclerView extends RecyclerView {
         return new UserRecord(null /* userInfo */, UserRecord.ADD_USER);
     }
 
+    /**
+     * Sets the executor the user records are rebuilt on when the users change. Must be called
+     * before {@link #buildAdapter()}.
+     */
+    public void setBackgroundExecutor(Executor backgroundExecutor) {
+        mBackgroundExecutor = backgroundExecutor;
+    }
+
     public void setUserTracker(UserTracker userTracker) {
         mUserTracker = userTracker;
     }
 
+    /** Sets the {@link UserLifecycleEventBus} and registers for any update to the users. */
+    public void setUserLifecycleEventBus(UserLifecycleEventBus userLifecycleEventBus) {
+        unregisterForUserEvents();
+        mUserLifecycleEventBus = userLifecycleEventBus;
+        registerForUserEvents();
+    }
+
     public void setUserSelectionListener(UserSelectionListener userSelectionListener) {
         mUserSelectionListener = userSelectionListener;
     }
@@ -219,31 +241,57 @@ public class UserGridRecyclerView extends RecyclerView {
         return getCurrentUserHandle(mContext, mUserTracker).getIdentifier();
     }
 
+    /**
+     * Recreates the user records and computes which of them changed in the background, then only
+     * rebinds the tiles of the changed records.
+     */
     private void onUsersUpdate() {
         if (mAdapter == null) {
             return;
         }
-        mAdapter.clearUsers();
-        mAdapter.updateUsers(createUserRecords(getUsersForUserGrid()));
-        mAdapter.notifyDataSetChanged();
+        int generation = ++mUsersGeneration;
+        List<UserRecord> oldUsers = mAdapter.mUsers;
+        Set<Integer> usersWithChangedInfo = new ArraySet<>(mUsersWithChangedInfo);
+        mUsersWithChangedInfo.clear();
+        mBackgroundExecutor.execute(() -> {
+            List<UserRecord> newUsers = createUserRecords(getUsersForUserGrid());
+            DiffUtil.DiffResult diffResult = DiffUtil.calculateDiff(
+                    new UserRecordDiffCallback(oldUsers, newUsers, usersWithChangedInfo),
+                    /* detectMoves= */ false);
+            mContext.getMainExecutor().execute(() -> {
+                if (generation != mUsersGeneration || mAdapter == null) {
+                    // Records were updated again in the meantime.
+                    return;
+                }
+                mAdapter.updateUsers(newUsers);
+                diffResult.dispatchUpdatesTo(mAdapter);
+            });
+        });
+    }
+
+    private void onUserEvents(UserEvents events) {
+        if (events.hasEventType(EVENT_TYPE_USER_INFO_CHANGED)) {
+            // Drop the cached icon first, in case this is received before the cache is notified.
+            mUserIconProvider.invalidateUserIcon(mContext, events.getUserId());
+            mUsersWithChangedInfo.add(events.getUserId());
+        }
+        onUsersUpdate();
     }
 
     private void registerForUserEvents() {
-        IntentFilter filter = new IntentFilter();
-        filter.addAction(Intent.ACTION_USER_REMOVED);
-        filter.addAction(Intent.ACTION_USER_ADDED);
-        filter.addAction(Intent.ACTION_USER_INFO_CHANGED);
-        filter.addAction(Intent.ACTION_USER_SWITCHED);
-        mContext.registerReceiverAsUser(
-                mUserUpdateReceiver,
-                UserHandle.ALL, // Necessary because CarSystemUi lives in User 0
-                filter,
-                /* broadcastPermission= */ null,
-                /* scheduler= */ null);
+        if (mUserLifecycleEventBus == null) {
+            return;
+        }
+        mUserLifecycleEventBus.subscribe(mUserEventsSubscriber,
+                USER_LIFECYCLE_EVENT_TYPE_CREATED, USER_LIFECYCLE_EVENT_TYPE_REMOVED,
+                USER_LIFECYCLE_EVENT_TYPE_SWITCHING, EVENT_TYPE_USER_INFO_CHANGED);
     }
 
     private void unregisterForUserEvents() {
-        mContext.unregisterReceiver(mUserUpdateReceiver);
+        if (mUserLifecycleEventBus == null) {
+            return;
+        }
+        mUserLifecycleEventBus.unsubscribe(mUserEventsSubscriber);
     }
 
     /**
@@ -266,6 +314,7 @@ public class UserGridRecyclerView extends RecyclerView {
         public UserAdapter(Context context, List<UserRecord> users) {
             mRes = context.getResources();
             mContext = context;
+            setHasStableIds(true);
             updateUsers(users);
             mGuestName = mRes.getString(com.android.internal.R.string.guest_name);
             mNewUserName = mRes.getString(R.string.car_new_user);
@@ -285,6 +334,11 @@ public class UserGridRecyclerView extends RecyclerView {
             mUsers = users;
         }
 
+        @Override
+        public long getItemId(int position) {
+            return mUsers.get(position).getStableId();
+        }
+
         @Override
         public UserAdapterViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
             View view = LayoutInflater.from(mContext)
@@ -638,10 +692,82 @@ public class UserGridRecyclerView extends RecyclerView {
         @Retention(RetentionPolicy.SOURCE)
         public @interface UserRecordType{}
 
+        private static final long START_GUEST_STABLE_ID = -2;
+        private static final long ADD_USER_STABLE_ID = -3;
+
         public UserRecord(@Nullable UserInfo userInfo, @UserRecordType int recordType) {
             mInfo = userInfo;
             mType = recordType;
         }
+
+        /**
+         * Returns an ID that identifies this record across updates of the user records: the user
+         * id for user records, or a negative ID for the guest and add user buttons.
+         */
+        long getStableId() {
+            switch (mType) {
+                case START_GUEST:
+                    return START_GUEST_STABLE_ID;
+                case ADD_USER:
+                    return ADD_USER_STABLE_ID;
+                default:
+                    return mInfo != null ? mInfo.id : RecyclerView.NO_ID;
+            }
+        }
+
+        /** Returns whether the given record would be displayed the same way as this one. */
+        boolean hasSameContents(UserRecord other) {
+            if (mType != other.mType) {
+                return false;
+            }
+            if (mInfo == null || other.mInfo == null) {
+                return mInfo == other.mInfo;
+            }
+            return mInfo.id == other.mInfo.id
+                    && mInfo.flags == other.mInfo.flags
+                    && Objects.equals(mInfo.name, other.mInfo.name);
+        }
+    }
+
+    private static final class UserRecordDiffCallback extends DiffUtil.Callback {
+        private final List<UserRecord> mOldUsers;
+        private final List<UserRecord> mNewUsers;
+        private final Set<Integer> mUsersWithChangedInfo;
+
+        UserRecordDiffCallback(List<UserRecord> oldUsers, List<UserRecord> newUsers,
+                Set<Integer> usersWithChangedInfo) {
+            mOldUsers = oldUsers;
+            mNewUsers = newUsers;
+            mUsersWithChangedInfo = usersWithChangedInfo;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldUsers.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewUsers.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldUsers.get(oldItemPosition).getStableId()
+                    == mNewUsers.get(newItemPosition).getStableId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            UserRecord newRecord = mNewUsers.get(newItemPosition);
+            if (newRecord.mInfo != null
+                    && (mUsersWithChangedInfo.contains(newRecord.mInfo.id)
+                    || mUsersWithChangedInfo.contains(UserHandle.USER_NULL))) {
+                // Icons can change without the user info looking any different.
+                return false;
+            }
+            return mOldUsers.get(oldItemPosition).hasSameContents(newRecord);
+        }
     }
 
     /**
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.systemui.car.userswitcher;
+
+import android.annotation.UserIdInt;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.graphics.Bitmap;
+import android.os.UserHandle;
+import android.util.LruCache;
+
+import androidx.annotation.Nullable;
+
+import com.android.internal.annotations.GuardedBy;
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.util.Objects;
+
+/**
+ * Process-wide cache of the user icons rendered by {@link UserIconProvider}, so that the user
+ * pickers and the user switch transition do not decode the same icons over and over.
+ *
+ * Icons are keyed by user, size and whether they are badged, and the cache is bounded by the
+ * total size of the bitmaps. All the icons of a user are dropped when its info changes or when it
+ * is removed.
+ */
+final class UserIconCache {
+    @VisibleForTesting
+    static final int MAX_SIZE_BYTES = 4 * 1024 * 1024;
+
+    @GuardedBy("UserIconCache.class")
+    private static UserIconCache sInstance;
+
+    private final Object mLock = new Object();
+    @GuardedBy("mLock")
+    private final LruCache<Key, Bitmap> mIcons = new LruCache<Key, Bitmap>(MAX_SIZE_BYTES) {
+        @Override
+        protected int sizeOf(Key key, Bitmap icon) {
+            return icon.getAllocationByteCount();
+        }
+    };
+    /**
+     * Incremented whenever icons are invalidated, so that icons loaded concurrently with the
+     * invalidation are not cached.
+     */
+    @GuardedBy("mLock")
+    private int mGeneration;
+
+    private final BroadcastReceiver mUserChangedReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            invalidate(intent.getIntExtra(Intent.EXTRA_USER_HANDLE, UserHandle.USER_NULL));
+        }
+    };
+
+    /** Returns the cache shared by the whole process. */
+    static UserIconCache getInstance(Context context) {
+        synchronized (UserIconCache.class) {
+            if (sInstance == null) {
+                sInstance = new UserIconCache();
+                sInstance.registerReceiver(context.getApplicationContext());
+            }
+            return sInstance;
+        }
+    }
+
+    @VisibleForTesting
+    UserIconCache() {
+    }
+
+    private void registerReceiver(Context context) {
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_USER_INFO_CHANGED);
+        filter.addAction(Intent.ACTION_USER_REMOVED);
+        context.registerReceiverForAllUsers(mUserChangedReceiver, filter,
+                /* broadcastPermission= */ null, /* scheduler= */ null);
+    }
+
+    /** Returns the cached icon, or {@code null} if it is not cached. */
+    @Nullable
+    Bitmap get(@UserIdInt int userId, int size, boolean badged) {
+        synchronized (mLock) {
+            return mIcons.get(new Key(userId, size, badged));
+        }
+    }
+
+    /**
+     * Returns the current generation of the cache, to be passed to
+     * {@link #put(int, int, boolean, Bitmap, int)} once an icon is loaded.
+     */
+    int getGeneration() {
+        synchronized (mLock) {
+            return mGeneration;
+        }
+    }
+
+    /** Caches the given icon, unless icons were invalidated since the given generation. */
+    void put(@UserIdInt int userId, int size, boolean badged, Bitmap icon, int generation) {
+        synchronized (mLock) {
+            if (mGeneration == generation) {
+                mIcons.put(new Key(userId, size, badged), icon);
+            }
+        }
+    }
+
+    /** Drops all the cached icons of the given user, or of every user for {@code USER_NULL}. */
+    void invalidate(@UserIdInt int userId) {
+        synchronized (mLock) {
+            mGeneration++;
+            if (userId == UserHandle.USER_NULL) {
+                mIcons.evictAll();
+                return;
+            }
+            for (Key key : mIcons.snapshot().keySet()) {
+                if (key.mUserId == userId) {
+                    mIcons.remove(key);
+                }
+            }
+        }
+    }
+
+    private static final class Key {
+        final int mUserId;
+        final int mSize;
+        final boolean mBadged;
+
+        Key(int userId, int size, boolean badged) {
+            mUserId = userId;
+            mSize = size;
+            mBadged = badged;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return mUserId == key.mUserId && mSize == key.mSize && mBadged == key.mBadged;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mUserId, mSize, mBadged);
+        }
+    }
+}
@@ -19,23 +19,46 @@ package com.android.systemui.car.userswitcher;
 import android.annotation.UserIdInt;
 import android.content.Context;
 import android.content.pm.UserInfo;
-import android.content.res.Resources;
 import android.graphics.Bitmap;
+import android.graphics.Canvas;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.os.UserHandle;
 import android.os.UserManager;
 
+import androidx.annotation.Nullable;
 import androidx.core.graphics.drawable.RoundedBitmapDrawable;
 
 import com.android.car.admin.ui.UserAvatarView;
 import com.android.car.internal.user.UserHelper;
+import com.android.internal.annotations.VisibleForTesting;
 import com.android.systemui.R;
 
+import java.util.List;
+import java.util.concurrent.Executor;
+
 /**
  * Simple class for providing icons for users.
+ *
+ * User icons, with or without badge, are cached in a {@link UserIconCache} shared by the whole
+ * process. They can be loaded ahead of time with {@link #warmUpUserIcons}.
  */
 public class UserIconProvider {
+    /** Size key of the icons as stored by {@link UserManager}, regardless of their size. */
+    private static final int ORIGINAL_SIZE = 0;
+
+    @Nullable
+    private final UserIconCache mUserIconCache;
+
+    public UserIconProvider() {
+        this(/* userIconCache= */ null);
+    }
+
+    @VisibleForTesting
+    UserIconProvider(@Nullable UserIconCache userIconCache) {
+        mUserIconCache = userIconCache;
+    }
+
     /**
      * Sets a rounded icon with the first letter of the given user name.
      * This method will update UserManager to use that icon.
@@ -45,6 +68,17 @@ public class UserIconProvider {
      */
     public void setRoundedUserIcon(UserInfo userInfo, Context context) {
         UserHelper.assignDefaultIcon(context, userInfo.getUserHandle());
+        invalidateUserIcon(context, userInfo.id);
+    }
+
+    /**
+     * Drops the cached icons of the given user, e.g. because its info changed.
+     *
+     * @param context Context to use for the cache
+     * @param userId User whose icons changed, or {@code USER_NULL} for every user
+     */
+    public void invalidateUserIcon(Context context, @UserIdInt int userId) {
+        getUserIconCache(context).invalidate(userId);
     }
 
     /**
@@ -56,15 +90,7 @@ public class UserIconProvider {
      * @return {@link RoundedBitmapDrawable} representing the icon for the user.
      */
     public Drawable getRoundedUserIcon(UserInfo userInfo, Context context) {
-        UserManager userManager = context.getSystemService(UserManager.class);
-        Resources res = context.getResources();
-        Bitmap icon = userManager.getUserIcon(userInfo.id);
-
-        if (icon == null) {
-            icon = UserHelper.assignDefaultIcon(context, userInfo.getUserHandle());
-        }
-
-        return new BitmapDrawable(res, icon);
+        return new BitmapDrawable(context.getResources(), getUserIconBitmap(userInfo, context));
     }
 
     /**
@@ -75,7 +101,93 @@ public class UserIconProvider {
      * @return {@link Drawable} with badge
      */
     public Drawable getDrawableWithBadge(Context context, UserInfo userInfo) {
-        return addBadge(context, getRoundedUserIcon(userInfo, context), userInfo.id);
+        return new BitmapDrawable(context.getResources(),
+                getBadgedUserIconBitmap(context, userInfo));
+    }
+
+    /**
+     * Gets a user icon with badge if the user profile is managed, only if it is already cached.
+     *
+     * @param context to use for the resources
+     * @param userInfo User for which the icon is requested and badge is set
+     * @return {@link Drawable} with badge, or {@code null} if the icon must be loaded first
+     */
+    @Nullable
+    public Drawable getCachedDrawableWithBadge(Context context, UserInfo userInfo) {
+        UserIconCache cache = getUserIconCache(context);
+        Bitmap icon = cache.get(userInfo.id, ORIGINAL_SIZE, /* badged= */ false);
+        if (icon == null) {
+            return null;
+        }
+        Bitmap badgedIcon = cache.get(userInfo.id,
+                new BitmapDrawable(context.getResources(), icon).getIntrinsicWidth(),
+                /* badged= */ true);
+        return badgedIcon != null ? new BitmapDrawable(context.getResources(), badgedIcon) : null;
+    }
+
+    /**
+     * Loads the icons of the given users into the cache on the given executor, so that they are
+     * ready by the time they are displayed.
+     *
+     * @param context Context to use for resources
+     * @param users Users for which the icons are loaded
+     * @param withBadge whether the icons with badge are loaded as well
+     * @param executor Executor to load the icons on, which should not be the main thread
+     */
+    public void warmUpUserIcons(Context context, List<UserInfo> users, boolean withBadge,
+            Executor executor) {
+        executor.execute(() -> {
+            for (int i = 0; i < users.size(); i++) {
+                if (withBadge) {
+                    getBadgedUserIconBitmap(context, users.get(i));
+                } else {
+                    getUserIconBitmap(users.get(i), context);
+                }
+            }
+        });
+    }
+
+    private Bitmap getUserIconBitmap(UserInfo userInfo, Context context) {
+        UserIconCache cache = getUserIconCache(context);
+        Bitmap icon = cache.get(userInfo.id, ORIGINAL_SIZE, /* badged= */ false);
+        if (icon != null) {
+            return icon;
+        }
+
+        int generation = cache.getGeneration();
+        UserManager userManager = context.getSystemService(UserManager.class);
+        icon = userManager.getUserIcon(userInfo.id);
+
+        if (icon == null) {
+            icon = UserHelper.assignDefaultIcon(context, userInfo.getUserHandle());
+        }
+
+        cache.put(userInfo.id, ORIGINAL_SIZE, /* badged= */ false, icon, generation);
+        return icon;
+    }
+
+    private Bitmap getBadgedUserIconBitmap(Context context, UserInfo userInfo) {
+        UserIconCache cache = getUserIconCache(context);
+        int generation = cache.getGeneration();
+        Drawable icon = new BitmapDrawable(context.getResources(),
+                getUserIconBitmap(userInfo, context));
+        int iconSize = icon.getIntrinsicWidth();
+        Bitmap badgedIcon = cache.get(userInfo.id, iconSize, /* badged= */ true);
+        if (badgedIcon != null) {
+            return badgedIcon;
+        }
+
+        // Pre-render the badged icon, so that the avatar view is not needed to draw it again.
+        Drawable badgedDrawable = addBadge(context, icon, userInfo.id);
+        badgedIcon = Bitmap.createBitmap(iconSize, iconSize, Bitmap.Config.ARGB_8888);
+        badgedIcon.setDensity(context.getResources().getDisplayMetrics().densityDpi);
+        badgedDrawable.draw(new Canvas(badgedIcon));
+        cache.put(userInfo.id, iconSize, /* badged= */ true, badgedIcon, generation);
+        return badgedIcon;
+    }
+
+    private UserIconCache getUserIconCache(Context context) {
+        return mUserIconCache != null ? mUserIconCache : UserIconCache.getInstance(context);
     }
 
     /**
@@ -21,6 +21,7 @@ import static android.car.settings.CarSettings.Global.ENABLE_USER_SWITCH_DEVELOP
 import android.annotation.UserIdInt;
 import android.app.ActivityManager;
 import android.content.Context;
+import android.content.pm.UserInfo;
 import android.content.res.Resources;
 import android.graphics.drawable.Drawable;
 import android.os.RemoteException;
@@ -38,9 +39,12 @@ import com.android.systemui.R;
 import com.android.systemui.car.window.OverlayViewController;
 import com.android.systemui.car.window.OverlayViewGlobalStateController;
 import com.android.systemui.dagger.SysUISingleton;
+import com.android.systemui.dagger.qualifiers.Background;
 import com.android.systemui.dagger.qualifiers.Main;
 import com.android.systemui.util.concurrency.DelayableExecutor;
 
+import java.util.concurrent.Executor;
+
 import javax.inject.Inject;
 
 /**
@@ -55,6 +59,7 @@ public class UserSwitchTransitionViewController extends OverlayViewController {
     private final Context mContext;
     private final Resources mResources;
     private final DelayableExecutor mMainExecutor;
+    private final Executor mBackgroundExecutor;
     private final ActivityManager mActivityManager;
     private final UserManager mUserManager;
     private final IWindowManager mWindowManagerService;
@@ -80,6 +85,7 @@ public class UserSwitchTransitionViewController extends OverlayViewController {
             Context context,
             @Main Resources resources,
             @Main DelayableExecutor delayableExecutor,
+            @Background Executor backgroundExecutor,
             ActivityManager activityManager,
             UserManager userManager,
             IWindowManager windowManagerService,
@@ -90,11 +96,13 @@ public class UserSwitchTransitionViewController extends OverlayViewController {
         mContext = context;
         mResources = resources;
         mMainExecutor = delayableExecutor;
+        mBackgroundExecutor = backgroundExecutor;
         mActivityManager = activityManager;
         mUserManager = userManager;
         mWindowManagerService = windowManagerService;
         mWindowShownTimeoutMs = mResources.getInteger(
                 R.integer.config_userSwitchTransitionViewShownTimeoutMs);
+        warmUpUserIcons();
     }
 
     @Override
@@ -143,6 +151,8 @@ public class UserSwitchTransitionViewController extends OverlayViewController {
             if (mCancelRunnable != null) {
                 mCancelRunnable.run();
             }
+            // Icons may have changed since they were loaded, so reload them for the next switch.
+            warmUpUserIcons();
         });
     }
 
@@ -156,11 +166,31 @@ public class UserSwitchTransitionViewController extends OverlayViewController {
         populateLoadingText(previousUserId, newUserId);
     }
 
+    /**
+     * Loads the icons of the users in the background, so that the icon of the new user does not
+     * need to be decoded on the main thread when a user switch starts.
+     */
+    private void warmUpUserIcons() {
+        mBackgroundExecutor.execute(() -> mUserIconProvider.warmUpUserIcons(mContext,
+                mUserManager.getAliveUsers(), /* withBadge= */ true, Runnable::run));
+    }
+
     private void drawUserIcon(int newUserId) {
-        Drawable userIcon = mUserIconProvider.getDrawableWithBadge(mContext,
-                mUserManager.getUserInfo(newUserId));
-        ((ImageView) getLayout().findViewById(R.id.user_loading_avatar))
-                .setImageDrawable(userIcon);
+        ImageView userIconView = getLayout().findViewById(R.id.user_loading_avatar);
+        UserInfo userInfo = mUserManager.getUserInfo(newUserId);
+        Drawable userIcon = mUserIconProvider.getCachedDrawableWithBadge(mContext, userInfo);
+        userIconView.setImageDrawable(userIcon);
+        if (userIcon != null) {
+            return;
+        }
+        mBackgroundExecutor.execute(() -> {
+            Drawable loadedIcon = mUserIconProvider.getDrawableWithBadge(mContext, userInfo);
+            mMainExecutor.execute(() -> {
+                if (mShowing && mNewUserId == newUserId) {
+                    userIconView.setImageDrawable(loadedIcon);
+                }
+            });
+        });
     }
 
     private void populateLoadingText(@UserIdInt int previousUserId, @UserIdInt int newUserId) {
@@ -31,7 +31,7 @@ import android.animation.AnimatorSet;
 import android.animation.ObjectAnimator;
 import android.animation.PropertyValuesHolder;
 import android.annotation.DrawableRes;
-import android.annotation.Nullable;
+import android.annotation.MainThread;
 import android.app.Dialog;
 import android.app.KeyguardManager;
 import android.app.UiModeManager;
@@ -59,8 +59,10 @@ import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
 import android.util.AttributeSet;
+import android.util.DisplayMetrics;
 import android.util.Log;
 import android.util.SparseArray;
+import android.util.SparseIntArray;
 import android.util.Xml;
 import android.view.Gravity;
 import android.view.MotionEvent;
@@ -71,6 +73,7 @@ import android.view.WindowManager;
 import android.widget.SeekBar;
 import android.widget.SeekBar.OnSeekBarChangeListener;
 
+import androidx.annotation.VisibleForTesting;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
@@ -79,6 +82,8 @@ import com.android.systemui.car.CarServiceProvider;
 import com.android.systemui.plugins.VolumeDialog;
 import com.android.systemui.settings.UserTracker;
 import com.android.systemui.statusbar.policy.ConfigurationController;
+import com.android.systemui.util.concurrency.DelayableExecutor;
+import com.android.systemui.util.time.SystemClock;
 import com.android.systemui.volume.Events;
 import com.android.systemui.volume.SystemUIInterpolators;
 import com.android.systemui.volume.VolumeDialogImpl;
@@ -115,6 +120,9 @@ public class CarVolumeDialogImpl
     private final List<VolumeItem> mAvailableVolumeItems = new ArrayList<>();
     // Volume items in the RecyclerView.
     private final List<CarVolumeItem> mCarVolumeLineItems = new ArrayList<>();
+    // Group id -> position of its item in the RecyclerView.
+    private final SparseIntArray mCarVolumeLineItemPositions = new SparseIntArray();
+    private final ExpandIconListener mExpandIconListener = new ExpandIconListener();
     private final KeyguardManager mKeyguard;
     private final int mNormalTimeout;
     private final int mHoveringTimeout;
@@ -125,6 +133,7 @@ public class CarVolumeDialogImpl
     private final UserTracker mUserTracker;
     private final UiModeManager mUiModeManager;
     private final Executor mExecutor;
+    private final CarVolumeWriteQueue mVolumeWriteQueue;
 
     private Window mWindow;
     private CustomDialog mDialog;
@@ -138,8 +147,16 @@ public class CarVolumeDialogImpl
     private boolean mDismissing;
     private boolean mExpanded;
     private View mExpandIcon;
+    private Drawable mExpandIconDrawable;
     private boolean mHomeButtonPressedBroadcastReceiverRegistered;
     private boolean mIsUiModeNight;
+    // Whether the dialog is built and connected to the CarService, by warmUp() or init().
+    private boolean mPrepared;
+    private boolean mInitialized;
+    // Inflated once, and cloned for each expansion toggle.
+    private Animator mArrowFadeInRotateUpAnimator;
+    private Animator mArrowFadeInRotateDownAnimator;
+    private Animator mArrowFadeOutAnimator;
 
     private final CarAudioManager.CarVolumeCallback mVolumeChangeCallback =
             new CarAudioManager.CarVolumeCallback() {
@@ -201,7 +218,10 @@ public class CarVolumeDialogImpl
                         return;
                     }
                     mCarAudioManager = (CarAudioManager) car.getCarManager(Car.AUDIO_SERVICE);
+                    mVolumeWriteQueue.setCarAudioManager(mCarAudioManager);
                     if (mCarAudioManager != null) {
+                        // Drops the items of a previous connection, e.g. before destroy().
+                        mAvailableVolumeItems.clear();
                         int volumeGroupCount = mCarAudioManager.getVolumeGroupCount(mAudioZoneId);
                         // Populates volume slider items from volume groups to UI.
                         for (int groupId = 0; groupId < volumeGroupCount; groupId++) {
@@ -209,6 +229,8 @@ public class CarVolumeDialogImpl
                                     mCarAudioManager.getUsagesForVolumeGroupId(mAudioZoneId,
                                             groupId));
                             mAvailableVolumeItems.add(volumeItem);
+                            // Built once, then kept up to date by the volume change events.
+                            createCarVolumeListItem(volumeItem, mAudioZoneId, groupId);
                             // The first one is the default item.
                             if (groupId == 0) {
                                 clearAllAndSetupDefaultCarVolumeLineItem(0);
@@ -262,7 +284,9 @@ public class CarVolumeDialogImpl
             Context context,
             CarServiceProvider carServiceProvider,
             ConfigurationController configurationController,
-            UserTracker userTracker) {
+            UserTracker userTracker,
+            DelayableExecutor backgroundExecutor,
+            SystemClock systemClock) {
         mContext = context;
         mCarServiceProvider = carServiceProvider;
         mUserTracker = userTracker;
@@ -279,6 +303,9 @@ public class CarVolumeDialogImpl
         mUiModeManager = mContext.getSystemService(UiModeManager.class);
         mIsUiModeNight = mContext.getResources().getConfiguration().isNightModeActive();
         mExecutor = context.getMainExecutor();
+        mVolumeWriteQueue = new CarVolumeWriteQueue(backgroundExecutor, systemClock,
+                (zoneId, groupId, index) -> mExecutor.execute(
+                        () -> onVolumeIndexReconciled(zoneId, groupId, index)));
     }
 
     private static int getSeekbarValue(CarAudioManager carAudioManager, int volumeZoneId,
@@ -305,14 +332,16 @@ public class CarVolumeDialogImpl
      */
     @Override
     public void init(int windowType, Callback callback) {
-        initDialog();
+        if (!mPrepared) {
+            prepare();
+        }
+        mInitialized = true;
 
         // The VolumeDialog is not initialized until the first volume change for a particular zone
         // (to improve boot time by deferring initialization). Therefore, the dialog should be shown
         // on init to handle the first audio change.
         mHandler.obtainMessage(H.SHOW, Events.SHOW_REASON_VOLUME_CHANGED).sendToTarget();
 
-        mCarServiceProvider.addListener(mCarServiceOnConnectedListener);
         mContext.registerReceiverAsUser(mHomeButtonPressedBroadcastReceiver,
                 mUserTracker.getUserHandle(), new IntentFilter(Intent.ACTION_CLOSE_SYSTEM_DIALOGS),
                 /* broadcastPermission= */ null, /* scheduler= */ null, Context.RECEIVER_EXPORTED);
@@ -321,14 +350,70 @@ public class CarVolumeDialogImpl
         mConfigurationController.addCallback(this);
     }
 
+    /**
+     * Does ahead of the first volume change what showing the dialog for the first time needs:
+     * builds the dialog window, loads the volume items and the animators, connects to the
+     * CarService to bind the default volume item, and lays the dialog out off screen. Does
+     * nothing if the dialog is already built.
+     */
+    @MainThread
+    public void warmUp() {
+        if (mPrepared) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        prepare();
+        loadAnimators();
+
+        // Creates and binds the view holder of the default item.
+        View decorView = mWindow.getDecorView();
+        DisplayMetrics displayMetrics = mContext.getResources().getDisplayMetrics();
+        decorView.measure(
+                View.MeasureSpec.makeMeasureSpec(displayMetrics.widthPixels,
+                        View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(displayMetrics.heightPixels,
+                        View.MeasureSpec.AT_MOST));
+        decorView.layout(/* l= */ 0, /* t= */ 0, decorView.getMeasuredWidth(),
+                decorView.getMeasuredHeight());
+
+        if (DEBUG) {
+            Log.d(TAG, "warmUp took " + (System.currentTimeMillis() - startTime) + " ms");
+        }
+    }
+
+    private void prepare() {
+        initDialog();
+        mCarServiceProvider.addListener(mCarServiceOnConnectedListener);
+        mPrepared = true;
+    }
+
+    private void loadAnimators() {
+        if (mArrowFadeOutAnimator != null) {
+            return;
+        }
+        mArrowFadeInRotateUpAnimator = AnimatorInflater.loadAnimator(
+                mContext, R.anim.car_arrow_fade_in_rotate_up);
+        mArrowFadeInRotateDownAnimator = AnimatorInflater.loadAnimator(
+                mContext, R.anim.car_arrow_fade_in_rotate_down);
+        mArrowFadeOutAnimator = AnimatorInflater.loadAnimator(
+                mContext, R.anim.car_arrow_fade_out);
+    }
+
     @Override
     public void destroy() {
         mHandler.removeCallbacksAndMessages(/* token= */ null);
+        mPrepared = false;
+        mInitialized = false;
 
         mUserTracker.removeCallback(mUserTrackerCallback);
-        mContext.unregisterReceiver(mHomeButtonPressedBroadcastReceiver);
-        mHomeButtonPressedBroadcastReceiverRegistered = false;
+        // Not registered if the dialog was only warmed up.
+        if (mHomeButtonPressedBroadcastReceiverRegistered) {
+            mContext.unregisterReceiver(mHomeButtonPressedBroadcastReceiver);
+            mHomeButtonPressedBroadcastReceiverRegistered = false;
+        }
 
+        // prepare() adds it again when the dialog is initialized again.
+        mCarServiceProvider.removeListener(mCarServiceOnConnectedListener);
         cleanupAudioManager();
         mConfigurationController.removeCallback(this);
     }
@@ -349,9 +434,10 @@ public class CarVolumeDialogImpl
         if (isConfigNightMode != mIsUiModeNight) {
             mIsUiModeNight = isConfigNightMode;
             mUiModeManager.setNightModeActivated(mIsUiModeNight);
-            // Call notifyDataSetChanged to force trigger the mVolumeItemsAdapter#onBindViewHolder
-            // and reset items background color. notify() or invalidate() don't work here.
-            mVolumeItemsAdapter.notifyDataSetChanged();
+            // Rebind the items to force trigger the mVolumeItemsAdapter#onBindViewHolder and reset
+            // items background color. notify() or invalidate() don't work here.
+            mVolumeItemsAdapter.notifyItemRangeChanged(/* positionStart= */ 0,
+                    mCarVolumeLineItems.size());
         }
     }
 
@@ -437,9 +523,6 @@ public class CarVolumeDialogImpl
 
         rescheduleTimeoutH();
 
-        // Refresh the data set before showing.
-        mVolumeItemsAdapter.notifyDataSetChanged();
-
         if (mDialog.isShowing()) {
             if (mPreviouslyDisplayingGroupId == mCurrentlyDisplayingGroupId || mExpanded) {
                 return;
@@ -456,11 +539,50 @@ public class CarVolumeDialogImpl
     }
 
     private void clearAllAndSetupDefaultCarVolumeLineItem(int groupId) {
-        mCarVolumeLineItems.clear();
         VolumeItem volumeItem = mAvailableVolumeItems.get(groupId);
+        CarVolumeItem carVolumeItem = volumeItem.mCarVolumeItem;
+        int previousItemCount = mCarVolumeLineItems.size();
+        if (previousItemCount == 1 && mCarVolumeLineItems.get(0) == carVolumeItem) {
+            return;
+        }
+
+        mCarVolumeLineItems.clear();
         volumeItem.mDefaultItem = true;
-        addCarVolumeListItem(volumeItem, mAudioZoneId, /* volumeGroupId = */ groupId,
-                R.drawable.car_ic_keyboard_arrow_down, new ExpandIconListener());
+        if (mExpandIconDrawable == null) {
+            mExpandIconDrawable = mContext.getDrawable(R.drawable.car_ic_keyboard_arrow_down);
+            mExpandIconDrawable.mutate().setTint(mContext.getColor(R.color.car_volume_dialog_tint));
+        }
+        carVolumeItem.setSupplementalIcon(mExpandIconDrawable,
+                /* showSupplementalIconDivider= */ true);
+        carVolumeItem.setSupplementalIconListener(mExpandIconListener);
+        mCarVolumeLineItems.add(carVolumeItem);
+        updateCarVolumeLineItemPositions();
+
+        if (mVolumeItemsAdapter == null) {
+            return;
+        }
+        if (previousItemCount == 0) {
+            mVolumeItemsAdapter.notifyItemInserted(/* position= */ 0);
+            return;
+        }
+        mVolumeItemsAdapter.notifyItemChanged(/* position= */ 0);
+        if (previousItemCount > 1) {
+            mVolumeItemsAdapter.notifyItemRangeRemoved(/* positionStart= */ 1,
+                    previousItemCount - 1);
+        }
+    }
+
+    @VisibleForTesting
+    CarVolumeItemAdapter getVolumeItemsAdapter() {
+        return mVolumeItemsAdapter;
+    }
+
+    private void updateCarVolumeLineItemPositions() {
+        mCarVolumeLineItemPositions.clear();
+        for (int position = 0; position < mCarVolumeLineItems.size(); position++) {
+            mCarVolumeLineItemPositions.put(mCarVolumeLineItems.get(position).getGroupId(),
+                    position);
+        }
     }
 
     protected void rescheduleTimeoutH() {
@@ -507,6 +629,10 @@ public class CarVolumeDialogImpl
     }
 
     private void loadAudioUsageItems() {
+        if (mVolumeItems.size() > 0) {
+            // Already parsed, the config does not change at runtime.
+            return;
+        }
         if (DEBUG) {
             Log.i(TAG, "loadAudioUsageItems start");
         }
@@ -575,10 +701,12 @@ public class CarVolumeDialogImpl
     }
 
     private CarVolumeItem createCarVolumeListItem(VolumeItem volumeItem, int volumeZoneId,
-            int volumeGroupId, Drawable supplementalIcon, int seekbarProgressValue,
-            boolean isMuted, @Nullable View.OnClickListener supplementalIconOnClickListener) {
+            int volumeGroupId) {
+        int seekbarProgressValue = getSeekbarValue(mCarAudioManager, volumeZoneId, volumeGroupId);
+        boolean isMuted = isGroupMuted(mCarAudioManager, volumeZoneId, volumeGroupId);
+        int maxSeekbarValue = getMaxSeekbarValue(mCarAudioManager, volumeZoneId, volumeGroupId);
         CarVolumeItem carVolumeItem = new CarVolumeItem();
-        carVolumeItem.setMax(getMaxSeekbarValue(mCarAudioManager, volumeZoneId, volumeGroupId));
+        carVolumeItem.setMax(maxSeekbarValue);
         carVolumeItem.setProgress(seekbarProgressValue);
         carVolumeItem.setIsMuted(isMuted);
         carVolumeItem.setOnSeekBarChangeListener(
@@ -594,37 +722,17 @@ public class CarVolumeDialogImpl
         Drawable primaryMuteIcon = mContext.getDrawable(volumeItem.mMuteIcon);
         primaryMuteIcon.mutate().setTint(color);
         carVolumeItem.setPrimaryMuteIcon(primaryMuteIcon);
-
-        if (supplementalIcon != null) {
-            supplementalIcon.mutate().setTint(color);
-            carVolumeItem.setSupplementalIcon(supplementalIcon,
-                    /* showSupplementalIconDivider= */ true);
-            carVolumeItem.setSupplementalIconListener(supplementalIconOnClickListener);
-        } else {
-            carVolumeItem.setSupplementalIcon(/* drawable= */ null,
-                    /* showSupplementalIconDivider= */ false);
-        }
+        carVolumeItem.setSupplementalIcon(/* drawable= */ null,
+                /* showSupplementalIconDivider= */ false);
 
         volumeItem.mCarVolumeItem = carVolumeItem;
         volumeItem.mProgress = seekbarProgressValue;
+        volumeItem.mMax = maxSeekbarValue;
+        volumeItem.mIsMuted = isMuted;
 
         return carVolumeItem;
     }
 
-    private CarVolumeItem addCarVolumeListItem(VolumeItem volumeItem, int volumeZoneId,
-            int volumeGroupId, int supplementalIconId,
-            @Nullable View.OnClickListener supplementalIconOnClickListener) {
-        int seekbarProgressValue = getSeekbarValue(mCarAudioManager, volumeZoneId, volumeGroupId);
-        boolean isMuted = isGroupMuted(mCarAudioManager, volumeZoneId, volumeGroupId);
-        Drawable supplementalIcon = supplementalIconId == 0 ? null : mContext.getDrawable(
-                supplementalIconId);
-        CarVolumeItem carVolumeItem = createCarVolumeListItem(volumeItem, volumeZoneId,
-                volumeGroupId, supplementalIcon, seekbarProgressValue, isMuted,
-                supplementalIconOnClickListener);
-        mCarVolumeLineItems.add(carVolumeItem);
-        return carVolumeItem;
-    }
-
     private void cleanupAudioManager() {
         if (mCarAudioManager != null) {
             if (mCarAudioManager.isAudioFeatureEnabled(AUDIO_FEATURE_VOLUME_GROUP_EVENTS)) {
@@ -634,8 +742,10 @@ public class CarVolumeDialogImpl
                 mCarAudioManager.unregisterCarVolumeCallback(mVolumeChangeCallback);
             }
             mCarAudioManager = null;
+            mVolumeWriteQueue.setCarAudioManager(/* carAudioManager= */ null);
         }
         mCarVolumeLineItems.clear();
+        mCarVolumeLineItemPositions.clear();
     }
 
     /**
@@ -650,6 +760,7 @@ public class CarVolumeDialogImpl
         private int mMuteIcon;
         private CarVolumeItem mCarVolumeItem;
         private int mProgress;
+        private int mMax;
         private boolean mIsMuted;
     }
 
@@ -759,29 +870,33 @@ public class CarVolumeDialogImpl
         }
     }
 
-    private void toggleDialogExpansion(boolean isClicked) {
+    @VisibleForTesting
+    void toggleDialogExpansion(boolean isClicked) {
         mExpanded = !mExpanded;
+        loadAnimators();
         Animator inAnimator;
         if (mExpanded) {
+            int positionStart = mCarVolumeLineItems.size();
             for (int groupId = 0; groupId < mAvailableVolumeItems.size(); ++groupId) {
                 if (groupId != mCurrentlyDisplayingGroupId) {
-                    VolumeItem volumeItem = mAvailableVolumeItems.get(groupId);
-                    addCarVolumeListItem(volumeItem, mAudioZoneId, groupId,
-                            /* supplementalIconId= */ 0,
-                            /* supplementalIconOnClickListener= */ null);
+                    CarVolumeItem carVolumeItem = mAvailableVolumeItems.get(groupId).mCarVolumeItem;
+                    carVolumeItem.setSupplementalIcon(/* drawable= */ null,
+                            /* showSupplementalIconDivider= */ false);
+                    carVolumeItem.setSupplementalIconListener(/* listener= */ null);
+                    mCarVolumeLineItems.add(carVolumeItem);
                 }
             }
-            inAnimator = AnimatorInflater.loadAnimator(
-                    mContext, R.anim.car_arrow_fade_in_rotate_up);
+            updateCarVolumeLineItemPositions();
+            mVolumeItemsAdapter.notifyItemRangeInserted(positionStart,
+                    mCarVolumeLineItems.size() - positionStart);
+            inAnimator = mArrowFadeInRotateUpAnimator.clone();
 
         } else {
             clearAllAndSetupDefaultCarVolumeLineItem(mCurrentlyDisplayingGroupId);
-            inAnimator = AnimatorInflater.loadAnimator(
-                    mContext, R.anim.car_arrow_fade_in_rotate_down);
+            inAnimator = mArrowFadeInRotateDownAnimator.clone();
         }
 
-        Animator outAnimator = AnimatorInflater.loadAnimator(
-                mContext, R.anim.car_arrow_fade_out);
+        Animator outAnimator = mArrowFadeOutAnimator.clone();
         inAnimator.setStartDelay(ARROW_FADE_IN_START_DELAY_IN_MILLIS);
         AnimatorSet animators = new AnimatorSet();
         animators.playTogether(outAnimator, inAnimator);
@@ -792,7 +907,6 @@ public class CarVolumeDialogImpl
         }
         animators.setTarget(mExpandIcon);
         animators.start();
-        mVolumeItemsAdapter.notifyDataSetChanged();
     }
 
     private final class VolumeSeekBarChangeListener implements OnSeekBarChangeListener {
@@ -823,15 +937,18 @@ public class CarVolumeDialogImpl
             mAvailableVolumeItems.get(mVolumeGroupId).mProgress = progress;
             mAvailableVolumeItems.get(
                     mVolumeGroupId).mCarVolumeItem.setProgress(progress);
-            mCarAudioManager.setGroupVolume(mVolumeZoneId, mVolumeGroupId, progress, 0);
+            // Written off the main thread, at a bounded rate while the slider is dragged.
+            mVolumeWriteQueue.setGroupVolume(mVolumeZoneId, mVolumeGroupId, progress);
         }
 
         @Override
         public void onStartTrackingTouch(SeekBar seekBar) {
+            mVolumeWriteQueue.startTracking(mVolumeZoneId, mVolumeGroupId);
         }
 
         @Override
         public void onStopTrackingTouch(SeekBar seekBar) {
+            mVolumeWriteQueue.stopTracking(mVolumeZoneId, mVolumeGroupId);
         }
     }
 
@@ -865,6 +982,31 @@ public class CarVolumeDialogImpl
         return filteredEvents;
     }
 
+    /**
+     * Shows the volume index read back from the car audio service when the last index written
+     * from the slider was not acknowledged, e.g. because the service clamped it.
+     */
+    private void onVolumeIndexReconciled(int zoneId, int groupId, int index) {
+        if (zoneId != mAudioZoneId || groupId < 0 || groupId >= mAvailableVolumeItems.size()
+                || !mVolumeWriteQueue.shouldApplyVolumeIndex(zoneId, groupId, index)) {
+            return;
+        }
+        VolumeItem volumeItem = mAvailableVolumeItems.get(groupId);
+        if (volumeItem.mProgress == index) {
+            return;
+        }
+        volumeItem.mCarVolumeItem.setProgress(index);
+        volumeItem.mProgress = index;
+        notifyCarVolumeLineItemChanged(groupId);
+    }
+
+    private void notifyCarVolumeLineItemChanged(int groupId) {
+        int position = mCarVolumeLineItemPositions.get(groupId, /* valueIfKeyNotFound= */ -1);
+        if (position >= 0 && mVolumeItemsAdapter != null) {
+            mVolumeItemsAdapter.notifyItemChanged(position);
+        }
+    }
+
     private void updateVolumePreference(CarVolumeGroupInfo groupInfo, int eventTypes,
             List<Integer> extraInfos) {
         boolean isMuted = groupInfo.isMuted();
@@ -873,29 +1015,42 @@ public class CarVolumeDialogImpl
         int value = groupInfo.getVolumeGainIndex();
 
         VolumeItem volumeItem = mAvailableVolumeItems.get(groupId);
-        boolean isShowing = mCarVolumeLineItems.stream().anyMatch(
-                item -> item.getGroupId() == groupId);
 
-        if (isShowing) {
-            if ((eventTypes & EVENT_TYPE_VOLUME_GAIN_INDEX_CHANGED) != 0) {
-                volumeItem.mCarVolumeItem.setProgress(value);
-                volumeItem.mProgress = value;
-            }
-            if ((eventTypes & EVENT_TYPE_MUTE_CHANGED) != 0) {
-                volumeItem.mCarVolumeItem.setIsMuted(isMuted);
-                volumeItem.mIsMuted = isMuted;
-            }
-            if ((eventTypes & EVENT_TYPE_VOLUME_MAX_INDEX_CHANGED) != 0) {
-                volumeItem.mCarVolumeItem.setMax(maxIndex);
-            }
+        // The cached item is kept up to date even when it is not showing, so that showing it
+        // does not have to query the car audio service.
+        boolean changed = false;
+        if ((eventTypes & EVENT_TYPE_VOLUME_GAIN_INDEX_CHANGED) != 0
+                && mVolumeWriteQueue.shouldApplyVolumeIndex(groupInfo.getZoneId(), groupId,
+                        value)
+                && volumeItem.mProgress != value) {
+            volumeItem.mCarVolumeItem.setProgress(value);
+            volumeItem.mProgress = value;
+            changed = true;
+        }
+        if ((eventTypes & EVENT_TYPE_MUTE_CHANGED) != 0 && volumeItem.mIsMuted != isMuted) {
+            volumeItem.mCarVolumeItem.setIsMuted(isMuted);
+            volumeItem.mIsMuted = isMuted;
+            changed = true;
+        }
+        if ((eventTypes & EVENT_TYPE_VOLUME_MAX_INDEX_CHANGED) != 0
+                && volumeItem.mMax != maxIndex) {
+            volumeItem.mCarVolumeItem.setMax(maxIndex);
+            volumeItem.mMax = maxIndex;
+            changed = true;
+        }
+        if (changed) {
+            notifyCarVolumeLineItemChanged(groupId);
         }
 
         if (extraInfos.contains(EXTRA_INFO_SHOW_UI)
                 || extraInfos.contains(EXTRA_INFO_VOLUME_INDEX_CHANGED_BY_AUDIO_SYSTEM)) {
             mPreviouslyDisplayingGroupId = mCurrentlyDisplayingGroupId;
             mCurrentlyDisplayingGroupId = groupId;
-            mHandler.obtainMessage(H.SHOW,
-                    Events.SHOW_REASON_VOLUME_CHANGED).sendToTarget();
+            // Until init(), the dialog is only warmed up, and is shown by init().
+            if (mInitialized) {
+                mHandler.obtainMessage(H.SHOW,
+                        Events.SHOW_REASON_VOLUME_CHANGED).sendToTarget();
+            }
         }
     }
 }
@@ -21,9 +21,13 @@ package com.android.systemui.car.volume;
 import android.content.Context;
 
 import com.android.systemui.car.CarServiceProvider;
+import com.android.systemui.dagger.SysUISingleton;
+import com.android.systemui.dagger.qualifiers.Background;
 import com.android.systemui.plugins.VolumeDialog;
 import com.android.systemui.settings.UserTracker;
 import com.android.systemui.statusbar.policy.ConfigurationController;
+import com.android.systemui.util.concurrency.DelayableExecutor;
+import com.android.systemui.util.time.SystemClock;
 import com.android.systemui.volume.VolumeComponent;
 import com.android.systemui.volume.VolumeDialogComponent;
 
@@ -40,12 +44,19 @@ public interface CarVolumeModule {
     VolumeComponent provideVolumeComponent(VolumeDialogComponent volumeDialogComponent);
 
     /** */
+    @Binds
+    VolumeDialog bindVolumeDialog(CarVolumeDialogImpl carVolumeDialog);
+
+    /** Single instance, so that the dialog warmed up by {@link VolumeUI} is the one shown. */
     @Provides
-    static VolumeDialog provideVolumeDialog(Context context,
+    @SysUISingleton
+    static CarVolumeDialogImpl provideCarVolumeDialog(Context context,
             CarServiceProvider carServiceProvider,
             ConfigurationController configurationController,
-            UserTracker userTracker) {
+            UserTracker userTracker,
+            @Background DelayableExecutor backgroundExecutor,
+            SystemClock systemClock) {
         return new CarVolumeDialogImpl(context, carServiceProvider, configurationController,
-                userTracker);
+                userTracker, backgroundExecutor, systemClock);
     }
 }
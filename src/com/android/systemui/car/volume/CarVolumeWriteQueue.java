@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.systemui.car.volume;
+
+import android.annotation.MainThread;
+import android.annotation.WorkerThread;
+import android.car.media.CarAudioManager;
+import android.util.Log;
+import android.util.LongSparseArray;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.internal.annotations.GuardedBy;
+import com.android.systemui.util.concurrency.DelayableExecutor;
+import com.android.systemui.util.time.SystemClock;
+
+/**
+ * Writes the volume set from the volume dialog sliders to {@link CarAudioManager} on the
+ * background executor.
+ *
+ * <p>Only the latest index of each (zone, group) is written, at most once every
+ * {@link #MIN_WRITE_INTERVAL_MS}, and right away when the slider is released.
+ * Until the last written index is reported back by the car audio service, the slider stays the
+ * source of truth: {@link #shouldApplyVolumeIndex} rejects the indexes of the intermediate writes
+ * so that the thumb does not jump back while they are acknowledged. If the last written index is
+ * not acknowledged within {@link #ACKNOWLEDGE_TIMEOUT_MS}, e.g. because the service clamped or
+ * rejected it, the volume of the group is read back and passed to the {@link Callback}.
+ */
+final class CarVolumeWriteQueue {
+    private static final String TAG = "CarVolumeWriteQueue";
+
+    /** Minimum delay between two writes. */
+    @VisibleForTesting
+    static final long MIN_WRITE_INTERVAL_MS = 50;
+    /**
+     * Delay after the last write after which the volume reported by the car audio service is
+     * applied even if it is not the written index, e.g. if the service clamped it.
+     */
+    @VisibleForTesting
+    static final long ACKNOWLEDGE_TIMEOUT_MS = 1000;
+
+    /** Receives the volume index of a group whose last write was not acknowledged in time. */
+    interface Callback {
+        /** Called on the background executor with the volume index read back for the group. */
+        @WorkerThread
+        void onVolumeIndexReconciled(int zoneId, int groupId, int index);
+    }
+
+    private final DelayableExecutor mBackgroundExecutor;
+    private final SystemClock mSystemClock;
+    private final Callback mCallback;
+
+    private final Object mLock = new Object();
+    @GuardedBy("mLock")
+    private final LongSparseArray<GroupWrite> mGroupWrites = new LongSparseArray<>();
+    @GuardedBy("mLock")
+    private CarAudioManager mCarAudioManager;
+    @GuardedBy("mLock")
+    private boolean mFlushScheduled;
+    @GuardedBy("mLock")
+    private long mLastFlushTime = -MIN_WRITE_INTERVAL_MS;
+
+    CarVolumeWriteQueue(DelayableExecutor backgroundExecutor, SystemClock systemClock,
+            Callback callback) {
+        mBackgroundExecutor = backgroundExecutor;
+        mSystemClock = systemClock;
+        mCallback = callback;
+    }
+
+    /** Sets the manager the volume is written to, dropping the writes queued for another one. */
+    @MainThread
+    void setCarAudioManager(CarAudioManager carAudioManager) {
+        synchronized (mLock) {
+            if (mCarAudioManager != carAudioManager) {
+                mCarAudioManager = carAudioManager;
+                mGroupWrites.clear();
+            }
+        }
+    }
+
+    /** Marks the slider of the given group as dragged. */
+    @MainThread
+    void startTracking(int zoneId, int groupId) {
+        synchronized (mLock) {
+            getOrCreateGroupWriteLocked(zoneId, groupId).mTracking = true;
+        }
+    }
+
+    /** Marks the slider of the given group as released, and writes its latest index right away. */
+    @MainThread
+    void stopTracking(int zoneId, int groupId) {
+        synchronized (mLock) {
+            GroupWrite groupWrite = mGroupWrites.get(key(zoneId, groupId));
+            if (groupWrite == null) {
+                return;
+            }
+            groupWrite.mTracking = false;
+            if (groupWrite.mHasPendingIndex) {
+                scheduleFlushLocked(/* delay= */ 0);
+            } else if (groupWrite.mAwaitingAcknowledgement) {
+                // The reconciliation skipped the group while it was tracked.
+                scheduleReconcileLocked(zoneId, groupId, groupWrite, Math.max(0,
+                        groupWrite.mLastWriteTime + ACKNOWLEDGE_TIMEOUT_MS
+                                - mSystemClock.uptimeMillis()));
+            }
+        }
+    }
+
+    /**
+     * Queues the given volume index, replacing the one queued for the same group if any. It is
+     * written once {@link #MIN_WRITE_INTERVAL_MS} passed since the previous write.
+     */
+    @MainThread
+    void setGroupVolume(int zoneId, int groupId, int index) {
+        synchronized (mLock) {
+            GroupWrite groupWrite = getOrCreateGroupWriteLocked(zoneId, groupId);
+            groupWrite.mPendingIndex = index;
+            groupWrite.mHasPendingIndex = true;
+            groupWrite.mTargetIndex = index;
+            groupWrite.mAwaitingAcknowledgement = true;
+            scheduleFlushLocked(Math.max(0,
+                    mLastFlushTime + MIN_WRITE_INTERVAL_MS - mSystemClock.uptimeMillis()));
+        }
+    }
+
+    /**
+     * Returns whether the volume index reported by the car audio service for the given group
+     * should be shown by its slider, or ignored because the slider is ahead of it.
+     */
+    @MainThread
+    boolean shouldApplyVolumeIndex(int zoneId, int groupId, int index) {
+        synchronized (mLock) {
+            GroupWrite groupWrite = mGroupWrites.get(key(zoneId, groupId));
+            if (groupWrite == null || !groupWrite.mAwaitingAcknowledgement) {
+                return true;
+            }
+            if (groupWrite.mTracking || groupWrite.mHasPendingIndex) {
+                return false;
+            }
+            if (index == groupWrite.mTargetIndex
+                    || mSystemClock.uptimeMillis() - groupWrite.mLastWriteTime
+                            >= ACKNOWLEDGE_TIMEOUT_MS) {
+                groupWrite.mAwaitingAcknowledgement = false;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    @GuardedBy("mLock")
+    private GroupWrite getOrCreateGroupWriteLocked(int zoneId, int groupId) {
+        long key = key(zoneId, groupId);
+        GroupWrite groupWrite = mGroupWrites.get(key);
+        if (groupWrite == null) {
+            groupWrite = new GroupWrite();
+            mGroupWrites.put(key, groupWrite);
+        }
+        return groupWrite;
+    }
+
+    @GuardedBy("mLock")
+    private void scheduleFlushLocked(long delay) {
+        if (mFlushScheduled && delay > 0) {
+            // The scheduled flush will pick up the latest index.
+            return;
+        }
+        mFlushScheduled = true;
+        mBackgroundExecutor.executeDelayed(this::flush, delay);
+    }
+
+    @GuardedBy("mLock")
+    private void scheduleReconcileLocked(int zoneId, int groupId, GroupWrite groupWrite,
+            long delay) {
+        if (groupWrite.mReconcileScheduled) {
+            return;
+        }
+        groupWrite.mReconcileScheduled = true;
+        mBackgroundExecutor.executeDelayed(() -> reconcile(zoneId, groupId), delay);
+    }
+
+    /**
+     * Reads the volume of the given group back from the car audio service if its last written
+     * index is still not acknowledged after {@link #ACKNOWLEDGE_TIMEOUT_MS}.
+     */
+    @WorkerThread
+    private void reconcile(int zoneId, int groupId) {
+        CarAudioManager carAudioManager;
+        synchronized (mLock) {
+            GroupWrite groupWrite = mGroupWrites.get(key(zoneId, groupId));
+            if (groupWrite == null) {
+                // Dropped with the previous car audio manager.
+                return;
+            }
+            groupWrite.mReconcileScheduled = false;
+            if (!groupWrite.mAwaitingAcknowledgement || groupWrite.mTracking
+                    || groupWrite.mHasPendingIndex) {
+                // Acknowledged, or the next write or the release of the slider reschedules it.
+                return;
+            }
+            long remaining = groupWrite.mLastWriteTime + ACKNOWLEDGE_TIMEOUT_MS
+                    - mSystemClock.uptimeMillis();
+            if (remaining > 0) {
+                scheduleReconcileLocked(zoneId, groupId, groupWrite, remaining);
+                return;
+            }
+            groupWrite.mAwaitingAcknowledgement = false;
+            carAudioManager = mCarAudioManager;
+        }
+        if (carAudioManager == null) {
+            return;
+        }
+        int index;
+        try {
+            index = carAudioManager.getGroupVolume(zoneId, groupId);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Failed to get volume of group " + groupId + " in zone " + zoneId, e);
+            return;
+        }
+        mCallback.onVolumeIndexReconciled(zoneId, groupId, index);
+    }
+
+    @WorkerThread
+    private void flush() {
+        CarAudioManager carAudioManager;
+        LongSparseArray<Integer> indexes = new LongSparseArray<>();
+        synchronized (mLock) {
+            mFlushScheduled = false;
+            carAudioManager = mCarAudioManager;
+            long now = mSystemClock.uptimeMillis();
+            mLastFlushTime = now;
+            for (int i = 0; i < mGroupWrites.size(); i++) {
+                GroupWrite groupWrite = mGroupWrites.valueAt(i);
+                if (groupWrite.mHasPendingIndex) {
+                    groupWrite.mHasPendingIndex = false;
+                    groupWrite.mLastWriteTime = now;
+                    long key = mGroupWrites.keyAt(i);
+                    indexes.put(key, groupWrite.mPendingIndex);
+                    scheduleReconcileLocked((int) (key >> 32), (int) key, groupWrite,
+                            ACKNOWLEDGE_TIMEOUT_MS);
+                }
+            }
+        }
+        if (carAudioManager == null) {
+            return;
+        }
+        for (int i = 0; i < indexes.size(); i++) {
+            long key = indexes.keyAt(i);
+            int zoneId = (int) (key >> 32);
+            int groupId = (int) key;
+            try {
+                carAudioManager.setGroupVolume(zoneId, groupId, indexes.valueAt(i),
+                        /* flags= */ 0);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Failed to set volume of group " + groupId + " in zone " + zoneId, e);
+            }
+        }
+    }
+
+    private static long key(int zoneId, int groupId) {
+        return ((long) zoneId << 32) | (groupId & 0xFFFFFFFFL);
+    }
+
+    /** Write state of the slider of a volume group. */
+    private static final class GroupWrite {
+        private boolean mTracking;
+        /** Latest index set from the slider and not written yet. */
+        private int mPendingIndex;
+        private boolean mHasPendingIndex;
+        /** Latest index set from the slider, which the car audio service has to report back. */
+        private int mTargetIndex;
+        private boolean mAwaitingAcknowledgement;
+        private long mLastWriteTime;
+        private boolean mReconcileScheduled;
+    }
+}
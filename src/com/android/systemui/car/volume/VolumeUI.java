@@ -32,6 +32,7 @@ import android.content.res.Resources;
 import android.media.AudioManager;
 import android.os.Handler;
 import android.os.HandlerExecutor;
+import android.os.MessageQueue;
 import android.util.Log;
 
 import com.android.systemui.CoreStartable;
@@ -59,6 +60,7 @@ public class VolumeUI implements CoreStartable {
     private final Handler mMainHandler;
     private final CarServiceProvider mCarServiceProvider;
     private final Lazy<VolumeDialogComponent> mVolumeDialogComponentLazy;
+    private final Lazy<CarVolumeDialogImpl> mCarVolumeDialogLazy;
     private final UserTracker mUserTracker;
     private int mAudioZoneId = INVALID_AUDIO_ZONE;
 
@@ -129,6 +131,15 @@ public class VolumeUI implements CoreStartable {
     private CarOccupantZoneManager mCarOccupantZoneManager;
     private VolumeDialogComponent mVolumeDialogComponent;
     private final Executor mExecutor;
+    private boolean mWarmUpScheduled;
+
+    private final MessageQueue.IdleHandler mWarmUpIdleHandler = () -> {
+        // The dialog may have been initialized by a volume change in the meantime.
+        if (mVolumeDialogComponent == null) {
+            mCarVolumeDialogLazy.get().warmUp();
+        }
+        return false;
+    };
 
     @Inject
     public VolumeUI(
@@ -136,12 +147,14 @@ public class VolumeUI implements CoreStartable {
             @Main Handler mainHandler,
             CarServiceProvider carServiceProvider,
             Lazy<VolumeDialogComponent> volumeDialogComponentLazy,
+            Lazy<CarVolumeDialogImpl> carVolumeDialogLazy,
             UserTracker userTracker
     ) {
         mResources = resources;
         mMainHandler = mainHandler;
         mCarServiceProvider = carServiceProvider;
         mVolumeDialogComponentLazy = volumeDialogComponentLazy;
+        mCarVolumeDialogLazy = carVolumeDialogLazy;
         mUserTracker = userTracker;
         mExecutor = new HandlerExecutor(mainHandler);
     }
@@ -246,6 +259,19 @@ public class VolumeUI implements CoreStartable {
                 // never destroyed.
                 mCarAudioManager.registerCarVolumeCallback(mVolumeChangeCallback);
             }
+            scheduleVolumeDialogWarmUp();
+        }
+    }
+
+    /**
+     * Warms the volume dialog up once the main thread is idle, so that the first volume change
+     * does not have to build it, while still keeping it off the boot path.
+     */
+    private void scheduleVolumeDialogWarmUp() {
+        if (mWarmUpScheduled || mVolumeDialogComponent != null) {
+            return;
         }
+        mWarmUpScheduled = true;
+        mMainHandler.getLooper().getQueue().addIdleHandler(mWarmUpIdleHandler);
     }
 }
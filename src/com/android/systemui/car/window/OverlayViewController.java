@@ -53,6 +53,7 @@ public class OverlayViewController {
         mLayout = null;
         mStubId = stubId;
         mOverlayViewGlobalStateController = overlayViewGlobalStateController;
+        mOverlayViewGlobalStateController.registerViewController(/* viewController= */ this);
     }
 
     /**
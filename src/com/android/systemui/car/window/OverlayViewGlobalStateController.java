@@ -30,8 +30,11 @@ import androidx.annotation.VisibleForTesting;
 
 import com.android.systemui.dagger.SysUISingleton;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -65,6 +68,16 @@ public class OverlayViewGlobalStateController {
     @VisibleForTesting
     OverlayViewController mHighestZOrder;
     private boolean mIsOccluded;
+    /**
+     * Weakly referenced, since view controllers register themselves when created and are never
+     * unregistered.
+     */
+    private final List<WeakReference<OverlayViewController>> mViewControllers =
+            new ArrayList<>();
+    /** Number of nested transactions currently open. */
+    private int mTransactionDepth;
+    /** Whether the window state has to be refreshed when the outermost transaction commits. */
+    private boolean mWindowStateRefreshPending;
 
     @Inject
     public OverlayViewGlobalStateController(
@@ -93,6 +106,27 @@ public class OverlayViewGlobalStateController {
         overlayViewMediator.setUpOverlayContentViewControllers();
     }
 
+    /**
+     * Register {@link OverlayViewController} so that its view can be inflated ahead of being shown,
+     * see {@link OverlayViewPreInflater}.
+     */
+    public void registerViewController(OverlayViewController viewController) {
+        mViewControllers.removeIf(reference -> reference.get() == null);
+        mViewControllers.add(new WeakReference<>(viewController));
+    }
+
+    /** Returns the registered {@link OverlayViewController}(s) which are still referenced. */
+    public List<OverlayViewController> getViewControllers() {
+        List<OverlayViewController> viewControllers = new ArrayList<>(mViewControllers.size());
+        for (WeakReference<OverlayViewController> reference : mViewControllers) {
+            OverlayViewController viewController = reference.get();
+            if (viewController != null) {
+                viewControllers.add(viewController);
+            }
+        }
+        return viewControllers;
+    }
+
     /**
      * Show content in Overlay Window using {@link OverlayPanelViewController}.
      *
@@ -126,12 +160,7 @@ public class OverlayViewGlobalStateController {
         }
 
         updateInternalsWhenShowingView(viewController);
-        refreshUseStableInsets();
-        refreshInsetsToFit();
-        refreshWindowFocus();
-        refreshSystemBarVisibility();
-        refreshStatusBarVisibility();
-        refreshRotaryFocusIfNeeded();
+        refreshWindowStateOrDefer();
 
         Log.d(TAG, "Content shown: " + viewController.getClass().getName());
         debugLog();
@@ -201,16 +230,7 @@ public class OverlayViewGlobalStateController {
 
         mZOrderVisibleSortedMap.remove(mZOrderMap.get(viewController));
         refreshHighestZOrderWhenHidingView(viewController);
-        refreshUseStableInsets();
-        refreshInsetsToFit();
-        refreshWindowFocus();
-        refreshSystemBarVisibility();
-        refreshStatusBarVisibility();
-        refreshRotaryFocusIfNeeded();
-
-        if (mZOrderVisibleSortedMap.isEmpty()) {
-            setWindowVisible(false);
-        }
+        refreshWindowStateOrDefer();
 
         Log.d(TAG, "Content hidden: " + viewController.getClass().getName());
         debugLog();
@@ -228,6 +248,68 @@ public class OverlayViewGlobalStateController {
         mHighestZOrder = mZOrderVisibleSortedMap.get(mZOrderVisibleSortedMap.lastKey());
     }
 
+    /**
+     * Opens a transaction. Until the matching {@link #commitTransaction()}, views shown or hidden
+     * only update the bookkeeping of the visible views, and the window state (focus, insets,
+     * system bar visibility, rotary focus and window visibility) is refreshed once on commit for
+     * the views visible at that point. Transactions can be nested.
+     *
+     * <p>Callers must commit the transaction in a {@code finally} block, since the window state
+     * is not refreshed anymore if a transaction is left open, e.g. because showing or hiding a
+     * view threw:
+     * <pre>
+     * controller.beginTransaction();
+     * try {
+     *     // Show or hide views.
+     * } finally {
+     *     controller.commitTransaction();
+     * }
+     * </pre>
+     */
+    public void beginTransaction() {
+        mTransactionDepth++;
+    }
+
+    /**
+     * Closes a transaction opened by {@link #beginTransaction()}, refreshing the window state if
+     * it is the outermost one and views were shown or hidden during it.
+     */
+    public void commitTransaction() {
+        if (mTransactionDepth == 0) {
+            Log.w(TAG, "commitTransaction called without a transaction");
+            return;
+        }
+        mTransactionDepth--;
+        if (mTransactionDepth == 0 && mWindowStateRefreshPending) {
+            refreshWindowState();
+        }
+    }
+
+    private void refreshWindowStateOrDefer() {
+        if (mTransactionDepth > 0) {
+            mWindowStateRefreshPending = true;
+            return;
+        }
+        refreshWindowState();
+    }
+
+    private void refreshWindowState() {
+        mWindowStateRefreshPending = false;
+        // Apply the layout changes of the whole pass to the window at once.
+        mSystemUIOverlayWindowController.beginWindowUpdates();
+        refreshUseStableInsets();
+        refreshInsetsToFit();
+        refreshWindowFocus();
+        refreshSystemBarVisibility();
+        refreshStatusBarVisibility();
+        refreshRotaryFocusIfNeeded();
+
+        if (mZOrderVisibleSortedMap.isEmpty()) {
+            setWindowVisible(false);
+        }
+        mSystemUIOverlayWindowController.endWindowUpdates();
+    }
+
     private void refreshSystemBarVisibility() {
         if (mZOrderVisibleSortedMap.isEmpty()) {
             mWindowInsetsController.show(navigationBars());
@@ -355,16 +437,22 @@ public class OverlayViewGlobalStateController {
      * be hidden.
      */
     public void setOccluded(boolean occluded) {
-        if (occluded) {
-            // Hide views before setting mIsOccluded to true so the regular hideView logic is used,
-            // not the one used during occlusion.
-            hideViewsForOcclusion();
-            mIsOccluded = true;
-        } else {
-            mIsOccluded = false;
-            // show views after setting mIsOccluded to false so the regular showView logic is used,
-            // not the one used during occlusion.
-            showViewsHiddenForOcclusion();
+        // Refresh the window state once for all the views shown or hidden.
+        beginTransaction();
+        try {
+            if (occluded) {
+                // Hide views before setting mIsOccluded to true so the regular hideView logic is
+                // used, not the one used during occlusion.
+                hideViewsForOcclusion();
+                mIsOccluded = true;
+            } else {
+                mIsOccluded = false;
+                // show views after setting mIsOccluded to false so the regular showView logic is
+                // used, not the one used during occlusion.
+                showViewsHiddenForOcclusion();
+            }
+        } finally {
+            commitTransaction();
         }
     }
 
@@ -397,6 +485,7 @@ public class OverlayViewGlobalStateController {
         Log.d(TAG, "mZOrderMap.size(): " + mZOrderMap.size());
         Log.d(TAG, "mZOrderMap: " + mZOrderMap);
         Log.d(TAG, "mIsOccluded: " + mIsOccluded);
+        Log.d(TAG, "mTransactionDepth: " + mTransactionDepth);
         Log.d(TAG, "mViewsHiddenForOcclusion: " + mViewsHiddenForOcclusion);
         Log.d(TAG, "mViewsHiddenForOcclusion.size(): " + mViewsHiddenForOcclusion.size());
     }
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.systemui.car.window;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.MessageQueue;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.systemui.R;
+import com.android.systemui.dagger.SysUISingleton;
+import com.android.systemui.dagger.qualifiers.Main;
+import com.android.systemui.settings.UserTracker;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import javax.inject.Inject;
+
+/**
+ * Inflates the views of the {@link OverlayViewController}(s) listed in
+ * {@code config_preInflatedOverlayViewControllers} while the main thread is idle, and runs a first
+ * measure and layout pass on them, so that opening a panel for the first time does not pay for
+ * its inflation inside the gesture.
+ *
+ * The views are prepared one per idle pass in the order of the config, after boot completes and
+ * again after each user switch.
+ */
+@SysUISingleton
+public class OverlayViewPreInflater {
+    private static final String TAG = OverlayViewPreInflater.class.getSimpleName();
+
+    private final Context mContext;
+    private final OverlayViewGlobalStateController mOverlayViewGlobalStateController;
+    private final UserTracker mUserTracker;
+    private final MessageQueue mMainQueue;
+    private final String[] mPreInflatedControllerNames;
+
+    /** View controllers left to prepare, in the order they should be prepared in. */
+    private final Queue<OverlayViewController> mPendingControllers = new ArrayDeque<>();
+    private boolean mIdleHandlerAdded;
+    private boolean mStarted;
+
+    @VisibleForTesting
+    final MessageQueue.IdleHandler mIdleHandler = () -> {
+        OverlayViewController viewController = mPendingControllers.poll();
+        if (viewController != null) {
+            prepare(viewController);
+        }
+        mIdleHandlerAdded = !mPendingControllers.isEmpty();
+        // Keeps the handler until every pending view is prepared.
+        return mIdleHandlerAdded;
+    };
+
+    private final UserTracker.Callback mUserTrackerCallback = new UserTracker.Callback() {
+        @Override
+        public void onUserChanged(int newUser, Context userContext) {
+            schedule();
+        }
+    };
+
+    @Inject
+    public OverlayViewPreInflater(Context context,
+            OverlayViewGlobalStateController overlayViewGlobalStateController,
+            UserTracker userTracker,
+            @Main Handler mainHandler) {
+        mContext = context;
+        mOverlayViewGlobalStateController = overlayViewGlobalStateController;
+        mUserTracker = userTracker;
+        mMainQueue = mainHandler.getLooper().getQueue();
+        mPreInflatedControllerNames = context.getResources().getStringArray(
+                R.array.config_preInflatedOverlayViewControllers);
+    }
+
+    /** Starts preparing the views, and prepares them again after each user switch. */
+    @MainThread
+    public void start() {
+        if (mStarted) {
+            return;
+        }
+        mStarted = true;
+        mUserTracker.addCallback(mUserTrackerCallback, mContext.getMainExecutor());
+        schedule();
+    }
+
+    /** Queues the configured view controllers and prepares them on the next idle passes. */
+    @MainThread
+    @VisibleForTesting
+    void schedule() {
+        mPendingControllers.clear();
+        for (String name : mPreInflatedControllerNames) {
+            for (OverlayViewController viewController
+                    : mOverlayViewGlobalStateController.getViewControllers()) {
+                if (viewController.getClass().getName().equals(name)
+                        && !mPendingControllers.contains(viewController)) {
+                    mPendingControllers.add(viewController);
+                }
+            }
+        }
+        if (!mPendingControllers.isEmpty() && !mIdleHandlerAdded) {
+            mIdleHandlerAdded = true;
+            mMainQueue.addIdleHandler(mIdleHandler);
+        }
+    }
+
+    private void prepare(OverlayViewController viewController) {
+        long startTime = System.currentTimeMillis();
+        mOverlayViewGlobalStateController.inflateView(viewController);
+        View layout = viewController.getLayout();
+        if (layout == null) {
+            return;
+        }
+
+        // Warm up the view so that the first frame of the panel only has to draw it. The parent
+        // is measured and laid out rather than the view itself, so that the view gets the size
+        // and position its layout params give it in the overlay window, e.g. for the HVAC panel
+        // which does not fill it.
+        View root = layout.getParent() instanceof ViewGroup ? (ViewGroup) layout.getParent()
+                : layout;
+        int width = root.getWidth();
+        int height = root.getHeight();
+        if (width == 0 || height == 0) {
+            // The overlay window was never laid out, and fills the display.
+            DisplayMetrics displayMetrics = mContext.getResources().getDisplayMetrics();
+            width = displayMetrics.widthPixels;
+            height = displayMetrics.heightPixels;
+        }
+        root.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+        root.layout(root.getLeft(), root.getTop(), root.getLeft() + root.getMeasuredWidth(),
+                root.getTop() + root.getMeasuredHeight());
+
+        Log.d(TAG, "Prepared " + viewController.getClass().getName() + " in "
+                + (System.currentTimeMillis() - startTime) + " ms");
+    }
+}
@@ -69,6 +69,7 @@ public class SystemUIOverlayWindowController implements
     private boolean mVisible = false;
     private boolean mFocusable = false;
     private boolean mUsingStableInsets = false;
+    private int mWindowUpdatesDepth = 0;
 
     @Inject
     public SystemUIOverlayWindowController(
@@ -192,6 +193,23 @@ public class SystemUIOverlayWindowController implements
         updateWindow();
     }
 
+    /**
+     * Defers the layout changes to the window until the matching {@link #endWindowUpdates()}, so
+     * that several changes are applied with a single layout update.
+     */
+    public void beginWindowUpdates() {
+        mWindowUpdatesDepth++;
+    }
+
+    /** Applies the layout changes deferred since {@link #beginWindowUpdates()}. */
+    public void endWindowUpdates() {
+        if (mWindowUpdatesDepth == 0) {
+            return;
+        }
+        mWindowUpdatesDepth--;
+        updateWindow();
+    }
+
     /** Returns {@code true} if the window is visible */
     public boolean isWindowVisible() {
         return mVisible;
@@ -206,6 +224,9 @@ public class SystemUIOverlayWindowController implements
     }
 
     private void updateWindow() {
+        if (mWindowUpdatesDepth > 0) {
+            return;
+        }
         if (mLp != null && mLp.copyFrom(mLpChanged) != 0) {
             if (isAttached()) {
                 mLp.insetsFlags.behavior = BEHAVIOR_SHOW_TRANSIENT_BARS_BY_SWIPE;
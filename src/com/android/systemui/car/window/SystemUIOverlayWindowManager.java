@@ -41,15 +41,18 @@ public class SystemUIOverlayWindowManager implements CoreStartable {
     private final Map<Class<?>, Provider<OverlayViewMediator>>
             mContentMediatorCreators;
     private final OverlayViewGlobalStateController mOverlayViewGlobalStateController;
+    private final OverlayViewPreInflater mOverlayViewPreInflater;
 
     @Inject
     public SystemUIOverlayWindowManager(
             Context context,
             Map<Class<?>, Provider<OverlayViewMediator>> contentMediatorCreators,
-            OverlayViewGlobalStateController overlayViewGlobalStateController) {
+            OverlayViewGlobalStateController overlayViewGlobalStateController,
+            OverlayViewPreInflater overlayViewPreInflater) {
         mContext = context;
         mContentMediatorCreators = contentMediatorCreators;
         mOverlayViewGlobalStateController = overlayViewGlobalStateController;
+        mOverlayViewPreInflater = overlayViewPreInflater;
     }
 
     @Override
@@ -59,6 +62,12 @@ public class SystemUIOverlayWindowManager implements CoreStartable {
         startServices(names);
     }
 
+    @Override
+    public void onBootCompleted() {
+        // Prepare the overlay views once boot is done, so that it doesn't compete with it.
+        mOverlayViewPreInflater.start();
+    }
+
     private void startServices(String[] services) {
         for (String clsName : services) {
             long ti = System.currentTimeMillis();
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.systemui.car.activity;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.app.ActivityManager;
+import android.app.IActivityTaskManager;
+import android.app.ITaskStackListener;
+import android.car.app.CarActivityManager;
+import android.car.content.pm.CarPackageManager;
+import android.content.ComponentName;
+import android.os.Handler;
+import android.os.RemoteException;
+import android.testing.AndroidTestingRunner;
+import android.testing.TestableLooper;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.systemui.SysuiTestCase;
+import com.android.systemui.car.CarSystemUiTest;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@CarSystemUiTest
+@RunWith(AndroidTestingRunner.class)
+@TestableLooper.RunWithLooper
+@SmallTest
+public class DistractionOptimizationMonitorTest extends SysuiTestCase {
+    private static final int DISPLAY_ID = 0;
+    private static final ComponentName BLOCKING_ACTIVITY = new ComponentName("pkg", "Blocking");
+    private static final ComponentName DO_ACTIVITY = new ComponentName("pkg", "Do");
+    private static final ComponentName NON_DO_ACTIVITY = new ComponentName("pkg", "NonDo");
+
+    private TestableLooper mTestableLooper;
+    private DistractionOptimizationMonitor mMonitor;
+    private List<ActivityManager.RunningTaskInfo> mVisibleTasks;
+    private int mCallbackCount;
+
+    @Mock
+    private CarActivityManager mCarActivityManager;
+    @Mock
+    private CarPackageManager mCarPackageManager;
+    @Mock
+    private IActivityTaskManager mActivityTaskManager;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mTestableLooper = TestableLooper.get(this);
+        mVisibleTasks = new ArrayList<>();
+        when(mCarActivityManager.getVisibleTasks()).thenAnswer(inv -> new ArrayList<>(
+                mVisibleTasks));
+        when(mCarPackageManager.isActivityDistractionOptimized(DO_ACTIVITY.getPackageName(),
+                DO_ACTIVITY.getClassName())).thenReturn(true);
+        when(mCarPackageManager.isActivityDistractionOptimized(NON_DO_ACTIVITY.getPackageName(),
+                NON_DO_ACTIVITY.getClassName())).thenReturn(false);
+
+        mMonitor = new DistractionOptimizationMonitor(DISPLAY_ID, BLOCKING_ACTIVITY,
+                mCarActivityManager, mCarPackageManager, mActivityTaskManager,
+                new Handler(mTestableLooper.getLooper()), () -> mCallbackCount++);
+    }
+
+    @Test
+    public void start_allVisibleActivitiesDo_callsCallbackWithoutListening()
+            throws RemoteException {
+        addVisibleTask(BLOCKING_ACTIVITY);
+        addVisibleTask(DO_ACTIVITY);
+
+        assertThat(mMonitor.start()).isTrue();
+
+        assertThat(mCallbackCount).isEqualTo(1);
+        verify(mActivityTaskManager, never()).registerTaskStackListener(any());
+    }
+
+    @Test
+    public void start_nonDoActivityVisible_listensToTaskStack() throws RemoteException {
+        addVisibleTask(NON_DO_ACTIVITY);
+
+        assertThat(mMonitor.start()).isFalse();
+
+        assertThat(mCallbackCount).isEqualTo(0);
+        verify(mActivityTaskManager).registerTaskStackListener(any());
+    }
+
+    @Test
+    public void taskStackChanged_nonDoActivityGone_callsCallbackAndStopsListening()
+            throws RemoteException {
+        addVisibleTask(NON_DO_ACTIVITY);
+        ITaskStackListener listener = startAndCaptureListener();
+
+        mVisibleTasks.clear();
+        addVisibleTask(DO_ACTIVITY);
+        listener.onTaskStackChanged();
+        mTestableLooper.processAllMessages();
+
+        assertThat(mCallbackCount).isEqualTo(1);
+        verify(mActivityTaskManager).unregisterTaskStackListener(listener);
+    }
+
+    @Test
+    public void taskStackChanged_burst_checksOnce() throws RemoteException {
+        addVisibleTask(NON_DO_ACTIVITY);
+        ITaskStackListener listener = startAndCaptureListener();
+
+        listener.onTaskStackChanged();
+        listener.onTaskStackChanged();
+        listener.onTaskStackChanged();
+        mTestableLooper.processAllMessages();
+
+        // Once on start, once for the burst of changes.
+        verify(mCarActivityManager, times(2)).getVisibleTasks();
+    }
+
+    @Test
+    public void taskStackChanged_sameActivity_distractionOptimizedVerdictCached()
+            throws RemoteException {
+        addVisibleTask(NON_DO_ACTIVITY);
+        ITaskStackListener listener = startAndCaptureListener();
+
+        listener.onTaskStackChanged();
+        mTestableLooper.processAllMessages();
+
+        verify(mCarPackageManager).isActivityDistractionOptimized(anyString(), anyString());
+    }
+
+    @Test
+    public void noTaskStackEvents_pollsWithBackoff() throws RemoteException {
+        doThrow(new RemoteException()).when(mActivityTaskManager).registerTaskStackListener(
+                any());
+        addVisibleTask(NON_DO_ACTIVITY);
+        mMonitor.start();
+
+        mTestableLooper.moveTimeForward(DistractionOptimizationMonitor.INITIAL_POLLING_DELAY_MS);
+        mTestableLooper.processAllMessages();
+        verify(mCarActivityManager, times(2)).getVisibleTasks();
+
+        // The next poll is delayed twice as long.
+        mTestableLooper.moveTimeForward(DistractionOptimizationMonitor.INITIAL_POLLING_DELAY_MS);
+        mTestableLooper.processAllMessages();
+        verify(mCarActivityManager, times(2)).getVisibleTasks();
+
+        mVisibleTasks.clear();
+        mTestableLooper.moveTimeForward(DistractionOptimizationMonitor.INITIAL_POLLING_DELAY_MS);
+        mTestableLooper.processAllMessages();
+        assertThat(mCallbackCount).isEqualTo(1);
+    }
+
+    @Test
+    public void stop_ignoresLaterTaskStackChanges() throws RemoteException {
+        addVisibleTask(NON_DO_ACTIVITY);
+        ITaskStackListener listener = startAndCaptureListener();
+
+        mMonitor.stop();
+        mVisibleTasks.clear();
+        listener.onTaskStackChanged();
+        mTestableLooper.processAllMessages();
+
+        assertThat(mCallbackCount).isEqualTo(0);
+    }
+
+    private ITaskStackListener startAndCaptureListener() throws RemoteException {
+        mMonitor.start();
+        ArgumentCaptor<ITaskStackListener> captor = ArgumentCaptor.forClass(
+                ITaskStackListener.class);
+        verify(mActivityTaskManager).registerTaskStackListener(captor.capture());
+        return captor.getValue();
+    }
+
+    private void addVisibleTask(ComponentName topActivity) {
+        ActivityManager.RunningTaskInfo taskInfo = new ActivityManager.RunningTaskInfo();
+        taskInfo.displayId = DISPLAY_ID;
+        taskInfo.topActivity = topActivity;
+        mVisibleTasks.add(taskInfo);
+    }
+}
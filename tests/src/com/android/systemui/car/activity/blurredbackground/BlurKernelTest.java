@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.systemui.car.activity.blurredbackground;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertThrows;
+
+import android.testing.AndroidTestingRunner;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.systemui.SysuiTestCase;
+import com.android.systemui.car.CarSystemUiTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@CarSystemUiTest
+@RunWith(AndroidTestingRunner.class)
+@SmallTest
+public class BlurKernelTest extends SysuiTestCase {
+    private static final float TOLERANCE = 1e-5f;
+
+    @Test
+    public void create_radiusScaledByDownsampleFactor() {
+        BlurKernel kernel = BlurKernel.create(/* blurRadius= */ 40f, /* downsampleFactor= */ 4);
+
+        assertThat(kernel.getRadius()).isEqualTo(10);
+    }
+
+    @Test
+    public void create_usesFewerTapsThanDiscreteWeights() {
+        BlurKernel kernel = BlurKernel.create(/* blurRadius= */ 40f, /* downsampleFactor= */ 4);
+
+        // 19 discrete weights (1 center, 9 per side) folded into 1 center tap and 5 per side.
+        assertThat(kernel.getTapCount()).isEqualTo(6);
+        assertThat(kernel.getTapCount()).isAtMost(BlurKernel.MAX_TAP_COUNT);
+    }
+
+    @Test
+    public void create_weightsSumToOne() {
+        BlurKernel kernel = BlurKernel.create(/* blurRadius= */ 40f, /* downsampleFactor= */ 4);
+
+        float discreteSum = 0f;
+        for (int x = -kernel.getRadius(); x <= kernel.getRadius(); x++) {
+            discreteSum += kernel.getWeight(x);
+        }
+        float[] tapWeights = kernel.getTapWeights();
+        float tapSum = tapWeights[0];
+        for (int tap = 1; tap < tapWeights.length; tap++) {
+            tapSum += 2 * tapWeights[tap];
+        }
+
+        assertThat(discreteSum).isWithin(TOLERANCE).of(1f);
+        assertThat(tapSum).isWithin(TOLERANCE).of(1f);
+    }
+
+    @Test
+    public void create_linearTapsMatchDiscreteWeights() {
+        BlurKernel kernel = BlurKernel.create(/* blurRadius= */ 40f, /* downsampleFactor= */ 4);
+        float[] tapOffsets = kernel.getTapOffsets();
+        float[] tapWeights = kernel.getTapWeights();
+
+        // Each tap samples between two texels, so linear filtering splits its weight between
+        // them. The total weight landing on each texel must be its discrete weight.
+        float[] weightPerTexel = new float[kernel.getRadius() + 1];
+        weightPerTexel[0] = tapWeights[0];
+        for (int tap = 1; tap < tapOffsets.length; tap++) {
+            int texel = (int) Math.floor(tapOffsets[tap]);
+            float fraction = tapOffsets[tap] - texel;
+            weightPerTexel[texel] += tapWeights[tap] * (1f - fraction);
+            weightPerTexel[texel + 1] += tapWeights[tap] * fraction;
+        }
+
+        for (int x = 0; x <= kernel.getRadius(); x++) {
+            assertThat(weightPerTexel[x]).isWithin(TOLERANCE).of(kernel.getWeight(x));
+        }
+    }
+
+    @Test
+    public void create_radiusNeedingTooManyTaps_throws() {
+        assertThrows(IllegalArgumentException.class,
+                () -> BlurKernel.create(/* blurRadius= */ 40f, /* downsampleFactor= */ 1));
+    }
+}
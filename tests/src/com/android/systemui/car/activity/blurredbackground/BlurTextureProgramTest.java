@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.systemui.car.activity.blurredbackground;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.SurfaceTexture;
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLExt;
+import android.opengl.EGLSurface;
+import android.opengl.GLES11Ext;
+import android.opengl.GLES30;
+import android.os.Handler;
+import android.os.Looper;
+import android.testing.AndroidTestingRunner;
+import android.view.Surface;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.systemui.R;
+import com.android.systemui.SysuiTestCase;
+import com.android.systemui.car.CarSystemUiTest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@CarSystemUiTest
+@RunWith(AndroidTestingRunner.class)
+@SmallTest
+public class BlurTextureProgramTest extends SysuiTestCase {
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 32;
+    // The GPU stores the output of every intermediate pass in an 8 bit per channel texture, while
+    // the CPU keeps floating point values until the end.
+    private static final int MAX_CHANNEL_DIFFERENCE = 4;
+    private static final long FRAME_TIMEOUT_MS = 1000;
+
+    private final IntBuffer mScreenshotTextureBuffer = IntBuffer.allocate(1);
+
+    private EGLDisplay mEglDisplay;
+    private EGLContext mEglContext;
+    private EGLSurface mEglSurface;
+    private SurfaceTexture mSurfaceTexture;
+    private Surface mSurface;
+    private BlurTextureProgram mProgram;
+
+    @Before
+    public void setUp() {
+        mEglDisplay = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
+        int[] version = new int[2];
+        assertThat(EGL14.eglInitialize(mEglDisplay, version, /* majorOffset= */ 0, version,
+                /* minorOffset= */ 1)).isTrue();
+
+        int[] configAttributes = {
+                EGL14.EGL_RED_SIZE, 8,
+                EGL14.EGL_GREEN_SIZE, 8,
+                EGL14.EGL_BLUE_SIZE, 8,
+                EGL14.EGL_ALPHA_SIZE, 8,
+                EGL14.EGL_RENDERABLE_TYPE, EGLExt.EGL_OPENGL_ES3_BIT_KHR,
+                EGL14.EGL_SURFACE_TYPE, EGL14.EGL_PBUFFER_BIT,
+                EGL14.EGL_NONE
+        };
+        EGLConfig[] configs = new EGLConfig[1];
+        int[] numConfigs = new int[1];
+        assertThat(EGL14.eglChooseConfig(mEglDisplay, configAttributes, /* offset= */ 0,
+                configs, /* offset= */ 0, configs.length, numConfigs, /* offset= */ 0)).isTrue();
+        assertThat(numConfigs[0]).isGreaterThan(0);
+
+        mEglContext = EGL14.eglCreateContext(mEglDisplay, configs[0], EGL14.EGL_NO_CONTEXT,
+                new int[]{EGL14.EGL_CONTEXT_CLIENT_VERSION, 3, EGL14.EGL_NONE},
+                /* offset= */ 0);
+        mEglSurface = EGL14.eglCreatePbufferSurface(mEglDisplay, configs[0],
+                new int[]{EGL14.EGL_WIDTH, WIDTH, EGL14.EGL_HEIGHT, HEIGHT, EGL14.EGL_NONE},
+                /* offset= */ 0);
+        assertThat(EGL14.eglMakeCurrent(mEglDisplay, mEglSurface, mEglSurface, mEglContext))
+                .isTrue();
+    }
+
+    @After
+    public void tearDown() {
+        if (mProgram != null) {
+            mProgram.cleanupResources();
+        }
+        if (mSurface != null) {
+            mSurface.release();
+        }
+        if (mSurfaceTexture != null) {
+            mSurfaceTexture.release();
+        }
+        GLES30.glDeleteTextures(1, mScreenshotTextureBuffer);
+        EGL14.eglMakeCurrent(mEglDisplay, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE,
+                EGL14.EGL_NO_CONTEXT);
+        EGL14.eglDestroySurface(mEglDisplay, mEglSurface);
+        EGL14.eglDestroyContext(mEglDisplay, mEglContext);
+        EGL14.eglReleaseThread();
+    }
+
+    @Test
+    public void render_matchesCpuBlurRenderer() throws InterruptedException {
+        int[] pixels = createTestImage();
+        float[] texMatrix = new float[16];
+        loadScreenshotTexture(pixels, texMatrix);
+        mProgram = new BlurTextureProgram(
+                mScreenshotTextureBuffer,
+                texMatrix,
+                WIDTH,
+                HEIGHT,
+                GLHelper.getShaderFromRaw(mContext, R.raw.vertex_shader),
+                GLHelper.getShaderFromRaw(mContext, R.raw.downsample_fragment_shader),
+                GLHelper.getShaderFromRaw(mContext, R.raw.horizontal_blur_fragment_shader),
+                GLHelper.getShaderFromRaw(mContext, R.raw.vertical_blur_fragment_shader));
+        mProgram.setSize(WIDTH, HEIGHT);
+
+        mProgram.render();
+
+        int[] rendered = readSurfacePixels();
+        int[] expected = CpuBlurRenderer.blur(pixels, WIDTH, HEIGHT,
+                BlurTextureProgram.DOWNSAMPLE_FACTOR, BlurTextureProgram.BLUR_KERNEL);
+        for (int i = 0; i < expected.length; i++) {
+            for (int shift = 0; shift <= 16; shift += 8) {
+                int difference = Math.abs(((rendered[i] >> shift) & 0xFF)
+                        - ((expected[i] >> shift) & 0xFF));
+                assertWithMessage("Channel at bit " + shift + " of pixel (" + (i % WIDTH) + ", "
+                        + (i / WIDTH) + ")").that(difference).isAtMost(MAX_CHANNEL_DIFFERENCE);
+            }
+        }
+    }
+
+    /**
+     * Returns an opaque image with detail finer than the downsampled texels, which only matches
+     * the CPU reference if the GPU averages every screenshot pixel. Its top and bottom halves
+     * mirror each other, so that the vertical orientation of the surface does not matter.
+     */
+    private static int[] createTestImage() {
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            int mirroredY = Math.min(y, HEIGHT - 1 - y);
+            for (int x = 0; x < WIDTH; x++) {
+                int red = (x * 97 + mirroredY * 13) & 0xFF;
+                int green = (x % 2 == 0) ? 0xFF : 0;
+                int blue = ((x / 3) * 71 + mirroredY * 29) & 0xFF;
+                pixels[y * WIDTH + x] = 0xFF000000 | (red << 16) | (green << 8) | blue;
+            }
+        }
+        return pixels;
+    }
+
+    private void loadScreenshotTexture(int[] pixels, float[] texMatrix)
+            throws InterruptedException {
+        GLHelper.createAndBindTextureObject(mScreenshotTextureBuffer,
+                GLES11Ext.GL_TEXTURE_EXTERNAL_OES);
+        mSurfaceTexture = new SurfaceTexture(mScreenshotTextureBuffer.get(0));
+        mSurfaceTexture.setDefaultBufferSize(WIDTH, HEIGHT);
+        CountDownLatch frameAvailable = new CountDownLatch(1);
+        mSurfaceTexture.setOnFrameAvailableListener(surfaceTexture -> frameAvailable.countDown(),
+                new Handler(Looper.getMainLooper()));
+        mSurface = new Surface(mSurfaceTexture);
+
+        Bitmap bitmap = Bitmap.createBitmap(pixels, WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        Canvas canvas = mSurface.lockCanvas(/* inOutDirty= */ null);
+        canvas.drawBitmap(bitmap, /* left= */ 0, /* top= */ 0, /* paint= */ null);
+        mSurface.unlockCanvasAndPost(canvas);
+        bitmap.recycle();
+
+        assertThat(frameAvailable.await(FRAME_TIMEOUT_MS, TimeUnit.MILLISECONDS)).isTrue();
+        mSurfaceTexture.updateTexImage();
+        mSurfaceTexture.getTransformMatrix(texMatrix);
+    }
+
+    private static int[] readSurfacePixels() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WIDTH * HEIGHT * 4)
+                .order(ByteOrder.nativeOrder());
+        GLES30.glReadPixels(/* x= */ 0, /* y= */ 0, WIDTH, HEIGHT, GLES30.GL_RGBA,
+                GLES30.GL_UNSIGNED_BYTE, buffer);
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < pixels.length; i++) {
+            int red = buffer.get(i * 4) & 0xFF;
+            int green = buffer.get(i * 4 + 1) & 0xFF;
+            int blue = buffer.get(i * 4 + 2) & 0xFF;
+            pixels[i] = 0xFF000000 | (red << 16) | (green << 8) | blue;
+        }
+        return pixels;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.systemui.car.activity.blurredbackground;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.testing.AndroidTestingRunner;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.systemui.SysuiTestCase;
+import com.android.systemui.car.CarSystemUiTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+@CarSystemUiTest
+@RunWith(AndroidTestingRunner.class)
+@SmallTest
+public class CpuBlurRendererTest extends SysuiTestCase {
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 32;
+    private static final int DOWNSAMPLE_FACTOR = 4;
+    private static final BlurKernel KERNEL = BlurKernel.create(/* blurRadius= */ 16f,
+            DOWNSAMPLE_FACTOR);
+
+    @Test
+    public void blur_uniformImage_unchanged() {
+        int[] pixels = new int[WIDTH * HEIGHT];
+        Arrays.fill(pixels, 0xFF336699);
+
+        int[] blurred = CpuBlurRenderer.blur(pixels, WIDTH, HEIGHT, DOWNSAMPLE_FACTOR, KERNEL);
+
+        assertThat(blurred).isEqualTo(pixels);
+    }
+
+    @Test
+    public void blur_outputIsOpaque() {
+        int[] pixels = new int[WIDTH * HEIGHT];
+        Arrays.fill(pixels, 0x00FFFFFF);
+
+        int[] blurred = CpuBlurRenderer.blur(pixels, WIDTH, HEIGHT, DOWNSAMPLE_FACTOR, KERNEL);
+
+        for (int pixel : blurred) {
+            assertThat(pixel >>> 24).isEqualTo(0xFF);
+        }
+    }
+
+    @Test
+    public void blurDownsampled_returnsDownsampledSize() {
+        int[] pixels = new int[WIDTH * HEIGHT];
+
+        int[] blurred = CpuBlurRenderer.blurDownsampled(pixels, WIDTH, HEIGHT, DOWNSAMPLE_FACTOR,
+                KERNEL);
+
+        assertThat(blurred).hasLength(
+                CpuBlurRenderer.getDownsampledSize(WIDTH, DOWNSAMPLE_FACTOR)
+                        * CpuBlurRenderer.getDownsampledSize(HEIGHT, DOWNSAMPLE_FACTOR));
+    }
+
+    @Test
+    public void getDownsampledSize_neverZero() {
+        assertThat(CpuBlurRenderer.getDownsampledSize(/* size= */ 1, DOWNSAMPLE_FACTOR))
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void blur_verticalEdge_smoothedAcrossEdge() {
+        // Left half black, right half white.
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                pixels[y * WIDTH + x] = x < WIDTH / 2 ? 0xFF000000 : 0xFFFFFFFF;
+            }
+        }
+
+        int[] blurred = CpuBlurRenderer.blur(pixels, WIDTH, HEIGHT, DOWNSAMPLE_FACTOR, KERNEL);
+
+        int row = HEIGHT / 2 * WIDTH;
+        int previousBlue = -1;
+        for (int x = 0; x < WIDTH; x++) {
+            int blue = blurred[row + x] & 0xFF;
+            assertThat(blue).isAtLeast(previousBlue);
+            previousBlue = blue;
+        }
+        int blueAtEdge = blurred[row + WIDTH / 2] & 0xFF;
+        assertThat(blueAtEdge).isGreaterThan(0);
+        assertThat(blueAtEdge).isLessThan(0xFF);
+        assertThat(blurred[row] & 0xFF).isEqualTo(0);
+        assertThat(blurred[row + WIDTH - 1] & 0xFF).isEqualTo(0xFF);
+    }
+}
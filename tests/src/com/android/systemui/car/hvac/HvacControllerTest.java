@@ -26,6 +26,7 @@ import static android.car.VehiclePropertyIds.HVAC_TEMPERATURE_SET;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import static org.mockito.Mockito.anyFloat;
 import static org.mockito.Mockito.anyInt;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
@@ -47,6 +48,7 @@ import android.view.View;
 import com.android.systemui.SysuiTestCase;
 import com.android.systemui.car.CarServiceProvider;
 import com.android.systemui.car.CarSystemUiTest;
+import com.android.systemui.dump.DumpManager;
 import com.android.systemui.statusbar.policy.ConfigurationController;
 import com.android.systemui.util.concurrency.FakeExecutor;
 import com.android.systemui.util.time.FakeSystemClock;
@@ -55,9 +57,16 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 @CarSystemUiTest
 @RunWith(AndroidTestingRunner.class)
 @TestableLooper.RunWithLooper
@@ -75,8 +84,12 @@ public class HvacControllerTest extends SysuiTestCase {
     @Mock
     private CarPropertyConfig mCarPropertyConfig;
     @Mock
+    private CarPropertyConfig mSharedAreaCarPropertyConfig;
+    @Mock
     private CarServiceProvider mCarServiceProvider;
     @Mock
+    private DumpManager mDumpManager;
+    @Mock
     private TestHvacView mTestHvacView1;
     @Mock
     private TestHvacView mTestHvacView2;
@@ -98,9 +111,9 @@ public class HvacControllerTest extends SysuiTestCase {
         when(mCarPropertyConfig.getAreaIds()).thenReturn(new int[] {AREA_1, AREA_4, AREA_16});
 
         mExecutor = new FakeExecutor(new FakeSystemClock());
-        mHvacController = new HvacController(mCarServiceProvider, mExecutor,
+        mHvacController = new HvacController(mCarServiceProvider, mExecutor, mExecutor,
                 getContext().getOrCreateTestableResources().getResources(),
-                mConfigurationController);
+                mConfigurationController, mDumpManager);
         mHvacController.mCarServiceLifecycleListener.onConnected(mCar);
         mExecutor.advanceClockToLast();
         mExecutor.runAllReady();
@@ -130,6 +143,7 @@ public class HvacControllerTest extends SysuiTestCase {
                 .thenReturn(VEHICLE_AREA_TYPE_GLOBAL);
 
         mHvacController.registerHvacViews(mTestHvacView1);
+        mExecutor.runAllReady();
 
         assertThat(mHvacController.getHvacPropertyViewMap().get(HVAC_TEMPERATURE_SET).get(
                 AREA_1)).contains(mTestHvacView1);
@@ -155,6 +169,7 @@ public class HvacControllerTest extends SysuiTestCase {
                 .thenReturn(mCarPropertyValue);
 
         mHvacController.registerHvacViews(mTestHvacView1);
+        mExecutor.runAllReady();
 
         assertThat(mHvacController.getHvacPropertyViewMap().get(HVAC_TEMPERATURE_SET).get(
                 AREA_1)).contains(mTestHvacView1);
@@ -164,6 +179,26 @@ public class HvacControllerTest extends SysuiTestCase {
         verify(mTestHvacView1, times(3)).onPropertyChanged(mCarPropertyValue);
     }
 
+    @Test
+    public void registerHvacView_sharedPropertiesToGetOnInit_readOnce() {
+        when(mTestHvacView1.getAreaId()).thenReturn(0);
+        when(mTestHvacView1.getHvacPropertyToView()).thenReturn(HVAC_TEMPERATURE_SET);
+        when(mCarPropertyConfig.getAreaType()).thenReturn(VEHICLE_AREA_TYPE_SEAT);
+        when(mCarPropertyConfig.getAreaIds()).thenReturn(new int[] {AREA_1, AREA_4});
+        // Both seats share the same HVAC_POWER_ON and HVAC_AUTO_ON area.
+        when(mSharedAreaCarPropertyConfig.getAreaIds()).thenReturn(new int[] {AREA_1 | AREA_4});
+        when(mCarPropertyManager.getCarPropertyConfig(HVAC_POWER_ON))
+                .thenReturn(mSharedAreaCarPropertyConfig);
+        when(mCarPropertyManager.getCarPropertyConfig(HVAC_AUTO_ON))
+                .thenReturn(mSharedAreaCarPropertyConfig);
+
+        mHvacController.registerHvacViews(mTestHvacView1);
+        mExecutor.runAllReady();
+
+        verify(mCarPropertyManager).getProperty(HVAC_POWER_ON, AREA_1 | AREA_4);
+        verify(mCarPropertyManager).getProperty(HVAC_AUTO_ON, AREA_1 | AREA_4);
+    }
+
     @Test
     public void registerHvacView_propertyNotImplemented() {
         when(mTestHvacView1.getAreaId()).thenReturn(AREA_1);
@@ -220,6 +255,38 @@ public class HvacControllerTest extends SysuiTestCase {
         verify(mTestHvacView2).onPropertyChanged(mCarPropertyValue);
     }
 
+    @Test
+    public void hvacPropertyChanged_seatProperty_doesNotQueryConfigPerRegisteredProperty() {
+        registerAllTestHvacViews();
+        when(mCarPropertyValue.getAreaId()).thenReturn(AREA_1);
+        when(mCarPropertyValue.getPropertyId()).thenReturn(HVAC_TEMPERATURE_SET);
+        when(mCarPropertyManager.getCarPropertyConfig(HVAC_TEMPERATURE_SET).getAreaType())
+                .thenReturn(VEHICLE_AREA_TYPE_SEAT);
+        reset(mCarPropertyManager);
+
+        mHvacController.handleHvacPropertyChange(HVAC_TEMPERATURE_SET, mCarPropertyValue);
+        mHvacController.handleHvacPropertyChange(HVAC_TEMPERATURE_SET, mCarPropertyValue);
+
+        verify(mCarPropertyManager, never()).getCarPropertyConfig(anyInt());
+        verify(mTestHvacView1, times(2)).onPropertyChanged(mCarPropertyValue);
+        verify(mTestHvacView2, never()).onPropertyChanged(mCarPropertyValue);
+        verify(mTestHvacView3, never()).onPropertyChanged(mCarPropertyValue);
+    }
+
+    @Test
+    public void hvacPropertyChanged_viewUnregistered_viewDoesNotHandle() {
+        registerAllTestHvacViews();
+        when(mCarPropertyValue.getAreaId()).thenReturn(AREA_1);
+        when(mCarPropertyValue.getPropertyId()).thenReturn(HVAC_TEMPERATURE_SET);
+        mHvacController.handleHvacPropertyChange(HVAC_TEMPERATURE_SET, mCarPropertyValue);
+
+        mHvacController.unregisterViews(mTestHvacView2);
+        reset(mTestHvacView2);
+        mHvacController.handleHvacPropertyChange(HVAC_TEMPERATURE_SET, mCarPropertyValue);
+
+        verify(mTestHvacView2, never()).onPropertyChanged(mCarPropertyValue);
+    }
+
     @Test
     public void hvacPropertyChanged_noSubscribingViewRegistered_doesNotThrowError() {
         registerAllTestHvacViews();
@@ -262,6 +329,204 @@ public class HvacControllerTest extends SysuiTestCase {
         verify(mTestHvacView3).onHvacTemperatureUnitChanged(/* usesFahrenheit= */ false);
     }
 
+    @Test
+    public void setHvacProperty_singleWrite_writtenWithoutWaitingForInterval() {
+        mHvacController.setHvacProperty(HVAC_TEMPERATURE_SET, AREA_1, 20f);
+
+        mExecutor.runAllReady();
+
+        verify(mCarPropertyManager).setFloatProperty(HVAC_TEMPERATURE_SET, AREA_1, 20f);
+    }
+
+    @Test
+    public void setHvacProperty_burstOfWritesToSameArea_firstAndLastValuesWritten() {
+        mHvacController.setHvacProperty(HVAC_TEMPERATURE_SET, AREA_1, 20f);
+        mHvacController.setHvacProperty(HVAC_TEMPERATURE_SET, AREA_1, 20.5f);
+        mHvacController.setHvacProperty(HVAC_TEMPERATURE_SET, AREA_1, 21f);
+        mExecutor.runAllReady();
+
+        verify(mCarPropertyManager).setFloatProperty(HVAC_TEMPERATURE_SET, AREA_1, 20f);
+        verify(mCarPropertyManager, never()).setFloatProperty(HVAC_TEMPERATURE_SET, AREA_1, 21f);
+
+        mExecutor.advanceClockToNext();
+        mExecutor.runAllReady();
+
+        verify(mCarPropertyManager).setFloatProperty(HVAC_TEMPERATURE_SET, AREA_1, 21f);
+        verify(mCarPropertyManager, never()).setFloatProperty(HVAC_TEMPERATURE_SET, AREA_1, 20.5f);
+        assertThat(mHvacController.getWriteCoalescer().getWritesRequested()).isEqualTo(3);
+        assertThat(mHvacController.getWriteCoalescer().getWritesIssued()).isEqualTo(2);
+    }
+
+    @Test
+    public void setHvacProperty_writesToDifferentAreas_allWritten() {
+        mHvacController.setHvacProperty(HVAC_AUTO_ON, AREA_1, true);
+        mHvacController.setHvacProperty(HVAC_AUTO_ON, AREA_4, false);
+
+        mExecutor.advanceClockToLast();
+        mExecutor.runAllReady();
+
+        verify(mCarPropertyManager).setBooleanProperty(HVAC_AUTO_ON, AREA_1, true);
+        verify(mCarPropertyManager).setBooleanProperty(HVAC_AUTO_ON, AREA_4, false);
+    }
+
+    @Test
+    public void flushHvacPropertyWrites_pendingWrite_writtenWithoutWaitingForInterval() {
+        mHvacController.setHvacProperty(HVAC_DEFROSTER, AREA_1, 1);
+        mHvacController.setHvacProperty(HVAC_DEFROSTER, AREA_1, 0);
+
+        mHvacController.flushHvacPropertyWrites(HVAC_DEFROSTER, AREA_1);
+        mExecutor.runAllReady();
+
+        verify(mCarPropertyManager).setIntProperty(HVAC_DEFROSTER, AREA_1, 1);
+        verify(mCarPropertyManager).setIntProperty(HVAC_DEFROSTER, AREA_1, 0);
+    }
+
+    @Test
+    public void flushHvacPropertyWrites_otherArea_pendingWriteHeldUntilIntervalEnds() {
+        mHvacController.setHvacProperty(HVAC_DEFROSTER, AREA_1, 1);
+        mHvacController.setHvacProperty(HVAC_DEFROSTER, AREA_1, 0);
+
+        mHvacController.flushHvacPropertyWrites(HVAC_DEFROSTER, AREA_4);
+        mExecutor.runAllReady();
+
+        verify(mCarPropertyManager, never()).setIntProperty(HVAC_DEFROSTER, AREA_1, 0);
+
+        mExecutor.advanceClockToNext();
+        mExecutor.runAllReady();
+
+        verify(mCarPropertyManager).setIntProperty(HVAC_DEFROSTER, AREA_1, 0);
+    }
+
+    @Test
+    public void dump_printsWriteCounters() {
+        mHvacController.setHvacProperty(HVAC_DEFROSTER, AREA_1, 1);
+        mHvacController.setHvacProperty(HVAC_DEFROSTER, AREA_1, 0);
+        mHvacController.setHvacProperty(HVAC_DEFROSTER, AREA_1, 1);
+        mExecutor.runAllReady();
+
+        StringWriter stringWriter = new StringWriter();
+        mHvacController.dump(new PrintWriter(stringWriter), new String[0]);
+
+        assertThat(stringWriter.toString()).contains("writes requested: 3");
+        assertThat(stringWriter.toString()).contains("writes coalesced: 1");
+        assertThat(stringWriter.toString()).contains("writes issued: 1");
+    }
+
+    @Test
+    public void setHvacProperty_subscribingViewRegistered_viewShowsValueBeforeConfirmation() {
+        registerAllTestHvacViews();
+
+        mHvacController.setHvacProperty(HVAC_TEMPERATURE_SET, AREA_1, 21f);
+        mExecutor.runAllReady();
+
+        ArgumentCaptor<CarPropertyValue> captor = ArgumentCaptor.forClass(CarPropertyValue.class);
+        verify(mTestHvacView1).onPropertyChanged(captor.capture());
+        assertThat(captor.getValue().getPropertyId()).isEqualTo(HVAC_TEMPERATURE_SET);
+        assertThat(captor.getValue().getAreaId()).isEqualTo(AREA_1);
+        assertThat(captor.getValue().getValue()).isEqualTo(21f);
+    }
+
+    @Test
+    public void setHvacProperty_valueConfirmed_confirmationNotPropagatedAgain() {
+        registerAllTestHvacViews();
+        when(mCarPropertyValue.getPropertyId()).thenReturn(HVAC_TEMPERATURE_SET);
+        when(mCarPropertyValue.getAreaId()).thenReturn(AREA_1);
+        when(mCarPropertyValue.getValue()).thenReturn(21f);
+
+        mHvacController.setHvacProperty(HVAC_TEMPERATURE_SET, AREA_1, 21f);
+        mExecutor.runAllReady();
+        mHvacController.handleHvacPropertyChange(HVAC_TEMPERATURE_SET, mCarPropertyValue);
+        mExecutor.advanceClockToLast();
+        mExecutor.runAllReady();
+
+        verify(mTestHvacView1, never()).onPropertyChanged(mCarPropertyValue);
+    }
+
+    @Test
+    public void setHvacProperty_valueNotConfirmed_viewRolledBackToLastReportedValue() {
+        registerAllTestHvacViews();
+        when(mCarPropertyValue.getPropertyId()).thenReturn(HVAC_TEMPERATURE_SET);
+        when(mCarPropertyValue.getAreaId()).thenReturn(AREA_1);
+        when(mCarPropertyValue.getValue()).thenReturn(20f);
+        mHvacController.handleHvacPropertyChange(HVAC_TEMPERATURE_SET, mCarPropertyValue);
+
+        mHvacController.setHvacProperty(HVAC_TEMPERATURE_SET, AREA_1, 21f);
+        mExecutor.runAllReady();
+        mExecutor.advanceClockToLast();
+        mExecutor.runAllReady();
+
+        verify(mTestHvacView1, times(2)).onPropertyChanged(mCarPropertyValue);
+    }
+
+    @Test
+    public void setHvacProperty_valueConfirmedRoundedToIncrement_viewShowsRoundedValue() {
+        registerAllTestHvacViews();
+        // 16°C to 28°C in 0.5°C increments, 60°F to 85°F in 1°F increments.
+        when(mCarPropertyConfig.getConfigArray()).thenReturn(
+                Arrays.asList(160, 280, 5, 600, 850, 10));
+        when(mCarPropertyValue.getPropertyId()).thenReturn(HVAC_TEMPERATURE_SET);
+        when(mCarPropertyValue.getAreaId()).thenReturn(AREA_1);
+        when(mCarPropertyValue.getValue()).thenReturn(21f);
+
+        // 70°F converted to Celsius, which the vehicle HAL rounds to the closest increment.
+        mHvacController.setHvacProperty(HVAC_TEMPERATURE_SET, AREA_1, 21.11f);
+        mExecutor.runAllReady();
+        mHvacController.handleHvacPropertyChange(HVAC_TEMPERATURE_SET, mCarPropertyValue);
+
+        verify(mTestHvacView1).onPropertyChanged(mCarPropertyValue);
+
+        mExecutor.advanceClockToLast();
+        mExecutor.runAllReady();
+
+        // Confirmed, so not rolled back once the confirmation timeout elapsed.
+        verify(mTestHvacView1, times(1)).onPropertyChanged(mCarPropertyValue);
+    }
+
+    @Test
+    public void setHvacProperty_powerDependentPropertyAndPowerOff_valueNotWritten() {
+        connectWithPowerDependentProperties(HVAC_TEMPERATURE_SET);
+        when(mCarPropertyValue.getPropertyId()).thenReturn(HVAC_POWER_ON);
+        when(mCarPropertyValue.getAreaId()).thenReturn(AREA_1);
+        when(mCarPropertyValue.getValue()).thenReturn(false);
+        mHvacController.handleHvacPropertyChange(HVAC_POWER_ON, mCarPropertyValue);
+
+        mHvacController.setHvacProperty(HVAC_TEMPERATURE_SET, AREA_1, 21f);
+        mExecutor.advanceClockToLast();
+        mExecutor.runAllReady();
+
+        verify(mCarPropertyManager, never()).setFloatProperty(anyInt(), anyInt(), anyFloat());
+    }
+
+    @Test
+    public void setHvacProperty_powerDependentPropertyAndPowerOn_valueWritten() {
+        connectWithPowerDependentProperties(HVAC_TEMPERATURE_SET);
+        when(mCarPropertyValue.getPropertyId()).thenReturn(HVAC_POWER_ON);
+        when(mCarPropertyValue.getAreaId()).thenReturn(AREA_1);
+        when(mCarPropertyValue.getValue()).thenReturn(true);
+        mHvacController.handleHvacPropertyChange(HVAC_POWER_ON, mCarPropertyValue);
+
+        mHvacController.setHvacProperty(HVAC_TEMPERATURE_SET, AREA_1, 21f);
+        mExecutor.advanceClockToLast();
+        mExecutor.runAllReady();
+
+        verify(mCarPropertyManager).setFloatProperty(HVAC_TEMPERATURE_SET, AREA_1, 21f);
+    }
+
+    @Test
+    public void hvacPowerTurnedOn_powerDependentProperties_refreshedInSingleTask() {
+        connectWithPowerDependentProperties(HVAC_TEMPERATURE_SET, HVAC_DEFROSTER);
+        when(mCarPropertyValue.getPropertyId()).thenReturn(HVAC_POWER_ON);
+        when(mCarPropertyValue.getAreaId()).thenReturn(AREA_1);
+        when(mCarPropertyValue.getValue()).thenReturn(true);
+
+        mHvacController.handleHvacPropertyChange(HVAC_POWER_ON, mCarPropertyValue);
+
+        assertThat(mExecutor.numPending()).isEqualTo(1);
+        mExecutor.runAllReady();
+        verify(mCarPropertyManager).getProperty(HVAC_TEMPERATURE_SET, AREA_1);
+        verify(mCarPropertyManager).getProperty(HVAC_DEFROSTER, AREA_1);
+    }
+
     private void registerAllTestHvacViews() {
         when(mTestHvacView1.getAreaId()).thenReturn(AREA_1);
         when(mTestHvacView1.getHvacPropertyToView()).thenReturn(HVAC_TEMPERATURE_SET);
@@ -279,6 +544,16 @@ public class HvacControllerTest extends SysuiTestCase {
         mExecutor.runAllReady();
     }
 
+    private void connectWithPowerDependentProperties(int... propertyIds) {
+        List<Integer> powerDependentProperties = new ArrayList<>();
+        for (int propertyId : propertyIds) {
+            powerDependentProperties.add(propertyId);
+        }
+        when(mCarPropertyConfig.getConfigArray()).thenReturn(powerDependentProperties);
+        mHvacController.mCarServiceLifecycleListener.onConnected(mCar);
+        mExecutor.runAllReady();
+    }
+
     private void unregisterAllTestHvacViews() {
         mHvacController.unregisterViews(mTestHvacView1);
         mHvacController.unregisterViews(mTestHvacView2);
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.systemui.car.hvac;
+
+import static android.car.VehiclePropertyIds.HVAC_TEMPERATURE_SET;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import android.testing.AndroidTestingRunner;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.systemui.SysuiTestCase;
+import com.android.systemui.car.CarSystemUiTest;
+import com.android.systemui.util.concurrency.FakeExecutor;
+import com.android.systemui.util.time.FakeSystemClock;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+@CarSystemUiTest
+@RunWith(AndroidTestingRunner.class)
+@SmallTest
+public class HvacPropertyWriteCoalescerTest extends SysuiTestCase {
+    private static final int AREA_ID = 1;
+    private static final long FLUSH_INTERVAL_MS = 100;
+
+    private HvacPropertyWriteCoalescer mWriteCoalescer;
+    private FakeSystemClock mClock;
+    private FakeExecutor mFlushExecutor;
+    private FakeExecutor mTimerExecutor;
+
+    @Mock
+    private HvacPropertyWriteCoalescer.Writer mWriter;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(/* testClass= */ this);
+        mClock = new FakeSystemClock();
+        mFlushExecutor = new FakeExecutor(mClock);
+        mTimerExecutor = new FakeExecutor(mClock);
+        mWriteCoalescer = new HvacPropertyWriteCoalescer(mFlushExecutor, mTimerExecutor,
+                FLUSH_INTERVAL_MS, mWriter);
+    }
+
+    @Test
+    public void enqueueAndFlush_afterIntervalEndBeforeIssue_writesIssuedInQueueOrder() {
+        mWriteCoalescer.enqueue(HVAC_TEMPERATURE_SET, AREA_ID, 20f);
+        mWriteCoalescer.enqueue(HVAC_TEMPERATURE_SET, AREA_ID, 21f);
+        // The interval ends on the timer thread, before the flush executor issues its write.
+        mClock.advanceTime(FLUSH_INTERVAL_MS);
+        mTimerExecutor.runAllReady();
+        mWriteCoalescer.enqueue(HVAC_TEMPERATURE_SET, AREA_ID, 22f);
+        mWriteCoalescer.flush(HVAC_TEMPERATURE_SET, AREA_ID);
+
+        mFlushExecutor.runAllReady();
+
+        InOrder inOrder = inOrder(mWriter);
+        inOrder.verify(mWriter).write(HVAC_TEMPERATURE_SET, AREA_ID, 20f);
+        inOrder.verify(mWriter).write(HVAC_TEMPERATURE_SET, AREA_ID, 21f);
+        inOrder.verify(mWriter).write(HVAC_TEMPERATURE_SET, AREA_ID, 22f);
+    }
+
+    @Test
+    public void flush_beforeIntervalEnd_pendingWriteIssuedOnce() {
+        mWriteCoalescer.enqueue(HVAC_TEMPERATURE_SET, AREA_ID, 20f);
+        mWriteCoalescer.enqueue(HVAC_TEMPERATURE_SET, AREA_ID, 21f);
+        mWriteCoalescer.flush(HVAC_TEMPERATURE_SET, AREA_ID);
+        mClock.advanceTime(FLUSH_INTERVAL_MS);
+        mTimerExecutor.runAllReady();
+        // The interval ended without a pending write, so the next write is issued right away.
+        mWriteCoalescer.enqueue(HVAC_TEMPERATURE_SET, AREA_ID, 22f);
+
+        mFlushExecutor.runAllReady();
+
+        InOrder inOrder = inOrder(mWriter);
+        inOrder.verify(mWriter).write(HVAC_TEMPERATURE_SET, AREA_ID, 20f);
+        inOrder.verify(mWriter).write(HVAC_TEMPERATURE_SET, AREA_ID, 21f);
+        inOrder.verify(mWriter).write(HVAC_TEMPERATURE_SET, AREA_ID, 22f);
+        verify(mWriter, times(3)).write(anyInt(), anyInt(), any());
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.systemui.car.privacy;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.Manifest;
+import android.content.BroadcastReceiver;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.UserInfo;
+import android.net.Uri;
+import android.os.UserHandle;
+import android.permission.PermissionGroupUsage;
+import android.permission.PermissionManager;
+import android.testing.AndroidTestingRunner;
+import android.testing.TestableLooper;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.systemui.SysuiTestCase;
+import com.android.systemui.car.CarSystemUiTest;
+import com.android.systemui.privacy.PrivacyDialog;
+import com.android.systemui.privacy.PrivacyItemController;
+import com.android.systemui.privacy.logging.PrivacyLogger;
+import com.android.systemui.settings.UserTracker;
+import com.android.systemui.util.concurrency.FakeExecutor;
+import com.android.systemui.util.time.FakeSystemClock;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Collections;
+import java.util.List;
+
+@CarSystemUiTest
+@RunWith(AndroidTestingRunner.class)
+@TestableLooper.RunWithLooper
+@SmallTest
+public class MicPrivacyElementsProviderImplTest extends SysuiTestCase {
+    private static final int USER_ID = 10;
+    private static final String PACKAGE_NAME = "package";
+    private static final String APP_LABEL = "label";
+
+    private MicPrivacyElementsProviderImpl mProvider;
+    private FakeSystemClock mSystemClock;
+    private FakeExecutor mBackgroundExecutor;
+    private PrivacyItemController.Callback mPrivacyItemCallback;
+    private BroadcastReceiver mPackageChangedReceiver;
+    private UserTracker.Callback mUserTrackerCallback;
+
+    @Mock
+    private PermissionManager mPermissionManager;
+    @Mock
+    private PackageManager mPackageManager;
+    @Mock
+    private PrivacyItemController mPrivacyItemController;
+    @Mock
+    private UserTracker mUserTracker;
+    @Mock
+    private PrivacyLogger mPrivacyLogger;
+    @Mock
+    private PermissionGroupUsage mPermissionGroupUsage;
+    @Mock
+    private ApplicationInfo mApplicationInfo;
+
+    @Before
+    public void setUp() throws PackageManager.NameNotFoundException {
+        MockitoAnnotations.initMocks(/* testClass= */ this);
+        mContext = spy(mContext);
+        doReturn(null).when(mContext).registerReceiverForAllUsers(any(), any(), isNull(),
+                isNull());
+
+        mSystemClock = new FakeSystemClock();
+        mBackgroundExecutor = new FakeExecutor(mSystemClock);
+
+        when(mPrivacyItemController.getMicCameraAvailable()).thenReturn(true);
+        when(mUserTracker.getUserProfiles()).thenReturn(
+                List.of(new UserInfo(USER_ID, /* name= */ "user", /* flags= */ 0)));
+        when(mPermissionGroupUsage.getPermissionGroupName())
+                .thenReturn(Manifest.permission_group.MICROPHONE);
+        when(mPermissionGroupUsage.getPackageName()).thenReturn(PACKAGE_NAME);
+        when(mPermissionGroupUsage.getUid()).thenReturn(UserHandle.getUid(USER_ID, 10123));
+        when(mPermissionGroupUsage.isActive()).thenReturn(true);
+        when(mPermissionManager.getIndicatorAppOpUsageData())
+                .thenReturn(Collections.singletonList(mPermissionGroupUsage));
+        when(mPackageManager.getApplicationInfoAsUser(eq(PACKAGE_NAME), anyInt(), eq(USER_ID)))
+                .thenReturn(mApplicationInfo);
+        when(mApplicationInfo.loadLabel(mPackageManager)).thenReturn(APP_LABEL);
+
+        mProvider = new MicPrivacyElementsProviderImpl(mContext, mPermissionManager,
+                mPackageManager, mPrivacyItemController, mUserTracker, mPrivacyLogger,
+                mBackgroundExecutor, mSystemClock);
+
+        ArgumentCaptor<PrivacyItemController.Callback> callbackCaptor =
+                ArgumentCaptor.forClass(PrivacyItemController.Callback.class);
+        verify(mPrivacyItemController).addCallback(callbackCaptor.capture());
+        mPrivacyItemCallback = callbackCaptor.getValue();
+        ArgumentCaptor<BroadcastReceiver> receiverCaptor =
+                ArgumentCaptor.forClass(BroadcastReceiver.class);
+        verify(mContext).registerReceiverForAllUsers(receiverCaptor.capture(),
+                any(IntentFilter.class), isNull(), isNull());
+        mPackageChangedReceiver = receiverCaptor.getValue();
+        ArgumentCaptor<UserTracker.Callback> userTrackerCallbackCaptor =
+                ArgumentCaptor.forClass(UserTracker.Callback.class);
+        verify(mUserTracker).addCallback(userTrackerCallbackCaptor.capture(),
+                eq(mBackgroundExecutor));
+        mUserTrackerCallback = userTrackerCallbackCaptor.getValue();
+    }
+
+    @Test
+    public void getPrivacyElements_returnsElementWithLabelOfUser() {
+        List<PrivacyDialog.PrivacyElement> elements = mProvider.getPrivacyElements();
+
+        assertThat(elements).hasSize(1);
+        assertThat(elements.get(0).getPackageName()).isEqualTo(PACKAGE_NAME);
+        assertThat(elements.get(0).getApplicationName()).isEqualTo(APP_LABEL);
+        assertThat(elements.get(0).getUserId()).isEqualTo(USER_ID);
+    }
+
+    @Test
+    public void getPrivacyElements_calledTwice_usageDataQueriedOnce() {
+        mProvider.getPrivacyElements();
+        mProvider.getPrivacyElements();
+
+        verify(mPermissionManager).getIndicatorAppOpUsageData();
+    }
+
+    @Test
+    public void onPrivacyItemsChanged_elementsRebuiltInBackground() {
+        mProvider.getPrivacyElements();
+
+        mPrivacyItemCallback.onPrivacyItemsChanged(Collections.emptyList());
+        mPrivacyItemCallback.onPrivacyItemsChanged(Collections.emptyList());
+        assertThat(mBackgroundExecutor.runAllReady()).isEqualTo(1);
+        mProvider.getPrivacyElements();
+
+        verify(mPermissionManager, times(2)).getIndicatorAppOpUsageData();
+    }
+
+    @Test
+    public void onPrivacyItemsChanged_labelNotReloaded()
+            throws PackageManager.NameNotFoundException {
+        mProvider.getPrivacyElements();
+
+        mPrivacyItemCallback.onPrivacyItemsChanged(Collections.emptyList());
+        mBackgroundExecutor.runAllReady();
+
+        verify(mPackageManager).getApplicationInfoAsUser(eq(PACKAGE_NAME), anyInt(),
+                eq(USER_ID));
+    }
+
+    @Test
+    public void onUserChanged_elementsOfNewUserReturned() {
+        mProvider.getPrivacyElements();
+        int newUserId = USER_ID + 1;
+        when(mUserTracker.getUserProfiles()).thenReturn(
+                List.of(new UserInfo(newUserId, /* name= */ "user", /* flags= */ 0)));
+        when(mPermissionGroupUsage.getUid()).thenReturn(UserHandle.getUid(newUserId, 10123));
+
+        mUserTrackerCallback.onUserChanged(newUserId, mContext);
+        mBackgroundExecutor.runAllReady();
+        List<PrivacyDialog.PrivacyElement> elements = mProvider.getPrivacyElements();
+
+        verify(mPermissionManager, times(2)).getIndicatorAppOpUsageData();
+        assertThat(elements).hasSize(1);
+        assertThat(elements.get(0).getUserId()).isEqualTo(newUserId);
+    }
+
+    @Test
+    public void onProfilesChanged_elementsRebuiltInBackground() {
+        mProvider.getPrivacyElements();
+
+        mUserTrackerCallback.onProfilesChanged(Collections.emptyList());
+        assertThat(mBackgroundExecutor.runAllReady()).isEqualTo(1);
+        mProvider.getPrivacyElements();
+
+        verify(mPermissionManager, times(2)).getIndicatorAppOpUsageData();
+    }
+
+    @Test
+    public void onPackageChanged_labelReloaded() throws PackageManager.NameNotFoundException {
+        mProvider.getPrivacyElements();
+
+        Intent intent = new Intent(Intent.ACTION_PACKAGE_CHANGED,
+                Uri.fromParts("package", PACKAGE_NAME, /* fragment= */ null));
+        intent.putExtra(Intent.EXTRA_UID, UserHandle.getUid(USER_ID, 10123));
+        mPackageChangedReceiver.onReceive(mContext, intent);
+        mBackgroundExecutor.runAllReady();
+
+        verify(mPackageManager, times(2)).getApplicationInfoAsUser(eq(PACKAGE_NAME), anyInt(),
+                eq(USER_ID));
+    }
+
+    @Test
+    public void getPrivacyElements_inactiveElementsExpired_usageDataQueriedAgain() {
+        when(mPermissionGroupUsage.isActive()).thenReturn(false);
+        mProvider.getPrivacyElements();
+
+        mSystemClock.advanceTime(PrivacyElementsProviderImpl.MAX_INACTIVE_ELEMENTS_AGE_MS);
+        mProvider.getPrivacyElements();
+
+        verify(mPermissionManager, times(2)).getIndicatorAppOpUsageData();
+    }
+
+    @Test
+    public void getPrivacyElements_otherSensorUsage_filteredOut() {
+        when(mPermissionGroupUsage.getPermissionGroupName())
+                .thenReturn(Manifest.permission_group.CAMERA);
+
+        assertThat(mProvider.getPrivacyElements()).isEmpty();
+    }
+}
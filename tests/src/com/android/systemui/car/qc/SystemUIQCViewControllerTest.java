@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.systemui.car.qc;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.net.Uri;
+import android.testing.AndroidTestingRunner;
+import android.testing.TestableLooper;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.car.qc.controller.BaseQCController;
+import com.android.systemui.SysuiTestCase;
+import com.android.systemui.car.CarSystemUiTest;
+import com.android.systemui.settings.UserTracker;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Collections;
+
+@CarSystemUiTest
+@RunWith(AndroidTestingRunner.class)
+@TestableLooper.RunWithLooper
+@SmallTest
+public class SystemUIQCViewControllerTest extends SysuiTestCase {
+    private static final String REMOTE_URI = "content://com.android.car.settings.qc/test";
+    private static final int FIRST_USER_ID = 10;
+    private static final int SECOND_USER_ID = 11;
+
+    private SystemUIQCViewController mSystemUIQCViewController;
+    private UserTracker.Callback mUserChangedCallback;
+
+    @Mock
+    private UserTracker mUserTracker;
+    @Mock
+    private SystemUIQCView mSystemUIQCView;
+    @Mock
+    private BaseQCController mFirstUserController;
+    @Mock
+    private BaseQCController mSecondUserController;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(/* testClass= */ this);
+        when(mSystemUIQCView.getRemoteUriString()).thenReturn(REMOTE_URI);
+        when(mUserTracker.getUserId()).thenReturn(FIRST_USER_ID);
+
+        mSystemUIQCViewController = spy(new SystemUIQCViewController(mContext, mUserTracker,
+                Collections.emptyMap()));
+        doReturn(mFirstUserController).when(mSystemUIQCViewController)
+                .createRemoteQCController(getUserUri(FIRST_USER_ID));
+        doReturn(mSecondUserController).when(mSystemUIQCViewController)
+                .createRemoteQCController(getUserUri(SECOND_USER_ID));
+
+        mSystemUIQCViewController.attachView(mSystemUIQCView);
+
+        ArgumentCaptor<UserTracker.Callback> captor =
+                ArgumentCaptor.forClass(UserTracker.Callback.class);
+        verify(mUserTracker).addCallback(captor.capture(), any());
+        mUserChangedCallback = captor.getValue();
+        verify(mFirstUserController).bind();
+    }
+
+    @Test
+    public void onUserChanged_notListening_staleControllerDestroyedAndNotRebound() {
+        switchUser();
+
+        verify(mFirstUserController).destroy();
+        verify(mSystemUIQCView).onChanged(isNull());
+        verify(mSystemUIQCViewController, never())
+                .createRemoteQCController(getUserUri(SECOND_USER_ID));
+    }
+
+    @Test
+    public void onUserChanged_notListening_boundToNewUserWhenListening() {
+        switchUser();
+
+        mSystemUIQCViewController.listen(/* shouldListen= */ true);
+
+        verify(mSecondUserController).bind();
+        verify(mSecondUserController).listen(true);
+        // The view was only cleared when the user changed, not again when it was shown.
+        verify(mSystemUIQCView, times(1)).onChanged(isNull());
+    }
+
+    @Test
+    public void onUserChanged_notListening_listenedTwice_boundToNewUserOnce() {
+        switchUser();
+
+        mSystemUIQCViewController.listen(/* shouldListen= */ true);
+        mSystemUIQCViewController.listen(/* shouldListen= */ false);
+        mSystemUIQCViewController.listen(/* shouldListen= */ true);
+
+        verify(mSystemUIQCViewController, times(1))
+                .createRemoteQCController(getUserUri(SECOND_USER_ID));
+    }
+
+    @Test
+    public void onUserChanged_listening_reboundToNewUserAndListening() {
+        mSystemUIQCViewController.listen(/* shouldListen= */ true);
+
+        switchUser();
+
+        verify(mFirstUserController).destroy();
+        verify(mSecondUserController).bind();
+        verify(mSecondUserController).listen(true);
+    }
+
+    private void switchUser() {
+        when(mUserTracker.getUserId()).thenReturn(SECOND_USER_ID);
+        mUserChangedCallback.onUserChanged(SECOND_USER_ID, mContext);
+    }
+
+    private static Uri getUserUri(int userId) {
+        Uri uri = Uri.parse(REMOTE_URI);
+        return uri.buildUpon().authority(userId + "@" + uri.getAuthority()).build();
+    }
+}
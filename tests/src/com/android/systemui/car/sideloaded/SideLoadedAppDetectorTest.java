@@ -21,12 +21,19 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import android.app.ActivityTaskManager.RootTaskInfo;
 import android.content.ComponentName;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.InstallSourceInfo;
+import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.testing.AndroidTestingRunner;
 import android.testing.TestableLooper;
@@ -45,6 +52,8 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.Arrays;
+
 @CarSystemUiTest
 @RunWith(AndroidTestingRunner.class)
 @TestableLooper.RunWithLooper
@@ -55,6 +64,8 @@ public class SideLoadedAppDetectorTest extends SysuiTestCase {
     private static final String UNSAFE_VENDOR = "com.unsafe.vendor";
     private static final String APP_PACKAGE_NAME = "com.test";
     private static final String APP_CLASS_NAME = ".TestClass";
+    private static final String OTHER_APP_PACKAGE_NAME = "com.test.other";
+    private static final int USER_ID = 10;
 
     private SideLoadedAppDetector mSideLoadedAppDetector;
 
@@ -66,13 +77,18 @@ public class SideLoadedAppDetectorTest extends SysuiTestCase {
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
+        mContext = spy(mContext);
+        doReturn(null).when(mContext).registerReceiverForAllUsers(any(), any(), isNull(),
+                isNull());
+        when(mCarDeviceProvisionedController.getCurrentUser()).thenReturn(USER_ID);
 
         TestableResources testableResources = mContext.getOrCreateTestableResources();
         String[] allowedAppInstallSources = new String[]{SAFE_VENDOR};
         testableResources.addOverride(R.array.config_allowedAppInstallSources,
                 allowedAppInstallSources);
 
-        mSideLoadedAppDetector = new SideLoadedAppDetector(testableResources.getResources(),
+        mSideLoadedAppDetector = new SideLoadedAppDetector(mContext,
+                testableResources.getResources(),
                 mPackageManager,
                 mCarDeviceProvisionedController);
     }
@@ -163,4 +179,106 @@ public class SideLoadedAppDetectorTest extends SysuiTestCase {
 
         assertThat(mSideLoadedAppDetector.isSafe(taskInfo)).isFalse();
     }
+
+    @Test
+    public void isSafe_calledTwice_queriesPackageManagerOnce() throws Exception {
+        RootTaskInfo taskInfo = new RootTaskInfo();
+        taskInfo.topActivity = new ComponentName(APP_PACKAGE_NAME, APP_CLASS_NAME);
+        mockNonSystemApp(APP_PACKAGE_NAME, SAFE_VENDOR);
+
+        assertThat(mSideLoadedAppDetector.isSafe(taskInfo)).isTrue();
+        assertThat(mSideLoadedAppDetector.isSafe(taskInfo)).isTrue();
+
+        verify(mPackageManager).getApplicationInfoAsUser(eq(APP_PACKAGE_NAME), anyInt(), any());
+        verify(mPackageManager).getInstallSourceInfo(APP_PACKAGE_NAME);
+    }
+
+    @Test
+    public void isSafe_afterPackageChanged_queriesPackageManagerAgain() throws Exception {
+        RootTaskInfo taskInfo = new RootTaskInfo();
+        taskInfo.topActivity = new ComponentName(APP_PACKAGE_NAME, APP_CLASS_NAME);
+        mockNonSystemApp(APP_PACKAGE_NAME, SAFE_VENDOR);
+        assertThat(mSideLoadedAppDetector.isSafe(taskInfo)).isTrue();
+
+        mockNonSystemApp(APP_PACKAGE_NAME, UNSAFE_VENDOR);
+        mSideLoadedAppDetector.onPackageChanged(USER_ID, APP_PACKAGE_NAME);
+
+        assertThat(mSideLoadedAppDetector.isSafe(taskInfo)).isFalse();
+    }
+
+    @Test
+    public void isSafe_packageChangedWhileChecked_verdictNotCached() throws Exception {
+        RootTaskInfo taskInfo = new RootTaskInfo();
+        taskInfo.topActivity = new ComponentName(APP_PACKAGE_NAME, APP_CLASS_NAME);
+        mockNonSystemApp(APP_PACKAGE_NAME, SAFE_VENDOR);
+        // The package is replaced while the verdict of its previous version is computed.
+        when(mPackageManager.getInstallSourceInfo(APP_PACKAGE_NAME)).thenAnswer(invocation -> {
+            mSideLoadedAppDetector.onPackageChanged(USER_ID, APP_PACKAGE_NAME);
+            return new InstallSourceInfo(SAFE_VENDOR,
+                    /* initiatingPackageSigningInfo= */ null,
+                    /* originatingPackageName= */ null,
+                    /* installingPackageName= */ null);
+        });
+        assertThat(mSideLoadedAppDetector.isSafe(taskInfo)).isTrue();
+
+        mockNonSystemApp(APP_PACKAGE_NAME, UNSAFE_VENDOR);
+
+        assertThat(mSideLoadedAppDetector.isSafe(taskInfo)).isFalse();
+    }
+
+    @Test
+    public void hasUnsafeInstalledApps_calledTwice_scansInstalledPackagesOnce() throws Exception {
+        mockInstalledPackages(APP_PACKAGE_NAME, OTHER_APP_PACKAGE_NAME);
+        mockNonSystemApp(APP_PACKAGE_NAME, SAFE_VENDOR);
+        mockNonSystemApp(OTHER_APP_PACKAGE_NAME, SAFE_VENDOR);
+
+        assertThat(mSideLoadedAppDetector.hasUnsafeInstalledApps()).isFalse();
+        assertThat(mSideLoadedAppDetector.hasUnsafeInstalledApps()).isFalse();
+
+        verify(mPackageManager).getInstalledPackagesAsUser(anyInt(), eq(USER_ID));
+        verify(mPackageManager).getInstallSourceInfo(OTHER_APP_PACKAGE_NAME);
+    }
+
+    @Test
+    public void hasUnsafeInstalledApps_afterPackageChanged_checksOnlyChangedPackage()
+            throws Exception {
+        mockInstalledPackages(APP_PACKAGE_NAME, OTHER_APP_PACKAGE_NAME);
+        mockNonSystemApp(APP_PACKAGE_NAME, SAFE_VENDOR);
+        mockNonSystemApp(OTHER_APP_PACKAGE_NAME, SAFE_VENDOR);
+        assertThat(mSideLoadedAppDetector.hasUnsafeInstalledApps()).isFalse();
+
+        mockNonSystemApp(OTHER_APP_PACKAGE_NAME, UNSAFE_VENDOR);
+        mSideLoadedAppDetector.onPackageChanged(USER_ID, OTHER_APP_PACKAGE_NAME);
+
+        assertThat(mSideLoadedAppDetector.hasUnsafeInstalledApps()).isTrue();
+        verify(mPackageManager).getInstalledPackagesAsUser(anyInt(), eq(USER_ID));
+        verify(mPackageManager).getInstallSourceInfo(APP_PACKAGE_NAME);
+        verify(mPackageManager, times(2)).getInstallSourceInfo(OTHER_APP_PACKAGE_NAME);
+        verify(mPackageManager, never()).getApplicationInfoAsUser(eq(APP_PACKAGE_NAME),
+                anyInt(), any());
+    }
+
+    private void mockNonSystemApp(String packageName, String installSource) throws Exception {
+        ApplicationInfo applicationInfo = new ApplicationInfo();
+        applicationInfo.packageName = packageName;
+        when(mPackageManager.getApplicationInfoAsUser(eq(packageName), anyInt(), any()))
+                .thenReturn(applicationInfo);
+        when(mPackageManager.getInstallSourceInfo(packageName)).thenReturn(
+                new InstallSourceInfo(installSource,
+                        /* initiatingPackageSigningInfo= */ null,
+                        /* originatingPackageName= */ null,
+                        /* installingPackageName= */ null));
+    }
+
+    private void mockInstalledPackages(String... packageNames) {
+        PackageInfo[] packages = new PackageInfo[packageNames.length];
+        for (int i = 0; i < packageNames.length; i++) {
+            packages[i] = new PackageInfo();
+            packages[i].packageName = packageNames[i];
+            packages[i].applicationInfo = new ApplicationInfo();
+            packages[i].applicationInfo.packageName = packageNames[i];
+        }
+        when(mPackageManager.getInstalledPackagesAsUser(anyInt(), eq(USER_ID)))
+                .thenReturn(Arrays.asList(packages));
+    }
 }
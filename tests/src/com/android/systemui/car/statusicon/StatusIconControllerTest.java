@@ -18,6 +18,7 @@ package com.android.systemui.car.statusicon;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.verify;
@@ -114,6 +115,42 @@ public class StatusIconControllerTest extends SysuiTestCase {
         verify(mImageView, never()).setImageDrawable(testIconDrawable);
     }
 
+    @Test
+    public void onStatusUpdated_statusUnchanged_registeredViewNotUpdatedAgain() {
+        Drawable testIconDrawable = mContext.getDrawable(R.drawable.ic_android);
+        mTestStatusIconController.registerIconView(mImageView);
+        mTestStatusIconController.setIconDrawableToDisplay(testIconDrawable);
+        mTestStatusIconController.onStatusUpdated();
+        reset(mImageView);
+
+        mTestStatusIconController.onStatusUpdated();
+
+        verify(mImageView, never()).setImageDrawable(any());
+    }
+
+    @Test
+    public void onStatusUpdated_iconLevelChanged_registeredViewUpdated() {
+        Drawable testIconDrawable = mContext.getDrawable(R.drawable.ic_android);
+        mTestStatusIconController.registerIconView(mImageView);
+        mTestStatusIconController.setIconDrawableToDisplay(testIconDrawable);
+        mTestStatusIconController.onStatusUpdated();
+        reset(mImageView);
+
+        testIconDrawable.setLevel(testIconDrawable.getLevel() + 1);
+        mTestStatusIconController.onStatusUpdated();
+
+        verify(mImageView).setImageDrawable(testIconDrawable);
+    }
+
+    @Test
+    public void getCachedDrawable_sameResource_returnsSameDrawable() {
+        Drawable drawable = mTestStatusIconController.getCachedDrawable(mContext.getResources(),
+                R.drawable.ic_android, mContext.getTheme());
+
+        assertThat(mTestStatusIconController.getCachedDrawable(mContext.getResources(),
+                R.drawable.ic_android, mContext.getTheme())).isSameInstanceAs(drawable);
+    }
+
     private class TestStatusIconController extends StatusIconController {
 
         @Override
@@ -38,6 +38,7 @@ import android.test.suitebuilder.annotation.SmallTest;
 import android.testing.AndroidTestingRunner;
 import android.testing.TestableLooper;
 import android.widget.ImageView;
+import android.widget.PopupWindow;
 
 import com.android.car.qc.QCItem;
 import com.android.car.ui.FocusParkingView;
@@ -231,6 +232,44 @@ public class StatusIconPanelControllerTest extends SysuiTestCase {
         assertThat(mStatusIconPanelController.getPanel()).isNotNull();
     }
 
+    @Test
+    public void onLayoutDirectionChanged_panelShowing_panelDismissed() {
+        clickAnchorView();
+        waitForIdleSync();
+
+        mStatusIconPanelController.getConfigurationListener()
+                .onLayoutDirectionChanged(/* isLayoutRtl= */ true);
+
+        assertThat(mStatusIconPanelController.getPanel().isShowing()).isFalse();
+    }
+
+    @Test
+    public void onPanelAnchorViewClicked_afterLayoutDirectionChanged_showsNewPanel() {
+        clickAnchorView();
+        clickAnchorView();
+        PopupWindow oldPanel = mStatusIconPanelController.getPanel();
+        mStatusIconPanelController.getConfigurationListener()
+                .onLayoutDirectionChanged(/* isLayoutRtl= */ true);
+
+        clickAnchorView();
+        waitForIdleSync();
+
+        assertThat(mStatusIconPanelController.getPanel()).isNotSameInstanceAs(oldPanel);
+        assertThat(mStatusIconPanelController.getPanel().isShowing()).isTrue();
+    }
+
+    @Test
+    public void onPanelAnchorViewClicked_twice_reusesPanel() {
+        clickAnchorView();
+        clickAnchorView();
+        PopupWindow panel = mStatusIconPanelController.getPanel();
+
+        clickAnchorView();
+        waitForIdleSync();
+
+        assertThat(mStatusIconPanelController.getPanel()).isSameInstanceAs(panel);
+    }
+
     @Test
     public void onUserChanged_unregisterRegisterReceiver() {
         int newUser = 999;
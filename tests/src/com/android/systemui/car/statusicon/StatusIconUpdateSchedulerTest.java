@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.systemui.car.statusicon;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import android.graphics.drawable.Drawable;
+import android.testing.AndroidTestingRunner;
+import android.testing.TestableLooper;
+import android.view.View;
+import android.widget.ImageView;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.systemui.R;
+import com.android.systemui.SysuiTestCase;
+import com.android.systemui.car.CarSystemUiTest;
+import com.android.systemui.dump.DumpManager;
+import com.android.systemui.util.time.FakeSystemClock;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+@CarSystemUiTest
+@RunWith(AndroidTestingRunner.class)
+@TestableLooper.RunWithLooper(setAsMainLooper = true)
+@SmallTest
+public class StatusIconUpdateSchedulerTest extends SysuiTestCase {
+
+    private StatusIconUpdateScheduler mStatusIconUpdateScheduler;
+    private TestStatusIconController mTestStatusIconController;
+    private Drawable mFirstDrawable;
+    private Drawable mSecondDrawable;
+
+    @Mock
+    private DumpManager mDumpManager;
+    @Mock
+    private ImageView mImageView;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        mStatusIconUpdateScheduler = new StatusIconUpdateScheduler(mDumpManager,
+                new FakeSystemClock());
+        mTestStatusIconController = new TestStatusIconController();
+        mTestStatusIconController.setUpdateScheduler(mStatusIconUpdateScheduler);
+        mTestStatusIconController.registerIconView(mImageView);
+        mFirstDrawable = mContext.getDrawable(R.drawable.ic_android);
+        mSecondDrawable = mContext.getDrawable(R.drawable.ic_android);
+        reset(mImageView);
+    }
+
+    @Test
+    public void onStatusUpdated_beforeFrame_viewNotUpdated() {
+        mTestStatusIconController.setIconDrawableToDisplay(mFirstDrawable);
+        mTestStatusIconController.onStatusUpdated();
+
+        verify(mImageView, never()).setImageDrawable(mFirstDrawable);
+    }
+
+    @Test
+    public void onStatusUpdated_severalTimesWithinFrame_viewUpdatedOnceWithLatestStatus() {
+        mTestStatusIconController.setIconDrawableToDisplay(mFirstDrawable);
+        mTestStatusIconController.onStatusUpdated();
+        mTestStatusIconController.setIconDrawableToDisplay(mSecondDrawable);
+        mTestStatusIconController.onStatusUpdated();
+
+        mStatusIconUpdateScheduler.doFrame(/* frameTimeNanos= */ 0);
+
+        verify(mImageView, never()).setImageDrawable(mFirstDrawable);
+        verify(mImageView, times(1)).setImageDrawable(mSecondDrawable);
+    }
+
+    @Test
+    public void cancelUpdate_viewNotUpdatedOnFrame() {
+        mTestStatusIconController.setIconDrawableToDisplay(mFirstDrawable);
+        mTestStatusIconController.onStatusUpdated();
+
+        mStatusIconUpdateScheduler.cancelUpdate(mTestStatusIconController);
+        mStatusIconUpdateScheduler.doFrame(/* frameTimeNanos= */ 0);
+
+        verify(mImageView, never()).setImageDrawable(mFirstDrawable);
+    }
+
+    @Test
+    public void dump_printsUpdateCountsOfIcon() {
+        mTestStatusIconController.setIconDrawableToDisplay(mFirstDrawable);
+        mTestStatusIconController.onStatusUpdated();
+        mTestStatusIconController.setIconDrawableToDisplay(mSecondDrawable);
+        mTestStatusIconController.onStatusUpdated();
+        mStatusIconUpdateScheduler.doFrame(/* frameTimeNanos= */ 0);
+
+        StringWriter stringWriter = new StringWriter();
+        mStatusIconUpdateScheduler.dump(new PrintWriter(stringWriter), new String[0]);
+
+        assertThat(stringWriter.toString()).contains(
+                TestStatusIconController.class.getSimpleName() + ": requested=2");
+        assertThat(stringWriter.toString()).contains("applied=1");
+    }
+
+    private static class TestStatusIconController extends StatusIconController {
+
+        @Override
+        protected void updateStatus() {
+            // no-op.
+        }
+
+        @Override
+        protected void updateIconView(ImageView view, StatusIconData data) {
+            view.setImageDrawable(data.getIconDrawable());
+        }
+
+        @Override
+        protected int getId() {
+            return View.generateViewId();
+        }
+    }
+}
@@ -41,6 +41,7 @@ import com.android.systemui.car.CarServiceProvider;
 import com.android.systemui.car.CarSystemUiTest;
 import com.android.systemui.car.qc.SystemUIQCViewController;
 import com.android.systemui.car.statusicon.StatusIconController;
+import com.android.systemui.car.statusicon.StatusIconUpdateScheduler;
 import com.android.systemui.lifecycle.InstantTaskExecutorRule;
 import com.android.systemui.settings.UserTracker;
 import com.android.systemui.statusbar.policy.ConfigurationController;
@@ -76,6 +77,8 @@ public class QuickControlsEntryPointsControllerTest extends SysuiTestCase {
     @Mock
     private Map mIconControllerCreators;
     @Mock
+    private StatusIconUpdateScheduler mStatusIconUpdateScheduler;
+    @Mock
     private QCPanelReadOnlyIconsController mQCPanelReadOnlyIconsController;
     @Mock
     Provider<StatusIconController> mProvider;
@@ -97,6 +100,7 @@ public class QuickControlsEntryPointsControllerTest extends SysuiTestCase {
                 mConfigurationController,
                 () -> mSystemUIQCViewController,
                 mIconControllerCreators,
+                mStatusIconUpdateScheduler,
                 mQCPanelReadOnlyIconsController);
     }
 
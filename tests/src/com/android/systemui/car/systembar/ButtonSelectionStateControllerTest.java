@@ -16,10 +16,25 @@
 
 package com.android.systemui.car.systembar;
 
+import static android.app.WindowConfiguration.WINDOWING_MODE_FULLSCREEN;
+import static android.app.WindowConfiguration.WINDOWING_MODE_MULTI_WINDOW;
+import static android.window.DisplayAreaOrganizer.FEATURE_DEFAULT_TASK_CONTAINER;
+
 import static com.google.common.truth.Truth.assertThat;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+import android.app.ActivityManager.RunningTaskInfo;
 import android.app.ActivityTaskManager.RootTaskInfo;
+import android.content.BroadcastReceiver;
 import android.content.ComponentName;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.Uri;
 import android.testing.AndroidTestingRunner;
 import android.testing.TestableLooper;
 import android.view.LayoutInflater;
@@ -30,10 +45,13 @@ import androidx.test.filters.SmallTest;
 import com.android.systemui.SysuiTestCase;
 import com.android.systemui.car.CarSystemUiTest;
 import com.android.systemui.tests.R;
+import com.android.systemui.util.concurrency.FakeExecutor;
+import com.android.systemui.util.time.FakeSystemClock;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.MockitoAnnotations;
 
 import java.util.ArrayList;
@@ -56,15 +74,25 @@ public class ButtonSelectionStateControllerTest extends SysuiTestCase {
     private LinearLayout mTestView;
     private ButtonSelectionStateController mButtonSelectionStateController;
     private ComponentName mComponentName;
+    private FakeExecutor mMainExecutor;
+    private FakeExecutor mBackgroundExecutor;
 
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
+        mContext = spy(mContext);
+        doReturn(null).when(mContext).registerReceiverForAllUsers(any(), any(), isNull(),
+                isNull());
+        FakeSystemClock clock = new FakeSystemClock();
+        mMainExecutor = new FakeExecutor(clock);
+        mBackgroundExecutor = new FakeExecutor(clock);
 
         mTestView = (LinearLayout) LayoutInflater.from(mContext).inflate(
                 R.layout.car_button_selection_state_controller_test, /* root= */ null);
-        mButtonSelectionStateController = new ButtonSelectionStateController(mContext);
+        mButtonSelectionStateController = new ButtonSelectionStateController(mContext,
+                mMainExecutor, mBackgroundExecutor);
         mButtonSelectionStateController.addAllButtonsWithSelectionState(mTestView);
+        resolvePackageCategories();
     }
 
     @Test
@@ -89,6 +117,37 @@ public class ButtonSelectionStateControllerTest extends SysuiTestCase {
         assertbuttonSelected(testButton);
     }
 
+    @Test
+    public void onPackageCategoriesResolved_selectsButtonOfCurrentTopActivityCategory() {
+        ButtonSelectionStateController controller = new ButtonSelectionStateController(mContext,
+                mMainExecutor, mBackgroundExecutor);
+        controller.addAllButtonsWithSelectionState(mTestView);
+        CarSystemBarButton testButton = mTestView.findViewById(R.id.detectable_by_category);
+        mComponentName = new ComponentName(TEST_CATEGORY, TEST_CATEGORY_CLASS);
+        testButton.setSelected(false);
+        controller.taskChanged(createTestStack(mComponentName), /* validDisplay= */ -1);
+        assertButtonUnselected(testButton);
+
+        resolvePackageCategories();
+
+        assertbuttonSelected(testButton);
+    }
+
+    @Test
+    public void onPackageChanged_resolvesPackageCategoriesAgain() {
+        ArgumentCaptor<BroadcastReceiver> receiverCaptor =
+                ArgumentCaptor.forClass(BroadcastReceiver.class);
+        verify(mContext).registerReceiverForAllUsers(receiverCaptor.capture(),
+                any(IntentFilter.class), isNull(), isNull());
+
+        receiverCaptor.getValue().onReceive(mContext, new Intent(Intent.ACTION_PACKAGE_ADDED,
+                Uri.fromParts("package", TEST_PACKAGE, /* fragment= */ null)));
+        receiverCaptor.getValue().onReceive(mContext, new Intent(Intent.ACTION_PACKAGE_REMOVED,
+                Uri.fromParts("package", TEST_PACKAGE, /* fragment= */ null)));
+
+        assertThat(mBackgroundExecutor.runAllReady()).isEqualTo(1);
+    }
+
     @Test
     public void onTaskChanged_buttonDetectableByPackage_selectsAssociatedButton() {
         CarSystemBarButton testButton = mTestView.findViewById(R.id.detectable_by_package);
@@ -115,6 +174,51 @@ public class ButtonSelectionStateControllerTest extends SysuiTestCase {
         assertButtonUnselected(oldButton);
     }
 
+    @Test
+    public void onTaskChanged_sameTopActivity_keepsButtonSelected() {
+        CarSystemBarButton testButton = mTestView.findViewById(R.id.detectable_by_package);
+        mComponentName = new ComponentName(TEST_PACKAGE, TEST_PACKAGE_CLASS);
+        testButton.setSelected(false);
+        mButtonSelectionStateController.taskChanged(createTestStack(mComponentName),
+                /* validDisplay= */ -1);
+
+        mButtonSelectionStateController.taskChanged(createTestStack(mComponentName),
+                /* validDisplay= */ -1);
+
+        assertbuttonSelected(testButton);
+        assertThat(mButtonSelectionStateController.mSelectedButtons).containsExactly(testButton);
+    }
+
+    @Test
+    public void onTaskMovedToFront_fullscreenTask_selectsAssociatedButton() {
+        CarSystemBarButton oldButton = mTestView.findViewById(R.id.detectable_by_component_name);
+        CarSystemBarButton testButton = mTestView.findViewById(R.id.detectable_by_package);
+        oldButton.setSelected(true);
+        testButton.setSelected(false);
+
+        mButtonSelectionStateController.taskMovedToFront(createRunningTaskInfo(
+                new ComponentName(TEST_PACKAGE, TEST_PACKAGE_CLASS), WINDOWING_MODE_FULLSCREEN));
+
+        assertbuttonSelected(testButton);
+        assertButtonUnselected(oldButton);
+    }
+
+    @Test
+    public void onTaskMovedToFront_multiWindowTask_doesNotChangeSelection() {
+        CarSystemBarButton testButton = mTestView.findViewById(R.id.detectable_by_package);
+        testButton.setSelected(false);
+
+        mButtonSelectionStateController.taskMovedToFront(createRunningTaskInfo(
+                new ComponentName(TEST_PACKAGE, TEST_PACKAGE_CLASS), WINDOWING_MODE_MULTI_WINDOW));
+
+        assertButtonUnselected(testButton);
+    }
+
+    private void resolvePackageCategories() {
+        mBackgroundExecutor.runAllReady();
+        mMainExecutor.runAllReady();
+    }
+
     // Comparing alpha is a valid way to verify button selection state because all test buttons use
     // highlightWhenSelected = true.
     private void assertbuttonSelected(CarSystemBarButton button) {
@@ -135,4 +239,14 @@ public class ButtonSelectionStateControllerTest extends SysuiTestCase {
 
         return testStack;
     }
+
+    private RunningTaskInfo createRunningTaskInfo(ComponentName componentName,
+            int windowingMode) {
+        RunningTaskInfo taskInfo = new RunningTaskInfo();
+        taskInfo.displayId = -1; // No display is assigned to this test view
+        taskInfo.displayAreaFeatureId = FEATURE_DEFAULT_TASK_CONTAINER;
+        taskInfo.topActivity = componentName;
+        taskInfo.configuration.windowConfiguration.setWindowingMode(windowingMode);
+        return taskInfo;
+    }
 }
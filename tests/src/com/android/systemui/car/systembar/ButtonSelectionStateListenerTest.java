@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.systemui.car.systembar;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.app.ActivityManager.RunningTaskInfo;
+import android.app.ActivityTaskManager.RootTaskInfo;
+import android.app.IActivityTaskManager;
+import android.os.RemoteException;
+import android.testing.AndroidTestingRunner;
+import android.testing.TestableLooper;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.systemui.SysuiTestCase;
+import com.android.systemui.car.CarSystemUiTest;
+import com.android.systemui.util.concurrency.FakeExecutor;
+import com.android.systemui.util.time.FakeSystemClock;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@CarSystemUiTest
+@RunWith(AndroidTestingRunner.class)
+@TestableLooper.RunWithLooper
+@SmallTest
+public class ButtonSelectionStateListenerTest extends SysuiTestCase {
+    private ButtonSelectionStateListener mButtonSelectionStateListener;
+    private FakeSystemClock mClock;
+    private FakeExecutor mMainExecutor;
+    private FakeExecutor mBackgroundExecutor;
+    private List<RootTaskInfo> mRootTaskInfos;
+
+    @Mock
+    private ButtonSelectionStateController mButtonSelectionStateController;
+    @Mock
+    private IActivityTaskManager mActivityTaskManager;
+
+    @Before
+    public void setUp() throws RemoteException {
+        MockitoAnnotations.initMocks(this);
+        mRootTaskInfos = new ArrayList<>();
+        when(mActivityTaskManager.getAllRootTaskInfos()).thenReturn(mRootTaskInfos);
+
+        mClock = new FakeSystemClock();
+        mMainExecutor = new FakeExecutor(mClock);
+        mBackgroundExecutor = new FakeExecutor(mClock);
+        mButtonSelectionStateListener = new ButtonSelectionStateListener(
+                mButtonSelectionStateController, mActivityTaskManager, mMainExecutor,
+                mBackgroundExecutor);
+    }
+
+    @Test
+    public void onTaskStackChanged_severalTimesWithinFrame_queriesTaskStackOnce()
+            throws RemoteException {
+        mButtonSelectionStateListener.onTaskStackChanged();
+        mButtonSelectionStateListener.onTaskDisplayChanged(/* taskId= */ 1,
+                /* newDisplayId= */ 0);
+        mButtonSelectionStateListener.onTaskStackChanged();
+        runCoalescedUpdate();
+
+        verify(mActivityTaskManager).getAllRootTaskInfos();
+        verify(mButtonSelectionStateController).taskChanged(mRootTaskInfos);
+    }
+
+    @Test
+    public void onTaskStackChanged_beforeEndOfFrame_notHandled() throws RemoteException {
+        mButtonSelectionStateListener.onTaskStackChanged();
+        mClock.advanceTime(ButtonSelectionStateListener.COALESCE_DELAY_MS - 1);
+        mMainExecutor.runAllReady();
+        mBackgroundExecutor.runAllReady();
+
+        verify(mActivityTaskManager, never()).getAllRootTaskInfos();
+    }
+
+    @Test
+    public void onTaskStackChanged_afterPreviousUpdate_queriesTaskStackAgain()
+            throws RemoteException {
+        mButtonSelectionStateListener.onTaskStackChanged();
+        runCoalescedUpdate();
+        mButtonSelectionStateListener.onTaskStackChanged();
+        runCoalescedUpdate();
+
+        verify(mActivityTaskManager, times(2)).getAllRootTaskInfos();
+    }
+
+    @Test
+    public void onTaskMovedToFront_usesTaskInfoWithoutQueryingTaskStack()
+            throws RemoteException {
+        RunningTaskInfo taskInfo = new RunningTaskInfo();
+
+        mButtonSelectionStateListener.onTaskMovedToFront(taskInfo);
+        runCoalescedUpdate();
+
+        verify(mButtonSelectionStateController).taskMovedToFront(taskInfo);
+        verify(mActivityTaskManager, never()).getAllRootTaskInfos();
+        verify(mButtonSelectionStateController, never()).taskChanged(any());
+    }
+
+    private void runCoalescedUpdate() {
+        mClock.advanceTime(ButtonSelectionStateListener.COALESCE_DELAY_MS);
+        mMainExecutor.runAllReady();
+        mBackgroundExecutor.runAllReady();
+        mMainExecutor.runAllReady();
+    }
+}
@@ -48,6 +48,8 @@ import com.android.systemui.car.privacy.CameraPrivacyChip;
 import com.android.systemui.privacy.PrivacyItem;
 import com.android.systemui.privacy.PrivacyItemController;
 import com.android.systemui.privacy.PrivacyType;
+import com.android.systemui.util.concurrency.FakeExecutor;
+import com.android.systemui.util.time.FakeSystemClock;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -67,6 +69,7 @@ import java.util.concurrent.Executor;
 public class CameraPrivacyChipViewControllerTest extends SysuiTestCase {
 
     private CameraPrivacyChipViewController mCameraPrivacyChipViewController;
+    private FakeExecutor mDelayableExecutor;
     private FrameLayout mFrameLayout;
     private CameraPrivacyChip mCameraPrivacyChip;
 
@@ -104,8 +107,9 @@ public class CameraPrivacyChipViewControllerTest extends SysuiTestCase {
         when(mContext.getMainExecutor()).thenReturn(mExecutor);
         when(mCar.isConnected()).thenReturn(true);
 
+        mDelayableExecutor = new FakeExecutor(new FakeSystemClock());
         mCameraPrivacyChipViewController = new CameraPrivacyChipViewController(mContext,
-                mPrivacyItemController, mSensorPrivacyManager);
+                mPrivacyItemController, mSensorPrivacyManager, mDelayableExecutor);
     }
 
     @Test
@@ -127,6 +131,13 @@ public class CameraPrivacyChipViewControllerTest extends SysuiTestCase {
         verify(mCameraPrivacyChip).setSensorEnabled(eq(true));
     }
 
+    @Test
+    public void addPrivacyChipView_privacyChipViewPresent_sharedExecutorSet() {
+        mCameraPrivacyChipViewController.addPrivacyChipView(mFrameLayout);
+
+        verify(mCameraPrivacyChip).setDelayableExecutor(mDelayableExecutor);
+    }
+
     @Test
     public void addPrivacyChipView_privacyChipViewNotPresent_addCallbackNotCalled() {
         mCameraPrivacyChipViewController.addPrivacyChipView(new View(getContext()));
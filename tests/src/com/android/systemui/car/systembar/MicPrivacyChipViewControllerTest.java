@@ -48,6 +48,8 @@ import com.android.systemui.car.privacy.MicPrivacyChip;
 import com.android.systemui.privacy.PrivacyItem;
 import com.android.systemui.privacy.PrivacyItemController;
 import com.android.systemui.privacy.PrivacyType;
+import com.android.systemui.util.concurrency.FakeExecutor;
+import com.android.systemui.util.time.FakeSystemClock;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -67,6 +69,7 @@ import java.util.concurrent.Executor;
 public class MicPrivacyChipViewControllerTest extends SysuiTestCase {
 
     private MicPrivacyChipViewController mMicPrivacyChipViewController;
+    private FakeExecutor mDelayableExecutor;
     private FrameLayout mFrameLayout;
     private MicPrivacyChip mMicPrivacyChip;
 
@@ -104,8 +107,9 @@ public class MicPrivacyChipViewControllerTest extends SysuiTestCase {
         when(mContext.getMainExecutor()).thenReturn(mExecutor);
         when(mCar.isConnected()).thenReturn(true);
 
+        mDelayableExecutor = new FakeExecutor(new FakeSystemClock());
         mMicPrivacyChipViewController = new MicPrivacyChipViewController(mContext,
-                mPrivacyItemController, mSensorPrivacyManager);
+                mPrivacyItemController, mSensorPrivacyManager, mDelayableExecutor);
     }
 
     @Test
@@ -127,6 +131,28 @@ public class MicPrivacyChipViewControllerTest extends SysuiTestCase {
         verify(mMicPrivacyChip).setSensorEnabled(eq(true));
     }
 
+    @Test
+    public void addPrivacyChipView_privacyChipViewPresent_sharedExecutorSet() {
+        mMicPrivacyChipViewController.addPrivacyChipView(mFrameLayout);
+
+        verify(mMicPrivacyChip).setDelayableExecutor(mDelayableExecutor);
+    }
+
+    @Test
+    public void animateOut_afterAnimateIn_pendingTransitionReplaced() {
+        mMicPrivacyChipViewController.addPrivacyChipView(mFrameLayout);
+
+        mMicPrivacyChip.animateIn();
+        assertThat(mDelayableExecutor.numPending()).isEqualTo(1);
+        mMicPrivacyChip.animateOut();
+        assertThat(mDelayableExecutor.numPending()).isEqualTo(1);
+        mDelayableExecutor.advanceClockToLast();
+        mDelayableExecutor.runAllReady();
+
+        assertThat(mMicPrivacyChip.getVisibility()).isEqualTo(View.GONE);
+        assertThat(mDelayableExecutor.numPending()).isEqualTo(0);
+    }
+
     @Test
     public void addPrivacyChipView_privacyChipViewNotPresent_addCallbackNotCalled() {
         mMicPrivacyChipViewController.addPrivacyChipView(new View(getContext()));
@@ -35,6 +35,7 @@ import static com.android.dx.mockito.inline.extended.ExtendedMockito.verify;
 import static com.google.common.truth.Truth.assertThat;
 
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
 
 import android.car.Car;
 import android.car.CarOccupantZoneManager;
@@ -51,10 +52,12 @@ import android.view.DisplayInfo;
 
 import com.android.systemui.car.CarServiceProvider;
 import com.android.systemui.car.CarSystemUiTest;
+import com.android.systemui.car.users.UserLifecycleEventBus;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
@@ -78,6 +81,8 @@ public class CarServiceMediatorTest extends UserPickerTestCase {
     private CarPowerManager mMockCarPowerManager;
     @Mock
     private CarServiceProvider mMockCarServiceProvider;
+    @Mock
+    private UserLifecycleEventBus mMockUserLifecycleEventBus;
 
     private List<OccupantZoneInfo> mOccupantZoneInfos = new ArrayList<OccupantZoneInfo>();
     private OccupantZoneInfo mDriverZoneInfo = new OccupantZoneInfo(/* zoneId= */ ZONE_ID_DRIVER,
@@ -99,7 +104,8 @@ public class CarServiceMediatorTest extends UserPickerTestCase {
         doReturn(mMockCarPowerManager).when(mMockCar).getCarManager(CarPowerManager.class);
         doReturn(mOccupantZoneInfos).when(mMockCarOccupantZoneManager).getAllOccupantZones();
 
-        mCarServiceMediator = new CarServiceMediator(mContext, mMockCarServiceProvider);
+        mCarServiceMediator = new CarServiceMediator(mContext, mMockCarServiceProvider,
+                mMockUserLifecycleEventBus);
         mCarServiceMediator.onConnect(mMockCar);
     }
 
@@ -168,4 +174,73 @@ public class CarServiceMediatorTest extends UserPickerTestCase {
 
         assertThat(result).isEqualTo(USER_ID_REAR);
     }
+
+    @Test
+    public void checkOccupantZoneLookups_repeatedRequests_queryOccupantZonesOnce() {
+        setUpRearPassengerZone();
+
+        mCarServiceMediator.getDisplayIdForUser(USER_ID_REAR);
+        mCarServiceMediator.getSeatString(REAR_PASSENGER_DISPLAY_ID);
+        mCarServiceMediator.getDisplayIdForUser(USER_ID_REAR);
+
+        verify(mMockCarOccupantZoneManager).getAllOccupantZones();
+        verify(mMockCarOccupantZoneManager).getUserForOccupant(mRearPassengerZoneInfo);
+    }
+
+    @Test
+    public void checkOccupantZoneLookups_occupantZoneConfigChanged_queryOccupantZonesAgain() {
+        setUpRearPassengerZone();
+        ArgumentCaptor<CarOccupantZoneManager.OccupantZoneConfigChangeListener> captor =
+                ArgumentCaptor.forClass(
+                        CarOccupantZoneManager.OccupantZoneConfigChangeListener.class);
+        verify(mMockCarOccupantZoneManager).registerOccupantZoneConfigChangeListener(
+                captor.capture());
+        mCarServiceMediator.getDisplayIdForUser(USER_ID_REAR);
+
+        doReturn(USER_ID_FRONT).when(mMockCarOccupantZoneManager)
+                .getUserForOccupant(mRearPassengerZoneInfo);
+        captor.getValue().onOccupantZoneConfigChanged(
+                CarOccupantZoneManager.ZONE_CONFIG_CHANGE_FLAG_USER);
+
+        assertThat(mCarServiceMediator.getDisplayIdForUser(USER_ID_FRONT))
+                .isEqualTo(REAR_PASSENGER_DISPLAY_ID);
+        verify(mMockCarOccupantZoneManager, times(2)).getAllOccupantZones();
+    }
+
+    @Test
+    public void checkOccupantZoneLookups_userLifecycleEvent_queryOccupantZonesAgain() {
+        setUpRearPassengerZone();
+        ArgumentCaptor<UserLifecycleEventBus.Observer> captor =
+                ArgumentCaptor.forClass(UserLifecycleEventBus.Observer.class);
+        verify(mMockUserLifecycleEventBus).addObserver(captor.capture());
+        mCarServiceMediator.getDisplayIdForUser(USER_ID_REAR);
+
+        captor.getValue().onUserLifecycleEvent(USER_ID_REAR,
+                CarUserManager.USER_LIFECYCLE_EVENT_TYPE_SWITCHING);
+        mCarServiceMediator.getDisplayIdForUser(USER_ID_REAR);
+
+        verify(mMockCarOccupantZoneManager, times(2)).getAllOccupantZones();
+    }
+
+    @Test
+    public void onDestroy_removesUserLifecycleObserver() {
+        ArgumentCaptor<UserLifecycleEventBus.Observer> captor =
+                ArgumentCaptor.forClass(UserLifecycleEventBus.Observer.class);
+        verify(mMockUserLifecycleEventBus).addObserver(captor.capture());
+
+        mCarServiceMediator.onDestroy();
+
+        verify(mMockUserLifecycleEventBus).removeObserver(captor.getValue());
+    }
+
+    private void setUpRearPassengerZone() {
+        mOccupantZoneInfos.clear();
+        mOccupantZoneInfos.add(mRearPassengerZoneInfo);
+        doReturn(USER_ID_REAR).when(mMockCarOccupantZoneManager)
+                .getUserForOccupant(mRearPassengerZoneInfo);
+        doReturn(List.of(REAR_PASSENGER_DISPLAY)).when(mMockCarOccupantZoneManager)
+                .getAllDisplaysForOccupant(mRearPassengerZoneInfo);
+        doReturn(REAR_PASSENGER_DISPLAY).when(mMockCarOccupantZoneManager)
+                .getDisplayForOccupant(mRearPassengerZoneInfo, DISPLAY_TYPE_MAIN);
+    }
 }
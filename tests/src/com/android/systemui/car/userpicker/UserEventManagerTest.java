@@ -16,7 +16,6 @@
 package com.android.systemui.car.userpicker;
 
 import static com.android.dx.mockito.inline.extended.ExtendedMockito.doReturn;
-import static com.android.dx.mockito.inline.extended.ExtendedMockito.mock;
 import static com.android.dx.mockito.inline.extended.ExtendedMockito.mockitoSession;
 import static com.android.dx.mockito.inline.extended.ExtendedMockito.spyOn;
 import static com.android.dx.mockito.inline.extended.ExtendedMockito.verify;
@@ -27,14 +26,11 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.Mockito.after;
 
 import android.app.ActivityManager;
 import android.car.user.CarUserManager;
-import android.car.user.CarUserManager.UserLifecycleEvent;
 import android.car.user.UserCreationResult;
 import android.car.util.concurrent.AsyncFuture;
-import android.content.Intent;
 import android.os.UserManager;
 import android.test.suitebuilder.annotation.SmallTest;
 import android.testing.AndroidTestingRunner;
@@ -42,11 +38,14 @@ import android.testing.TestableLooper;
 
 import com.android.systemui.car.CarSystemUiTest;
 import com.android.systemui.car.userpicker.UserEventManager.OnUpdateUsersListener;
+import com.android.systemui.car.users.UserLifecycleEventBus;
+import com.android.systemui.car.users.UserLifecycleEventBus.UserEvents;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoSession;
 import org.mockito.quality.Strictness;
@@ -57,12 +56,15 @@ import org.mockito.quality.Strictness;
 @SmallTest
 public class UserEventManagerTest extends UserPickerTestCase {
     private UserEventManager mUserEventManager;
+    private UserLifecycleEventBus.Subscriber mUserEventsSubscriber;
 
     @Mock
     private CarServiceMediator mMockCarServiceMediator;
     @Mock
     private UserPickerSharedState mMockUserPickerSharedState;
     @Mock
+    private UserLifecycleEventBus mMockUserLifecycleEventBus;
+    @Mock
     private OnUpdateUsersListener mMockOnUpdateUsersListener;
     @Mock
     private UserManager mMockUserManager;
@@ -88,10 +90,14 @@ public class UserEventManagerTest extends UserPickerTestCase {
         doReturn(MAIN_DISPLAY_ID).when(mContext).getDisplayId();
         doReturn(mMockCarUserManager).when(mMockCarServiceMediator).getCarUserManager();
 
-        mUserEventManager =
-                new UserEventManager(mContext, mMockCarServiceMediator, mMockUserPickerSharedState);
+        mUserEventManager = new UserEventManager(mContext, mMockCarServiceMediator,
+                mMockUserPickerSharedState, mMockUserLifecycleEventBus);
         mUserEventManager.registerOnUpdateUsersListener(mMockOnUpdateUsersListener,
                 MAIN_DISPLAY_ID);
+        ArgumentCaptor<UserLifecycleEventBus.Subscriber> subscriberCaptor =
+                ArgumentCaptor.forClass(UserLifecycleEventBus.Subscriber.class);
+        verify(mMockUserLifecycleEventBus).subscribe(subscriberCaptor.capture(), any());
+        mUserEventsSubscriber = subscriberCaptor.getValue();
         spyOn(mUserEventManager);
     }
 
@@ -104,27 +110,40 @@ public class UserEventManagerTest extends UserPickerTestCase {
     }
 
     @Test
-    public void onUserLifecycleEvent_sendEvents_updateUsers() {
-        UserLifecycleEvent event = mock(UserLifecycleEvent.class);
-        doReturn(CarUserManager.USER_LIFECYCLE_EVENT_TYPE_UNLOCKED,
-                CarUserManager.USER_LIFECYCLE_EVENT_TYPE_STOPPING,
-                CarUserManager.USER_LIFECYCLE_EVENT_TYPE_STOPPED).when(event).getEventType();
-        doReturn(USER_ID_DRIVER).when(event).getUserId();
-
-        mUserEventManager.mUserLifecycleListener.onEvent(event);
-        mUserEventManager.mUserLifecycleListener.onEvent(event);
-        mUserEventManager.mUserLifecycleListener.onEvent(event);
-
-        verify(mMockOnUpdateUsersListener, after(IDLE_TIMEOUT).times(3))
-                .onUpdateUsers(anyInt(), anyInt());
+    public void onUserEvents_updateUsers() {
+        mUserEventsSubscriber.onUserEvents(new UserEvents(USER_ID_DRIVER,
+                CarUserManager.USER_LIFECYCLE_EVENT_TYPE_STOPPED));
+
+        verify(mMockOnUpdateUsersListener).onUpdateUsers(USER_ID_DRIVER,
+                CarUserManager.USER_LIFECYCLE_EVENT_TYPE_STOPPED);
+    }
+
+    @Test
+    public void onUserEvents_userInfoChanged_updateUsers() {
+        mUserEventsSubscriber.onUserEvents(new UserEvents(USER_ID_DRIVER,
+                UserLifecycleEventBus.EVENT_TYPE_USER_INFO_CHANGED));
+
+        verify(mMockOnUpdateUsersListener).onUpdateUsers(anyInt(), anyInt());
+    }
+
+    @Test
+    public void onUserLifecycleEvent_stoppingThenStopped_updatesStoppingUsers() {
+        doReturn(true).when(mMockUserPickerSharedState).isStoppingUser(USER_ID_FRONT);
+
+        mUserEventManager.mUserLifecycleObserver.onUserLifecycleEvent(USER_ID_FRONT,
+                CarUserManager.USER_LIFECYCLE_EVENT_TYPE_STOPPING);
+        mUserEventManager.mUserLifecycleObserver.onUserLifecycleEvent(USER_ID_FRONT,
+                CarUserManager.USER_LIFECYCLE_EVENT_TYPE_STOPPED);
+
+        verify(mMockUserPickerSharedState).addStoppingUserId(USER_ID_FRONT);
+        verify(mMockUserPickerSharedState).removeStoppingUserId(USER_ID_FRONT);
     }
 
     @Test
-    public void checkActionUserInfoChanged_sendBroadcast_updateUsers() {
-        Intent sendIntent = new Intent(Intent.ACTION_USER_INFO_CHANGED);
-        mContext.sendBroadcast(sendIntent);
+    public void unregisterOnUpdateUsersListener_unsubscribesDisplay() {
+        mUserEventManager.unregisterOnUpdateUsersListener(MAIN_DISPLAY_ID);
 
-        verify(mMockOnUpdateUsersListener, after(IDLE_TIMEOUT)).onUpdateUsers(anyInt(), anyInt());
+        verify(mMockUserLifecycleEventBus).unsubscribe(mUserEventsSubscriber);
     }
 
     @Test
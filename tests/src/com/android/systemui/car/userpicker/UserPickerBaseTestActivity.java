@@ -25,6 +25,8 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.android.systemui.dump.DumpManager;
 import com.android.systemui.settings.DisplayTracker;
+import com.android.systemui.util.concurrency.FakeExecutor;
+import com.android.systemui.util.time.FakeSystemClock;
 
 public class UserPickerBaseTestActivity extends UserPickerActivity {
     private final boolean mTestIsDriver;
@@ -42,6 +44,7 @@ public class UserPickerBaseTestActivity extends UserPickerActivity {
         mSnackbarManager = mock(SnackbarManager.class);
         mDisplayTracker = mock(DisplayTracker.class);
         mDumpManager = mock(DumpManager.class);
+        mBackgroundExecutor = new FakeExecutor(new FakeSystemClock());
         mTestIsDriver = isDriver;
         mMockUserPickerAdapter = mockUserPickerAdapter;
         if (mMockUserPickerAdapter) {
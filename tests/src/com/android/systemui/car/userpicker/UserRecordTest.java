@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.systemui.car.userpicker;
+
+import static android.view.Display.INVALID_DISPLAY;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.test.suitebuilder.annotation.SmallTest;
+import android.testing.AndroidTestingRunner;
+import android.testing.TestableLooper;
+import android.view.View;
+
+import com.android.systemui.car.CarSystemUiTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@CarSystemUiTest
+@RunWith(AndroidTestingRunner.class)
+@TestableLooper.RunWithLooper
+@SmallTest
+public class UserRecordTest extends UserPickerTestCase {
+    private final Bitmap mIconBitmap = Bitmap.createBitmap(/* width= */ 1, /* height= */ 1,
+            Bitmap.Config.ARGB_8888);
+
+    class OnClickListenerCreator extends UserRecord.OnClickListenerCreatorBase {
+        @Override
+        View.OnClickListener createOnClickListenerWithUserRecord() {
+            return holderView -> {};
+        }
+    }
+
+    @Test
+    public void getStableId_userRecord_returnsUserId() {
+        assertThat(createFrontUserRecord(/* isLoggedIn= */ false).getStableId())
+                .isEqualTo(USER_ID_FRONT);
+    }
+
+    @Test
+    public void getStableId_guestAndAddUserRecords_distinctFromUsers() {
+        long guestId = createButtonRecord(/* isAddUser= */ false).getStableId();
+        long addUserId = createButtonRecord(/* isAddUser= */ true).getStableId();
+
+        assertThat(guestId).isNotEqualTo(addUserId);
+        assertThat(guestId).isLessThan(0L);
+        assertThat(addUserId).isLessThan(0L);
+    }
+
+    @Test
+    public void hasSameContents_recreatedRecord_returnsTrue() {
+        assertThat(createFrontUserRecord(/* isLoggedIn= */ false)
+                .hasSameContents(createFrontUserRecord(/* isLoggedIn= */ false))).isTrue();
+    }
+
+    @Test
+    public void hasSameContents_loggedInStateChanged_returnsFalse() {
+        assertThat(createFrontUserRecord(/* isLoggedIn= */ false)
+                .hasSameContents(createFrontUserRecord(/* isLoggedIn= */ true))).isFalse();
+    }
+
+    private UserRecord createFrontUserRecord(boolean isLoggedIn) {
+        return UserRecord.create(mFrontUserInfo, /* name= */ mFrontUserInfo.name,
+                /* isStartGuestSession= */ false, /* isAddUser= */ false,
+                /* isForeground= */ false,
+                /* icon= */ new BitmapDrawable(mContext.getResources(), mIconBitmap),
+                /* listenerMaker= */ new OnClickListenerCreator(), isLoggedIn,
+                /* loggedInDisplay= */ isLoggedIn ? FRONT_PASSENGER_DISPLAY_ID : INVALID_DISPLAY,
+                /* seatLocationName= */ USER_NAME_FRONT, /* isStopping= */ false);
+    }
+
+    private UserRecord createButtonRecord(boolean isAddUser) {
+        return UserRecord.create(/* info= */ null, /* name= */ isAddUser ? mAddLabel : mGuestLabel,
+                /* isStartGuestSession= */ !isAddUser, isAddUser, /* isForeground= */ false,
+                /* icon= */ null, /* listenerMaker= */ new OnClickListenerCreator());
+    }
+}
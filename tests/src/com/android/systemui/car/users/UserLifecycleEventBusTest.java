@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.systemui.car.users;
+
+import static android.car.user.CarUserManager.USER_LIFECYCLE_EVENT_TYPE_STARTING;
+import static android.car.user.CarUserManager.USER_LIFECYCLE_EVENT_TYPE_STOPPED;
+import static android.car.user.CarUserManager.USER_LIFECYCLE_EVENT_TYPE_UNLOCKED;
+import static android.car.user.CarUserManager.USER_LIFECYCLE_EVENT_TYPE_UNLOCKING;
+
+import static com.android.systemui.car.users.UserLifecycleEventBus.EVENT_TYPE_USER_INFO_CHANGED;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.car.Car;
+import android.car.user.CarUserManager;
+import android.content.BroadcastReceiver;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.testing.AndroidTestingRunner;
+import android.testing.TestableLooper;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.systemui.SysuiTestCase;
+import com.android.systemui.car.CarServiceProvider;
+import com.android.systemui.car.CarSystemUiTest;
+import com.android.systemui.car.users.UserLifecycleEventBus.UserEvents;
+import com.android.systemui.util.concurrency.FakeExecutor;
+import com.android.systemui.util.time.FakeSystemClock;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+@CarSystemUiTest
+@RunWith(AndroidTestingRunner.class)
+@TestableLooper.RunWithLooper
+@SmallTest
+public class UserLifecycleEventBusTest extends SysuiTestCase {
+    private static final int USER_ID = 10;
+    private static final int OTHER_USER_ID = 11;
+
+    private UserLifecycleEventBus mUserLifecycleEventBus;
+    private FakeExecutor mMainExecutor;
+    private FakeExecutor mBackgroundExecutor;
+
+    @Mock
+    private CarServiceProvider mCarServiceProvider;
+    @Mock
+    private Car mCar;
+    @Mock
+    private CarUserManager mCarUserManager;
+    @Mock
+    private UserLifecycleEventBus.Subscriber mSubscriber;
+    @Mock
+    private UserLifecycleEventBus.Subscriber mOtherSubscriber;
+    @Mock
+    private UserLifecycleEventBus.Observer mObserver;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(/* testClass= */ this);
+        mContext = spy(mContext);
+        doReturn(null).when(mContext).registerReceiverForAllUsers(any(), any(), isNull(),
+                isNull());
+        when(mCar.getCarManager(CarUserManager.class)).thenReturn(mCarUserManager);
+
+        FakeSystemClock clock = new FakeSystemClock();
+        mMainExecutor = new FakeExecutor(clock);
+        mBackgroundExecutor = new FakeExecutor(clock);
+        mUserLifecycleEventBus = new UserLifecycleEventBus(mContext, mCarServiceProvider,
+                mMainExecutor, mBackgroundExecutor);
+    }
+
+    @Test
+    public void onCarConnected_registersListenerOnBackgroundExecutor() {
+        ArgumentCaptor<CarServiceProvider.CarServiceOnConnectedListener> listenerCaptor =
+                ArgumentCaptor.forClass(CarServiceProvider.CarServiceOnConnectedListener.class);
+        verify(mCarServiceProvider).addListener(listenerCaptor.capture());
+
+        listenerCaptor.getValue().onConnected(mCar);
+
+        verify(mCarUserManager).addListener(eq(mBackgroundExecutor), any());
+    }
+
+    @Test
+    public void onEvent_burstOfEvents_deliveredOncePerUser() {
+        mUserLifecycleEventBus.subscribe(mSubscriber,
+                USER_LIFECYCLE_EVENT_TYPE_STARTING, USER_LIFECYCLE_EVENT_TYPE_UNLOCKING,
+                USER_LIFECYCLE_EVENT_TYPE_UNLOCKED);
+
+        mUserLifecycleEventBus.onEvent(USER_ID, USER_LIFECYCLE_EVENT_TYPE_STARTING);
+        mUserLifecycleEventBus.onEvent(USER_ID, USER_LIFECYCLE_EVENT_TYPE_UNLOCKING);
+        mUserLifecycleEventBus.onEvent(USER_ID, USER_LIFECYCLE_EVENT_TYPE_UNLOCKED);
+        assertThat(mMainExecutor.runAllReady()).isEqualTo(1);
+
+        ArgumentCaptor<UserEvents> eventsCaptor = ArgumentCaptor.forClass(UserEvents.class);
+        verify(mSubscriber).onUserEvents(eventsCaptor.capture());
+        UserEvents events = eventsCaptor.getValue();
+        assertThat(events.getUserId()).isEqualTo(USER_ID);
+        assertThat(events.getLatestEventType()).isEqualTo(USER_LIFECYCLE_EVENT_TYPE_UNLOCKED);
+        assertThat(events.hasEventType(USER_LIFECYCLE_EVENT_TYPE_STARTING)).isTrue();
+        assertThat(events.hasEventType(USER_LIFECYCLE_EVENT_TYPE_STOPPED)).isFalse();
+    }
+
+    @Test
+    public void onEvent_eventsOfSeveralUsers_deliveredPerUser() {
+        mUserLifecycleEventBus.subscribe(mSubscriber, USER_LIFECYCLE_EVENT_TYPE_STARTING);
+
+        mUserLifecycleEventBus.onEvent(USER_ID, USER_LIFECYCLE_EVENT_TYPE_STARTING);
+        mUserLifecycleEventBus.onEvent(OTHER_USER_ID, USER_LIFECYCLE_EVENT_TYPE_STARTING);
+        mMainExecutor.runAllReady();
+
+        ArgumentCaptor<UserEvents> eventsCaptor = ArgumentCaptor.forClass(UserEvents.class);
+        verify(mSubscriber, times(2)).onUserEvents(eventsCaptor.capture());
+        assertThat(eventsCaptor.getAllValues().get(0).getUserId()).isEqualTo(USER_ID);
+        assertThat(eventsCaptor.getAllValues().get(1).getUserId()).isEqualTo(OTHER_USER_ID);
+    }
+
+    @Test
+    public void onEvent_notSubscribedType_notDelivered() {
+        mUserLifecycleEventBus.subscribe(mSubscriber, USER_LIFECYCLE_EVENT_TYPE_STARTING);
+        mUserLifecycleEventBus.subscribe(mOtherSubscriber, USER_LIFECYCLE_EVENT_TYPE_STOPPED);
+
+        mUserLifecycleEventBus.onEvent(USER_ID, USER_LIFECYCLE_EVENT_TYPE_STOPPED);
+        mMainExecutor.runAllReady();
+
+        verify(mSubscriber, never()).onUserEvents(any());
+        verify(mOtherSubscriber).onUserEvents(any());
+    }
+
+    @Test
+    public void unsubscribe_pendingEventsDropped() {
+        mUserLifecycleEventBus.subscribe(mSubscriber, USER_LIFECYCLE_EVENT_TYPE_STARTING);
+
+        mUserLifecycleEventBus.onEvent(USER_ID, USER_LIFECYCLE_EVENT_TYPE_STARTING);
+        mUserLifecycleEventBus.unsubscribe(mSubscriber);
+        mMainExecutor.runAllReady();
+
+        verify(mSubscriber, never()).onUserEvents(any());
+    }
+
+    @Test
+    public void unsubscribe_otherSubscriberStillNotified() {
+        mUserLifecycleEventBus.subscribe(mSubscriber, USER_LIFECYCLE_EVENT_TYPE_STARTING);
+        mUserLifecycleEventBus.subscribe(mOtherSubscriber, USER_LIFECYCLE_EVENT_TYPE_STARTING);
+
+        mUserLifecycleEventBus.unsubscribe(mSubscriber);
+        mUserLifecycleEventBus.onEvent(USER_ID, USER_LIFECYCLE_EVENT_TYPE_STARTING);
+        mMainExecutor.runAllReady();
+
+        verify(mSubscriber, never()).onUserEvents(any());
+        verify(mOtherSubscriber).onUserEvents(any());
+    }
+
+    @Test
+    public void subscribe_sameSubscriberAgain_replacesItsEventTypes() {
+        mUserLifecycleEventBus.subscribe(mSubscriber, USER_LIFECYCLE_EVENT_TYPE_STARTING);
+        mUserLifecycleEventBus.subscribe(mSubscriber, USER_LIFECYCLE_EVENT_TYPE_STOPPED);
+
+        mUserLifecycleEventBus.onEvent(USER_ID, USER_LIFECYCLE_EVENT_TYPE_STARTING);
+        mUserLifecycleEventBus.onEvent(USER_ID, USER_LIFECYCLE_EVENT_TYPE_STOPPED);
+        mMainExecutor.runAllReady();
+
+        ArgumentCaptor<UserEvents> eventsCaptor = ArgumentCaptor.forClass(UserEvents.class);
+        verify(mSubscriber).onUserEvents(eventsCaptor.capture());
+        assertThat(eventsCaptor.getValue().hasEventType(USER_LIFECYCLE_EVENT_TYPE_STARTING))
+                .isFalse();
+    }
+
+    @Test
+    public void eventTypeToString_userInfoChanged() {
+        assertThat(UserLifecycleEventBus.eventTypeToString(EVENT_TYPE_USER_INFO_CHANGED))
+                .isEqualTo("USER_INFO_CHANGED");
+    }
+
+    @Test
+    public void onEvent_observerNotifiedOfEveryEventBeforeSubscribers() {
+        mUserLifecycleEventBus.addObserver(mObserver);
+        mUserLifecycleEventBus.subscribe(mSubscriber,
+                USER_LIFECYCLE_EVENT_TYPE_STARTING, USER_LIFECYCLE_EVENT_TYPE_UNLOCKED);
+
+        mUserLifecycleEventBus.onEvent(USER_ID, USER_LIFECYCLE_EVENT_TYPE_STARTING);
+        mUserLifecycleEventBus.onEvent(USER_ID, USER_LIFECYCLE_EVENT_TYPE_UNLOCKED);
+        mMainExecutor.runAllReady();
+
+        InOrder inOrder = inOrder(mObserver, mSubscriber);
+        inOrder.verify(mObserver).onUserLifecycleEvent(USER_ID,
+                USER_LIFECYCLE_EVENT_TYPE_STARTING);
+        inOrder.verify(mObserver).onUserLifecycleEvent(USER_ID,
+                USER_LIFECYCLE_EVENT_TYPE_UNLOCKED);
+        inOrder.verify(mSubscriber).onUserEvents(any());
+    }
+
+    @Test
+    public void onUserInfoChanged_deliveredThroughBackgroundExecutor() {
+        ArgumentCaptor<BroadcastReceiver> receiverCaptor =
+                ArgumentCaptor.forClass(BroadcastReceiver.class);
+        verify(mContext).registerReceiverForAllUsers(receiverCaptor.capture(),
+                any(IntentFilter.class), isNull(), isNull());
+        mUserLifecycleEventBus.addObserver(mObserver);
+        mUserLifecycleEventBus.subscribe(mSubscriber, EVENT_TYPE_USER_INFO_CHANGED);
+
+        Intent intent = new Intent(Intent.ACTION_USER_INFO_CHANGED);
+        intent.putExtra(Intent.EXTRA_USER_HANDLE, USER_ID);
+        receiverCaptor.getValue().onReceive(mContext, intent);
+        verify(mObserver, never()).onUserLifecycleEvent(USER_ID, EVENT_TYPE_USER_INFO_CHANGED);
+        mBackgroundExecutor.runAllReady();
+        mMainExecutor.runAllReady();
+
+        verify(mObserver).onUserLifecycleEvent(USER_ID, EVENT_TYPE_USER_INFO_CHANGED);
+        verify(mSubscriber).onUserEvents(any());
+    }
+}
@@ -24,6 +24,8 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import android.content.Context;
@@ -41,6 +43,8 @@ import com.android.car.internal.user.UserHelper;
 import com.android.dx.mockito.inline.extended.ExtendedMockito;
 import com.android.systemui.SysuiTestCase;
 import com.android.systemui.car.CarSystemUiTest;
+import com.android.systemui.util.concurrency.FakeExecutor;
+import com.android.systemui.util.time.FakeSystemClock;
 
 import org.junit.After;
 import org.junit.Before;
@@ -50,6 +54,8 @@ import org.mockito.Mock;
 import org.mockito.MockitoSession;
 import org.mockito.quality.Strictness;
 
+import java.util.List;
+
 @CarSystemUiTest
 @RunWith(AndroidTestingRunner.class)
 @TestableLooper.RunWithLooper
@@ -85,7 +91,7 @@ public class UserIconProviderTest extends SysuiTestCase {
         when(mUserManager.getUserInfo(mUserInfo.id)).thenReturn(mUserInfo);
         when(mUserManager.getUserInfo(mGuestUserInfo.id)).thenReturn(mGuestUserInfo);
 
-        mUserIconProvider = new UserIconProvider();
+        mUserIconProvider = new UserIconProvider(new UserIconCache());
         spyOn(mUserIconProvider);
 
         mResources = mContext.getResources();
@@ -125,4 +131,50 @@ public class UserIconProviderTest extends SysuiTestCase {
         ExtendedMockito.verify(() -> UserHelper.assignDefaultIcon(any(Context.class),
                 eq(mUserInfo.getUserHandle())), never());
     }
+
+    @Test
+    public void getRoundedUserIcon_calledTwice_loadsIconOnce() {
+        when(mUserManager.getUserIcon(mUserInfo.id)).thenReturn(mBitmap);
+
+        mUserIconProvider.getRoundedUserIcon(mUserInfo, mContext);
+        mUserIconProvider.getRoundedUserIcon(mUserInfo, mContext);
+
+        verify(mUserManager).getUserIcon(mUserInfo.id);
+    }
+
+    @Test
+    public void getRoundedUserIcon_afterInvalidation_reloadsIcon() {
+        when(mUserManager.getUserIcon(mUserInfo.id)).thenReturn(mBitmap);
+
+        mUserIconProvider.getRoundedUserIcon(mUserInfo, mContext);
+        mUserIconProvider.invalidateUserIcon(mContext, mUserInfo.id);
+        mUserIconProvider.getRoundedUserIcon(mUserInfo, mContext);
+
+        verify(mUserManager, times(2)).getUserIcon(mUserInfo.id);
+    }
+
+    @Test
+    public void getRoundedUserIcon_otherUserInvalidated_doesNotReloadIcon() {
+        when(mUserManager.getUserIcon(mUserInfo.id)).thenReturn(mBitmap);
+
+        mUserIconProvider.getRoundedUserIcon(mUserInfo, mContext);
+        mUserIconProvider.invalidateUserIcon(mContext, mGuestUserInfo.id);
+        mUserIconProvider.getRoundedUserIcon(mUserInfo, mContext);
+
+        verify(mUserManager).getUserIcon(mUserInfo.id);
+    }
+
+    @Test
+    public void warmUpUserIcons_loadsIconsOnExecutor() {
+        when(mUserManager.getUserIcon(mUserInfo.id)).thenReturn(mBitmap);
+        FakeExecutor executor = new FakeExecutor(new FakeSystemClock());
+
+        mUserIconProvider.warmUpUserIcons(mContext, List.of(mUserInfo), /* withBadge= */ false,
+                executor);
+        verify(mUserManager, never()).getUserIcon(mUserInfo.id);
+        executor.runAllReady();
+        mUserIconProvider.getRoundedUserIcon(mUserInfo, mContext);
+
+        verify(mUserManager).getUserIcon(mUserInfo.id);
+    }
 }
@@ -62,6 +62,7 @@ public class UserSwitchTransitionViewControllerTest extends SysuiTestCase {
     private UserSwitchTransitionViewController mCarUserSwitchingDialogController;
     private TestableResources mTestableResources;
     private FakeExecutor mExecutor;
+    private FakeExecutor mBackgroundExecutor;
     private FakeSystemClock mClock;
     private ViewGroup mViewGroup;
     @Mock
@@ -79,10 +80,12 @@ public class UserSwitchTransitionViewControllerTest extends SysuiTestCase {
         mTestableResources = mContext.getOrCreateTestableResources();
         mClock = new FakeSystemClock();
         mExecutor = new FakeExecutor(mClock);
+        mBackgroundExecutor = new FakeExecutor(mClock);
         mCarUserSwitchingDialogController = new UserSwitchTransitionViewController(
                 mContext,
                 mTestableResources.getResources(),
                 mExecutor,
+                mBackgroundExecutor,
                 mMockActivityManager,
                 mMockUserManager,
                 mWindowManagerService,
@@ -97,6 +100,15 @@ public class UserSwitchTransitionViewControllerTest extends SysuiTestCase {
         mCarUserSwitchingDialogController.inflate(mViewGroup);
     }
 
+    @Test
+    public void init_warmsUpUserIconsInBackground() {
+        verify(mMockUserManager, never()).getAliveUsers();
+
+        mBackgroundExecutor.runAllReady();
+
+        verify(mMockUserManager).getAliveUsers();
+    }
+
     @Test
     public void onHandleShow_newUserSelected_showsDialog() {
         mCarUserSwitchingDialogController.handleShow(/* newUserId= */ TEST_USER_1);
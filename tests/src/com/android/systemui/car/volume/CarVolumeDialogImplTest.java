@@ -0,0 +1,276 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.systemui.car.volume;
+
+import static android.car.media.CarAudioManager.AUDIO_FEATURE_VOLUME_GROUP_EVENTS;
+import static android.car.media.CarVolumeGroupEvent.EVENT_TYPE_VOLUME_GAIN_INDEX_CHANGED;
+import static android.car.media.CarVolumeGroupEvent.EVENT_TYPE_VOLUME_MAX_INDEX_CHANGED;
+import static android.media.AudioAttributes.USAGE_ALARM;
+import static android.media.AudioAttributes.USAGE_ASSISTANCE_NAVIGATION_GUIDANCE;
+import static android.media.AudioAttributes.USAGE_MEDIA;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.car.Car;
+import android.car.CarOccupantZoneManager;
+import android.car.CarOccupantZoneManager.OccupantZoneInfo;
+import android.car.media.CarAudioManager;
+import android.car.media.CarVolumeGroupEvent;
+import android.car.media.CarVolumeGroupEventCallback;
+import android.car.media.CarVolumeGroupInfo;
+import android.testing.AndroidTestingRunner;
+import android.testing.TestableLooper;
+import android.view.WindowManager;
+
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.filters.SmallTest;
+
+import com.android.systemui.SysuiTestCase;
+import com.android.systemui.car.CarServiceProvider;
+import com.android.systemui.car.CarSystemUiTest;
+import com.android.systemui.settings.UserTracker;
+import com.android.systemui.statusbar.policy.ConfigurationController;
+import com.android.systemui.util.concurrency.FakeExecutor;
+import com.android.systemui.util.time.FakeSystemClock;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Collections;
+
+@CarSystemUiTest
+@RunWith(AndroidTestingRunner.class)
+@TestableLooper.RunWithLooper(setAsMainLooper = true)
+@SmallTest
+public class CarVolumeDialogImplTest extends SysuiTestCase {
+    private static final int ZONE_ID = 0;
+    private static final int[] GROUP_USAGES =
+            {USAGE_MEDIA, USAGE_ASSISTANCE_NAVIGATION_GUIDANCE, USAGE_ALARM};
+    private static final int MAX_INDEX = 10;
+
+    private CarVolumeDialogImpl mCarVolumeDialog;
+    private CarVolumeGroupEventCallback mCarVolumeGroupEventCallback;
+
+    @Mock
+    private CarServiceProvider mCarServiceProvider;
+    @Mock
+    private Car mCar;
+    @Mock
+    private CarOccupantZoneManager mCarOccupantZoneManager;
+    @Mock
+    private CarAudioManager mCarAudioManager;
+    @Mock
+    private ConfigurationController mConfigurationController;
+    @Mock
+    private UserTracker mUserTracker;
+    @Mock
+    private RecyclerView.AdapterDataObserver mAdapterDataObserver;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(/* testClass= */ this);
+        when(mUserTracker.getUserHandle()).thenReturn(mContext.getUser());
+        OccupantZoneInfo occupantZoneInfo = new OccupantZoneInfo(/* zoneId= */ 0,
+                CarOccupantZoneManager.OCCUPANT_TYPE_DRIVER, /* seat= */ 0);
+        when(mCarOccupantZoneManager.getOccupantZoneForUser(any()))
+                .thenReturn(occupantZoneInfo);
+        when(mCarOccupantZoneManager.getAudioZoneIdForOccupant(occupantZoneInfo))
+                .thenReturn(ZONE_ID);
+        when(mCar.getCarManager(Car.CAR_OCCUPANT_ZONE_SERVICE))
+                .thenReturn(mCarOccupantZoneManager);
+        when(mCar.getCarManager(Car.AUDIO_SERVICE)).thenReturn(mCarAudioManager);
+        when(mCarAudioManager.isAudioFeatureEnabled(AUDIO_FEATURE_VOLUME_GROUP_EVENTS))
+                .thenReturn(true);
+        when(mCarAudioManager.getVolumeGroupCount(ZONE_ID)).thenReturn(GROUP_USAGES.length);
+        for (int groupId = 0; groupId < GROUP_USAGES.length; groupId++) {
+            when(mCarAudioManager.getUsagesForVolumeGroupId(ZONE_ID, groupId))
+                    .thenReturn(new int[]{GROUP_USAGES[groupId]});
+            when(mCarAudioManager.getGroupMaxVolume(ZONE_ID, groupId)).thenReturn(MAX_INDEX);
+        }
+
+        FakeSystemClock clock = new FakeSystemClock();
+        mCarVolumeDialog = new CarVolumeDialogImpl(mContext, mCarServiceProvider,
+                mConfigurationController, mUserTracker, new FakeExecutor(clock), clock);
+        mCarVolumeDialog.warmUp();
+        connectToCarService();
+        mCarVolumeDialog.getVolumeItemsAdapter().registerAdapterDataObserver(
+                mAdapterDataObserver);
+    }
+
+    @Test
+    public void volumeChanged_defaultItem_onlyItsPositionNotified() {
+        sendVolumeGroupEvent(/* groupId= */ 0, EVENT_TYPE_VOLUME_GAIN_INDEX_CHANGED,
+                /* volumeIndex= */ 5, MAX_INDEX);
+
+        verify(mAdapterDataObserver).onItemRangeChanged(/* positionStart= */ 0,
+                /* itemCount= */ 1, /* payload= */ null);
+        verify(mAdapterDataObserver, never()).onChanged();
+    }
+
+    @Test
+    public void volumeChanged_itemNotShowing_notNotified() {
+        sendVolumeGroupEvent(/* groupId= */ 2, EVENT_TYPE_VOLUME_GAIN_INDEX_CHANGED,
+                /* volumeIndex= */ 5, MAX_INDEX);
+
+        verify(mAdapterDataObserver, never()).onItemRangeChanged(anyInt(), anyInt(), any());
+        verify(mAdapterDataObserver, never()).onChanged();
+    }
+
+    @Test
+    public void volumeChanged_expanded_positionOfItemNotified() {
+        mCarVolumeDialog.toggleDialogExpansion(/* isClicked= */ false);
+
+        sendVolumeGroupEvent(/* groupId= */ 2, EVENT_TYPE_VOLUME_GAIN_INDEX_CHANGED,
+                /* volumeIndex= */ 5, MAX_INDEX);
+
+        verify(mAdapterDataObserver).onItemRangeChanged(/* positionStart= */ 2,
+                /* itemCount= */ 1, /* payload= */ null);
+        verify(mAdapterDataObserver, never()).onChanged();
+    }
+
+    @Test
+    public void volumeChanged_sameIndex_notNotified() {
+        sendVolumeGroupEvent(/* groupId= */ 0, EVENT_TYPE_VOLUME_GAIN_INDEX_CHANGED,
+                /* volumeIndex= */ 0, MAX_INDEX);
+
+        verify(mAdapterDataObserver, never()).onItemRangeChanged(anyInt(), anyInt(), any());
+    }
+
+    @Test
+    public void maxIndexChanged_cachedMaxUpdated() {
+        sendVolumeGroupEvent(/* groupId= */ 0, EVENT_TYPE_VOLUME_MAX_INDEX_CHANGED,
+                /* volumeIndex= */ 0, /* maxIndex= */ 20);
+        sendVolumeGroupEvent(/* groupId= */ 0, EVENT_TYPE_VOLUME_MAX_INDEX_CHANGED,
+                /* volumeIndex= */ 0, /* maxIndex= */ 20);
+
+        // The second event reports the max index the item already has.
+        verify(mAdapterDataObserver, times(1)).onItemRangeChanged(/* positionStart= */ 0,
+                /* itemCount= */ 1, /* payload= */ null);
+    }
+
+    @Test
+    public void toggleDialogExpansion_expand_otherItemsInsertedAfterDefaultItem() {
+        assertThat(mCarVolumeDialog.getVolumeItemsAdapter().getItemCount()).isEqualTo(1);
+
+        mCarVolumeDialog.toggleDialogExpansion(/* isClicked= */ false);
+
+        verify(mAdapterDataObserver).onItemRangeInserted(/* positionStart= */ 1,
+                /* itemCount= */ GROUP_USAGES.length - 1);
+        verify(mAdapterDataObserver, never()).onChanged();
+        assertThat(mCarVolumeDialog.getVolumeItemsAdapter().getItemCount())
+                .isEqualTo(GROUP_USAGES.length);
+    }
+
+    @Test
+    public void toggleDialogExpansion_collapse_otherItemsRemoved() {
+        mCarVolumeDialog.toggleDialogExpansion(/* isClicked= */ false);
+
+        mCarVolumeDialog.toggleDialogExpansion(/* isClicked= */ false);
+
+        verify(mAdapterDataObserver).onItemRangeChanged(/* positionStart= */ 0,
+                /* itemCount= */ 1, /* payload= */ null);
+        verify(mAdapterDataObserver).onItemRangeRemoved(/* positionStart= */ 1,
+                /* itemCount= */ GROUP_USAGES.length - 1);
+        verify(mAdapterDataObserver, never()).onChanged();
+        assertThat(mCarVolumeDialog.getVolumeItemsAdapter().getItemCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void warmUp_thenInit_connectedToCarServiceOnce() {
+        mCarVolumeDialog.init(WindowManager.LayoutParams.TYPE_VOLUME_OVERLAY,
+                /* callback= */ null);
+
+        verify(mCarServiceProvider, times(1)).addListener(any());
+        verify(mCarAudioManager, times(1)).getVolumeGroupCount(ZONE_ID);
+        assertThat(mCarVolumeDialog.getVolumeItemsAdapter().getItemCount()).isEqualTo(1);
+
+        mCarVolumeDialog.destroy();
+    }
+
+    @Test
+    public void destroy_carServiceListenerRemoved() {
+        ArgumentCaptor<CarServiceProvider.CarServiceOnConnectedListener> listenerCaptor =
+                ArgumentCaptor.forClass(CarServiceProvider.CarServiceOnConnectedListener.class);
+        verify(mCarServiceProvider).addListener(listenerCaptor.capture());
+
+        mCarVolumeDialog.destroy();
+
+        verify(mCarServiceProvider).removeListener(listenerCaptor.getValue());
+    }
+
+    @Test
+    public void destroy_thenInit_volumeItemsNotDuplicated() {
+        mCarVolumeDialog.init(WindowManager.LayoutParams.TYPE_VOLUME_OVERLAY,
+                /* callback= */ null);
+        mCarVolumeDialog.destroy();
+
+        mCarVolumeDialog.init(WindowManager.LayoutParams.TYPE_VOLUME_OVERLAY,
+                /* callback= */ null);
+        connectToCarService();
+        mCarVolumeDialog.getVolumeItemsAdapter().registerAdapterDataObserver(
+                mAdapterDataObserver);
+        mCarVolumeDialog.toggleDialogExpansion(/* isClicked= */ false);
+
+        verify(mAdapterDataObserver).onItemRangeInserted(/* positionStart= */ 1,
+                /* itemCount= */ GROUP_USAGES.length - 1);
+        assertThat(mCarVolumeDialog.getVolumeItemsAdapter().getItemCount())
+                .isEqualTo(GROUP_USAGES.length);
+
+        mCarVolumeDialog.destroy();
+    }
+
+    private void connectToCarService() {
+        // Connects the listener added last, i.e. by the latest init() or warmUp().
+        ArgumentCaptor<CarServiceProvider.CarServiceOnConnectedListener> listenerCaptor =
+                ArgumentCaptor.forClass(CarServiceProvider.CarServiceOnConnectedListener.class);
+        verify(mCarServiceProvider, atLeastOnce()).addListener(listenerCaptor.capture());
+        listenerCaptor.getValue().onConnected(mCar);
+
+        ArgumentCaptor<CarVolumeGroupEventCallback> callbackCaptor =
+                ArgumentCaptor.forClass(CarVolumeGroupEventCallback.class);
+        verify(mCarAudioManager, atLeastOnce()).registerCarVolumeGroupEventCallback(any(),
+                callbackCaptor.capture());
+        mCarVolumeGroupEventCallback = callbackCaptor.getValue();
+    }
+
+    private void sendVolumeGroupEvent(int groupId, int eventTypes, int volumeIndex,
+            int maxIndex) {
+        CarVolumeGroupInfo groupInfo = mock(CarVolumeGroupInfo.class);
+        when(groupInfo.getZoneId()).thenReturn(ZONE_ID);
+        when(groupInfo.getId()).thenReturn(groupId);
+        when(groupInfo.getVolumeGainIndex()).thenReturn(volumeIndex);
+        when(groupInfo.getMaxVolumeGainIndex()).thenReturn(maxIndex);
+        CarVolumeGroupEvent event = mock(CarVolumeGroupEvent.class);
+        when(event.getEventTypes()).thenReturn(eventTypes);
+        when(event.getExtraInfos()).thenReturn(Collections.emptyList());
+        when(event.getCarVolumeGroupInfos()).thenReturn(Collections.singletonList(groupInfo));
+        mCarVolumeGroupEventCallback.onVolumeGroupEvent(Collections.singletonList(event));
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.systemui.car.volume;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.car.media.CarAudioManager;
+import android.testing.AndroidTestingRunner;
+import android.testing.TestableLooper;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.systemui.SysuiTestCase;
+import com.android.systemui.car.CarSystemUiTest;
+import com.android.systemui.util.concurrency.FakeExecutor;
+import com.android.systemui.util.time.FakeSystemClock;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+@CarSystemUiTest
+@RunWith(AndroidTestingRunner.class)
+@TestableLooper.RunWithLooper
+@SmallTest
+public class CarVolumeWriteQueueTest extends SysuiTestCase {
+    private static final int ZONE_ID = 0;
+    private static final int GROUP_ID = 1;
+
+    private CarVolumeWriteQueue mCarVolumeWriteQueue;
+    private FakeSystemClock mClock;
+    private FakeExecutor mBackgroundExecutor;
+
+    @Mock
+    private CarAudioManager mCarAudioManager;
+    @Mock
+    private CarVolumeWriteQueue.Callback mCallback;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(/* testClass= */ this);
+        mClock = new FakeSystemClock();
+        mBackgroundExecutor = new FakeExecutor(mClock);
+        mCarVolumeWriteQueue = new CarVolumeWriteQueue(mBackgroundExecutor, mClock,
+                mCallback);
+        mCarVolumeWriteQueue.setCarAudioManager(mCarAudioManager);
+    }
+
+    @Test
+    public void setGroupVolume_severalTimesWithinInterval_writesLatestIndexOnce() {
+        mCarVolumeWriteQueue.startTracking(ZONE_ID, GROUP_ID);
+        mCarVolumeWriteQueue.setGroupVolume(ZONE_ID, GROUP_ID, /* index= */ 3);
+        mBackgroundExecutor.runAllReady();
+        mCarVolumeWriteQueue.setGroupVolume(ZONE_ID, GROUP_ID, /* index= */ 4);
+        mCarVolumeWriteQueue.setGroupVolume(ZONE_ID, GROUP_ID, /* index= */ 5);
+        mBackgroundExecutor.runAllReady();
+
+        verify(mCarAudioManager).setGroupVolume(ZONE_ID, GROUP_ID, /* index= */ 3,
+                /* flags= */ 0);
+        verify(mCarAudioManager, never()).setGroupVolume(ZONE_ID, GROUP_ID, /* index= */ 5,
+                /* flags= */ 0);
+
+        mClock.advanceTime(CarVolumeWriteQueue.MIN_WRITE_INTERVAL_MS);
+        mBackgroundExecutor.runAllReady();
+
+        verify(mCarAudioManager, never()).setGroupVolume(ZONE_ID, GROUP_ID, /* index= */ 4,
+                /* flags= */ 0);
+        verify(mCarAudioManager).setGroupVolume(ZONE_ID, GROUP_ID, /* index= */ 5,
+                /* flags= */ 0);
+    }
+
+    @Test
+    public void stopTracking_writesLatestIndexRightAway() {
+        mCarVolumeWriteQueue.startTracking(ZONE_ID, GROUP_ID);
+        mCarVolumeWriteQueue.setGroupVolume(ZONE_ID, GROUP_ID, /* index= */ 3);
+        mBackgroundExecutor.runAllReady();
+        mCarVolumeWriteQueue.setGroupVolume(ZONE_ID, GROUP_ID, /* index= */ 4);
+
+        mCarVolumeWriteQueue.stopTracking(ZONE_ID, GROUP_ID);
+        mBackgroundExecutor.runAllReady();
+
+        verify(mCarAudioManager).setGroupVolume(ZONE_ID, GROUP_ID, /* index= */ 4,
+                /* flags= */ 0);
+    }
+
+    @Test
+    public void shouldApplyVolumeIndex_untilWrittenIndexAcknowledged_returnsFalse() {
+        mCarVolumeWriteQueue.startTracking(ZONE_ID, GROUP_ID);
+        mCarVolumeWriteQueue.setGroupVolume(ZONE_ID, GROUP_ID, /* index= */ 3);
+        mCarVolumeWriteQueue.setGroupVolume(ZONE_ID, GROUP_ID, /* index= */ 4);
+        mCarVolumeWriteQueue.stopTracking(ZONE_ID, GROUP_ID);
+        mBackgroundExecutor.runAllReady();
+
+        assertThat(mCarVolumeWriteQueue.shouldApplyVolumeIndex(ZONE_ID, GROUP_ID,
+                /* index= */ 3)).isFalse();
+        assertThat(mCarVolumeWriteQueue.shouldApplyVolumeIndex(ZONE_ID, GROUP_ID,
+                /* index= */ 4)).isTrue();
+        assertThat(mCarVolumeWriteQueue.shouldApplyVolumeIndex(ZONE_ID, GROUP_ID,
+                /* index= */ 2)).isTrue();
+    }
+
+    @Test
+    public void shouldApplyVolumeIndex_afterAcknowledgeTimeout_returnsTrue() {
+        mCarVolumeWriteQueue.setGroupVolume(ZONE_ID, GROUP_ID, /* index= */ 4);
+        mBackgroundExecutor.runAllReady();
+
+        mClock.advanceTime(CarVolumeWriteQueue.ACKNOWLEDGE_TIMEOUT_MS);
+
+        assertThat(mCarVolumeWriteQueue.shouldApplyVolumeIndex(ZONE_ID, GROUP_ID,
+                /* index= */ 3)).isTrue();
+    }
+
+    @Test
+    public void writtenIndexClamped_afterAcknowledgeTimeout_reportsIndexOfService() {
+        when(mCarAudioManager.getGroupVolume(ZONE_ID, GROUP_ID)).thenReturn(6);
+        mCarVolumeWriteQueue.startTracking(ZONE_ID, GROUP_ID);
+        mCarVolumeWriteQueue.setGroupVolume(ZONE_ID, GROUP_ID, /* index= */ 8);
+        mCarVolumeWriteQueue.stopTracking(ZONE_ID, GROUP_ID);
+        mBackgroundExecutor.runAllReady();
+        // The only callback for the clamped write arrives within the acknowledgement window.
+        assertThat(mCarVolumeWriteQueue.shouldApplyVolumeIndex(ZONE_ID, GROUP_ID,
+                /* index= */ 6)).isFalse();
+        verify(mCallback, never()).onVolumeIndexReconciled(anyInt(), anyInt(), anyInt());
+
+        mClock.advanceTime(CarVolumeWriteQueue.ACKNOWLEDGE_TIMEOUT_MS);
+        mBackgroundExecutor.runAllReady();
+
+        verify(mCallback).onVolumeIndexReconciled(ZONE_ID, GROUP_ID, /* index= */ 6);
+        assertThat(mCarVolumeWriteQueue.shouldApplyVolumeIndex(ZONE_ID, GROUP_ID,
+                /* index= */ 6)).isTrue();
+    }
+
+    @Test
+    public void writtenIndexAcknowledged_afterAcknowledgeTimeout_volumeNotReadBack() {
+        mCarVolumeWriteQueue.setGroupVolume(ZONE_ID, GROUP_ID, /* index= */ 8);
+        mBackgroundExecutor.runAllReady();
+        assertThat(mCarVolumeWriteQueue.shouldApplyVolumeIndex(ZONE_ID, GROUP_ID,
+                /* index= */ 8)).isTrue();
+
+        mClock.advanceTime(CarVolumeWriteQueue.ACKNOWLEDGE_TIMEOUT_MS);
+        mBackgroundExecutor.runAllReady();
+
+        verify(mCarAudioManager, never()).getGroupVolume(ZONE_ID, GROUP_ID);
+        verify(mCallback, never()).onVolumeIndexReconciled(anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void sliderHeldPastAcknowledgeTimeout_reconciledAfterRelease() {
+        when(mCarAudioManager.getGroupVolume(ZONE_ID, GROUP_ID)).thenReturn(6);
+        mCarVolumeWriteQueue.startTracking(ZONE_ID, GROUP_ID);
+        mCarVolumeWriteQueue.setGroupVolume(ZONE_ID, GROUP_ID, /* index= */ 8);
+        mBackgroundExecutor.runAllReady();
+        mClock.advanceTime(CarVolumeWriteQueue.ACKNOWLEDGE_TIMEOUT_MS);
+        mBackgroundExecutor.runAllReady();
+        verify(mCallback, never()).onVolumeIndexReconciled(anyInt(), anyInt(), anyInt());
+
+        mCarVolumeWriteQueue.stopTracking(ZONE_ID, GROUP_ID);
+        mBackgroundExecutor.runAllReady();
+
+        verify(mCallback).onVolumeIndexReconciled(ZONE_ID, GROUP_ID, /* index= */ 6);
+    }
+}
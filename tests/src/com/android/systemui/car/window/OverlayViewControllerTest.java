@@ -67,6 +67,11 @@ public class OverlayViewControllerTest extends SysuiTestCase {
                 R.layout.overlay_view_controller_test, /* root= */ null);
     }
 
+    @Test
+    public void constructor_registersWithGlobalStateController() {
+        verify(mOverlayViewGlobalStateController).registerViewController(mOverlayViewController);
+    }
+
     @Test
     public void inflate_layoutInitialized() {
         mOverlayViewController.inflate(mBaseLayout);
@@ -21,11 +21,14 @@ import static android.view.WindowInsets.Type.statusBars;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertThrows;
 
 import android.view.LayoutInflater;
 import android.view.View;
@@ -103,6 +106,15 @@ public class OverlayViewGlobalStateControllerTest extends SysuiTestCase {
         verify(mOverlayViewMediator).setUpOverlayContentViewControllers();
     }
 
+    @Test
+    public void registerViewController_viewControllersReturnedInRegistrationOrder() {
+        mOverlayViewGlobalStateController.registerViewController(mOverlayViewController2);
+        mOverlayViewGlobalStateController.registerViewController(mOverlayViewController1);
+
+        assertThat(mOverlayViewGlobalStateController.getViewControllers())
+                .containsExactly(mOverlayViewController2, mOverlayViewController1).inOrder();
+    }
+
     @Test
     public void showView_nothingVisible_windowNotFocusable_shouldShowNavBar_navBarsVisible() {
         setupOverlayViewController1();
@@ -938,6 +950,70 @@ public class OverlayViewGlobalStateControllerTest extends SysuiTestCase {
                 mOverlayViewController1)).isTrue();
     }
 
+    @Test
+    public void setOccludedTrue_severalViewsToHideWhenOccluded_windowStateRefreshedOnce() {
+        setupOverlayViewController1();
+        setOverlayViewControllerAsShowing(mOverlayViewController1);
+        setupOverlayViewController2();
+        setOverlayViewControllerAsShowing(mOverlayViewController2);
+        when(mOverlayViewController1.shouldShowWhenOccluded()).thenReturn(false);
+        when(mOverlayViewController2.shouldShowWhenOccluded()).thenReturn(false);
+
+        mOverlayViewGlobalStateController.setOccluded(true);
+
+        verify(mSystemUIOverlayWindowController).setWindowFocusable(false);
+        verify(mSystemUIOverlayWindowController).setWindowVisible(false);
+    }
+
+    @Test
+    public void showView_inTransaction_windowStateRefreshedOnCommit() {
+        setupOverlayViewController1();
+        setupOverlayViewController2();
+        when(mOverlayViewController1.shouldFocusWindow()).thenReturn(false);
+        when(mOverlayViewController2.shouldFocusWindow()).thenReturn(true);
+
+        mOverlayViewGlobalStateController.beginTransaction();
+        mOverlayViewGlobalStateController.showView(mOverlayViewController1, mRunnable);
+        mOverlayViewGlobalStateController.showView(mOverlayViewController2, mRunnable);
+        verify(mSystemUIOverlayWindowController, never()).setWindowFocusable(anyBoolean());
+        mOverlayViewGlobalStateController.commitTransaction();
+
+        verify(mSystemUIOverlayWindowController).setWindowFocusable(true);
+        verify(mSystemUIOverlayWindowController, never()).setWindowFocusable(false);
+    }
+
+    @Test
+    public void hideView_allViewsInTransaction_windowCollapsedOnCommit() {
+        setupOverlayViewController1();
+        setOverlayViewControllerAsShowing(mOverlayViewController1);
+        setupOverlayViewController2();
+        setOverlayViewControllerAsShowing(mOverlayViewController2);
+
+        mOverlayViewGlobalStateController.beginTransaction();
+        mOverlayViewGlobalStateController.hideView(mOverlayViewController1, mRunnable);
+        mOverlayViewGlobalStateController.hideView(mOverlayViewController2, mRunnable);
+        verify(mSystemUIOverlayWindowController, never()).setWindowVisible(false);
+        mOverlayViewGlobalStateController.commitTransaction();
+
+        verify(mSystemUIOverlayWindowController).setWindowVisible(false);
+    }
+
+    @Test
+    public void setOccluded_hidingViewThrows_windowStateRefreshedAfterwards() {
+        setupOverlayViewController1();
+        setOverlayViewControllerAsShowing(mOverlayViewController1);
+        when(mOverlayViewController1.shouldShowWhenOccluded()).thenReturn(false);
+        doThrow(new IllegalStateException()).when(mOverlayViewController1).hideInternal();
+        assertThrows(IllegalStateException.class,
+                () -> mOverlayViewGlobalStateController.setOccluded(true));
+        setupOverlayViewController2();
+        when(mOverlayViewController2.shouldFocusWindow()).thenReturn(true);
+
+        mOverlayViewGlobalStateController.showView(mOverlayViewController2, mRunnable);
+
+        verify(mSystemUIOverlayWindowController).setWindowFocusable(true);
+    }
+
     @Test
     public void inflateView_notInflated_inflates() {
         when(mOverlayViewController2.isInflated()).thenReturn(false);
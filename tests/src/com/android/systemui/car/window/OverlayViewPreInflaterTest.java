@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.systemui.car.window;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.os.Handler;
+import android.testing.AndroidTestingRunner;
+import android.testing.TestableLooper;
+import android.view.Gravity;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.systemui.R;
+import com.android.systemui.SysuiTestCase;
+import com.android.systemui.car.CarSystemUiTest;
+import com.android.systemui.settings.UserTracker;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Arrays;
+
+@CarSystemUiTest
+@RunWith(AndroidTestingRunner.class)
+@TestableLooper.RunWithLooper
+@SmallTest
+public class OverlayViewPreInflaterTest extends SysuiTestCase {
+    private static final int PANEL_HEIGHT = 100;
+
+    private OverlayViewPreInflater mOverlayViewPreInflater;
+    private FirstOverlayViewController mFirstViewController;
+    private SecondOverlayViewController mSecondViewController;
+    private OverlayViewController mNotConfiguredViewController;
+
+    @Mock
+    private OverlayViewGlobalStateController mOverlayViewGlobalStateController;
+    @Mock
+    private UserTracker mUserTracker;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(/* testClass= */ this);
+        mContext.getOrCreateTestableResources().addOverride(
+                R.array.config_preInflatedOverlayViewControllers, new String[]{
+                        SecondOverlayViewController.class.getName(),
+                        FirstOverlayViewController.class.getName()});
+
+        mFirstViewController = new FirstOverlayViewController(mOverlayViewGlobalStateController);
+        mFirstViewController.setLayout(new FrameLayout(mContext));
+        mSecondViewController = new SecondOverlayViewController(mOverlayViewGlobalStateController);
+        mSecondViewController.setLayout(new FrameLayout(mContext));
+        mNotConfiguredViewController = new OverlayViewController(/* stubId= */ 0,
+                mOverlayViewGlobalStateController);
+        when(mOverlayViewGlobalStateController.getViewControllers()).thenReturn(Arrays.asList(
+                mFirstViewController, mNotConfiguredViewController, mSecondViewController));
+
+        mOverlayViewPreInflater = new OverlayViewPreInflater(mContext,
+                mOverlayViewGlobalStateController, mUserTracker,
+                new Handler(TestableLooper.get(this).getLooper()));
+    }
+
+    @Test
+    public void schedule_preparesConfiguredControllersInConfigOrder_onePerIdlePass() {
+        mOverlayViewPreInflater.schedule();
+
+        assertThat(mOverlayViewPreInflater.mIdleHandler.queueIdle()).isTrue();
+        assertThat(mOverlayViewPreInflater.mIdleHandler.queueIdle()).isFalse();
+
+        InOrder inOrder = inOrder(mOverlayViewGlobalStateController);
+        inOrder.verify(mOverlayViewGlobalStateController).inflateView(mSecondViewController);
+        inOrder.verify(mOverlayViewGlobalStateController).inflateView(mFirstViewController);
+        verify(mOverlayViewGlobalStateController, never()).inflateView(
+                mNotConfiguredViewController);
+    }
+
+    @Test
+    public void schedule_viewLaidOut() {
+        mOverlayViewPreInflater.schedule();
+
+        mOverlayViewPreInflater.mIdleHandler.queueIdle();
+
+        assertThat(mSecondViewController.getLayout().isLaidOut()).isTrue();
+        assertThat(mSecondViewController.getLayout().getWidth()).isGreaterThan(0);
+    }
+
+    @Test
+    public void schedule_viewInParent_laidOutWithItsLayoutParams() {
+        FrameLayout parent = new FrameLayout(mContext);
+        FrameLayout layout = new FrameLayout(mContext);
+        parent.addView(layout, new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, PANEL_HEIGHT, Gravity.BOTTOM));
+        mSecondViewController.setLayout(layout);
+        mOverlayViewPreInflater.schedule();
+
+        mOverlayViewPreInflater.mIdleHandler.queueIdle();
+
+        assertThat(layout.getWidth()).isEqualTo(parent.getWidth());
+        assertThat(layout.getHeight()).isEqualTo(PANEL_HEIGHT);
+        assertThat(layout.getBottom()).isEqualTo(parent.getHeight());
+    }
+
+    @Test
+    public void onUserChanged_viewsPreparedAgain() {
+        mOverlayViewPreInflater.start();
+        ArgumentCaptor<UserTracker.Callback> callbackCaptor =
+                ArgumentCaptor.forClass(UserTracker.Callback.class);
+        verify(mUserTracker).addCallback(callbackCaptor.capture(), any());
+        while (mOverlayViewPreInflater.mIdleHandler.queueIdle()) {
+            // Prepare every view.
+        }
+
+        callbackCaptor.getValue().onUserChanged(/* newUser= */ 10, mock(Context.class));
+        mOverlayViewPreInflater.mIdleHandler.queueIdle();
+
+        verify(mOverlayViewGlobalStateController, times(2)).inflateView(mSecondViewController);
+    }
+
+    private static class FirstOverlayViewController extends OverlayViewController {
+        FirstOverlayViewController(
+                OverlayViewGlobalStateController overlayViewGlobalStateController) {
+            super(/* stubId= */ 0, overlayViewGlobalStateController);
+        }
+    }
+
+    private static class SecondOverlayViewController extends OverlayViewController {
+        SecondOverlayViewController(
+                OverlayViewGlobalStateController overlayViewGlobalStateController) {
+            super(/* stubId= */ 0, overlayViewGlobalStateController);
+        }
+    }
+}